@@ -19,6 +19,7 @@ import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import java.util.function.BiPredicate;
 import org.awaitility.Duration;
 import org.awaitility.pollinterval.FixedPollInterval;
 import org.slf4j.Logger;
@@ -43,6 +44,23 @@ public class AmazonDynamoDbAdminUtils {
      * TODO: write Javadoc.
      */
     public void createTableIfNotExists(CreateTableRequest createTableRequest, int pollIntervalSeconds) {
+        createTableIfNotExists(createTableRequest, pollIntervalSeconds, Object::equals);
+    }
+
+    /**
+     * Creates the table if it does not exist.  Unlike createTableIfNotExists, only requires the primary key of an
+     * existing table to match the request, so that its provisioned throughput, stream, and indexes may change
+     * independently of the request, e.g., by autoscaling or UpdateTable calls.
+     */
+    public void createTableIfNotExistsMatchingPrimaryKey(CreateTableRequest createTableRequest,
+                                                         int pollIntervalSeconds) {
+        createTableIfNotExists(createTableRequest, pollIntervalSeconds,
+            (existingTableDesc, createTableRequestDesc) ->
+                existingTableDesc.getPrimaryKey().equals(createTableRequestDesc.getPrimaryKey()));
+    }
+
+    private void createTableIfNotExists(CreateTableRequest createTableRequest, int pollIntervalSeconds,
+                                        BiPredicate<DynamoTableDescription, DynamoTableDescription> matches) {
         try {
             if (!tableExists(createTableRequest.getTableName())) {
                 String tableName = createTableRequest.getTableName();
@@ -52,7 +70,7 @@ public class AmazonDynamoDbAdminUtils {
                 DynamoTableDescription existingTableDesc = new DynamoTableDescriptionImpl(describeTable(
                     createTableRequest.getTableName()));
                 DynamoTableDescription createTableRequestDesc = new DynamoTableDescriptionImpl(createTableRequest);
-                checkArgument(existingTableDesc.equals(createTableRequestDesc),
+                checkArgument(matches.test(existingTableDesc, createTableRequestDesc),
                     "existing table does not match create table request, "
                         + "existing: " + existingTableDesc + ", createTableRequest=" + createTableRequestDesc);
             }
@@ -9,33 +9,72 @@ package com.salesforce.dynamodbv2.mt.cache;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 /*
+ * A cache whose entries are scoped to the multi-tenant context that is current when they are accessed.
+ *
+ * By default, the cache is unbounded.  To bound it, pass a CacheBuilder configured with maximumSize, or
+ * maximumWeight and a weigher, and optionally expireAfterAccess, so that entries of cold tenants are evicted.  Keys
+ * passed to the weigher are opaque composite keys of the context and the key, values are the cached values.  Call
+ * recordStats on the CacheBuilder for stats() to report hit rates and evictions.
+ *
+ * Entries can be refreshed by configuring the CacheBuilder with refreshAfterWrite.  The first read of an entry after
+ * the refresh interval reloads it within the context of the entry.  Loaders are carried by keys: a get reloads the
+ * entry with the loader passed to it, while getIfPresent reloads it with the loader passed to the get or put that added
+ * the entry, which Guava keeps as the key of the entry.  Hence, all loaders passed for the same key should be
+ * equivalent.  Entries added with put(key, value) have no loader, so that getIfPresent keeps their value and restarts
+ * their refresh interval; use put(key, value, loader) for entries that are also read with getIfPresent.  If a refresh
+ * executor is passed, the reload runs on that executor, while gets keep returning the current value until the reload
+ * completes, so that callers do not wait for loads of entries they already have.  Otherwise, the reload runs inline.
+ * If a reload fails, the current value is kept, so combine refreshAfterWrite with a longer expireAfterWrite to bound
+ * how long values are served if reloads keep failing.
+ *
  * @author msgroi
  */
 public class MtCache<V> implements Cache<String, V> {
 
-    private static final String DELIMITER = "-";
     private final MtAmazonDynamoDbContextProvider contextProvider;
-    private final Cache<Object, V> cache;
+    private final LoadingCache<Object, V> cache;
 
     public MtCache(MtAmazonDynamoDbContextProvider contextProvider) {
+        this(contextProvider, CacheBuilder.newBuilder());
+    }
+
+    public MtCache(MtAmazonDynamoDbContextProvider contextProvider, CacheBuilder<Object, Object> cacheBuilder) {
+        this(contextProvider, cacheBuilder, null);
+    }
+
+    /**
+     * Creates a cache whose entries are reloaded on the given executor when they are due for refresh according to the
+     * CacheBuilder's refreshAfterWrite, or inline if the executor is null.
+     */
+    public MtCache(MtAmazonDynamoDbContextProvider contextProvider, CacheBuilder<Object, Object> cacheBuilder,
+                   Executor refreshExecutor) {
         this.contextProvider = contextProvider;
-        this.cache = CacheBuilder.newBuilder().build();
+        CacheLoader<Object, V> loader = new ContextLoader();
+        this.cache = cacheBuilder.build(refreshExecutor == null ? loader
+            : CacheLoader.asyncReloading(loader, refreshExecutor));
     }
 
-    private String getKey(Object key) {
-        return contextProvider.getContext() + DELIMITER + key;
+    private CacheKey getKey(Object key) {
+        return new CacheKey(contextProvider.getContext(), key);
     }
 
     @Override
@@ -45,14 +84,25 @@ public class MtCache<V> implements Cache<String, V> {
 
     @Override
     public V get(String key, Callable<? extends V> valueLoader) throws ExecutionException {
-        return cache.get(getKey(key), valueLoader);
+        return cache.get(new CacheKey(contextProvider.getContext(), key, valueLoader));
     }
 
+    /**
+     * Puts the given value without a loader, so that the entry is only refreshed by get, see the class comment.
+     */
     @Override
     public void put(String key, V value) {
         cache.put(getKey(key), value);
     }
 
+    /**
+     * Puts the given value, which getIfPresent reloads with the given loader when it is due for refresh, unless the
+     * entry already exists, in which case it keeps the loader it was added with.
+     */
+    public void put(String key, V value, Callable<? extends V> loader) {
+        cache.put(new CacheKey(contextProvider.getContext(), key, loader), value);
+    }
+
     @Override
     public void putAll(Map<? extends String, ? extends V> m) {
         m.forEach(this::put);
@@ -63,6 +113,14 @@ public class MtCache<V> implements Cache<String, V> {
         cache.invalidate(getKey(key));
     }
 
+    /**
+     * Invalidates the entry of the given key in the given context, rather than in the current context, e.g., when
+     * another node changed the underlying value.
+     */
+    public void invalidate(String context, Object key) {
+        cache.invalidate(new CacheKey(context, key));
+    }
+
     @Override
     public void invalidateAll(Iterable<?> keys) {
         cache.invalidateAll(StreamSupport.stream(keys.spliterator(), false)
@@ -94,9 +152,98 @@ public class MtCache<V> implements Cache<String, V> {
         return cache.asMap();
     }
 
+    /**
+     * Returns a copy of the entries of all contexts, by context and key.
+     */
+    public Map<String, Map<String, V>> asMapByContext() {
+        Map<String, Map<String, V>> entries = new HashMap<>();
+        cache.asMap().forEach((key, value) -> {
+            CacheKey cacheKey = (CacheKey) key;
+            entries.computeIfAbsent(cacheKey.context, context -> new HashMap<>()).put((String) cacheKey.key, value);
+        });
+        return entries;
+    }
+
     @Override
     public ImmutableMap<String, V> getAllPresent(Iterable<?> keys) {
         throw new UnsupportedOperationException();
     }
 
+    /*
+     * Loads and reloads entries with the loader passed to get or put, which is carried by the key.  Reloads run within
+     * the context of the entry, since loaders may depend on the current context, and reloads may run on other threads.
+     */
+    private class ContextLoader extends CacheLoader<Object, V> {
+
+        @Override
+        public V load(Object key) throws Exception {
+            CacheKey cacheKey = (CacheKey) key;
+            if (cacheKey.loader == null) {
+                throw new IllegalStateException("no loader for key " + cacheKey);
+            }
+            return call(cacheKey);
+        }
+
+        @Override
+        public ListenableFuture<V> reload(Object key, V oldValue) throws Exception {
+            CacheKey cacheKey = (CacheKey) key;
+            if (cacheKey.loader == null) {
+                return Futures.immediateFuture(oldValue);
+            }
+            return Futures.immediateFuture(contextProvider.callWithContext(cacheKey.context, () -> call(cacheKey)));
+        }
+
+        @SuppressWarnings("unchecked")
+        private V call(CacheKey cacheKey) throws Exception {
+            return (V) cacheKey.loader.call();
+        }
+
+    }
+
+    /*
+     * Composite of context and key, avoiding the ambiguity and allocation of concatenating both into a string.  Keys
+     * passed to get and put also carry the loader, which is not part of their identity.
+     */
+    private static final class CacheKey {
+
+        private final String context;
+        private final Object key;
+        private final Callable<?> loader;
+        private final int hashCode;
+
+        CacheKey(String context, Object key) {
+            this(context, key, null);
+        }
+
+        CacheKey(String context, Object key, Callable<?> loader) {
+            this.context = context;
+            this.key = key;
+            this.loader = loader;
+            this.hashCode = 31 * Objects.hashCode(context) + Objects.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return Objects.equals(context, that.context) && Objects.equals(key, that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return context + "-" + key;
+        }
+
+    }
+
 }
@@ -7,8 +7,18 @@
 
 package com.salesforce.dynamodbv2.mt.context;
 
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
 /**
- * TODO: write Javadoc.
+ * Provides the multi-tenant context, i.e., the tenant on whose behalf requests are made.  Besides getting and setting
+ * the context, it offers scoped access that restores the previous context, and wrappers that carry the context of the
+ * calling thread over to the threads that run tasks on its behalf.  These rely on setContext, so they only take effect
+ * for providers that implement it.
  *
  * @author msgroi
  */
@@ -20,4 +30,93 @@ public interface MtAmazonDynamoDbContextProvider {
     default void setContext(String tenantId) {
         // defaults to no-op
     }
+
+    /**
+     * Returns the current context, or empty if there is none.
+     */
+    default Optional<String> getContextOpt() {
+        try {
+            return Optional.ofNullable(getContext());
+        } catch (IllegalStateException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Runs the runnable within the given context, or without context if null, and restores the previous context
+     * afterwards, even if the runnable fails.
+     */
+    default void withContext(String tenantId, Runnable runnable) {
+        withContext(tenantId, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Gets the result of the supplier within the given context, or without context if null, and restores the previous
+     * context afterwards, even if the supplier fails.
+     */
+    default <T> T withContext(String tenantId, Supplier<T> supplier) {
+        String previousContext = getContextOpt().orElse(null);
+        setContext(tenantId);
+        try {
+            return supplier.get();
+        } finally {
+            setContext(previousContext);
+        }
+    }
+
+    /**
+     * Like withContext(String, Supplier), but for callables, which may throw checked exceptions.  Named differently,
+     * since lambdas that return a value would be compatible with either overload.
+     */
+    default <T> T callWithContext(String tenantId, Callable<T> callable) throws Exception {
+        String previousContext = getContextOpt().orElse(null);
+        setContext(tenantId);
+        try {
+            return callable.call();
+        } finally {
+            setContext(previousContext);
+        }
+    }
+
+    /**
+     * Returns a runnable that runs the given one within the context that is current when this method is called.
+     */
+    default Runnable wrap(Runnable runnable) {
+        String context = getContextOpt().orElse(null);
+        return () -> withContext(context, runnable);
+    }
+
+    /**
+     * Returns a callable that calls the given one within the context that is current when this method is called.
+     */
+    default <T> Callable<T> wrap(Callable<T> callable) {
+        String context = getContextOpt().orElse(null);
+        return () -> callWithContext(context, callable);
+    }
+
+    /**
+     * Returns an executor service that runs each task within the context that is current when the task is submitted.
+     */
+    default ExecutorService wrap(ExecutorService executorService) {
+        return new MtContextPropagatingExecutorService(this, executorService);
+    }
+
+    /**
+     * Like CompletableFuture.runAsync(Runnable, Executor), but runs the runnable within the current context.
+     */
+    default CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return CompletableFuture.runAsync(wrap(runnable), executor);
+    }
+
+    /**
+     * Like CompletableFuture.supplyAsync(Supplier, Executor), but gets the result within the current context.
+     */
+    default <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        String context = getContextOpt().orElse(null);
+        return CompletableFuture.supplyAsync(() -> withContext(context, supplier), executor);
+    }
+
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.context;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor service that runs each task within the multi-tenant context that is current when the task is submitted.
+ * Since all submit and invoke methods of AbstractExecutorService funnel through execute, only execute wraps tasks.
+ * See MtAmazonDynamoDbContextProvider.wrap(ExecutorService).
+ */
+public class MtContextPropagatingExecutorService extends AbstractExecutorService {
+
+    private final MtAmazonDynamoDbContextProvider mtContext;
+    private final ExecutorService executorService;
+
+    public MtContextPropagatingExecutorService(MtAmazonDynamoDbContextProvider mtContext,
+                                               ExecutorService executorService) {
+        this.mtContext = mtContext;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executorService.execute(mtContext.wrap(command));
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return executorService.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executorService.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executorService.awaitTermination(timeout, unit);
+    }
+
+}
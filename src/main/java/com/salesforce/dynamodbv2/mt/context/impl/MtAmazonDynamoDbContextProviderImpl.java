@@ -8,28 +8,30 @@
 package com.salesforce.dynamodbv2.mt.context.impl;
 
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
-
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Optional;
 
 /**
- * TODO: write Javadoc.
+ * Keeps the context of each thread in a ThreadLocal.  Setting a null context removes the thread's entry, so that pooled
+ * threads do not retain the context of tasks they ran.
  *
  * @author msgroi
  */
 public class MtAmazonDynamoDbContextProviderImpl implements MtAmazonDynamoDbContextProvider {
 
-    private static final String CONTEXT_KEY = "multitenant-context";
-    private final ThreadLocal<Object> threadLocal = new ThreadLocal<>();
+    private final ThreadLocal<String> threadLocal = new ThreadLocal<>();
 
     @Override
     public void setContext(String tenantId) {
-        getContextMap().put(CONTEXT_KEY, tenantId);
+        if (tenantId == null) {
+            threadLocal.remove();
+        } else {
+            threadLocal.set(tenantId);
+        }
     }
 
     @Override
     public String getContext() {
-        String value = getContextMap().get(CONTEXT_KEY);
+        String value = threadLocal.get();
         if (value == null || value.trim().isEmpty()) {
             throw new IllegalStateException("no context available");
         } else {
@@ -37,13 +39,10 @@ public class MtAmazonDynamoDbContextProviderImpl implements MtAmazonDynamoDbCont
         }
     }
 
-    private Map<String, String> getContextMap() {
-        Map<String, String> context = (Map<String, String>) threadLocal.get();
-        if (context == null) {
-            context = new HashMap<>();
-            threadLocal.set(context);
-        }
-        return context;
+    @Override
+    public Optional<String> getContextOpt() {
+        String value = threadLocal.get();
+        return value == null || value.trim().isEmpty() ? Optional.empty() : Optional.of(value);
     }
 
-}
\ No newline at end of file
+}
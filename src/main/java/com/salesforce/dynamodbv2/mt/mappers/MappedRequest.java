@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A request against a virtual table mapped to the request against its physical counterpart, along with the mapping of
+ * the physical result back to the virtual result.  Requests are mapped within the multi-tenant context of the caller,
+ * whereas results are mapped without depending on it, so that a result may be mapped on whichever thread completes
+ * the physical request.
+ *
+ * <p>Some requests, e.g., scans of shared tables, page through the physical table until they find a result.  For
+ * those, the continuation returns the next physical request to issue given the previous physical result, or null once
+ * the physical result is final.
+ */
+public final class MappedRequest<RequestT, ResultT> {
+
+    private final RequestT physicalRequest;
+    private final UnaryOperator<ResultT> resultMapper;
+    private final Function<ResultT, RequestT> continuation;
+
+    private MappedRequest(RequestT physicalRequest,
+                          UnaryOperator<ResultT> resultMapper,
+                          Function<ResultT, RequestT> continuation) {
+        this.physicalRequest = physicalRequest;
+        this.resultMapper = resultMapper;
+        this.continuation = continuation;
+    }
+
+    /**
+     * Returns a mapped request whose physical result is mapped by the given function.
+     */
+    public static <RequestT, ResultT> MappedRequest<RequestT, ResultT> of(RequestT physicalRequest,
+                                                                          UnaryOperator<ResultT> resultMapper) {
+        return new MappedRequest<>(physicalRequest, resultMapper, result -> null);
+    }
+
+    /**
+     * Returns a mapped request that passes the request and its result through as is.
+     */
+    public static <RequestT, ResultT> MappedRequest<RequestT, ResultT> passthrough(RequestT request) {
+        return of(request, UnaryOperator.identity());
+    }
+
+    /**
+     * Returns a copy of this mapped request with the given continuation.
+     */
+    public MappedRequest<RequestT, ResultT> withContinuation(Function<ResultT, RequestT> continuation) {
+        return new MappedRequest<>(physicalRequest, resultMapper, continuation);
+    }
+
+    public RequestT getPhysicalRequest() {
+        return physicalRequest;
+    }
+
+    /**
+     * Returns the next physical request to issue after the given physical result, or null if the result is final.
+     */
+    public RequestT getNextRequest(ResultT physicalResult) {
+        return continuation.apply(physicalResult);
+    }
+
+    public ResultT mapResult(ResultT physicalResult) {
+        return resultMapper.apply(physicalResult);
+    }
+
+    /**
+     * Issues the physical request and its continuations, if any, using the given blocking call, and maps the final
+     * physical result.
+     */
+    public ResultT execute(Function<RequestT, ResultT> physicalCall) {
+        ResultT physicalResult = physicalCall.apply(physicalRequest);
+        RequestT nextRequest;
+        while ((nextRequest = getNextRequest(physicalResult)) != null) {
+            physicalResult = physicalCall.apply(nextRequest);
+        }
+        return mapResult(physicalResult);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import java.util.function.Function;
+
+/**
+ * A scan of a virtual table that is served by querying its physical counterpart rather than scanning it, e.g., by
+ * querying an index that holds the items of the virtual table only.  Like a MappedRequest, it consists of the physical
+ * request, a continuation that returns the next physical request to issue given the previous physical result, or null
+ * once the physical result is final, and the mapping of the final physical result, which is a scan result here.
+ *
+ * <p>Continuations may accumulate state across physical results, e.g., scanned counts, so a mapped scan query must be
+ * executed once only, and its continuation must be applied to each physical result in turn.
+ */
+public final class MappedScanQuery {
+
+    private final QueryRequest physicalRequest;
+    private final Function<QueryResult, ScanResult> resultMapper;
+    private final Function<QueryResult, QueryRequest> continuation;
+
+    private MappedScanQuery(QueryRequest physicalRequest,
+                            Function<QueryResult, ScanResult> resultMapper,
+                            Function<QueryResult, QueryRequest> continuation) {
+        this.physicalRequest = physicalRequest;
+        this.resultMapper = resultMapper;
+        this.continuation = continuation;
+    }
+
+    /**
+     * Returns a mapped scan query whose final physical result is mapped by the given function.
+     */
+    public static MappedScanQuery of(QueryRequest physicalRequest, Function<QueryResult, ScanResult> resultMapper) {
+        return new MappedScanQuery(physicalRequest, resultMapper, result -> null);
+    }
+
+    /**
+     * Returns a copy of this mapped scan query with the given continuation.
+     */
+    public MappedScanQuery withContinuation(Function<QueryResult, QueryRequest> continuation) {
+        return new MappedScanQuery(physicalRequest, resultMapper, continuation);
+    }
+
+    public QueryRequest getPhysicalRequest() {
+        return physicalRequest;
+    }
+
+    /**
+     * Returns the next physical request to issue after the given physical result, or null if the result is final.
+     */
+    public QueryRequest getNextRequest(QueryResult physicalResult) {
+        return continuation.apply(physicalResult);
+    }
+
+    public ScanResult mapResult(QueryResult physicalResult) {
+        return resultMapper.apply(physicalResult);
+    }
+
+    /**
+     * Issues the physical request and its continuations, if any, using the given blocking call, and maps the final
+     * physical result.
+     */
+    public ScanResult execute(Function<QueryRequest, QueryResult> physicalCall) {
+        QueryResult physicalResult = physicalCall.apply(physicalRequest);
+        QueryRequest nextRequest;
+        while ((nextRequest = getNextRequest(physicalResult)) != null) {
+            physicalResult = physicalCall.apply(nextRequest);
+        }
+        return mapResult(physicalResult);
+    }
+
+}
@@ -149,6 +149,17 @@ public interface MtAmazonDynamoDb extends AmazonDynamoDB {
 
     }
 
-    List<MtStreamDescription> listStreams(IRecordProcessorFactory factory);
+    /**
+     * Lists the streams of all tenants' tables with processors created by the given factory.
+     */
+    default List<MtStreamDescription> listStreams(IRecordProcessorFactory factory) {
+        return listStreams(factory, MtRecordFilter.all());
+    }
+
+    /**
+     * Lists the streams that may contain records accepted by the given filter, with processors created by the given
+     * factory that are handed only the records accepted by the filter.
+     */
+    List<MtStreamDescription> listStreams(IRecordProcessorFactory factory, MtRecordFilter filter);
 
 }
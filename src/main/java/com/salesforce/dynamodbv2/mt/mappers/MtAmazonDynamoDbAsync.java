@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteTableResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.google.common.base.Preconditions;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous client on top of any MtAmazonDynamoDbBase, i.e., of any mapping strategy or chain thereof.  Requests are
+ * mapped on the calling thread, so that they are mapped within the caller's multi-tenant context, and then issued
+ * against the asynchronous client that the innermost mapper wraps, which must be an AmazonDynamoDBAsync.  Results are
+ * mapped on whichever thread completes the physical request.  Follow-up requests that mappers issue, e.g., while
+ * paging through a shared table during a scan, are mapped within the context captured at the time of the call.
+ *
+ * <p>Supports the asynchronous variants of getItem, putItem, updateItem, deleteItem, query, and scan.  The remaining
+ * operations are supported synchronously only, as far as the wrapped mapper supports them.  Scans that mappers serve
+ * by querying the physical table, e.g., scans of shared tables with a tenant partition index, are issued as
+ * asynchronous queries, like their blocking counterparts, so both return the same pages.
+ */
+public class MtAmazonDynamoDbAsync extends AbstractAmazonDynamoDBAsync {
+
+    private final MtAmazonDynamoDbBase mtAmazonDynamoDb;
+
+    private MtAmazonDynamoDbAsync(MtAmazonDynamoDbBase mtAmazonDynamoDb) {
+        this.mtAmazonDynamoDb = mtAmazonDynamoDb;
+    }
+
+    public static MtAmazonDynamoDbAsyncBuilder builder() {
+        return new MtAmazonDynamoDbAsyncBuilder();
+    }
+
+    public static class MtAmazonDynamoDbAsyncBuilder {
+
+        private MtAmazonDynamoDbBase mtAmazonDynamoDb;
+
+        public MtAmazonDynamoDbAsyncBuilder withAmazonDynamoDb(MtAmazonDynamoDbBase mtAmazonDynamoDb) {
+            this.mtAmazonDynamoDb = mtAmazonDynamoDb;
+            return this;
+        }
+
+        public MtAmazonDynamoDbAsync build() {
+            Preconditions.checkNotNull(mtAmazonDynamoDb, "amazonDynamoDb is required");
+            return new MtAmazonDynamoDbAsync(mtAmazonDynamoDb);
+        }
+
+    }
+
+    public MtAmazonDynamoDbBase getMtAmazonDynamoDb() {
+        return mtAmazonDynamoDb;
+    }
+
+    @Override
+    public BatchGetItemResult batchGetItem(BatchGetItemRequest batchGetItemRequest) {
+        return mtAmazonDynamoDb.batchGetItem(batchGetItemRequest);
+    }
+
+    @Override
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest batchWriteItemRequest) {
+        return mtAmazonDynamoDb.batchWriteItem(batchWriteItemRequest);
+    }
+
+    @Override
+    public CreateTableResult createTable(CreateTableRequest createTableRequest) {
+        return mtAmazonDynamoDb.createTable(createTableRequest);
+    }
+
+    @Override
+    public DeleteItemResult deleteItem(DeleteItemRequest deleteItemRequest) {
+        return mtAmazonDynamoDb.deleteItem(deleteItemRequest);
+    }
+
+    @Override
+    public DeleteTableResult deleteTable(DeleteTableRequest deleteTableRequest) {
+        return mtAmazonDynamoDb.deleteTable(deleteTableRequest);
+    }
+
+    @Override
+    public DescribeTableResult describeTable(DescribeTableRequest describeTableRequest) {
+        return mtAmazonDynamoDb.describeTable(describeTableRequest);
+    }
+
+    @Override
+    public GetItemResult getItem(GetItemRequest getItemRequest) {
+        return mtAmazonDynamoDb.getItem(getItemRequest);
+    }
+
+    @Override
+    public PutItemResult putItem(PutItemRequest putItemRequest) {
+        return mtAmazonDynamoDb.putItem(putItemRequest);
+    }
+
+    @Override
+    public QueryResult query(QueryRequest queryRequest) {
+        return mtAmazonDynamoDb.query(queryRequest);
+    }
+
+    @Override
+    public ScanResult scan(ScanRequest scanRequest) {
+        return mtAmazonDynamoDb.scan(scanRequest);
+    }
+
+    @Override
+    public UpdateItemResult updateItem(UpdateItemRequest updateItemRequest) {
+        return mtAmazonDynamoDb.updateItem(updateItemRequest);
+    }
+
+    @Override
+    public Future<DeleteItemResult> deleteItemAsync(DeleteItemRequest deleteItemRequest,
+                                                    AsyncHandler<DeleteItemRequest, DeleteItemResult> asyncHandler) {
+        return notify(deleteItemRequest, asyncHandler, () -> execute(mtAmazonDynamoDb,
+            MtAmazonDynamoDbBase::mapDeleteItem, AmazonDynamoDBAsync::deleteItemAsync, deleteItemRequest));
+    }
+
+    @Override
+    public Future<GetItemResult> getItemAsync(GetItemRequest getItemRequest,
+                                              AsyncHandler<GetItemRequest, GetItemResult> asyncHandler) {
+        return notify(getItemRequest, asyncHandler, () -> execute(mtAmazonDynamoDb,
+            MtAmazonDynamoDbBase::mapGetItem, AmazonDynamoDBAsync::getItemAsync, getItemRequest));
+    }
+
+    @Override
+    public Future<PutItemResult> putItemAsync(PutItemRequest putItemRequest,
+                                              AsyncHandler<PutItemRequest, PutItemResult> asyncHandler) {
+        return notify(putItemRequest, asyncHandler, () -> execute(mtAmazonDynamoDb,
+            MtAmazonDynamoDbBase::mapPutItem, AmazonDynamoDBAsync::putItemAsync, putItemRequest));
+    }
+
+    @Override
+    public Future<QueryResult> queryAsync(QueryRequest queryRequest,
+                                          AsyncHandler<QueryRequest, QueryResult> asyncHandler) {
+        return notify(queryRequest, asyncHandler, () -> execute(mtAmazonDynamoDb,
+            MtAmazonDynamoDbBase::mapQuery, AmazonDynamoDBAsync::queryAsync, queryRequest));
+    }
+
+    @Override
+    public Future<ScanResult> scanAsync(ScanRequest scanRequest,
+                                        AsyncHandler<ScanRequest, ScanResult> asyncHandler) {
+        return notify(scanRequest, asyncHandler, () -> executeScan(mtAmazonDynamoDb, scanRequest));
+    }
+
+    @Override
+    public Future<UpdateItemResult> updateItemAsync(UpdateItemRequest updateItemRequest,
+                                                    AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler) {
+        return notify(updateItemRequest, asyncHandler, () -> execute(mtAmazonDynamoDb,
+            MtAmazonDynamoDbBase::mapUpdateItem, AmazonDynamoDBAsync::updateItemAsync, updateItemRequest));
+    }
+
+    @Override
+    public void shutdown() {
+        mtAmazonDynamoDb.shutdown();
+    }
+
+    /*
+     * An asynchronous operation of the physical AmazonDynamoDBAsync, e.g., AmazonDynamoDBAsync::getItemAsync.
+     */
+    @FunctionalInterface
+    private interface AsyncCall<RequestT extends AmazonWebServiceRequest, ResultT> {
+
+        Future<ResultT> call(AmazonDynamoDBAsync amazonDynamoDbAsync,
+                             RequestT request,
+                             AsyncHandler<RequestT, ResultT> asyncHandler);
+
+    }
+
+    /*
+     * Maps the request using the given mapper and issues the resulting physical request, and its continuations, if any,
+     * against the next client down the chain, which is either another mapper, in which case the physical request is
+     * mapped recursively, or the physical AmazonDynamoDBAsync.  Must be called within the caller's context.
+     */
+    private static <RequestT extends AmazonWebServiceRequest, ResultT> CompletableFuture<ResultT> execute(
+        MtAmazonDynamoDbBase mtAmazonDynamoDb,
+        BiFunction<MtAmazonDynamoDbBase, RequestT, MappedRequest<RequestT, ResultT>> mapper,
+        AsyncCall<RequestT, ResultT> asyncCall,
+        RequestT request) {
+        MappedRequest<RequestT, ResultT> mappedRequest = mapper.apply(mtAmazonDynamoDb, request);
+        Function<RequestT, CompletableFuture<ResultT>> physicalCall = getPhysicalCall(mtAmazonDynamoDb,
+            (next, physicalRequest) -> execute(next, mapper, asyncCall, physicalRequest), asyncCall);
+        return executeWithContinuations(mappedRequest::getNextRequest, physicalCall,
+            mappedRequest.getPhysicalRequest()).thenApply(mappedRequest::mapResult);
+    }
+
+    /*
+     * Like execute, but issues the scan as queries if the mapper serves it by querying the physical table.  Must be
+     * called within the caller's context.
+     */
+    private static CompletableFuture<ScanResult> executeScan(MtAmazonDynamoDbBase mtAmazonDynamoDb,
+                                                             ScanRequest scanRequest) {
+        MappedScanQuery mappedScanQuery = mtAmazonDynamoDb.mapScanToQuery(scanRequest);
+        if (mappedScanQuery != null) {
+            Function<QueryRequest, CompletableFuture<QueryResult>> physicalCall = getPhysicalCall(mtAmazonDynamoDb,
+                (next, physicalRequest) -> execute(next, MtAmazonDynamoDbBase::mapQuery,
+                    AmazonDynamoDBAsync::queryAsync, physicalRequest),
+                AmazonDynamoDBAsync::queryAsync);
+            return executeWithContinuations(mappedScanQuery::getNextRequest, physicalCall,
+                mappedScanQuery.getPhysicalRequest()).thenApply(mappedScanQuery::mapResult);
+        }
+        MappedRequest<ScanRequest, ScanResult> mappedRequest = mtAmazonDynamoDb.mapScan(scanRequest);
+        Function<ScanRequest, CompletableFuture<ScanResult>> physicalCall = getPhysicalCall(mtAmazonDynamoDb,
+            MtAmazonDynamoDbAsync::executeScan, AmazonDynamoDBAsync::scanAsync);
+        return executeWithContinuations(mappedRequest::getNextRequest, physicalCall,
+            mappedRequest.getPhysicalRequest()).thenApply(mappedRequest::mapResult);
+    }
+
+    /*
+     * Returns the function that issues physical requests of the given mapper against the next client down the chain,
+     * using the given function if that is another mapper, or the given asynchronous call if it is the physical
+     * AmazonDynamoDBAsync.  The function issues requests to the next mapper within the context of the caller.
+     */
+    private static <RequestT extends AmazonWebServiceRequest, ResultT> Function<RequestT, CompletableFuture<ResultT>>
+        getPhysicalCall(MtAmazonDynamoDbBase mtAmazonDynamoDb,
+                        BiFunction<MtAmazonDynamoDbBase, RequestT, CompletableFuture<ResultT>> nextMapperCall,
+                        AsyncCall<RequestT, ResultT> asyncCall) {
+        AmazonDynamoDB next = mtAmazonDynamoDb.getAmazonDynamoDb();
+        if (next instanceof MtAmazonDynamoDbBase) {
+            MtAmazonDynamoDbBase nextMtAmazonDynamoDb = (MtAmazonDynamoDbBase) next;
+            MtAmazonDynamoDbContextProvider mtContext = nextMtAmazonDynamoDb.getMtContext();
+            String context = mtContext.getContextOpt().orElse(null);
+            return physicalRequest -> mtContext.withContext(context,
+                () -> nextMapperCall.apply(nextMtAmazonDynamoDb, physicalRequest));
+        } else if (next instanceof AmazonDynamoDBAsync) {
+            AmazonDynamoDBAsync amazonDynamoDbAsync = (AmazonDynamoDBAsync) next;
+            return physicalRequest -> call(amazonDynamoDbAsync, asyncCall, physicalRequest);
+        } else {
+            throw new IllegalStateException("asynchronous requests require an AmazonDynamoDBAsync, but "
+                + mtAmazonDynamoDb.getClass().getSimpleName() + " wraps " + next.getClass().getName());
+        }
+    }
+
+    private static <RequestT, ResultT> CompletableFuture<ResultT> executeWithContinuations(
+        Function<ResultT, RequestT> continuation,
+        Function<RequestT, CompletableFuture<ResultT>> physicalCall,
+        RequestT physicalRequest) {
+        return physicalCall.apply(physicalRequest).thenCompose(physicalResult -> {
+            RequestT nextRequest = continuation.apply(physicalResult);
+            return nextRequest == null ? CompletableFuture.completedFuture(physicalResult)
+                : executeWithContinuations(continuation, physicalCall, nextRequest);
+        });
+    }
+
+    private static <RequestT extends AmazonWebServiceRequest, ResultT> CompletableFuture<ResultT> call(
+        AmazonDynamoDBAsync amazonDynamoDbAsync,
+        AsyncCall<RequestT, ResultT> asyncCall,
+        RequestT physicalRequest) {
+        CompletableFuture<ResultT> future = new CompletableFuture<>();
+        asyncCall.call(amazonDynamoDbAsync, physicalRequest, new AsyncHandler<RequestT, ResultT>() {
+            @Override
+            public void onError(Exception exception) {
+                future.completeExceptionally(exception);
+            }
+
+            @Override
+            public void onSuccess(RequestT request, ResultT result) {
+                future.complete(result);
+            }
+        });
+        return future;
+    }
+
+    /*
+     * Runs the asynchronous request, converting exceptions thrown while mapping it into a failed future, and notifies
+     * the handler, if any, once the request completes.
+     */
+    private static <RequestT extends AmazonWebServiceRequest, ResultT> Future<ResultT> notify(
+        RequestT request,
+        AsyncHandler<RequestT, ResultT> asyncHandler,
+        Supplier<CompletableFuture<ResultT>> supplier) {
+        CompletableFuture<ResultT> future;
+        try {
+            future = supplier.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        if (asyncHandler == null) {
+            return future;
+        }
+        return future.whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                asyncHandler.onSuccess(request, result);
+            } else {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+                asyncHandler.onError(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+            }
+        });
+    }
+
+}
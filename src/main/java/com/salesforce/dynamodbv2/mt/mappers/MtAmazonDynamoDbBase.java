@@ -139,12 +139,13 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
 
     @Override
     public BatchGetItemResult batchGetItem(Map<String, KeysAndAttributes> requestItems, String returnConsumedCapacity) {
-        throw new UnsupportedOperationException();
+        return batchGetItem(new BatchGetItemRequest().withRequestItems(requestItems)
+            .withReturnConsumedCapacity(returnConsumedCapacity));
     }
 
     @Override
     public BatchGetItemResult batchGetItem(Map<String, KeysAndAttributes> requestItems) {
-        throw new UnsupportedOperationException();
+        return batchGetItem(new BatchGetItemRequest().withRequestItems(requestItems));
     }
 
     @Override
@@ -154,7 +155,7 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
 
     @Override
     public BatchWriteItemResult batchWriteItem(Map<String, List<WriteRequest>> requestItems) {
-        throw new UnsupportedOperationException();
+        return batchWriteItem(new BatchWriteItemRequest().withRequestItems(requestItems));
     }
 
     @Override
@@ -191,7 +192,7 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
 
     @Override
     public DeleteItemResult deleteItem(DeleteItemRequest deleteItemRequest) {
-        return getAmazonDynamoDb().deleteItem(deleteItemRequest);
+        return mapDeleteItem(deleteItemRequest).execute(getAmazonDynamoDb()::deleteItem);
     }
 
     @Override
@@ -252,7 +253,7 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
 
     @Override
     public GetItemResult getItem(GetItemRequest getItemRequest) {
-        return getAmazonDynamoDb().getItem(getItemRequest);
+        return mapGetItem(getItemRequest).execute(getAmazonDynamoDb()::getItem);
     }
 
     @Override
@@ -342,7 +343,7 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
     }
 
     public PutItemResult putItem(PutItemRequest putItemRequest) {
-        return getAmazonDynamoDb().putItem(putItemRequest);
+        return mapPutItem(putItemRequest).execute(getAmazonDynamoDb()::putItem);
     }
 
     public PutItemResult putItem(String tableName, Map<String, AttributeValue> item) {
@@ -354,7 +355,7 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
     }
 
     public QueryResult query(QueryRequest queryRequest) {
-        return getAmazonDynamoDb().query(queryRequest);
+        return mapQuery(queryRequest).execute(getAmazonDynamoDb()::query);
     }
 
     public RestoreTableFromBackupResult restoreTableFromBackup(
@@ -363,7 +364,11 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
     }
 
     public ScanResult scan(ScanRequest scanRequest) {
-        return getAmazonDynamoDb().scan(scanRequest);
+        MappedScanQuery mappedScanQuery = mapScanToQuery(scanRequest);
+        if (mappedScanQuery != null) {
+            return mappedScanQuery.execute(getAmazonDynamoDb()::query);
+        }
+        return mapScan(scanRequest).execute(getAmazonDynamoDb()::scan);
     }
 
     @Override
@@ -400,7 +405,7 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
 
     @Override
     public UpdateItemResult updateItem(UpdateItemRequest updateItemRequest) {
-        return getAmazonDynamoDb().updateItem(updateItemRequest);
+        return mapUpdateItem(updateItemRequest).execute(getAmazonDynamoDb()::updateItem);
     }
 
     @Override
@@ -439,6 +444,59 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Maps a GetItemRequest against a virtual table to its physical counterpart.  The blocking getItem method and
+     * asynchronous clients both delegate to this method, so mapping schemes override it rather than getItem.  Passes
+     * the request through by default.
+     */
+    protected MappedRequest<GetItemRequest, GetItemResult> mapGetItem(GetItemRequest getItemRequest) {
+        return MappedRequest.passthrough(getItemRequest);
+    }
+
+    /**
+     * Maps a PutItemRequest like mapGetItem.
+     */
+    protected MappedRequest<PutItemRequest, PutItemResult> mapPutItem(PutItemRequest putItemRequest) {
+        return MappedRequest.passthrough(putItemRequest);
+    }
+
+    /**
+     * Maps a QueryRequest like mapGetItem.
+     */
+    protected MappedRequest<QueryRequest, QueryResult> mapQuery(QueryRequest queryRequest) {
+        return MappedRequest.passthrough(queryRequest);
+    }
+
+    /**
+     * Maps a ScanRequest like mapGetItem.
+     */
+    protected MappedRequest<ScanRequest, ScanResult> mapScan(ScanRequest scanRequest) {
+        return MappedRequest.passthrough(scanRequest);
+    }
+
+    /**
+     * Maps a ScanRequest against a virtual table to queries of its physical counterpart, if the scan can be served by
+     * querying rather than scanning, or returns null, in which case the scan is mapped by mapScan.  The blocking scan
+     * method and asynchronous clients both try this method first.  Returns null by default.
+     */
+    protected MappedScanQuery mapScanToQuery(ScanRequest scanRequest) {
+        return null;
+    }
+
+    /**
+     * Maps a UpdateItemRequest like mapGetItem.
+     */
+    protected MappedRequest<UpdateItemRequest, UpdateItemResult> mapUpdateItem(UpdateItemRequest updateItemRequest) {
+        return MappedRequest.passthrough(updateItemRequest);
+    }
+
+    /**
+     * Maps a DeleteItemRequest like mapGetItem.
+     */
+    protected MappedRequest<DeleteItemRequest, DeleteItemResult> mapDeleteItem(DeleteItemRequest deleteItemRequest) {
+        return MappedRequest.passthrough(deleteItemRequest);
+    }
+
     @Override
     public void shutdown() {
     }
@@ -454,10 +512,10 @@ public class MtAmazonDynamoDbBase implements MtAmazonDynamoDb {
     }
 
     @Override
-    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory) {
+    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory, MtRecordFilter filter) {
         AmazonDynamoDB dynamo = getAmazonDynamoDb();
         if (dynamo instanceof MtAmazonDynamoDb) {
-            return ((MtAmazonDynamoDb) getAmazonDynamoDb()).listStreams(factory);
+            return ((MtAmazonDynamoDb) getAmazonDynamoDb()).listStreams(factory, filter);
         }
         throw new UnsupportedOperationException();
     }
@@ -153,7 +153,7 @@ public class MtAmazonDynamoDbByAccount extends MtAmazonDynamoDbBase {
     }
 
     @Override
-    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory) {
+    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory, MtRecordFilter filter) {
         throw new UnsupportedOperationException();
     }
 
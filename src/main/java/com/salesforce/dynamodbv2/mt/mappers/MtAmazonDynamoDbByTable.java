@@ -27,7 +27,6 @@ import com.amazonaws.services.dynamodbv2.model.QueryResult;
 import com.amazonaws.services.dynamodbv2.model.Record;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
-import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import com.amazonaws.services.dynamodbv2.streamsadapter.model.RecordAdapter;
@@ -38,9 +37,14 @@ import com.amazonaws.services.kinesis.clientlibrary.types.ProcessRecordsInput;
 import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownInput;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Allows for dividing tenants into their own tables by prefixing table names
@@ -63,12 +67,15 @@ public class MtAmazonDynamoDbByTable extends MtAmazonDynamoDbBase {
 
     private final String delimiter;
     private final Optional<String> tablePrefix;
+    private final TableStreamDiscovery streamDiscovery;
 
     private MtAmazonDynamoDbByTable(MtAmazonDynamoDbContextProvider mtContext, AmazonDynamoDB amazonDynamoDb,
-                                    String delimiter, Optional<String> tablePrefix) {
+                                    String delimiter, Optional<String> tablePrefix,
+                                    TableStreamDiscovery streamDiscovery) {
         super(mtContext, amazonDynamoDb);
         this.delimiter = delimiter;
         this.tablePrefix = tablePrefix;
+        this.streamDiscovery = streamDiscovery;
     }
 
     /**
@@ -80,13 +87,10 @@ public class MtAmazonDynamoDbByTable extends MtAmazonDynamoDbBase {
         return getAmazonDynamoDb().createTable(createTableRequest);
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public DeleteItemResult deleteItem(DeleteItemRequest deleteItemRequest) {
-        deleteItemRequest = deleteItemRequest.clone();
-        deleteItemRequest.withTableName(buildPrefixedTablename(deleteItemRequest.getTableName()));
-        return getAmazonDynamoDb().deleteItem(deleteItemRequest);
+    @Override
+    protected MappedRequest<DeleteItemRequest, DeleteItemResult> mapDeleteItem(DeleteItemRequest deleteItemRequest) {
+        return MappedRequest.passthrough(deleteItemRequest.clone()
+            .withTableName(buildPrefixedTablename(deleteItemRequest.getTableName())));
     }
 
     /**
@@ -113,85 +117,78 @@ public class MtAmazonDynamoDbByTable extends MtAmazonDynamoDbBase {
         return describeTableResult;
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public GetItemResult getItem(GetItemRequest getItemRequest) {
-        getItemRequest = getItemRequest.clone();
-        String prefixedTableName = buildPrefixedTablename(getItemRequest.getTableName());
-        getItemRequest.withTableName(prefixedTableName);
-        return getAmazonDynamoDb().getItem(getItemRequest);
+    @Override
+    protected MappedRequest<GetItemRequest, GetItemResult> mapGetItem(GetItemRequest getItemRequest) {
+        return MappedRequest.passthrough(getItemRequest.clone()
+            .withTableName(buildPrefixedTablename(getItemRequest.getTableName())));
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public PutItemResult putItem(PutItemRequest putItemRequest) {
-        putItemRequest = putItemRequest.clone();
-        putItemRequest.withTableName(buildPrefixedTablename(putItemRequest.getTableName()));
-        return getAmazonDynamoDb().putItem(putItemRequest);
+    @Override
+    protected MappedRequest<PutItemRequest, PutItemResult> mapPutItem(PutItemRequest putItemRequest) {
+        return MappedRequest.passthrough(putItemRequest.clone()
+            .withTableName(buildPrefixedTablename(putItemRequest.getTableName())));
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public QueryResult query(QueryRequest queryRequest) {
-        queryRequest = queryRequest.clone();
-        queryRequest.withTableName(buildPrefixedTablename(queryRequest.getTableName()));
-        return getAmazonDynamoDb().query(queryRequest);
+    @Override
+    protected MappedRequest<QueryRequest, QueryResult> mapQuery(QueryRequest queryRequest) {
+        return MappedRequest.passthrough(queryRequest.clone()
+            .withTableName(buildPrefixedTablename(queryRequest.getTableName())));
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public ScanResult scan(ScanRequest scanRequest) {
-        scanRequest = scanRequest.clone();
-        scanRequest.withTableName(buildPrefixedTablename(scanRequest.getTableName()));
-        return getAmazonDynamoDb().scan(scanRequest);
+    @Override
+    protected MappedRequest<ScanRequest, ScanResult> mapScan(ScanRequest scanRequest) {
+        return MappedRequest.passthrough(scanRequest.clone()
+            .withTableName(buildPrefixedTablename(scanRequest.getTableName())));
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public UpdateItemResult updateItem(UpdateItemRequest updateItemRequest) {
-        updateItemRequest = updateItemRequest.clone();
-        updateItemRequest.withTableName(buildPrefixedTablename(updateItemRequest.getTableName()));
-        return getAmazonDynamoDb().updateItem(updateItemRequest);
+    @Override
+    protected MappedRequest<UpdateItemRequest, UpdateItemResult> mapUpdateItem(UpdateItemRequest updateItemRequest) {
+        return MappedRequest.passthrough(updateItemRequest.clone()
+            .withTableName(buildPrefixedTablename(updateItemRequest.getTableName())));
     }
 
     // TODO assumes prefix does not contain delimiter
     // TODO assumes everything that starts with prefix is in fact an MT table (ok?)
     // TODO assumes context does not contain delimiter
     @Override
-    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory) {
+    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory, MtRecordFilter filter) {
         String prefix = tablePrefix.orElse("");
-        return listAllTables().stream() //
+        List<String> tableNames = listAllTables().stream() //
             .filter(n -> n.startsWith(prefix) && n.indexOf(delimiter, prefix.length()) >= 0) //
-            .map(n -> getAmazonDynamoDb().describeTable(n).getTable()) // TODO handle table not exists
-            .filter(d -> Optional.ofNullable(d.getStreamSpecification()).map(StreamSpecification::isStreamEnabled)
-                .orElse(false)) // only include tables with streaming enabled
+            .collect(toList());
+        return streamDiscovery.getStreamTables(tableNames, // only tables with streaming enabled
+            n -> isAccepted(filter, n.substring(prefix.length()))).stream() // skip tables the filter rejects
             .map(d -> new MtStreamDescription() //
                 .withLabel(d.getTableName()) // use raw name as label
                 .withArn(d.getLatestStreamArn()) //
-                .withRecordProcessorFactory(newAdapter(factory, d.getTableName().substring(prefix.length())))) //
+                .withRecordProcessorFactory(newAdapter(factory, filter, d.getTableName().substring(prefix.length()))))
             .collect(toList());
     }
 
-    private IRecordProcessorFactory newAdapter(IRecordProcessorFactory factory, String tableName) {
+    private boolean isAccepted(MtRecordFilter filter, String tableName) {
+        int idx = tableName.indexOf(delimiter);
+        return filter.testTenant(tableName.substring(0, idx))
+            && filter.testTable(tableName.substring(idx + delimiter.length()));
+    }
+
+    private IRecordProcessorFactory newAdapter(IRecordProcessorFactory factory, MtRecordFilter filter,
+                                               String tableName) {
         int idx = tableName.indexOf(delimiter);
         String tenant = tableName.substring(0, idx);
         String name = tableName.substring(idx + delimiter.length(), tableName.length());
-        return () -> new RecordProcessor(tenant, name, factory.createProcessor());
+        return () -> new RecordProcessor(tenant, name, filter, factory.createProcessor());
     }
 
     private static class RecordProcessor implements IRecordProcessor {
         private final String tenant;
         private final String tableName;
+        private final MtRecordFilter filter;
         private final IRecordProcessor processor;
 
-        RecordProcessor(String tenant, String tableName, IRecordProcessor processor) {
+        RecordProcessor(String tenant, String tableName, MtRecordFilter filter, IRecordProcessor processor) {
             this.tenant = tenant;
             this.tableName = tableName;
+            this.filter = filter;
             this.processor = processor;
         }
 
@@ -202,8 +199,11 @@ public class MtAmazonDynamoDbByTable extends MtAmazonDynamoDbBase {
 
         @Override
         public void processRecords(ProcessRecordsInput processRecordsInput) {
+            // tenant and table were filtered when listing streams, so only event types remain to be filtered
             List<com.amazonaws.services.kinesis.model.Record> records = processRecordsInput.getRecords().stream()
-                .map(RecordAdapter.class::cast).map(this::toMtRecord).collect(toList());
+                .map(RecordAdapter.class::cast)
+                .filter(adapter -> filter.testEventName(adapter.getInternalObject().getEventName()))
+                .map(this::toMtRecord).collect(toList());
             processor.processRecords(processRecordsInput.withRecords(records));
         }
 
@@ -233,10 +233,16 @@ public class MtAmazonDynamoDbByTable extends MtAmazonDynamoDbBase {
 
     public static class MtAmazonDynamoDbBuilder {
 
+        private static final int DEFAULT_STREAM_DISCOVERY_CONCURRENCY = 4;
+        private static final long DEFAULT_STREAM_DESCRIPTION_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
         private AmazonDynamoDB amazonDynamoDb;
         private MtAmazonDynamoDbContextProvider mtContext;
         private String delimiter;
         private Optional<String> tablePrefix;
+        private Executor streamDiscoveryExecutor;
+        private int streamDiscoveryConcurrency = DEFAULT_STREAM_DISCOVERY_CONCURRENCY;
+        private long streamDescriptionMaxAgeMillis = DEFAULT_STREAM_DESCRIPTION_MAX_AGE_MILLIS;
 
         public MtAmazonDynamoDbBuilder withAmazonDynamoDb(AmazonDynamoDB amazonDynamoDb) {
             this.amazonDynamoDb = amazonDynamoDb;
@@ -258,14 +264,44 @@ public class MtAmazonDynamoDbByTable extends MtAmazonDynamoDbBase {
             return this;
         }
 
+        /**
+         * Executor on which tables are described when listing streams.  Defaults to a pool of daemon threads
+         * dedicated to this instance, one per concurrently described table, which time out when idle.
+         */
+        public MtAmazonDynamoDbBuilder withStreamDiscoveryExecutor(Executor streamDiscoveryExecutor) {
+            this.streamDiscoveryExecutor = streamDiscoveryExecutor;
+            return this;
+        }
+
+        /**
+         * Maximum number of tables described concurrently when listing streams.
+         */
+        public MtAmazonDynamoDbBuilder withStreamDiscoveryConcurrency(int streamDiscoveryConcurrency) {
+            this.streamDiscoveryConcurrency = streamDiscoveryConcurrency;
+            return this;
+        }
+
+        /**
+         * Time after which cached table descriptions are refreshed when listing streams, which bounds how long it
+         * takes to notice that streams of existing tables were enabled, disabled, or replaced.
+         */
+        public MtAmazonDynamoDbBuilder withStreamDescriptionMaxAgeMillis(long streamDescriptionMaxAgeMillis) {
+            this.streamDescriptionMaxAgeMillis = streamDescriptionMaxAgeMillis;
+            return this;
+        }
+
         /**
          * TODO: write Javadoc.
          */
         public MtAmazonDynamoDbByTable build() {
+            // checked first, since it sizes the default executor
+            Preconditions.checkArgument(streamDiscoveryConcurrency > 0, "streamDiscoveryConcurrency must be positive");
             setDefaults();
             Preconditions.checkNotNull(amazonDynamoDb, "amazonDynamoDb is required");
             Preconditions.checkNotNull(mtContext, "mtContext is required");
-            return new MtAmazonDynamoDbByTable(mtContext, amazonDynamoDb, delimiter, tablePrefix);
+            return new MtAmazonDynamoDbByTable(mtContext, amazonDynamoDb, delimiter, tablePrefix,
+                new TableStreamDiscovery(amazonDynamoDb, streamDiscoveryExecutor, streamDiscoveryConcurrency,
+                    streamDescriptionMaxAgeMillis));
         }
 
         private void setDefaults() {
@@ -275,10 +311,22 @@ public class MtAmazonDynamoDbByTable extends MtAmazonDynamoDbBase {
             if (tablePrefix == null) {
                 tablePrefix = Optional.empty();
             }
+            if (streamDiscoveryExecutor == null) {
+                streamDiscoveryExecutor = newStreamDiscoveryExecutor(streamDiscoveryConcurrency);
+            }
         }
 
     }
 
+    // DescribeTable calls block, so they should not occupy the common ForkJoinPool
+    private static Executor newStreamDiscoveryExecutor(int concurrency) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("mt-stream-discovery-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @VisibleForTesting
     String buildPrefixedTablename(String virtualTablename) {
         return (tablePrefix.orElse("")) + getMtContext().getContext() + delimiter + virtualTablename;
@@ -9,6 +9,10 @@ package com.salesforce.dynamodbv2.mt.mappers;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
@@ -42,7 +46,7 @@ import org.slf4j.LoggerFactory;
 /**
  * Logs all calls.
  *
- * <p>Supported: create|describe|delete Table, get|putItem, scan, query
+ * <p>Supported: create|describe|delete Table, get|putItem, batchGet|batchWriteItem, scan, query
  *
  * @author msgroi
  */
@@ -64,14 +68,25 @@ public class MtAmazonDynamoDbLogger extends MtAmazonDynamoDbBase {
         this.logAll = logAll;
     }
 
+    public BatchGetItemResult batchGetItem(BatchGetItemRequest batchGetItemRequest) {
+        log("batchGetItem", batchGetItemRequest(batchGetItemRequest));
+        return getAmazonDynamoDb().batchGetItem(batchGetItemRequest);
+    }
+
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest batchWriteItemRequest) {
+        log("batchWriteItem", batchWriteItemRequest(batchWriteItemRequest));
+        return getAmazonDynamoDb().batchWriteItem(batchWriteItemRequest);
+    }
+
     public CreateTableResult createTable(CreateTableRequest createTableRequest) {
         log("createTable", table(createTableRequest.getTableName()), createTableRequest.toString());
         return super.createTable(createTableRequest);
     }
 
-    public DeleteItemResult deleteItem(DeleteItemRequest deleteItemRequest) {
+    @Override
+    protected MappedRequest<DeleteItemRequest, DeleteItemResult> mapDeleteItem(DeleteItemRequest deleteItemRequest) {
         log("deleteItem", table(deleteItemRequest.getTableName()), key(deleteItemRequest.getKey()));
-        return super.deleteItem(deleteItemRequest);
+        return super.mapDeleteItem(deleteItemRequest);
     }
 
     public DeleteTableResult deleteTable(DeleteTableRequest deleteTableRequest) {
@@ -84,29 +99,34 @@ public class MtAmazonDynamoDbLogger extends MtAmazonDynamoDbBase {
         return super.describeTable(describeTableRequest);
     }
 
-    public GetItemResult getItem(GetItemRequest getItemRequest) {
+    @Override
+    protected MappedRequest<GetItemRequest, GetItemResult> mapGetItem(GetItemRequest getItemRequest) {
         log("getItem", table(getItemRequest.getTableName()), key(getItemRequest.getKey()));
-        return super.getItem(getItemRequest);
+        return super.mapGetItem(getItemRequest);
     }
 
-    public PutItemResult putItem(PutItemRequest putItemRequest) {
+    @Override
+    protected MappedRequest<PutItemRequest, PutItemResult> mapPutItem(PutItemRequest putItemRequest) {
         log("putItem", table(putItemRequest.getTableName()), item(putItemRequest.getItem()));
-        return super.putItem(putItemRequest);
+        return super.mapPutItem(putItemRequest);
     }
 
-    public QueryResult query(QueryRequest queryRequest) {
+    @Override
+    protected MappedRequest<QueryRequest, QueryResult> mapQuery(QueryRequest queryRequest) {
         log("query", table(queryRequest.getTableName()), queryRequest(queryRequest));
-        return super.query(queryRequest);
+        return super.mapQuery(queryRequest);
     }
 
-    public ScanResult scan(ScanRequest scanRequest) {
+    @Override
+    protected MappedRequest<ScanRequest, ScanResult> mapScan(ScanRequest scanRequest) {
         log("scan", table(scanRequest.getTableName()), scanRequest(scanRequest));
-        return super.scan(scanRequest);
+        return super.mapScan(scanRequest);
     }
 
-    public UpdateItemResult updateItem(UpdateItemRequest updateItemRequest) {
+    @Override
+    protected MappedRequest<UpdateItemRequest, UpdateItemResult> mapUpdateItem(UpdateItemRequest updateItemRequest) {
         log("updateItem", table(updateItemRequest.getTableName()), updateItemRequest(updateItemRequest));
-        return super.updateItem(updateItemRequest);
+        return super.mapUpdateItem(updateItemRequest);
     }
 
     public static MtAmazonDynamoDbBuilder builder() {
@@ -169,6 +189,14 @@ public class MtAmazonDynamoDbLogger extends MtAmazonDynamoDbBase {
         return "item=" + item;
     }
 
+    private String batchGetItemRequest(BatchGetItemRequest batchGetItemRequest) {
+        return "requestItems=" + batchGetItemRequest.getRequestItems();
+    }
+
+    private String batchWriteItemRequest(BatchWriteItemRequest batchWriteItemRequest) {
+        return "requestItems=" + batchWriteItemRequest.getRequestItems();
+    }
+
     private String queryRequest(QueryRequest queryRequest) {
         return "keyConditionExpression=" + queryRequest.getKeyConditionExpression()
             + (queryRequest.getFilterExpression() != null
@@ -2,6 +2,8 @@ package com.salesforce.dynamodbv2.mt.mappers;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbStreamsBySharedTable;
 import org.apache.commons.lang3.NotImplementedException;
 
 /**
@@ -22,6 +24,11 @@ public interface MtAmazonDynamoDbStreams extends AmazonDynamoDBStreams {
             return new MtAmazonDynamoDbStreamsPassthrough(dynamoDbStreams);
         }
 
+        if (dynamoDb instanceof MtAmazonDynamoDbBySharedTable) {
+            // By shared table means tenants share streams, so filter and map records for the current tenant
+            return new MtAmazonDynamoDbStreamsBySharedTable(dynamoDbStreams, (MtAmazonDynamoDbBySharedTable) dynamoDb);
+        }
+
         if (dynamoDb instanceof MtAmazonDynamoDbBase) {
             throw new NotImplementedException(dynamoDb.getClass().getName() + " is not supported");
         }
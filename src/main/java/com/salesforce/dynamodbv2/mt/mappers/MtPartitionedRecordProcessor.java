@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.KinesisClientLibException;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IPreparedCheckpointer;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessorCheckpointer;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.v2.IRecordProcessor;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.v2.IRecordProcessorFactory;
+import com.amazonaws.services.kinesis.clientlibrary.lib.worker.ShutdownReason;
+import com.amazonaws.services.kinesis.clientlibrary.types.InitializationInput;
+import com.amazonaws.services.kinesis.clientlibrary.types.ProcessRecordsInput;
+import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownInput;
+import com.amazonaws.services.kinesis.model.Record;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.ToIntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Processes the records of one shard in partitions, see MtPartitionedRecordProcessorFactory.  Batches are numbered in
+ * the order they are received.  Each partition chains its sub-batches on the executor, so that they are processed one
+ * at a time and in order.  Completed batches are retired in order, and the shard is checkpointed at the last retired
+ * batch once every partition has requested a checkpoint at or after the last retired batch it had records in.
+ *
+ * The executor should not reject tasks.  If it does, e.g., because it was shut down or its queue is full, the rejected
+ * sub-batch is skipped, so that its batch still completes and neither the KCL thread nor shutdown waits for it forever,
+ * and the shard is not checkpointed anymore, so that the skipped records are processed again after the shard's lease
+ * is taken over.
+ */
+class MtPartitionedRecordProcessor implements IRecordProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(MtPartitionedRecordProcessor.class);
+
+    private final List<IRecordProcessor> processors;
+    private final Executor executor;
+    private final ToIntFunction<Record> partitioner;
+    private final int maxPendingBatches;
+
+    // accessed on the KCL thread only
+    private final List<CompletableFuture<Void>> tails;
+    private long batchCount;
+    private String shardId;
+
+    // guarded by this
+    private final Deque<Batch> pendingBatches = new ArrayDeque<>();
+    private final long[] lastRetired;
+    private final long[] lastRequested;
+    private boolean rejected;
+
+    MtPartitionedRecordProcessor(IRecordProcessorFactory recordProcessorFactory,
+                                 Executor executor,
+                                 int partitions,
+                                 ToIntFunction<Record> partitioner,
+                                 int maxPendingBatches) {
+        this.processors = new ArrayList<>(partitions);
+        this.tails = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            processors.add(recordProcessorFactory.createProcessor());
+            tails.add(CompletableFuture.completedFuture(null));
+        }
+        this.executor = executor;
+        this.partitioner = partitioner;
+        this.maxPendingBatches = maxPendingBatches;
+        this.lastRetired = new long[partitions];
+        this.lastRequested = new long[partitions];
+    }
+
+    @Override
+    public void initialize(InitializationInput initializationInput) {
+        shardId = initializationInput.getShardId();
+        processors.forEach(processor -> processor.initialize(initializationInput));
+    }
+
+    @Override
+    public void processRecords(ProcessRecordsInput processRecordsInput) {
+        List<Record> records = processRecordsInput.getRecords();
+        if (records.isEmpty()) {
+            // nothing to dispatch and no record to checkpoint at
+            return;
+        }
+        awaitPendingBatches(maxPendingBatches - 1);
+
+        List<List<Record>> partitionRecords = new ArrayList<>(processors.size());
+        for (int i = 0; i < processors.size(); i++) {
+            partitionRecords.add(new ArrayList<>());
+        }
+        BitSet partitions = new BitSet(processors.size());
+        for (Record record : records) {
+            int partition = Math.floorMod(partitioner.applyAsInt(record), processors.size());
+            partitionRecords.get(partition).add(record);
+            partitions.set(partition);
+        }
+
+        Batch batch = new Batch(++batchCount, records.get(records.size() - 1), processRecordsInput.getCheckpointer(),
+            partitions);
+        synchronized (this) {
+            pendingBatches.add(batch);
+        }
+        partitions.stream().forEach(partition -> {
+            List<Record> subBatch = partitionRecords.get(partition);
+            PartitionCheckpointer checkpointer = new PartitionCheckpointer(subBatch.get(subBatch.size() - 1));
+            ProcessRecordsInput input = new ProcessRecordsInput()
+                .withRecords(subBatch)
+                .withMillisBehindLatest(processRecordsInput.getMillisBehindLatest())
+                .withCheckpointer(checkpointer);
+            // handle rather than then, so that a failed sub-batch does not prevent subsequent ones from running
+            tails.set(partition, tails.get(partition).handleAsync((result, throwable) -> {
+                process(partition, batch, input, checkpointer);
+                return null;
+            }, executor).handle((result, throwable) -> {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                if (cause instanceof RejectedExecutionException) {
+                    // process completes the partition itself, unless the executor rejected it
+                    onRejected(partition, batch, cause);
+                }
+                return null;
+            }));
+        });
+    }
+
+    private synchronized void onRejected(int partition, Batch batch, Throwable cause) {
+        log.error("executor rejected records of partition " + partition + " of shard " + shardId
+            + ", skipping them and checkpointing no further", cause);
+        rejected = true;
+        onCompleted(partition, batch, false);
+    }
+
+    private void process(int partition, Batch batch, ProcessRecordsInput input, PartitionCheckpointer checkpointer) {
+        try {
+            processors.get(partition).processRecords(input);
+        } catch (RuntimeException e) {
+            log.error("partition " + partition + " of shard " + shardId + " failed to process records", e);
+        } finally {
+            onCompleted(partition, batch, checkpointer.isRequested());
+        }
+    }
+
+    private synchronized void onCompleted(int partition, Batch batch, boolean checkpointRequested) {
+        if (checkpointRequested) {
+            lastRequested[partition] = batch.number;
+        }
+        if (--batch.remaining > 0) {
+            return;
+        }
+        Batch checkpoint = null;
+        while (!pendingBatches.isEmpty() && pendingBatches.peek().remaining == 0) {
+            Batch retired = pendingBatches.poll();
+            retired.partitions.stream().forEach(p -> lastRetired[p] = retired.number);
+            if (isCheckpointRequested()) {
+                checkpoint = retired;
+            }
+        }
+        if (checkpoint != null) {
+            // checkpoint while holding the lock, so that checkpoints are taken in order
+            try {
+                checkpoint.checkpointer.checkpoint(checkpoint.lastRecord);
+            } catch (KinesisClientLibException e) {
+                log.warn("failed to checkpoint shard " + shardId + " at batch " + checkpoint.number, e);
+            }
+        }
+        notifyAll();
+    }
+
+    private boolean isCheckpointRequested() {
+        if (rejected) {
+            return false;
+        }
+        for (int i = 0; i < lastRetired.length; i++) {
+            if (lastRequested[i] < lastRetired[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void awaitPendingBatches(int maxPending) {
+        while (pendingBatches.size() > maxPending) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while waiting for pending batches of shard " + shardId, e);
+            }
+        }
+    }
+
+    @Override
+    public void shutdown(ShutdownInput shutdownInput) {
+        awaitPendingBatches(0);
+        boolean checkpointRequested = true;
+        for (IRecordProcessor processor : processors) {
+            PartitionCheckpointer checkpointer = new PartitionCheckpointer(null);
+            processor.shutdown(new ShutdownInput()
+                .withShutdownReason(shutdownInput.getShutdownReason())
+                .withCheckpointer(checkpointer));
+            checkpointRequested &= checkpointer.isRequested();
+        }
+        boolean rejected;
+        synchronized (this) {
+            rejected = this.rejected;
+        }
+        if (checkpointRequested && !rejected && shutdownInput.getShutdownReason() != ShutdownReason.ZOMBIE) {
+            try {
+                shutdownInput.getCheckpointer().checkpoint();
+            } catch (KinesisClientLibException e) {
+                log.warn("failed to checkpoint shard " + shardId + " on shutdown", e);
+            }
+        }
+    }
+
+    private static class Batch {
+
+        private final long number;
+        private final Record lastRecord;
+        private final IRecordProcessorCheckpointer checkpointer;
+        private final BitSet partitions;
+        private int remaining;
+
+        Batch(long number, Record lastRecord, IRecordProcessorCheckpointer checkpointer, BitSet partitions) {
+            this.number = number;
+            this.lastRecord = lastRecord;
+            this.checkpointer = checkpointer;
+            this.partitions = partitions;
+            this.remaining = partitions.cardinality();
+        }
+
+    }
+
+    /*
+     * Records whether the delegate of a partition requested a checkpoint at the end of its sub-batch, or, if there is
+     * no last record, on shutdown.
+     */
+    private static class PartitionCheckpointer implements IRecordProcessorCheckpointer {
+
+        private final Record lastRecord;
+        private volatile boolean requested;
+
+        PartitionCheckpointer(Record lastRecord) {
+            this.lastRecord = lastRecord;
+        }
+
+        boolean isRequested() {
+            return requested;
+        }
+
+        @Override
+        public void checkpoint() {
+            requested = true;
+        }
+
+        @Override
+        public void checkpoint(Record record) {
+            checkpoint(record.getSequenceNumber());
+        }
+
+        @Override
+        public void checkpoint(String sequenceNumber) {
+            if (lastRecord == null || lastRecord.getSequenceNumber().equals(sequenceNumber)) {
+                requested = true;
+            } else {
+                log.debug("ignoring checkpoint at " + sequenceNumber + " before end of sub-batch");
+            }
+        }
+
+        @Override
+        public void checkpoint(String sequenceNumber, long subSequenceNumber) {
+            checkpoint(sequenceNumber);
+        }
+
+        @Override
+        public IPreparedCheckpointer prepareCheckpoint() {
+            throw new UnsupportedOperationException("prepared checkpoints are not supported");
+        }
+
+        @Override
+        public IPreparedCheckpointer prepareCheckpoint(Record record) {
+            throw new UnsupportedOperationException("prepared checkpoints are not supported");
+        }
+
+        @Override
+        public IPreparedCheckpointer prepareCheckpoint(String sequenceNumber) {
+            throw new UnsupportedOperationException("prepared checkpoints are not supported");
+        }
+
+        @Override
+        public IPreparedCheckpointer prepareCheckpoint(String sequenceNumber, long subSequenceNumber) {
+            throw new UnsupportedOperationException("prepared checkpoints are not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.streamsadapter.model.RecordAdapter;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.v2.IRecordProcessor;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.v2.IRecordProcessorFactory;
+import com.amazonaws.services.kinesis.model.Record;
+import com.google.common.base.Preconditions;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtRecord;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.ToIntFunction;
+
+/**
+ * Record processor factory that dispatches the multi-tenant records of each batch onto a bounded worker pool instead of
+ * handing the whole batch to a single processor on the KCL thread.  Pass it to
+ * {@link MtAmazonDynamoDb#listStreams(IRecordProcessorFactory)} in place of the factory it wraps, so that one slow
+ * tenant does not stall all other tenants that share the same physical stream shard.
+ *
+ * <p>Each shard processor splits batches into a fixed number of partitions, either by tenant or by tenant and record
+ * key, and creates one delegate processor per partition.  Sub-batches of a partition are processed in order, so records
+ * of the same tenant (or key) are processed in stream order, while partitions are processed concurrently.  Up to
+ * {@code maxPendingBatches} batches may be in flight per shard before the KCL thread blocks.
+ *
+ * <p>Delegates checkpoint through the checkpointer of their sub-batch (or shutdown input).  Those requests are
+ * deferred: the shard is checkpointed at the end of a batch only once every partition has completed that batch and
+ * all preceding ones and has requested a checkpoint covering all of its records so far.  Requests to checkpoint at a
+ * record other than the last one of a sub-batch are ignored and prepared checkpoints are not supported.
+ */
+public class MtPartitionedRecordProcessorFactory implements IRecordProcessorFactory {
+
+    /**
+     * How records are assigned to partitions.
+     */
+    public enum Partitioning {
+        /**
+         * Records of the same tenant go to the same partition.
+         */
+        TENANT,
+        /**
+         * Records of the same tenant, table, and key go to the same partition.
+         */
+        TENANT_AND_KEY
+    }
+
+    private final IRecordProcessorFactory recordProcessorFactory;
+    private final Executor executor;
+    private final int partitions;
+    private final ToIntFunction<Record> partitioner;
+    private final int maxPendingBatches;
+
+    private MtPartitionedRecordProcessorFactory(IRecordProcessorFactory recordProcessorFactory,
+                                                Executor executor,
+                                                int partitions,
+                                                ToIntFunction<Record> partitioner,
+                                                int maxPendingBatches) {
+        this.recordProcessorFactory = recordProcessorFactory;
+        this.executor = executor;
+        this.partitions = partitions;
+        this.partitioner = partitioner;
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    @Override
+    public IRecordProcessor createProcessor() {
+        return new MtPartitionedRecordProcessor(recordProcessorFactory, executor, partitions, partitioner,
+            maxPendingBatches);
+    }
+
+    /*
+     * Records that are not multi-tenant records, e.g., records of plain streams, are partitioned by key only.
+     */
+    private static int hashTenant(Record record) {
+        MtRecord mtRecord = getMtRecord(record);
+        return mtRecord == null ? hashKey(record) : Objects.hashCode(mtRecord.getContext());
+    }
+
+    private static int hashKey(Record record) {
+        MtRecord mtRecord = getMtRecord(record);
+        if (mtRecord == null) {
+            return record instanceof RecordAdapter
+                ? Objects.hashCode(getKeys(((RecordAdapter) record).getInternalObject().getDynamodb()))
+                : Objects.hashCode(record.getPartitionKey());
+        }
+        return Objects.hash(mtRecord.getContext(), mtRecord.getTableName(), getKeys(mtRecord.getDynamodb()));
+    }
+
+    private static Object getKeys(StreamRecord streamRecord) {
+        return streamRecord == null ? null : streamRecord.getKeys();
+    }
+
+    private static MtRecord getMtRecord(Record record) {
+        if (record instanceof RecordAdapter) {
+            com.amazonaws.services.dynamodbv2.model.Record internal = ((RecordAdapter) record).getInternalObject();
+            if (internal instanceof MtRecord) {
+                return (MtRecord) internal;
+            }
+        }
+        return null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private static final int DEFAULT_PARTITIONS = 16;
+        private static final int DEFAULT_MAX_PENDING_BATCHES = 4;
+
+        private IRecordProcessorFactory recordProcessorFactory;
+        private Executor executor;
+        private int partitions = DEFAULT_PARTITIONS;
+        private Partitioning partitioning = Partitioning.TENANT;
+        private int maxPendingBatches = DEFAULT_MAX_PENDING_BATCHES;
+
+        /**
+         * Factory of the delegate processors, one of which is created per partition of each shard.
+         */
+        public Builder withRecordProcessorFactory(IRecordProcessorFactory recordProcessorFactory) {
+            this.recordProcessorFactory = recordProcessorFactory;
+            return this;
+        }
+
+        /**
+         * Executor that runs the delegates, typically a bounded pool shared by all shard processors.  It should not
+         * reject tasks, e.g., use an unbounded queue, since shards whose records are rejected are not checkpointed
+         * anymore.  Each shard queues at most maxPendingBatches tasks per partition anyway.
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withPartitions(int partitions) {
+            this.partitions = partitions;
+            return this;
+        }
+
+        public Builder withPartitioning(Partitioning partitioning) {
+            this.partitioning = partitioning;
+            return this;
+        }
+
+        /**
+         * Number of batches a shard processor may have in flight before the KCL thread blocks on the oldest one.
+         */
+        public Builder withMaxPendingBatches(int maxPendingBatches) {
+            this.maxPendingBatches = maxPendingBatches;
+            return this;
+        }
+
+        /**
+         * Returns a newly created partitioned record processor factory based on the specified parameters.
+         */
+        public MtPartitionedRecordProcessorFactory build() {
+            Preconditions.checkNotNull(recordProcessorFactory, "recordProcessorFactory is required");
+            Preconditions.checkNotNull(executor, "executor is required");
+            Preconditions.checkNotNull(partitioning, "partitioning is required");
+            Preconditions.checkArgument(partitions > 0, "partitions must be positive");
+            Preconditions.checkArgument(maxPendingBatches > 0, "maxPendingBatches must be positive");
+            return new MtPartitionedRecordProcessorFactory(recordProcessorFactory, executor, partitions,
+                partitioning == Partitioning.TENANT
+                    ? MtPartitionedRecordProcessorFactory::hashTenant
+                    : MtPartitionedRecordProcessorFactory::hashKey,
+                maxPendingBatches);
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtRecord;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Selects the records a stream subscription receives by tenant, virtual table, and event type.  Implementations of
+ * the filtered {@link MtAmazonDynamoDb#listStreams} test tenant and table as soon as they are known, e.g., when listing
+ * per-tenant streams or after decoding the key prefix of a shared table record, so that records that are dropped are
+ * never reverse-mapped.
+ */
+public final class MtRecordFilter {
+
+    private static final MtRecordFilter ALL = builder().build();
+
+    private final Predicate<String> tenantFilter;
+    private final Predicate<String> tableFilter;
+    private final Set<OperationType> eventNames;
+    private final boolean allEventNames;
+
+    private MtRecordFilter(Predicate<String> tenantFilter, Predicate<String> tableFilter,
+                           Set<OperationType> eventNames) {
+        this.tenantFilter = tenantFilter;
+        this.tableFilter = tableFilter;
+        this.eventNames = eventNames;
+        this.allEventNames = eventNames.containsAll(EnumSet.allOf(OperationType.class));
+    }
+
+    /**
+     * Returns a filter that accepts all records.
+     */
+    public static MtRecordFilter all() {
+        return ALL;
+    }
+
+    public boolean testTenant(String tenant) {
+        return tenantFilter.test(tenant);
+    }
+
+    public boolean testTable(String tableName) {
+        return tableFilter.test(tableName);
+    }
+
+    public boolean testEventName(String eventName) {
+        return allEventNames || eventName != null && eventNames.contains(OperationType.fromValue(eventName));
+    }
+
+    /**
+     * Returns whether the filter accepts the given record, i.e., its tenant, table, and event type.
+     */
+    public boolean test(MtRecord record) {
+        return testEventName(record.getEventName()) && testTenant(record.getContext())
+            && testTable(record.getTableName());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Predicate<String> tenantFilter = tenant -> true;
+        private Predicate<String> tableFilter = tableName -> true;
+        private Set<OperationType> eventNames = EnumSet.allOf(OperationType.class);
+
+        public Builder withTenantFilter(Predicate<String> tenantFilter) {
+            this.tenantFilter = tenantFilter;
+            return this;
+        }
+
+        /**
+         * Accepts the records of the given tenants only.
+         */
+        public Builder withTenants(Collection<String> tenants) {
+            Set<String> tenantSet = ImmutableSet.copyOf(tenants);
+            return withTenantFilter(tenantSet::contains);
+        }
+
+        /**
+         * Accepts the records of virtual tables whose name matches the given predicate only.
+         */
+        public Builder withTableFilter(Predicate<String> tableFilter) {
+            this.tableFilter = tableFilter;
+            return this;
+        }
+
+        /**
+         * Accepts the records of the given event types only.
+         */
+        public Builder withEventNames(OperationType... eventNames) {
+            Preconditions.checkArgument(eventNames.length > 0, "at least one event name is required");
+            this.eventNames = EnumSet.of(eventNames[0], eventNames);
+            return this;
+        }
+
+        /**
+         * Returns a newly created record filter based on the specified parameters.
+         */
+        public MtRecordFilter build() {
+            Preconditions.checkNotNull(tenantFilter, "tenantFilter is required");
+            Preconditions.checkNotNull(tableFilter, "tableFilter is required");
+            return new MtRecordFilter(tenantFilter, tableFilter, eventNames);
+        }
+
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import static java.util.stream.Collectors.toList;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/*
+ * Discovers the streams of a large number of tables.  Table descriptions are cached, so that each discovery only
+ * describes tables it has not described before, or longer ago than the maximum age, which bounds how long it takes to
+ * notice that a table's stream was enabled, disabled, or replaced.  Tables are described in parallel by a bounded
+ * number of workers on the given executor, to stay within DescribeTable rate limits.  Descriptions of tables that are
+ * no longer listed are evicted.  Callers pass all listed tables along with a filter, rather than only the tables they
+ * accept, so that callers with different filters do not evict each other's descriptions.
+ */
+class TableStreamDiscovery {
+
+    private final AmazonDynamoDB amazonDynamoDb;
+    private final Executor executor;
+    private final int concurrency;
+    private final long maxAgeNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, Description> descriptions = new ConcurrentHashMap<>();
+
+    TableStreamDiscovery(AmazonDynamoDB amazonDynamoDb, Executor executor, int concurrency, long maxAgeMillis) {
+        this(amazonDynamoDb, executor, concurrency, maxAgeMillis, System::nanoTime);
+    }
+
+    TableStreamDiscovery(AmazonDynamoDB amazonDynamoDb, Executor executor, int concurrency, long maxAgeMillis,
+                         LongSupplier nanoClock) {
+        this.amazonDynamoDb = amazonDynamoDb;
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /*
+     * Returns the descriptions of those of the given tables that the filter accepts, exist, and have streams enabled,
+     * in the given order.  Only tables that the filter accepts are described.
+     */
+    synchronized List<TableDescription> getStreamTables(List<String> tableNames, Predicate<String> filter) {
+        descriptions.keySet().retainAll(new HashSet<>(tableNames));
+        List<String> acceptedTableNames = tableNames.stream().filter(filter).collect(toList());
+        long now = nanoClock.getAsLong();
+        describeAll(acceptedTableNames.stream().filter(tableName -> {
+            Description description = descriptions.get(tableName);
+            return description == null || now - description.describedAtNanos >= maxAgeNanos;
+        }).collect(toList()), now);
+        return acceptedTableNames.stream()
+            .map(descriptions::get)
+            .filter(Objects::nonNull)
+            .map(description -> description.table)
+            .filter(table -> table != null && Optional.ofNullable(table.getStreamSpecification())
+                .map(StreamSpecification::isStreamEnabled).orElse(false))
+            .collect(toList());
+    }
+
+    private void describeAll(List<String> tableNames, long now) {
+        if (tableNames.isEmpty()) {
+            return;
+        }
+        // workers pull the next table to describe, so that a slow table does not hold up a fixed share of the others
+        AtomicInteger next = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(concurrency, tableNames.size())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = CompletableFuture.runAsync(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < tableNames.size()) {
+                    String tableName = tableNames.get(index);
+                    descriptions.put(tableName, new Description(describe(tableName), now));
+                }
+            }, executor);
+        }
+        try {
+            CompletableFuture.allOf(workers).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Returns the description of the given table, or null if the table was deleted after it was listed.
+     */
+    private TableDescription describe(String tableName) {
+        try {
+            return amazonDynamoDb.describeTable(tableName).getTable();
+        } catch (ResourceNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static class Description {
+
+        private final TableDescription table;
+        private final long describedAtNanos;
+
+        Description(TableDescription table, long describedAtNanos) {
+            this.table = table;
+            this.describedAtNanos = describedAtNanos;
+        }
+
+    }
+
+}
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -216,6 +217,19 @@ public class DynamoTableDescriptionImpl implements DynamoTableDescription {
                 .equals(that.provisionedThroughput.getWriteCapacityUnits());
     }
 
+    @Override
+    public int hashCode() {
+        int result = tableName.hashCode();
+        result = 31 * result + attributeDefinitions.hashCode();
+        result = 31 * result + primaryKey.hashCode();
+        result = 31 * result + gsiMap.hashCode();
+        result = 31 * result + lsiMap.hashCode();
+        result = 31 * result + (streamSpecification != null ? streamSpecification.hashCode() : 0);
+        result = 31 * result + Objects.hashCode(provisionedThroughput.getReadCapacityUnits());
+        result = 31 * result + Objects.hashCode(provisionedThroughput.getWriteCapacityUnits());
+        return result;
+    }
+
     private ProvisionedThroughputDescription fromProvisionedThroughput(ProvisionedThroughput provisionedThroughput) {
         return new ProvisionedThroughputDescription()
             .withReadCapacityUnits(provisionedThroughput.getReadCapacityUnits())
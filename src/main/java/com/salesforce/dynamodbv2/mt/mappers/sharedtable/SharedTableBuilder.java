@@ -31,6 +31,7 @@ import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.TenantPartitionIndex;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -60,6 +61,15 @@ import java.util.stream.Collectors;
  *
  * Optionally ...
  * - a list of CreateTableRequest's representing physical tables.  Default: See enumerated list of tables below.
+ * - tenantPartitionedScan: a boolean to indicate whether the default physical tables get an additional GSI,
+ *   tenant_partition_<buckets>(hash: tp S, range: hk S), that allows scans of virtual tables to be served by querying
+ *   the GSI instead of scanning the whole physical table.  Existing physical tables are not altered, so it only takes
+ *   effect for tables created with it.  The attribute tp is reserved in tables with the GSI, so virtual items must
+ *   not have it.  See TenantPartitionIndex.  Default: false.
+ * - tenantPartitionBuckets: the number of buckets the items of each virtual table are spread over in the tenant
+ *   partition GSI, which is also the maximum useful number of scan segments.  The number of buckets is part of the
+ *   GSI name, so it only applies to tables created with it, and existing tables keep the number they were created
+ *   with.  Default: 1.
  *
  * See SharedTableCustomDynamicBuilder for optional arguments and limitations.
  *
@@ -104,6 +114,8 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
     private Long defaultProvisionedThroughput; /* TODO if this is ever going to be used in production we will need
                                                        more granularity, like at the table, index, read, write level */
     private Boolean streamsEnabled;
+    private Boolean tenantPartitionedScan;
+    private Integer tenantPartitionBuckets;
 
     public static SharedTableBuilder builder() {
         return new SharedTableBuilder();
@@ -130,6 +142,16 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
         return this;
     }
 
+    public SharedTableBuilder withTenantPartitionedScan(boolean tenantPartitionedScan) {
+        this.tenantPartitionedScan = tenantPartitionedScan;
+        return this;
+    }
+
+    public SharedTableBuilder withTenantPartitionBuckets(int tenantPartitionBuckets) {
+        this.tenantPartitionBuckets = tenantPartitionBuckets;
+        return this;
+    }
+
     public SharedTableBuilder withDefaultProvisionedThroughput(long defaultProvisionedThroughput) {
         this.defaultProvisionedThroughput = defaultProvisionedThroughput;
         return this;
@@ -153,6 +175,12 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
         if (streamsEnabled == null) {
             streamsEnabled = true;
         }
+        if (tenantPartitionedScan == null) {
+            tenantPartitionedScan = false;
+        }
+        if (tenantPartitionBuckets == null) {
+            tenantPartitionBuckets = 1;
+        }
         if (this.createTableRequests == null || this.createTableRequests.isEmpty()) {
             this.createTableRequests = buildDefaultCreateTableRequests(this.defaultProvisionedThroughput);
         }
@@ -214,6 +242,12 @@ public class SharedTableBuilder extends SharedTableCustomDynamicBuilder {
             addSi(createTableRequestBuilder, LSI, S, of(N));
             addSi(createTableRequestBuilder, LSI, S, of(B));
         }
+        if (tenantPartitionedScan) {
+            createTableRequestBuilder.addSi(TenantPartitionIndex.getIndexName(tenantPartitionBuckets),
+                GSI,
+                new PrimaryKey(TenantPartitionIndex.HASH_KEY_FIELD, S, HASH_KEY_FIELD, S),
+                defaultProvisionedThroughput);
+        }
     }
 
     private void addStreamSpecification(CreateTableRequestBuilder createTableRequestBuilder) {
@@ -12,6 +12,7 @@ import static java.util.Optional.empty;
 import static java.util.Optional.of;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.google.common.cache.CacheBuilder;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapper;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByNameImpl;
@@ -20,6 +21,7 @@ import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.TableMappingFactory
 import com.salesforce.dynamodbv2.mt.repo.MtDynamoDbTableDescriptionRepo;
 import com.salesforce.dynamodbv2.mt.repo.MtTableDescriptionRepo;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 /*
  * Allows a developer to control the mapping of virtual to physical tables by providing a CreateTableRequestFactory.
@@ -65,6 +67,14 @@ import java.util.Optional;
  *   dropped, default: FALSE
  * - truncateOnDeleteTable: a boolean to indicate whether all of a table's data should be deleted when a table is
  *   dropped, default: FALSE
+ * - tableMappingCacheBuilder: a CacheBuilder for the cache of table mappings, which holds an entry per tenant and
+ *   virtual table, e.g., to bound it with maximumSize or maximumWeight, evict cold tenants with expireAfterAccess,
+ *   and to recordStats, see MtAmazonDynamoDbBySharedTable.getTableMappingCacheStats().  Default: unbounded.
+ * - tableDescriptionCacheBuilder: a CacheBuilder for the table description cache of the default
+ *   MtTableDescriptionRepo.  Default: unbounded.
+ * - cacheRefreshExecutor: an Executor on which table mappings, and the table descriptions of the default
+ *   MtTableDescriptionRepo, are reloaded when they are due for refresh according to the refreshAfterWrite of their
+ *   CacheBuilders, while requests keep using the cached values.  Default: none, i.e., reloads run inline.
  *
  * Limitations ...
  *
@@ -92,6 +102,9 @@ public class SharedTableCustomDynamicBuilder {
     private Boolean deleteTableAsync;
     private Boolean truncateOnDeleteTable;
     private Integer pollIntervalSeconds;
+    private CacheBuilder<Object, Object> tableMappingCacheBuilder;
+    private CacheBuilder<Object, Object> tableDescriptionCacheBuilder;
+    private Executor cacheRefreshExecutor;
     private Optional<String> tablePrefix = empty();
 
     /**
@@ -116,7 +129,9 @@ public class SharedTableCustomDynamicBuilder {
             tableMappingFactory,
             mtTableDescriptionRepo,
             deleteTableAsync,
-            truncateOnDeleteTable);
+            truncateOnDeleteTable,
+            tableMappingCacheBuilder,
+            cacheRefreshExecutor);
     }
 
     public static SharedTableCustomDynamicBuilder builder() {
@@ -180,6 +195,23 @@ public class SharedTableCustomDynamicBuilder {
         return this;
     }
 
+    public SharedTableCustomDynamicBuilder withTableMappingCacheBuilder(
+        CacheBuilder<Object, Object> tableMappingCacheBuilder) {
+        this.tableMappingCacheBuilder = tableMappingCacheBuilder;
+        return this;
+    }
+
+    public SharedTableCustomDynamicBuilder withTableDescriptionCacheBuilder(
+        CacheBuilder<Object, Object> tableDescriptionCacheBuilder) {
+        this.tableDescriptionCacheBuilder = tableDescriptionCacheBuilder;
+        return this;
+    }
+
+    public SharedTableCustomDynamicBuilder withCacheRefreshExecutor(Executor cacheRefreshExecutor) {
+        this.cacheRefreshExecutor = cacheRefreshExecutor;
+        return this;
+    }
+
     private void validate() {
         checkNotNull(amazonDynamoDb, "amazonDynamoDb is required");
         checkNotNull(mtContext, "mtContext is required");
@@ -205,12 +237,20 @@ public class SharedTableCustomDynamicBuilder {
         if (pollIntervalSeconds == null) {
             pollIntervalSeconds = 0;
         }
+        if (tableMappingCacheBuilder == null) {
+            tableMappingCacheBuilder = CacheBuilder.newBuilder();
+        }
+        if (tableDescriptionCacheBuilder == null) {
+            tableDescriptionCacheBuilder = CacheBuilder.newBuilder();
+        }
         if (mtTableDescriptionRepo == null) {
             mtTableDescriptionRepo = MtDynamoDbTableDescriptionRepo.builder()
                 .withAmazonDynamoDb(amazonDynamoDb)
                 .withContext(mtContext)
                 .withTableDescriptionTableName(DEFAULT_TABLE_DESCRIPTION_TABLENAME)
                 .withPollIntervalSeconds(pollIntervalSeconds)
+                .withCacheBuilder(tableDescriptionCacheBuilder)
+                .withCacheRefreshExecutor(cacheRefreshExecutor)
                 .withTablePrefix(tablePrefix).build();
         }
     }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.google.common.collect.Maps;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionMapper.RequestExpressions;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ExpressionType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+ * Maps the conditions of put and delete requests against virtual tables to their physical table counterpart according
+ * to the provided TableMapping, delegating field prefixing to the provided FieldMapper.  Condition expressions are
+ * mapped by ExpressionMapper, and legacy expected conditions are mapped to conditions on the physical fields.
+ */
+class ConditionMapper {
+
+    private final FieldMapper fieldMapper;
+    private final TableMapping tableMapping;
+
+    ConditionMapper(TableMapping tableMapping, FieldMapper fieldMapper) {
+        this.fieldMapper = fieldMapper;
+        this.tableMapping = tableMapping;
+    }
+
+    /*
+     * Takes a PutItemRequest representing a put into a virtual table and mutates its conditions so they can be applied
+     * to its physical table counterpart.
+     */
+    void apply(PutItemRequest putItemRequest) {
+        if (putItemRequest.getConditionExpression() != null) {
+            RequestExpressions expressions = mapConditionExpression(putItemRequest.getConditionExpression(),
+                putItemRequest.getExpressionAttributeNames());
+            putItemRequest.setConditionExpression(expressions.getExpression(0));
+            putItemRequest.setExpressionAttributeNames(getNames(expressions,
+                putItemRequest.getExpressionAttributeNames()));
+            putItemRequest.setExpressionAttributeValues(applyValueMappings(expressions,
+                putItemRequest.getExpressionAttributeValues()));
+        }
+        if (putItemRequest.getExpected() != null) {
+            putItemRequest.setExpected(mapExpected(putItemRequest.getExpected()));
+        }
+    }
+
+    /*
+     * Takes a DeleteItemRequest representing a delete from a virtual table and mutates its conditions so they can be
+     * applied to its physical table counterpart.
+     */
+    void apply(DeleteItemRequest deleteItemRequest) {
+        if (deleteItemRequest.getConditionExpression() != null) {
+            RequestExpressions expressions = mapConditionExpression(deleteItemRequest.getConditionExpression(),
+                deleteItemRequest.getExpressionAttributeNames());
+            deleteItemRequest.setConditionExpression(expressions.getExpression(0));
+            deleteItemRequest.setExpressionAttributeNames(getNames(expressions,
+                deleteItemRequest.getExpressionAttributeNames()));
+            deleteItemRequest.setExpressionAttributeValues(applyValueMappings(expressions,
+                deleteItemRequest.getExpressionAttributeValues()));
+        }
+        if (deleteItemRequest.getExpected() != null) {
+            deleteItemRequest.setExpected(mapExpected(deleteItemRequest.getExpected()));
+        }
+    }
+
+    private RequestExpressions mapConditionExpression(String conditionExpression, Map<String, String> names) {
+        RequestExpressions expressions = new RequestExpressions(names == null ? new HashMap<>() : new HashMap<>(names),
+            new String[] {conditionExpression},
+            new ExpressionType[] {ExpressionType.CONDITION});
+        ExpressionMapper expressionMapper = new ExpressionMapper(tableMapping.getAllVirtualToPhysicalFieldMappings());
+        expressionMapper.convertFieldNameLiteralsToExpressionNames(expressions);
+        expressionMapper.mapFields(expressions);
+        return expressions;
+    }
+
+    /*
+     * Returns the mapped expression attribute names, or the given ones if there are none, since DynamoDB rejects empty
+     * expression attribute names.
+     */
+    static Map<String, String> getNames(RequestExpressions expressions, Map<String, String> names) {
+        return expressions.getNames().isEmpty() ? names : expressions.getNames();
+    }
+
+    /*
+     * Returns a copy of the given expression attribute values with the value mappings of the expressions applied, or
+     * the given values if there are none.
+     */
+    Map<String, AttributeValue> applyValueMappings(RequestExpressions expressions, Map<String, AttributeValue> values) {
+        if (expressions.getValueMappings().isEmpty()) {
+            return values;
+        }
+        Map<String, AttributeValue> mappedValues = values == null ? null : new HashMap<>(values);
+        ExpressionMapper.applyValueMappings(expressions.getValueMappings(), mappedValues, fieldMapper);
+        return mappedValues;
+    }
+
+    /*
+     * Replaces the legacy expected conditions on mapped fields with conditions on their first target field, since all
+     * target fields hold the same value.  Values are mapped unless the condition tests for a substring.
+     */
+    Map<String, ExpectedAttributeValue> mapExpected(Map<String, ExpectedAttributeValue> expected) {
+        Map<String, List<FieldMapping>> fieldMappings = tableMapping.getAllVirtualToPhysicalFieldMappings();
+        Map<String, ExpectedAttributeValue> mappedExpected = Maps.newHashMapWithExpectedSize(expected.size());
+        expected.forEach((field, condition) -> {
+            List<FieldMapping> targets = fieldMappings.get(field);
+            if (targets == null || targets.isEmpty()) {
+                mappedExpected.put(field, condition);
+                return;
+            }
+            FieldMapping fieldMapping = targets.get(0);
+            boolean isSubstringCondition = ComparisonOperator.CONTAINS.toString()
+                .equals(condition.getComparisonOperator())
+                || ComparisonOperator.NOT_CONTAINS.toString().equals(condition.getComparisonOperator());
+            mappedExpected.put(fieldMapping.getTarget().getName(),
+                !fieldMapping.isContextAware() || isSubstringCondition ? condition : new ExpectedAttributeValue()
+                    .withExists(condition.getExists())
+                    .withComparisonOperator(condition.getComparisonOperator())
+                    .withValue(condition.getValue() == null
+                        ? null : fieldMapper.apply(fieldMapping, condition.getValue()))
+                    .withAttributeValueList(condition.getAttributeValueList() == null
+                        ? null : condition.getAttributeValueList().stream()
+                        .map(value -> fieldMapper.apply(fieldMapping, value))
+                        .collect(Collectors.toList())));
+        });
+        return mappedExpected;
+    }
+
+}
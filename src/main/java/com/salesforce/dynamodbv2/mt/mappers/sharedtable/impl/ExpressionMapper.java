@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.ImmutableList;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.BetweenNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ComparisonNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ExpressionType;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.FunctionNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.InNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.Node;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.PathNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.Span;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.Token;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.UpdateAction;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ValueNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Rewrites the expressions of a request against a virtual table, so that they reference the fields of its physical
+ * table.  Literal references to mapped fields are replaced with expression attribute names, the expression attribute
+ * names of mapped fields are set to the names of their target fields, and the expression attribute values that are
+ * compared with, or assigned to, context-aware fields are recorded as value mappings for the caller to apply.
+ *
+ * A value placeholder may be used with more than one field, e.g., #hk = :v OR #attr = :v.  In that case, the
+ * placeholder keeps its unmapped value, and the occurrences that need a mapped value are replaced with an alias.
+ *
+ * Virtual fields may map to more than one physical field, e.g., a field that is the hash key of two virtual secondary
+ * indexes.  Conditions on such fields use the first mapping, since all physical fields hold the same value, whereas
+ * SET and REMOVE actions of update expressions are repeated for each physical field.
+ */
+class ExpressionMapper {
+
+    private final Map<String, List<FieldMapping>> fieldMappings;
+
+    /*
+     * Takes the field mappings by virtual field name.
+     */
+    ExpressionMapper(Map<String, List<FieldMapping>> fieldMappings) {
+        this.fieldMappings = fieldMappings;
+    }
+
+    /*
+     * Replaces literal references to mapped virtual fields with expression attribute names, so that they can be mapped
+     * like any other field reference.  The same literal is replaced with the same name in all expressions.
+     */
+    void convertFieldNameLiteralsToExpressionNames(RequestExpressions request) {
+        Map<String, String> fieldPlaceholders = new HashMap<>();
+        int[] counter = {1};
+        for (int i = 0; i < request.expressions.length; i++) {
+            String expression = request.expressions[i];
+            if (expression == null) {
+                continue;
+            }
+            Map<Token, String> replacements = new HashMap<>();
+            ExpressionParser.parse(expression, request.types[i]).forEach(node -> {
+                if (node instanceof PathNode && !((PathNode) node).isPlaceholder()) {
+                    Token fieldLiteral = ((PathNode) node).getNameToken();
+                    if (fieldMappings.containsKey(fieldLiteral.getText())) {
+                        replacements.put(fieldLiteral, fieldPlaceholders.computeIfAbsent(fieldLiteral.getText(),
+                            virtualFieldName -> {
+                                String fieldPlaceholder = getNextPlaceholder("#field", "", request.names, counter);
+                                request.names.put(fieldPlaceholder, virtualFieldName);
+                                return fieldPlaceholder;
+                            }));
+                    }
+                }
+            });
+            request.expressions[i] = ExpressionParser.rewrite(expression, replacements);
+        }
+    }
+
+    private static String getNextPlaceholder(String prefix, String suffix, Map<String, String> names, int[] counter) {
+        String placeholderCandidate = prefix + counter[0] + suffix;
+        while (names.containsKey(placeholderCandidate)) {
+            placeholderCandidate = prefix + ++counter[0] + suffix;
+        }
+        return placeholderCandidate;
+    }
+
+    /*
+     * Maps the field references of the expressions.  Literal references must have been converted to expression
+     * attribute names before.
+     */
+    void mapFields(RequestExpressions request) {
+        Map<String, String> names = request.names;
+        List<Map<ValueNode, FieldMapping>> values = new ArrayList<>(request.expressions.length);
+        List<List<UpdateAction>> repeatedActions = new ArrayList<>(request.expressions.length);
+        // determine the distinct field mappings of each placeholder in order of occurrence, null meaning unmapped
+        Map<String, List<FieldMapping>> placeholderFieldMappings = new HashMap<>();
+        for (int i = 0; i < request.expressions.length; i++) {
+            Map<ValueNode, FieldMapping> expressionValues = new LinkedHashMap<>();
+            List<UpdateAction> expressionRepeatedActions = new ArrayList<>();
+            if (request.expressions[i] != null) {
+                collectFields(ExpressionParser.parse(request.expressions[i], request.types[i]), names,
+                    expressionValues, expressionRepeatedActions);
+            }
+            expressionValues.forEach((value, fieldMapping) ->
+                addDistinct(placeholderFieldMappings, value.getPlaceholder(), fieldMapping));
+            for (UpdateAction action : expressionRepeatedActions) {
+                List<FieldMapping> targets = getFieldMappings(action.getPath(), names);
+                if (action.getValue() instanceof ValueNode) {
+                    targets.forEach(fieldMapping -> addDistinct(placeholderFieldMappings,
+                        ((ValueNode) action.getValue()).getPlaceholder(),
+                        fieldMapping.isContextAware() ? fieldMapping : null));
+                }
+            }
+            values.add(expressionValues);
+            repeatedActions.add(expressionRepeatedActions);
+        }
+
+        Map<String, String> repeatedNames = new HashMap<>();
+        int[] counter = {1};
+        for (int i = 0; i < request.expressions.length; i++) {
+            if (request.expressions[i] == null) {
+                continue;
+            }
+            Map<Span, String> replacements = new HashMap<>();
+            values.get(i).forEach((value, fieldMapping) -> {
+                String placeholder = getValuePlaceholder(request, value.getPlaceholder(), fieldMapping,
+                    placeholderFieldMappings);
+                if (!placeholder.equals(value.getPlaceholder())) {
+                    replacements.put(value, placeholder);
+                }
+            });
+            for (UpdateAction action : repeatedActions.get(i)) {
+                List<FieldMapping> targets = getFieldMappings(action.getPath(), names);
+                StringBuilder repeated = new StringBuilder();
+                for (FieldMapping fieldMapping : targets.subList(1, targets.size())) {
+                    String namePlaceholder = repeatedNames.computeIfAbsent(fieldMapping.getTarget().getName(),
+                        target -> {
+                            String placeholder = getNextPlaceholder("#___field", "___", names, counter);
+                            names.put(placeholder, target);
+                            return placeholder;
+                        });
+                    repeated.append(", ").append(namePlaceholder);
+                    if (action.getValue() != null) {
+                        String placeholder = ((ValueNode) action.getValue()).getPlaceholder();
+                        repeated.append(" = ").append(getValuePlaceholder(request, placeholder,
+                            fieldMapping.isContextAware() ? fieldMapping : null, placeholderFieldMappings));
+                    }
+                }
+                replacements.put(ExpressionParser.insertionAt(action.getEnd()), repeated.toString());
+            }
+            request.expressions[i] = ExpressionParser.rewrite(request.expressions[i], replacements);
+        }
+
+        names.replaceAll((placeholder, name) -> {
+            List<FieldMapping> nameFieldMappings = fieldMappings.get(name);
+            return nameFieldMappings == null || nameFieldMappings.isEmpty()
+                ? name : nameFieldMappings.get(0).getTarget().getName();
+        });
+    }
+
+    /*
+     * Returns the placeholder to use for an occurrence of the given placeholder with the given field mapping, and
+     * records its value mapping.  The first mapping of a placeholder keeps the placeholder, unless the placeholder is
+     * also used unmapped, and all others are replaced with an alias.
+     */
+    private static String getValuePlaceholder(RequestExpressions request,
+                                              String placeholder,
+                                              FieldMapping fieldMapping,
+                                              Map<String, List<FieldMapping>> placeholderFieldMappings) {
+        if (fieldMapping == null) {
+            return placeholder;
+        }
+        List<FieldMapping> distinct = placeholderFieldMappings.get(placeholder);
+        int index = indexOf(distinct, fieldMapping);
+        String target = !distinct.contains(null) && index == 0
+            ? placeholder
+            : ":___" + placeholder.substring(1) + "_" + index + "___";
+        request.valueMappings.put(target, new ValueMapping(placeholder, fieldMapping));
+        return target;
+    }
+
+    private static void addDistinct(Map<String, List<FieldMapping>> placeholderFieldMappings,
+                                    String placeholder,
+                                    FieldMapping fieldMapping) {
+        List<FieldMapping> distinct = placeholderFieldMappings.computeIfAbsent(placeholder, key -> new ArrayList<>());
+        if (indexOf(distinct, fieldMapping) < 0) {
+            distinct.add(fieldMapping);
+        }
+    }
+
+    // field mappings are compared by identity, since they do not implement hashCode
+    private static int indexOf(List<FieldMapping> fieldMappings, FieldMapping fieldMapping) {
+        for (int i = 0; i < fieldMappings.size(); i++) {
+            if (fieldMappings.get(i) == fieldMapping) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Collects the value operands of the expression, mapped to the context-aware field mapping of the field they are
+     * compared with or assigned to, or to null if their value is not to be mapped, as well as the SET and REMOVE
+     * actions that need to be repeated for fields that map to more than one physical field.  Fields that are
+     * context-aware or map to more than one physical field can only be set to a value or removed, since their physical
+     * values could not be derived otherwise.
+     */
+    private void collectFields(Node root,
+                               Map<String, String> names,
+                               Map<ValueNode, FieldMapping> values,
+                               List<UpdateAction> repeatedActions) {
+        // nodes are visited before their operands, so operands of mapped fields are put before they are visited
+        root.forEach(node -> {
+            if (node instanceof ValueNode) {
+                values.putIfAbsent((ValueNode) node, null);
+            } else if (node instanceof ComparisonNode) {
+                ComparisonNode comparison = (ComparisonNode) node;
+                putValueFieldMapping(values, comparison.getLeft(), ImmutableList.of(comparison.getRight()), names);
+                putValueFieldMapping(values, comparison.getRight(), ImmutableList.of(comparison.getLeft()), names);
+            } else if (node instanceof BetweenNode || node instanceof InNode) {
+                List<Node> operands = node.getChildren();
+                putValueFieldMapping(values, operands.get(0), operands.subList(1, operands.size()), names);
+            } else if (node instanceof FunctionNode) {
+                FunctionNode function = (FunctionNode) node;
+                if ((function.getName().equals("begins_with") || function.getName().equals("if_not_exists"))
+                    && function.getArguments().size() == 2) {
+                    putValueFieldMapping(values, function.getArguments().get(0),
+                        function.getArguments().subList(1, 2), names);
+                }
+            } else if (node instanceof UpdateAction) {
+                UpdateAction action = (UpdateAction) node;
+                List<FieldMapping> targets = getFieldMappings(action.getPath(), names);
+                if (targets.isEmpty()) {
+                    return;
+                }
+                String field = action.getPath().getAttributeName(names);
+                boolean contextAware = targets.get(0).isContextAware();
+                boolean repeated = targets.size() > 1;
+                checkArgument(action.getClause().equals("SET") || action.getClause().equals("REMOVE")
+                        || !contextAware && !repeated,
+                    "field %s is mapped and can only be updated with SET or REMOVE", field);
+                checkArgument(action.getValue() == null || action.getValue() instanceof ValueNode
+                        || !contextAware && !repeated,
+                    "field %s is mapped and can only be set to a value", field);
+                if (action.getValue() != null) {
+                    putValueFieldMapping(values, action.getPath(), ImmutableList.of(action.getValue()), names);
+                }
+                if (repeated) {
+                    repeatedActions.add(action);
+                }
+            }
+        });
+    }
+
+    private void putValueFieldMapping(Map<ValueNode, FieldMapping> values,
+                                      Node field,
+                                      List<Node> operands,
+                                      Map<String, String> names) {
+        List<FieldMapping> targets = getFieldMappings(field, names);
+        if (!targets.isEmpty() && targets.get(0).isContextAware()) {
+            operands.stream().filter(ValueNode.class::isInstance)
+                .forEach(operand -> values.put((ValueNode) operand, targets.get(0)));
+        }
+    }
+
+    private List<FieldMapping> getFieldMappings(Node field, Map<String, String> names) {
+        if (field instanceof PathNode && ((PathNode) field).isAttribute()) {
+            List<FieldMapping> targets = fieldMappings.get(((PathNode) field).getAttributeName(names));
+            if (targets != null) {
+                return targets;
+            }
+        }
+        return ImmutableList.of();
+    }
+
+    /*
+     * Applies recorded value mappings to the given expression attribute values.  All values are mapped before any is
+     * put, since aliases read the unmapped values of their source.
+     */
+    static void applyValueMappings(Map<String, ValueMapping> valueMappings,
+                                   Map<String, AttributeValue> values,
+                                   FieldMapper fieldMapper) {
+        Map<String, AttributeValue> mappedValues = new HashMap<>();
+        valueMappings.forEach((placeholder, valueMapping) -> {
+            AttributeValue value = values == null ? null : values.get(valueMapping.getSource());
+            checkArgument(value != null, "expression attribute value %s is not defined", valueMapping.getSource());
+            mappedValues.put(placeholder, fieldMapper.apply(valueMapping.getFieldMapping(), value));
+        });
+        values.putAll(mappedValues);
+    }
+
+    /*
+     * The expressions of a request, which share its expression attribute names and values.  Expressions may be null.
+     */
+    static class RequestExpressions {
+
+        private final String[] expressions;
+        private final ExpressionType[] types;
+        private final Map<String, String> names;
+        private final Map<String, ValueMapping> valueMappings = new LinkedHashMap<>();
+
+        /*
+         * Takes the mutable expression attribute names of the request and its expressions and their types.
+         */
+        RequestExpressions(Map<String, String> names, String[] expressions, ExpressionType[] types) {
+            checkArgument(expressions.length == types.length);
+            this.names = names;
+            this.expressions = expressions.clone();
+            this.types = types.clone();
+        }
+
+        String getExpression(int index) {
+            return expressions[index];
+        }
+
+        Map<String, String> getNames() {
+            return names;
+        }
+
+        /*
+         * Returns the value mappings, by the placeholder to put the mapped value into.
+         */
+        Map<String, ValueMapping> getValueMappings() {
+            return valueMappings;
+        }
+
+    }
+
+    /*
+     * Maps the value of a source placeholder, which is the placeholder itself unless it is mapped to an alias.
+     */
+    static class ValueMapping {
+
+        private final String source;
+        private final FieldMapping fieldMapping;
+
+        ValueMapping(String source, FieldMapping fieldMapping) {
+            this.source = source;
+            this.fieldMapping = fieldMapping;
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        FieldMapping getFieldMapping() {
+            return fieldMapping;
+        }
+
+    }
+
+}
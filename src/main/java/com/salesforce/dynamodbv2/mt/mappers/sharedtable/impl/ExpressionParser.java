@@ -0,0 +1,875 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+ * Parses DynamoDB condition (including key condition and filter), projection, and update expressions into syntax
+ * trees.  Every node records its position in the expression, so that callers can rewrite an expression by replacing
+ * the text of individual nodes while leaving the rest of the expression untouched.
+ *
+ * See https://docs.aws.amazon.com/amazondynamodb/latest/developerguide/Expressions.html for the grammar.  Keywords and
+ * function names are case-insensitive.  Operator precedence, from highest to lowest, is comparators, IN, BETWEEN,
+ * functions, parentheses, NOT, AND, OR.
+ */
+class ExpressionParser {
+
+    enum ExpressionType {
+        CONDITION,
+        PROJECTION,
+        UPDATE
+    }
+
+    private final String expression;
+    private final List<Token> tokens;
+    private int position;
+
+    private ExpressionParser(String expression) {
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+    }
+
+    /*
+     * Parses the expression of the given type.  Throws an IllegalArgumentException if the expression is malformed.
+     */
+    static Node parse(String expression, ExpressionType type) {
+        ExpressionParser parser = new ExpressionParser(expression);
+        Node node;
+        switch (type) {
+            case CONDITION:
+                node = parser.parseOr();
+                break;
+            case PROJECTION:
+                node = parser.parseProjection();
+                break;
+            case UPDATE:
+                node = parser.parseUpdate();
+                break;
+            default:
+                throw new IllegalArgumentException("unexpected expression type " + type);
+        }
+        if (parser.peek() != null) {
+            throw parser.error("unexpected token '" + parser.peek().text + "'");
+        }
+        return node;
+    }
+
+    static Node parseCondition(String expression) {
+        return parse(expression, ExpressionType.CONDITION);
+    }
+
+    static ProjectionNode parseProjection(String expression) {
+        return (ProjectionNode) parse(expression, ExpressionType.PROJECTION);
+    }
+
+    static UpdateNode parseUpdate(String expression) {
+        return (UpdateNode) parse(expression, ExpressionType.UPDATE);
+    }
+
+    /*
+     * Returns the expression with the text of each of the given tokens or nodes replaced.  The replaced spans must not
+     * overlap.
+     */
+    static String rewrite(String expression, Map<? extends Span, String> replacements) {
+        if (replacements.isEmpty()) {
+            return expression;
+        }
+        List<Span> spans = new ArrayList<>(replacements.keySet());
+        spans.sort(Comparator.comparingInt(Span::getStart));
+        StringBuilder rewritten = new StringBuilder(expression.length() + 16 * spans.size());
+        int position = 0;
+        for (Span span : spans) {
+            checkArgument(span.getStart() >= position, "overlapping replacements in expression " + expression);
+            rewritten.append(expression, position, span.getStart()).append(replacements.get(span));
+            position = span.getEnd();
+        }
+        return rewritten.append(expression, position, expression.length()).toString();
+    }
+
+    /*
+     * Returns an empty span at the given position, for inserting text with rewrite().
+     */
+    static Span insertionAt(int position) {
+        return new Span() {
+            @Override
+            public int getStart() {
+                return position;
+            }
+
+            @Override
+            public int getEnd() {
+                return position;
+            }
+        };
+    }
+
+    // condition grammar
+
+    private Node parseOr() {
+        Node left = parseAnd();
+        while (acceptKeyword("OR")) {
+            left = new OrNode(left, parseAnd());
+        }
+        return left;
+    }
+
+    private Node parseAnd() {
+        Node left = parseNot();
+        while (acceptKeyword("AND")) {
+            left = new AndNode(left, parseNot());
+        }
+        return left;
+    }
+
+    private Node parseNot() {
+        Token not = peek();
+        if (acceptKeyword("NOT")) {
+            Node condition = parseNot();
+            return new NotNode(not.start, condition);
+        }
+        return parsePredicate();
+    }
+
+    private Node parsePredicate() {
+        Token token = peek();
+        if (token != null && token.type == TokenType.LEFT_PAREN) {
+            next();
+            Node condition = parseOr();
+            Token close = expect(TokenType.RIGHT_PAREN);
+            return new ParenNode(token.start, close.end, condition);
+        }
+        Node operand = parseOperand();
+        if (operand instanceof FunctionNode && !((FunctionNode) operand).getName().equalsIgnoreCase("size")) {
+            return operand;
+        }
+        Token operator = peek();
+        if (operator != null && operator.type == TokenType.COMPARATOR) {
+            next();
+            return new ComparisonNode(operand, operator.text, parseOperand());
+        }
+        if (acceptKeyword("BETWEEN")) {
+            Node low = parseOperand();
+            if (!acceptKeyword("AND")) {
+                throw error("expected AND in BETWEEN");
+            }
+            return new BetweenNode(operand, low, parseOperand());
+        }
+        if (acceptKeyword("IN")) {
+            expect(TokenType.LEFT_PAREN);
+            List<Node> values = new ArrayList<>();
+            do {
+                values.add(parseOperand());
+            } while (accept(TokenType.COMMA));
+            Token close = expect(TokenType.RIGHT_PAREN);
+            return new InNode(operand, values, close.end);
+        }
+        throw error("expected comparator, BETWEEN, or IN");
+    }
+
+    // operands
+
+    private Node parseOperand() {
+        Token token = peek();
+        if (token == null) {
+            throw error("unexpected end of expression");
+        }
+        if (token.type == TokenType.VALUE) {
+            next();
+            return new ValueNode(token);
+        }
+        if (token.type == TokenType.IDENTIFIER && lookahead(1) != null && lookahead(1).type == TokenType.LEFT_PAREN) {
+            return parseFunction();
+        }
+        return parsePath();
+    }
+
+    private FunctionNode parseFunction() {
+        Token name = next();
+        expect(TokenType.LEFT_PAREN);
+        List<Node> arguments = new ArrayList<>();
+        if (peek() != null && peek().type != TokenType.RIGHT_PAREN) {
+            do {
+                arguments.add(parseUpdateValue());
+            } while (accept(TokenType.COMMA));
+        }
+        Token close = expect(TokenType.RIGHT_PAREN);
+        return new FunctionNode(name, arguments, close.end);
+    }
+
+    private PathNode parsePath() {
+        Token name = next();
+        if (name == null || (name.type != TokenType.NAME && name.type != TokenType.IDENTIFIER)) {
+            throw error("expected attribute name");
+        }
+        List<Token> elements = new ArrayList<>();
+        elements.add(name);
+        int end = name.end;
+        while (true) {
+            if (accept(TokenType.DOT)) {
+                Token element = next();
+                if (element == null || (element.type != TokenType.NAME && element.type != TokenType.IDENTIFIER)) {
+                    throw error("expected attribute name after '.'");
+                }
+                elements.add(element);
+                end = element.end;
+            } else if (accept(TokenType.LEFT_BRACKET)) {
+                Token index = expect(TokenType.NUMBER);
+                elements.add(index);
+                end = expect(TokenType.RIGHT_BRACKET).end;
+            } else {
+                break;
+            }
+        }
+        return new PathNode(elements, end);
+    }
+
+    // projection grammar
+
+    private ProjectionNode parseProjection() {
+        List<PathNode> paths = new ArrayList<>();
+        do {
+            paths.add(parsePath());
+        } while (accept(TokenType.COMMA));
+        return new ProjectionNode(paths);
+    }
+
+    // update grammar
+
+    private UpdateNode parseUpdate() {
+        List<UpdateAction> actions = new ArrayList<>();
+        List<String> clauses = new ArrayList<>();
+        while (peek() != null) {
+            Token clause = next();
+            String keyword = clause.text.toUpperCase();
+            if (clause.type != TokenType.IDENTIFIER || !ImmutableList.of("SET", "REMOVE", "ADD", "DELETE")
+                .contains(keyword)) {
+                throw error("expected SET, REMOVE, ADD, or DELETE");
+            }
+            if (clauses.contains(keyword)) {
+                throw error("duplicate " + keyword + " clause");
+            }
+            clauses.add(keyword);
+            do {
+                PathNode path = parsePath();
+                Node value = null;
+                switch (keyword) {
+                    case "SET":
+                        Token equals = next();
+                        if (equals == null || !equals.text.equals("=")) {
+                            throw error("expected '=' in SET action");
+                        }
+                        value = parseUpdateValue();
+                        break;
+                    case "ADD":
+                    case "DELETE":
+                        value = parseOperand();
+                        break;
+                    default:
+                        break;
+                }
+                actions.add(new UpdateAction(keyword, path, value));
+            } while (accept(TokenType.COMMA));
+        }
+        if (actions.isEmpty()) {
+            throw error("empty update expression");
+        }
+        return new UpdateNode(actions);
+    }
+
+    private Node parseUpdateValue() {
+        Node left = parseOperand();
+        Token operator = peek();
+        if (operator != null && operator.type == TokenType.ARITHMETIC) {
+            next();
+            return new ArithmeticNode(left, operator.text, parseOperand());
+        }
+        return left;
+    }
+
+    // token handling
+
+    private Token peek() {
+        return lookahead(0);
+    }
+
+    private Token lookahead(int offset) {
+        return position + offset < tokens.size() ? tokens.get(position + offset) : null;
+    }
+
+    private Token next() {
+        Token token = peek();
+        if (token != null) {
+            position++;
+        }
+        return token;
+    }
+
+    private boolean accept(TokenType type) {
+        Token token = peek();
+        if (token != null && token.type == type) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        Token token = peek();
+        if (token != null && token.type == TokenType.IDENTIFIER && token.text.equalsIgnoreCase(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(TokenType type) {
+        Token token = next();
+        if (token == null || token.type != type) {
+            position--;
+            throw error("expected " + type);
+        }
+        return token;
+    }
+
+    private IllegalArgumentException error(String message) {
+        Token token = peek();
+        return new IllegalArgumentException("invalid expression '" + expression + "': " + message + " at position "
+            + (token == null ? expression.length() : token.start));
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            TokenType type;
+            if (c == '#' || c == ':') {
+                i++;
+                while (i < length && isNameChar(expression.charAt(i))) {
+                    i++;
+                }
+                if (i == start + 1) {
+                    throw new IllegalArgumentException("invalid expression '" + expression + "': empty "
+                        + (c == '#' ? "name" : "value") + " placeholder at position " + start);
+                }
+                type = c == '#' ? TokenType.NAME : TokenType.VALUE;
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < length && isNameChar(expression.charAt(i))) {
+                    i++;
+                }
+                type = TokenType.IDENTIFIER;
+            } else if (Character.isDigit(c)) {
+                while (i < length && Character.isDigit(expression.charAt(i))) {
+                    i++;
+                }
+                type = TokenType.NUMBER;
+            } else if (c == '<' || c == '>') {
+                i++;
+                if (i < length && (expression.charAt(i) == '=' || (c == '<' && expression.charAt(i) == '>'))) {
+                    i++;
+                }
+                type = TokenType.COMPARATOR;
+            } else {
+                i++;
+                switch (c) {
+                    case '=':
+                        type = TokenType.COMPARATOR;
+                        break;
+                    case '+':
+                    case '-':
+                        type = TokenType.ARITHMETIC;
+                        break;
+                    case '(':
+                        type = TokenType.LEFT_PAREN;
+                        break;
+                    case ')':
+                        type = TokenType.RIGHT_PAREN;
+                        break;
+                    case '[':
+                        type = TokenType.LEFT_BRACKET;
+                        break;
+                    case ']':
+                        type = TokenType.RIGHT_BRACKET;
+                        break;
+                    case ',':
+                        type = TokenType.COMMA;
+                        break;
+                    case '.':
+                        type = TokenType.DOT;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("invalid expression '" + expression
+                            + "': unexpected character '" + c + "' at position " + start);
+                }
+            }
+            tokens.add(new Token(type, expression.substring(start, i), start, i));
+        }
+        return tokens;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    enum TokenType {
+        NAME,
+        VALUE,
+        IDENTIFIER,
+        NUMBER,
+        COMPARATOR,
+        ARITHMETIC,
+        LEFT_PAREN,
+        RIGHT_PAREN,
+        LEFT_BRACKET,
+        RIGHT_BRACKET,
+        COMMA,
+        DOT
+    }
+
+    /*
+     * A range of characters of an expression, from start (inclusive) to end (exclusive).
+     */
+    interface Span {
+
+        int getStart();
+
+        int getEnd();
+
+    }
+
+    static class Token implements Span {
+
+        private final TokenType type;
+        private final String text;
+        private final int start;
+        private final int end;
+
+        Token(TokenType type, String text, int start, int end) {
+            this.type = type;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        TokenType getType() {
+            return type;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+
+    }
+
+    /*
+     * A node of the syntax tree, spanning the characters from start (inclusive) to end (exclusive).
+     */
+    abstract static class Node implements Span {
+
+        private final int start;
+        private final int end;
+
+        Node(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+
+        abstract List<Node> getChildren();
+
+        /*
+         * Visits this node and all of its descendants in pre-order.
+         */
+        void forEach(Consumer<Node> visitor) {
+            visitor.accept(this);
+            getChildren().forEach(child -> child.forEach(visitor));
+        }
+
+    }
+
+    /*
+     * A document path, e.g., #a.b[1].c.  Its first element is either a name placeholder or a literal attribute name.
+     */
+    static class PathNode extends Node {
+
+        private final List<Token> elements;
+
+        PathNode(List<Token> elements, int end) {
+            super(elements.get(0).start, end);
+            this.elements = elements;
+        }
+
+        Token getNameToken() {
+            return elements.get(0);
+        }
+
+        boolean isPlaceholder() {
+            return getNameToken().type == TokenType.NAME;
+        }
+
+        /*
+         * Returns true if the path references a top-level attribute rather than a nested element.
+         */
+        boolean isAttribute() {
+            return elements.size() == 1;
+        }
+
+        /*
+         * Returns the name of the top-level attribute, resolving name placeholders with the given names.
+         */
+        String getAttributeName(Map<String, String> expressionAttributeNames) {
+            String name = getNameToken().text;
+            if (isPlaceholder()) {
+                String resolved = expressionAttributeNames == null ? null : expressionAttributeNames.get(name);
+                if (resolved == null) {
+                    throw new IllegalArgumentException("expression attribute name " + name + " is not defined");
+                }
+                return resolved;
+            }
+            return name;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of();
+        }
+
+    }
+
+    static class ValueNode extends Node {
+
+        private final String placeholder;
+
+        ValueNode(Token token) {
+            super(token.start, token.end);
+            this.placeholder = token.text;
+        }
+
+        String getPlaceholder() {
+            return placeholder;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of();
+        }
+
+    }
+
+    /*
+     * A function call, e.g., begins_with(#a, :v), size(#a), or if_not_exists(#a, :v).
+     */
+    static class FunctionNode extends Node {
+
+        private final String name;
+        private final List<Node> arguments;
+
+        FunctionNode(Token name, List<Node> arguments, int end) {
+            super(name.start, end);
+            this.name = name.text;
+            this.arguments = arguments;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        List<Node> getArguments() {
+            return arguments;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return arguments;
+        }
+
+    }
+
+    static class ArithmeticNode extends Node {
+
+        private final Node left;
+        private final String operator;
+        private final Node right;
+
+        ArithmeticNode(Node left, String operator, Node right) {
+            super(left.getStart(), right.getEnd());
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        String getOperator() {
+            return operator;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of(left, right);
+        }
+
+    }
+
+    static class ComparisonNode extends Node {
+
+        private final Node left;
+        private final String comparator;
+        private final Node right;
+
+        ComparisonNode(Node left, String comparator, Node right) {
+            super(left.getStart(), right.getEnd());
+            this.left = left;
+            this.comparator = comparator;
+            this.right = right;
+        }
+
+        Node getLeft() {
+            return left;
+        }
+
+        String getComparator() {
+            return comparator;
+        }
+
+        Node getRight() {
+            return right;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of(left, right);
+        }
+
+    }
+
+    static class BetweenNode extends Node {
+
+        private final Node operand;
+        private final Node low;
+        private final Node high;
+
+        BetweenNode(Node operand, Node low, Node high) {
+            super(operand.getStart(), high.getEnd());
+            this.operand = operand;
+            this.low = low;
+            this.high = high;
+        }
+
+        Node getOperand() {
+            return operand;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of(operand, low, high);
+        }
+
+    }
+
+    static class InNode extends Node {
+
+        private final Node operand;
+        private final List<Node> values;
+
+        InNode(Node operand, List<Node> values, int end) {
+            super(operand.getStart(), end);
+            this.operand = operand;
+            this.values = values;
+        }
+
+        Node getOperand() {
+            return operand;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.<Node>builder().add(operand).addAll(values).build();
+        }
+
+    }
+
+    static class AndNode extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        AndNode(Node left, Node right) {
+            super(left.getStart(), right.getEnd());
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of(left, right);
+        }
+
+    }
+
+    static class OrNode extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        OrNode(Node left, Node right) {
+            super(left.getStart(), right.getEnd());
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of(left, right);
+        }
+
+    }
+
+    static class NotNode extends Node {
+
+        private final Node condition;
+
+        NotNode(int start, Node condition) {
+            super(start, condition.getEnd());
+            this.condition = condition;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of(condition);
+        }
+
+    }
+
+    static class ParenNode extends Node {
+
+        private final Node condition;
+
+        ParenNode(int start, int end, Node condition) {
+            super(start, end);
+            this.condition = condition;
+        }
+
+        Node getCondition() {
+            return condition;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.of(condition);
+        }
+
+    }
+
+    static class ProjectionNode extends Node {
+
+        private final List<PathNode> paths;
+
+        ProjectionNode(List<PathNode> paths) {
+            super(paths.get(0).getStart(), paths.get(paths.size() - 1).getEnd());
+            this.paths = paths;
+        }
+
+        List<PathNode> getPaths() {
+            return paths;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.copyOf(paths);
+        }
+
+    }
+
+    /*
+     * An action of an update expression.  The value is null for REMOVE actions.
+     */
+    static class UpdateAction extends Node {
+
+        private final String clause;
+        private final PathNode path;
+        private final Node value;
+
+        UpdateAction(String clause, PathNode path, Node value) {
+            super(path.getStart(), value == null ? path.getEnd() : value.getEnd());
+            this.clause = clause;
+            this.path = path;
+            this.value = value;
+        }
+
+        String getClause() {
+            return clause;
+        }
+
+        PathNode getPath() {
+            return path;
+        }
+
+        Node getValue() {
+            return value;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return value == null ? ImmutableList.of(path) : ImmutableList.of(path, value);
+        }
+
+    }
+
+    static class UpdateNode extends Node {
+
+        private final List<UpdateAction> actions;
+
+        UpdateNode(List<UpdateAction> actions) {
+            super(actions.get(0).getStart(), actions.get(actions.size() - 1).getEnd());
+            this.actions = actions;
+        }
+
+        List<UpdateAction> getActions() {
+            return actions;
+        }
+
+        @Override
+        List<Node> getChildren() {
+            return ImmutableList.copyOf(actions);
+        }
+
+    }
+
+}
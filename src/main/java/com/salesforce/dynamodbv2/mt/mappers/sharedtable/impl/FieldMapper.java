@@ -36,17 +36,17 @@ class FieldMapper {
 
     AttributeValue apply(FieldMapping fieldMapping, AttributeValue unqualifiedAttribute) {
         return new AttributeValue(
-            fieldPrefixFunction.apply(mtContext,
+            fieldPrefixFunction.qualify(mtContext.getContext(),
                 fieldMapping.getIndexType() == TABLE
                     ? virtualTableName
                     : fieldMapping.getVirtualIndexName(),
                 convertToStringNotNull(fieldMapping.getSource().getType(),
-                    unqualifiedAttribute)).getQualifiedValue());
+                    unqualifiedAttribute)));
     }
 
     AttributeValue reverse(FieldMapping fieldMapping, AttributeValue qualifiedAttribute) {
         return convertFromString(fieldMapping.getTarget().getType(),
-            fieldPrefixFunction.reverse(qualifiedAttribute.getS()).getUnqualifiedValue());
+            fieldPrefixFunction.unqualify(qualifiedAttribute.getS()));
     }
 
     private String convertToStringNotNull(ScalarAttributeType type, AttributeValue attributeValue) {
@@ -7,57 +7,136 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
-import com.google.common.base.Splitter;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
-import java.util.List;
-import org.apache.commons.lang3.StringUtils;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /*
+ * Qualifies values with a prefix consisting of the tenant context and the table or index name, separated by the
+ * delimiter, and removes that prefix again.
+ *
+ * Since this is done for every key of every request and stream record, prefixes are cached per table or index and
+ * context, and reversing a qualified value only locates the delimiters, leaving it to callers to extract the parts
+ * they need.
+ *
  * @author msgroi
  */
 class FieldPrefixFunction {
 
+    private static final int MAX_CACHED_PREFIXES = 10_000;
+
     private final String delimiter;
+    private final ConcurrentMap<String, Cache<String, String>> prefixes = new ConcurrentHashMap<>();
 
     FieldPrefixFunction(String delimiter) {
         this.delimiter = delimiter;
     }
 
     FieldValue apply(MtAmazonDynamoDbContextProvider mtContext, String tableIndex, String value) {
-        return new FieldValue(mtContext.getContext(),
-            tableIndex,
-            mtContext.getContext() + delimiter + tableIndex + delimiter + value,
-            value);
+        String context = mtContext.getContext();
+        return new FieldValue(context, tableIndex, qualify(context, tableIndex, value), value);
+    }
+
+    /*
+     * Returns the qualified value without constructing a FieldValue.
+     */
+    String qualify(String context, String tableIndex, String value) {
+        return getPrefix(context, tableIndex).concat(value);
+    }
+
+    private String getPrefix(String context, String tableIndex) {
+        if (context == null) {
+            return context + delimiter + tableIndex + delimiter;
+        }
+        Cache<String, String> tablePrefixes = prefixes.get(tableIndex);
+        if (tablePrefixes == null) {
+            tablePrefixes = prefixes.computeIfAbsent(tableIndex,
+                key -> CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PREFIXES).build());
+        }
+        String prefix = tablePrefixes.getIfPresent(context);
+        if (prefix == null) {
+            prefix = context + delimiter + tableIndex + delimiter;
+            tablePrefixes.put(context, prefix);
+        }
+        return prefix;
     }
 
     FieldValue reverse(String qualifiedValue) {
-        int prefixSeparatorIndex = StringUtils.ordinalIndexOf(qualifiedValue, delimiter, 2);
-        List<String> prefixList = Splitter.on(delimiter).splitToList(qualifiedValue.substring(0, prefixSeparatorIndex));
-        return new FieldValue(prefixList.get(0),
-            prefixList.get(1),
-            qualifiedValue,
-            qualifiedValue.substring(prefixSeparatorIndex + 1));
+        int contextEnd = qualifiedValue.indexOf(delimiter);
+        checkArgument(contextEnd >= 0, "qualified value %s is missing context prefix", qualifiedValue);
+        int tableIndexStart = contextEnd + delimiter.length();
+        int tableIndexEnd = qualifiedValue.indexOf(delimiter, tableIndexStart);
+        checkArgument(tableIndexEnd >= 0, "qualified value %s is missing table prefix", qualifiedValue);
+        return new FieldValue(qualifiedValue, contextEnd, tableIndexStart, tableIndexEnd,
+            tableIndexEnd + delimiter.length());
+    }
+
+    /*
+     * Returns whether the given qualified value is qualified with the given context, without locating its delimiters.
+     */
+    boolean hasContext(String qualifiedValue, String context) {
+        return qualifiedValue.startsWith(context) && qualifiedValue.startsWith(delimiter, context.length());
+    }
 
+    /*
+     * Returns the unqualified value without constructing a FieldValue.
+     */
+    String unqualify(String qualifiedValue) {
+        int contextEnd = qualifiedValue.indexOf(delimiter);
+        int tableIndexEnd = contextEnd < 0 ? -1 : qualifiedValue.indexOf(delimiter, contextEnd + delimiter.length());
+        checkArgument(tableIndexEnd >= 0, "qualified value %s is missing prefix", qualifiedValue);
+        return qualifiedValue.substring(tableIndexEnd + delimiter.length());
     }
 
+    /*
+     * The parts of a qualified value.  Values created by reverse() only hold the offsets of the parts, and extract them
+     * when they are first accessed.
+     */
     static class FieldValue {
-        private final String mtContext;
-        private final String tableIndex;
         private final String qualifiedValue;
-        private final String unqualifiedValue;
+        private final int contextEnd;
+        private final int tableIndexStart;
+        private final int tableIndexEnd;
+        private final int valueStart;
+        private String mtContext;
+        private String tableIndex;
+        private String unqualifiedValue;
 
         FieldValue(String mtContext, String tableIndex, String qualifiedValue, String unqualifiedValue) {
             this.mtContext = mtContext;
             this.tableIndex = tableIndex;
             this.qualifiedValue = qualifiedValue;
             this.unqualifiedValue = unqualifiedValue;
+            this.contextEnd = -1;
+            this.tableIndexStart = -1;
+            this.tableIndexEnd = -1;
+            this.valueStart = -1;
+        }
+
+        private FieldValue(String qualifiedValue, int contextEnd, int tableIndexStart, int tableIndexEnd,
+                           int valueStart) {
+            this.qualifiedValue = qualifiedValue;
+            this.contextEnd = contextEnd;
+            this.tableIndexStart = tableIndexStart;
+            this.tableIndexEnd = tableIndexEnd;
+            this.valueStart = valueStart;
         }
 
         String getMtContext() {
+            if (mtContext == null) {
+                mtContext = qualifiedValue.substring(0, contextEnd);
+            }
             return mtContext;
         }
 
         String getTableIndex() {
+            if (tableIndex == null) {
+                tableIndex = qualifiedValue.substring(tableIndexStart, tableIndexEnd);
+            }
             return tableIndex;
         }
 
@@ -66,6 +145,9 @@ class FieldPrefixFunction {
         }
 
         String getUnqualifiedValue() {
+            if (unqualifiedValue == null) {
+                unqualifiedValue = qualifiedValue.substring(valueStart);
+            }
             return unqualifiedValue;
         }
 
@@ -80,10 +162,10 @@ class FieldPrefixFunction {
 
             FieldValue that = (FieldValue) o;
 
-            return mtContext.equals(that.mtContext)
-                    && tableIndex.equals(that.tableIndex)
+            return getMtContext().equals(that.getMtContext())
+                    && getTableIndex().equals(that.getTableIndex())
                     && qualifiedValue.equals(that.qualifiedValue)
-                    && unqualifiedValue.equals(that.unqualifiedValue);
+                    && getUnqualifiedValue().equals(that.getUnqualifiedValue());
         }
     }
 
@@ -7,13 +7,16 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
-import static com.amazonaws.util.CollectionUtils.isNullOrEmpty;
+import static com.google.common.base.Preconditions.checkArgument;
 
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
-
-import java.util.HashMap;
+import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /*
  * Maps items representing records in virtual tables so they can be read from and written to their physical table
@@ -21,47 +24,77 @@ import java.util.Map;
  * The apply() method is used to map keys in getItem, putItem, updateItem, deleteItem and for mapping item responses
  * in query and scan.
  *
+ * Items typically have many more attributes than there are mapped fields, so the field mappings of the table are
+ * flattened into arrays up front, and mapping an item only visits its mapped fields while copying all other
+ * attributes in bulk.  Items that do not contain any mapped field are returned as is.
+ *
+ * Physical fields that mapped fields are written to, as well as the partition field of the tenant partition index, are
+ * reserved, i.e., virtual items must not have unmapped fields with their names, since those would be overwritten.
+ *
  * @author msgroi
  */
 class ItemMapper {
 
     private final FieldMapper fieldMapper;
     private final TableMapping tableMapping;
+    private final FieldMappings virtualToPhysicalMappings;
+    private final FieldMappings physicalToVirtualMappings;
+    private final String[] reservedFields;
+    private final boolean isPartitionFieldMapped;
 
     ItemMapper(TableMapping tableMapping, FieldMapper fieldMapper) {
         this.fieldMapper = fieldMapper;
         this.tableMapping = tableMapping;
+        Map<String, List<FieldMapping>> virtualToPhysicalMappings = tableMapping.getAllVirtualToPhysicalFieldMappings();
+        this.virtualToPhysicalMappings = new FieldMappings(virtualToPhysicalMappings);
+        this.physicalToVirtualMappings = new FieldMappings(tableMapping.getAllPhysicalToVirtualFieldMappings());
+        this.reservedFields = virtualToPhysicalMappings.values().stream()
+            .flatMap(List::stream)
+            .map(fieldMapping -> fieldMapping.getTarget().getName())
+            .filter(targetField -> !virtualToPhysicalMappings.containsKey(targetField))
+            .distinct()
+            .toArray(String[]::new);
+        this.isPartitionFieldMapped = virtualToPhysicalMappings.containsKey(TenantPartitionIndex.HASH_KEY_FIELD);
     }
 
     /*
      * Takes a map representing a record in a virtual table that is effectively unqualified with respect to multi-tenant
      * context and returns a map representing a record in the physical table that is qualified with multi-tenant
-     * context appropriately.
+     * context appropriately.  The returned map may be the given map if none of its fields are mapped, so callers must
+     * not modify it.
      *
      * Used for adding context to GetItemRequest, PutItemRequest, UpdateItemRequest, or DeleteItemRequest's.
      */
     Map<String, AttributeValue> apply(Map<String, AttributeValue> unqualifiedItem) {
-        Map<String, AttributeValue> qualifiedItem = new HashMap<>();
-        Map<String, List<FieldMapping>> virtualToPhysicalFieldMappings =
-            tableMapping.getAllVirtualToPhysicalFieldMappings();
-        unqualifiedItem.forEach((field, attribute) -> {
-            List<FieldMapping> fieldMappings = virtualToPhysicalFieldMappings.get(field);
-            if (!isNullOrEmpty(fieldMappings)) {
-                fieldMappings.forEach(fieldMapping -> qualifiedItem.put(fieldMapping.getTarget().getName(),
-                    fieldMapping.isContextAware()
-                        ? fieldMapper.apply(fieldMapping, attribute)
-                        : attribute));
-            } else {
-                qualifiedItem.put(field, attribute);
-            }
-        });
+        return map(unqualifiedItem, virtualToPhysicalMappings, true, null);
+    }
 
+    /*
+     * Like apply(), but for complete items that are written to the physical table, which are additionally tagged with
+     * their tenant partition if the physical table has a tenant partition index.
+     *
+     * Used for mapping items in putItem and batchWriteItem.
+     */
+    Map<String, AttributeValue> applyToItem(Map<String, AttributeValue> unqualifiedItem) {
+        for (String reservedField : reservedFields) {
+            checkArgument(!unqualifiedItem.containsKey(reservedField), "field %s is reserved", reservedField);
+        }
+        Map<String, AttributeValue> qualifiedItem = apply(unqualifiedItem);
+        if (tableMapping.getTenantPartitionIndex().isPresent()) {
+            checkArgument(isPartitionFieldMapped || !unqualifiedItem.containsKey(TenantPartitionIndex.HASH_KEY_FIELD),
+                "field %s is reserved", TenantPartitionIndex.HASH_KEY_FIELD);
+            Map<String, AttributeValue> partitionedItem = qualifiedItem == unqualifiedItem
+                ? Maps.newHashMap(qualifiedItem) : qualifiedItem;
+            tableMapping.getTenantPartitionIndex().get().addPartition(partitionedItem);
+            return partitionedItem;
+        }
         return qualifiedItem;
     }
 
     /*
      * Takes a map representing a record in a physical table that is effectively qualified with multi-tenant context
-     * and returns a map representing a record in the virtual table with qualifications removed.
+     * and returns a map representing a record in the virtual table with qualifications removed.  The returned map may
+     * be the given map if none of its fields are mapped.
      *
      * Used for removing context from GetItemResult, QueryResult, or ScanResult's.
      */
@@ -69,21 +102,107 @@ class ItemMapper {
         if (qualifiedItem == null) {
             return null;
         }
-        Map<String, AttributeValue> unqualifiedItem = new HashMap<>();
-        Map<String, List<FieldMapping>> physicalToVirtualFieldMappings =
-            tableMapping.getAllPhysicalToVirtualFieldMappings();
-        qualifiedItem.forEach((field, attribute) -> {
-            List<FieldMapping> fieldMappings = physicalToVirtualFieldMappings.get((field));
-            if (fieldMappings != null && !fieldMappings.isEmpty()) {
-                fieldMappings.forEach(fieldMapping -> unqualifiedItem.put(fieldMapping.getTarget().getName(),
-                    fieldMapping.isContextAware()
-                        ? fieldMapper.reverse(fieldMapping, attribute)
-                        : attribute));
-            } else {
-                unqualifiedItem.put(field, attribute);
+        return map(qualifiedItem, physicalToVirtualMappings, false,
+            tableMapping.getTenantPartitionIndex().isPresent() ? TenantPartitionIndex.HASH_KEY_FIELD : null);
+    }
+
+    /*
+     * Applies reverse() to each of the given items, e.g., to the items of a query or scan result page, or to the images
+     * of a batch of stream records, some of which may be null.
+     */
+    List<Map<String, AttributeValue>> reverseAll(Collection<Map<String, AttributeValue>> qualifiedItems) {
+        List<Map<String, AttributeValue>> unqualifiedItems = new ArrayList<>(qualifiedItems.size());
+        String excludedField = tableMapping.getTenantPartitionIndex().isPresent()
+            ? TenantPartitionIndex.HASH_KEY_FIELD : null;
+        for (Map<String, AttributeValue> qualifiedItem : qualifiedItems) {
+            unqualifiedItems.add(qualifiedItem == null ? null
+                : map(qualifiedItem, physicalToVirtualMappings, false, excludedField));
+        }
+        return unqualifiedItems;
+    }
+
+    /*
+     * Copies the item, replacing the source fields of the given mappings with their (prefixed or unprefixed) target
+     * fields and dropping the excluded field, if any.  All source fields are removed before any target field is put,
+     * since a target field may have the same name as another mapping's source field.
+     */
+    private Map<String, AttributeValue> map(Map<String, AttributeValue> item,
+                                            FieldMappings mappings,
+                                            boolean apply,
+                                            String excludedField) {
+        if (!mappings.isAnyPresent(item) && (excludedField == null || !item.containsKey(excludedField))) {
+            return item;
+        }
+        Map<String, AttributeValue> mappedItem = Maps.newHashMapWithExpectedSize(item.size() + mappings.addedFields);
+        mappedItem.putAll(item);
+        for (String field : mappings.removedFields) {
+            mappedItem.remove(field);
+        }
+        if (excludedField != null) {
+            mappedItem.remove(excludedField);
+        }
+        for (FieldMapping fieldMapping : mappings.fieldMappings) {
+            AttributeValue attribute = item.get(fieldMapping.getSource().getName());
+            if (attribute != null) {
+                if (!fieldMapping.isContextAware()) {
+                    mappedItem.put(fieldMapping.getTarget().getName(), attribute);
+                } else {
+                    mappedItem.put(fieldMapping.getTarget().getName(), apply
+                        ? fieldMapper.apply(fieldMapping, attribute)
+                        : fieldMapper.reverse(fieldMapping, attribute));
+                }
+            }
+        }
+        return mappedItem;
+    }
+
+    /*
+     * The field mappings of one direction.  Mappings that neither rename nor prefix a field are left out, since
+     * copying the item takes care of them.
+     */
+    private static final class FieldMappings {
+
+        private final FieldMapping[] fieldMappings;
+        private final String[] sourceFields;
+        private final String[] removedFields;
+        private final int addedFields;
+
+        FieldMappings(Map<String, List<FieldMapping>> fieldMappingsBySource) {
+            List<FieldMapping> fieldMappings = new ArrayList<>();
+            Set<String> sourceFields = new LinkedHashSet<>();
+            Set<String> removedFields = new LinkedHashSet<>();
+            fieldMappingsBySource.forEach((sourceField, sourceFieldMappings) -> {
+                if (sourceFieldMappings == null || sourceFieldMappings.isEmpty()) {
+                    return;
+                }
+                boolean isRetained = false;
+                for (FieldMapping fieldMapping : sourceFieldMappings) {
+                    if (!fieldMapping.isContextAware() && sourceField.equals(fieldMapping.getTarget().getName())) {
+                        isRetained = true;
+                    } else {
+                        fieldMappings.add(fieldMapping);
+                        sourceFields.add(sourceField);
+                    }
+                }
+                if (!isRetained) {
+                    removedFields.add(sourceField);
+                }
+            });
+            this.fieldMappings = fieldMappings.toArray(new FieldMapping[0]);
+            this.sourceFields = sourceFields.toArray(new String[0]);
+            this.removedFields = removedFields.toArray(new String[0]);
+            this.addedFields = Math.max(0, this.fieldMappings.length - this.removedFields.length);
+        }
+
+        boolean isAnyPresent(Map<String, AttributeValue> item) {
+            for (String sourceField : sourceFields) {
+                if (item.containsKey(sourceField)) {
+                    return true;
+                }
             }
-        });
-        return unqualifiedItem;
+            return false;
+        }
+
     }
 
-}
\ No newline at end of file
+}
@@ -11,10 +11,17 @@ import static java.util.stream.Collectors.toList;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.Capacity;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteTableResult;
 import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
@@ -22,8 +29,10 @@ import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
 import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.GetItemResult;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
 import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.QueryResult;
 import com.amazonaws.services.dynamodbv2.model.Record;
@@ -33,6 +42,7 @@ import com.amazonaws.services.dynamodbv2.model.StreamRecord;
 import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.amazonaws.services.dynamodbv2.streamsadapter.model.RecordAdapter;
 import com.amazonaws.services.kinesis.clientlibrary.interfaces.v2.IRecordProcessor;
 import com.amazonaws.services.kinesis.clientlibrary.interfaces.v2.IRecordProcessorFactory;
@@ -40,24 +50,44 @@ import com.amazonaws.services.kinesis.clientlibrary.types.InitializationInput;
 import com.amazonaws.services.kinesis.clientlibrary.types.ProcessRecordsInput;
 import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownInput;
 import com.google.common.base.Preconditions;
-import com.google.common.cache.Cache;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.salesforce.dynamodbv2.mt.cache.MtCache;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.mappers.MappedRequest;
+import com.salesforce.dynamodbv2.mt.mappers.MappedScanQuery;
 import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDbBase;
+import com.salesforce.dynamodbv2.mt.mappers.MtRecordFilter;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.PathNode;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldPrefixFunction.FieldValue;
 import com.salesforce.dynamodbv2.mt.repo.MtTableDescriptionRepo;
+import com.salesforce.dynamodbv2.mt.repo.MtTableMetadataCache;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,27 +102,34 @@ import org.slf4j.LoggerFactory;
  * <p>SharedTableCustomDynamicBuilder provides a series of static methods that providing builders that are
  * preconfigured to support a number of common mappings.  See Javadoc for each provided builder for details.
  *
- * <p>Supported methods: create|describe|delete* Table, get|put|update Item, query**, scan**
+ * <p>Supported methods: create|describe|delete* Table, get|put|update Item, batchGet|batchWrite Item, query**, scan**
  *
  * <p>See deleteTableAsync and truncateOnDeleteTable in the SharedTableCustomDynamicBuilder for details on how to
- * control behavior that is specific to deleteTable. ** Only EQ conditions are supported.
+ * control behavior that is specific to deleteTable. ** Only EQ conditions are supported.  Scans may be segmented
+ * using Segment and TotalSegments, see also parallelScan.
  *
  * <p>Deleting and recreating tables without deleting all table data(see truncateOnDeleteTable) may yield unexpected
  * results.
  *
  * @author msgroi
  */
-public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
+public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase implements MtTableMetadataCache {
 
     private static final Logger log = LoggerFactory.getLogger(MtAmazonDynamoDbBySharedTable.class);
+    private static final int MAX_BATCH_GET_ITEM_KEYS = 100;
+    private static final int MAX_BATCH_WRITE_ITEM_REQUESTS = 25;
+    private static final int MAX_BATCH_WRITE_ITEM_RETRIES = 5;
+    private static final long BATCH_WRITE_ITEM_BASE_BACKOFF_MILLIS = 50L;
+    private static final long BATCH_WRITE_ITEM_MAX_BACKOFF_MILLIS = 2000L;
 
     private final String name;
 
     private final MtTableDescriptionRepo mtTableDescriptionRepo;
-    private final Cache<String, TableMapping> tableMappingCache;
+    private final MtCache<TableMapping> tableMappingCache;
     private final TableMappingFactory tableMappingFactory;
     private final boolean deleteTableAsync;
     private final boolean truncateOnDeleteTable;
+    private final FieldPrefixFunction streamFieldPrefixFunction;
 
     /**
      * TODO: write Javadoc.
@@ -104,26 +141,315 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
                                          MtTableDescriptionRepo mtTableDescriptionRepo,
                                          boolean deleteTableAsync,
                                          boolean truncateOnDeleteTable) {
+        this(name, mtContext, amazonDynamoDb, tableMappingFactory, mtTableDescriptionRepo, deleteTableAsync,
+            truncateOnDeleteTable, CacheBuilder.newBuilder());
+    }
+
+    /**
+     * Creates an instance whose cache of table mappings, one per tenant and virtual table, is built by the given
+     * CacheBuilder, e.g., to bound its size and to record stats.
+     */
+    public MtAmazonDynamoDbBySharedTable(String name,
+                                         MtAmazonDynamoDbContextProvider mtContext,
+                                         AmazonDynamoDB amazonDynamoDb,
+                                         TableMappingFactory tableMappingFactory,
+                                         MtTableDescriptionRepo mtTableDescriptionRepo,
+                                         boolean deleteTableAsync,
+                                         boolean truncateOnDeleteTable,
+                                         CacheBuilder<Object, Object> tableMappingCacheBuilder) {
+        this(name, mtContext, amazonDynamoDb, tableMappingFactory, mtTableDescriptionRepo, deleteTableAsync,
+            truncateOnDeleteTable, tableMappingCacheBuilder, null);
+    }
+
+    /**
+     * Creates an instance whose table mappings are reloaded on the given executor when they are due for refresh
+     * according to the CacheBuilder's refreshAfterWrite, so that requests keep using the cached mappings meanwhile.
+     */
+    public MtAmazonDynamoDbBySharedTable(String name,
+                                         MtAmazonDynamoDbContextProvider mtContext,
+                                         AmazonDynamoDB amazonDynamoDb,
+                                         TableMappingFactory tableMappingFactory,
+                                         MtTableDescriptionRepo mtTableDescriptionRepo,
+                                         boolean deleteTableAsync,
+                                         boolean truncateOnDeleteTable,
+                                         CacheBuilder<Object, Object> tableMappingCacheBuilder,
+                                         Executor tableMappingCacheRefreshExecutor) {
         super(mtContext, amazonDynamoDb);
         this.name = name;
         this.mtTableDescriptionRepo = mtTableDescriptionRepo;
-        this.tableMappingCache = new MtCache<>(mtContext);
+        this.tableMappingCache = new MtCache<>(mtContext, tableMappingCacheBuilder, tableMappingCacheRefreshExecutor);
         this.tableMappingFactory = tableMappingFactory;
         this.deleteTableAsync = deleteTableAsync;
         this.truncateOnDeleteTable = truncateOnDeleteTable;
+        this.streamFieldPrefixFunction = new FieldPrefixFunction(tableMappingFactory.getDelimiter());
     }
 
     /**
-     * TODO: write Javadoc.
+     * Maps the keys of each virtual table to their physical table, merges keys of virtual tables that share a physical
+     * table into a single physical request entry, and splits the result into as many physical batchGetItem calls as
+     * needed to stay within the per-request key limit.  Responses and unprocessed keys are mapped back to the virtual
+     * tables they were requested from.
+     *
+     * <p>Virtual tables with a projection are not merged with other virtual tables, since the physical key of each
+     * returned item may not be available to determine which virtual table it belongs to.
      */
-    public CreateTableResult createTable(CreateTableRequest createTableRequest) {
-        return new CreateTableResult().withTableDescription(mtTableDescriptionRepo.createTable(createTableRequest));
+    @Override
+    public BatchGetItemResult batchGetItem(BatchGetItemRequest batchGetItemRequest) {
+        // map keys and group them by physical table
+        Map<String, List<BatchGetItemGroup>> groupsByPhysicalTable = new LinkedHashMap<>();
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        for (Map.Entry<String, KeysAndAttributes> requestItem : batchGetItemRequest.getRequestItems().entrySet()) {
+            TableMapping tableMapping = getTableMapping(requestItem.getKey());
+            String physicalTableName = tableMapping.getPhysicalTable().getTableName();
+            KeysAndAttributes physicalTemplate = requestItem.getValue().clone();
+            physicalTemplate.setKeys(null);
+            List<BatchGetItemGroup> groups = groupsByPhysicalTable.computeIfAbsent(physicalTableName,
+                tableName -> new ArrayList<>());
+            BatchGetItemGroup group = groups.stream()
+                .filter(candidate -> candidate.accepts(tableMapping, physicalTemplate))
+                .findFirst().orElse(null);
+            if (group == null) {
+                group = new BatchGetItemGroup(physicalTableName, physicalTemplate);
+                groups.add(group);
+            }
+            group.addKeys(tableMapping, requestItem.getValue());
+            responses.put(requestItem.getKey(), new ArrayList<>());
+        }
+
+        // pack groups into physical batches, each physical table at most once per batch
+        List<Map<String, BatchGetItemGroup>> batchGroups = new ArrayList<>();
+        List<Map<String, KeysAndAttributes>> batches = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        groupsByPhysicalTable.values().stream().flatMap(List::stream).forEach(group -> {
+            for (List<Map<String, AttributeValue>> keys : Lists.partition(group.physicalKeys,
+                MAX_BATCH_GET_ITEM_KEYS)) {
+                int batch = 0;
+                while (batch < batches.size() && (batches.get(batch).containsKey(group.physicalTableName)
+                    || batchSizes.get(batch) + keys.size() > MAX_BATCH_GET_ITEM_KEYS)) {
+                    batch++;
+                }
+                if (batch == batches.size()) {
+                    batchGroups.add(new HashMap<>());
+                    batches.add(new HashMap<>());
+                    batchSizes.add(0);
+                }
+                batchGroups.get(batch).put(group.physicalTableName, group);
+                batches.get(batch).put(group.physicalTableName, group.physicalTemplate.clone().withKeys(keys));
+                batchSizes.set(batch, batchSizes.get(batch) + keys.size());
+            }
+        });
+
+        // execute batches and map results
+        Map<String, KeysAndAttributes> unprocessedKeys = new HashMap<>();
+        List<ConsumedCapacity> consumedCapacity = new ArrayList<>();
+        for (int batch = 0; batch < batches.size(); batch++) {
+            Map<String, BatchGetItemGroup> groups = batchGroups.get(batch);
+            BatchGetItemResult batchResult = getAmazonDynamoDb().batchGetItem(
+                batchGetItemRequest.clone().withRequestItems(batches.get(batch)));
+            batchResult.getResponses().forEach((physicalTableName, items) -> {
+                BatchGetItemGroup group = groups.get(physicalTableName);
+                for (Map<String, AttributeValue> item : items) {
+                    TableMapping tableMapping = group.getTableMapping(item);
+                    responses.computeIfAbsent(tableMapping.getVirtualTable().getTableName(),
+                        virtualTableName -> new ArrayList<>()).add(tableMapping.getItemMapper().reverse(item));
+                }
+            });
+            Optional.ofNullable(batchResult.getUnprocessedKeys()).ifPresent(keysByPhysicalTable ->
+                keysByPhysicalTable.forEach((physicalTableName, keysAndAttributes) -> {
+                    BatchGetItemGroup group = groups.get(physicalTableName);
+                    for (Map<String, AttributeValue> key : keysAndAttributes.getKeys()) {
+                        TableMapping tableMapping = group.getTableMapping(key);
+                        String virtualTableName = tableMapping.getVirtualTable().getTableName();
+                        unprocessedKeys.computeIfAbsent(virtualTableName, tableName ->
+                            batchGetItemRequest.getRequestItems().get(tableName).clone()
+                                .withKeys(new ArrayList<Map<String, AttributeValue>>()))
+                            .getKeys().add(tableMapping.getItemMapper().reverse(key));
+                    }
+                }));
+            Optional.ofNullable(batchResult.getConsumedCapacity()).ifPresent(consumedCapacity::addAll);
+        }
+
+        return new BatchGetItemResult()
+            .withResponses(responses)
+            .withUnprocessedKeys(unprocessedKeys)
+            .withConsumedCapacity(consumedCapacity.isEmpty() ? null : consumedCapacity);
+    }
+
+    /*
+     * Keys of one or more virtual tables that can be retrieved from a physical table within the same physical request
+     * entry, i.e., their non-key request attributes (projection, consistent read, etc.) are identical.
+     */
+    private static class BatchGetItemGroup {
+
+        private final String physicalTableName;
+        private final KeysAndAttributes physicalTemplate;
+        private final List<Map<String, AttributeValue>> physicalKeys = new ArrayList<>();
+        private final Map<Map<String, AttributeValue>, TableMapping> tableMappingsByPhysicalKey = new HashMap<>();
+        private TableMapping firstTableMapping;
+
+        BatchGetItemGroup(String physicalTableName, KeysAndAttributes physicalTemplate) {
+            this.physicalTableName = physicalTableName;
+            this.physicalTemplate = physicalTemplate;
+        }
+
+        boolean accepts(TableMapping tableMapping, KeysAndAttributes physicalTemplate) {
+            return this.physicalTemplate.equals(physicalTemplate)
+                && (isUnprojected() || tableMapping == firstTableMapping);
+        }
+
+        private boolean isUnprojected() {
+            return physicalTemplate.getProjectionExpression() == null && physicalTemplate.getAttributesToGet() == null;
+        }
+
+        void addKeys(TableMapping tableMapping, KeysAndAttributes keysAndAttributes) {
+            if (firstTableMapping == null) {
+                firstTableMapping = tableMapping;
+            }
+            PrimaryKey physicalPrimaryKey = tableMapping.getPhysicalTable().getPrimaryKey();
+            for (Map<String, AttributeValue> key : keysAndAttributes.getKeys()) {
+                Map<String, AttributeValue> physicalKey = getKeyFromItem(tableMapping.getItemMapper().apply(key),
+                    physicalPrimaryKey);
+                physicalKeys.add(physicalKey);
+                tableMappingsByPhysicalKey.put(physicalKey, tableMapping);
+            }
+        }
+
+        TableMapping getTableMapping(Map<String, AttributeValue> physicalItem) {
+            if (!isUnprojected()) {
+                // projected groups only ever contain keys of a single virtual table
+                return firstTableMapping;
+            }
+            return tableMappingsByPhysicalKey.get(
+                getKeyFromItem(physicalItem, firstTableMapping.getPhysicalTable().getPrimaryKey()));
+        }
+
+    }
+
+    /**
+     * Maps the put and delete requests of each virtual table to their physical table and coalesces them, regardless of
+     * which virtual table they originated from, into physical batchWriteItem calls of at most 25 requests.  Unprocessed
+     * items of each physical batch are resubmitted with jittered exponential backoff.  Items that remain unprocessed
+     * after the last retry are mapped back to their virtual tables and returned as UnprocessedItems.
+     *
+     * <p>If the calling thread is interrupted while backing off, no further physical calls are made: the pending items
+     * of the current batch and all items of the remaining batches are returned as UnprocessedItems, and the interrupt
+     * status of the thread is restored, so the caller can tell an interrupted call from a throttled one.
+     */
+    @Override
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest batchWriteItemRequest) {
+        // map write requests, remembering which virtual table each physical key belongs to
+        Map<String, Map<Map<String, AttributeValue>, TableMapping>> tableMappingsByPhysicalKey = new HashMap<>();
+        List<Map<String, List<WriteRequest>>> batches = new ArrayList<>();
+        int batchSize = MAX_BATCH_WRITE_ITEM_REQUESTS;
+        for (Map.Entry<String, List<WriteRequest>> requestItem : batchWriteItemRequest.getRequestItems().entrySet()) {
+            TableMapping tableMapping = getTableMapping(requestItem.getKey());
+            String physicalTableName = tableMapping.getPhysicalTable().getTableName();
+            PrimaryKey physicalPrimaryKey = tableMapping.getPhysicalTable().getPrimaryKey();
+            ItemMapper itemMapper = tableMapping.getItemMapper();
+            Map<Map<String, AttributeValue>, TableMapping> tableMappings = tableMappingsByPhysicalKey
+                .computeIfAbsent(physicalTableName, tableName -> new HashMap<>());
+            for (WriteRequest writeRequest : requestItem.getValue()) {
+                WriteRequest physicalWriteRequest;
+                Map<String, AttributeValue> physicalKey;
+                if (writeRequest.getPutRequest() != null) {
+                    Map<String, AttributeValue> physicalItem =
+                        itemMapper.applyToItem(writeRequest.getPutRequest().getItem());
+                    physicalWriteRequest = new WriteRequest(new PutRequest(physicalItem));
+                    physicalKey = getKeyFromItem(physicalItem, physicalPrimaryKey);
+                } else {
+                    physicalKey = getKeyFromItem(itemMapper.apply(writeRequest.getDeleteRequest().getKey()),
+                        physicalPrimaryKey);
+                    physicalWriteRequest = new WriteRequest(new DeleteRequest(physicalKey));
+                }
+                tableMappings.put(physicalKey, tableMapping);
+                if (batchSize == MAX_BATCH_WRITE_ITEM_REQUESTS) {
+                    batches.add(new HashMap<>());
+                    batchSize = 0;
+                }
+                Iterables.getLast(batches).computeIfAbsent(physicalTableName, tableName -> new ArrayList<>())
+                    .add(physicalWriteRequest);
+                batchSize++;
+            }
+        }
+
+        // execute batches, retrying unprocessed items
+        Map<String, List<WriteRequest>> unprocessedItems = new HashMap<>();
+        List<ConsumedCapacity> consumedCapacity = new ArrayList<>();
+        boolean interrupted = false;
+        for (Map<String, List<WriteRequest>> batch : batches) {
+            Map<String, List<WriteRequest>> pendingItems = batch;
+            // once interrupted, batches are no longer issued, but returned as unprocessed
+            for (int attempt = 0; !interrupted; attempt++) {
+                BatchWriteItemResult batchResult = getAmazonDynamoDb().batchWriteItem(
+                    batchWriteItemRequest.clone().withRequestItems(pendingItems));
+                Optional.ofNullable(batchResult.getConsumedCapacity()).ifPresent(consumedCapacity::addAll);
+                pendingItems = batchResult.getUnprocessedItems();
+                if (pendingItems == null || pendingItems.isEmpty() || attempt == MAX_BATCH_WRITE_ITEM_RETRIES) {
+                    break;
+                }
+                interrupted = !sleepBeforeRetry(attempt);
+            }
+
+            // map items that remain unprocessed
+            if (pendingItems != null) {
+                pendingItems.forEach((physicalTableName, writeRequests) -> {
+                    Map<Map<String, AttributeValue>, TableMapping> tableMappings =
+                        tableMappingsByPhysicalKey.get(physicalTableName);
+                    for (WriteRequest writeRequest : writeRequests) {
+                        WriteRequest virtualWriteRequest;
+                        TableMapping tableMapping;
+                        if (writeRequest.getPutRequest() != null) {
+                            Map<String, AttributeValue> physicalItem = writeRequest.getPutRequest().getItem();
+                            tableMapping = tableMappings.get(getKeyFromItem(physicalItem,
+                                getPhysicalPrimaryKey(tableMappings)));
+                            virtualWriteRequest = new WriteRequest(
+                                new PutRequest(tableMapping.getItemMapper().reverse(physicalItem)));
+                        } else {
+                            Map<String, AttributeValue> physicalKey = writeRequest.getDeleteRequest().getKey();
+                            tableMapping = tableMappings.get(physicalKey);
+                            virtualWriteRequest = new WriteRequest(
+                                new DeleteRequest(tableMapping.getItemMapper().reverse(physicalKey)));
+                        }
+                        unprocessedItems.computeIfAbsent(tableMapping.getVirtualTable().getTableName(),
+                            virtualTableName -> new ArrayList<>()).add(virtualWriteRequest);
+                    }
+                });
+            }
+        }
+
+        return new BatchWriteItemResult()
+            .withUnprocessedItems(unprocessedItems)
+            .withConsumedCapacity(consumedCapacity.isEmpty() ? null : consumedCapacity);
+    }
+
+    private static PrimaryKey getPhysicalPrimaryKey(Map<Map<String, AttributeValue>, TableMapping> tableMappings) {
+        return tableMappings.values().iterator().next().getPhysicalTable().getPrimaryKey();
+    }
+
+    /*
+     * Sleeps for a random duration up to an exponentially growing bound (full jitter).  Returns false if interrupted.
+     */
+    private static boolean sleepBeforeRetry(int attempt) {
+        long maxBackoff = Math.min(BATCH_WRITE_ITEM_MAX_BACKOFF_MILLIS,
+            BATCH_WRITE_ITEM_BASE_BACKOFF_MILLIS << attempt);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(maxBackoff + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
     /**
      * TODO: write Javadoc.
      */
-    public DeleteItemResult deleteItem(DeleteItemRequest deleteItemRequest) {
+    public CreateTableResult createTable(CreateTableRequest createTableRequest) {
+        return new CreateTableResult().withTableDescription(mtTableDescriptionRepo.createTable(createTableRequest));
+    }
+
+    @Override
+    protected MappedRequest<DeleteItemRequest, DeleteItemResult> mapDeleteItem(DeleteItemRequest deleteItemRequest) {
         // map table name
         deleteItemRequest = deleteItemRequest.clone();
         TableMapping tableMapping = getTableMapping(deleteItemRequest.getTableName());
@@ -132,8 +458,16 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         // map key
         deleteItemRequest.setKey(tableMapping.getItemMapper().apply(deleteItemRequest.getKey()));
 
-        // delete
-        return getAmazonDynamoDb().deleteItem(deleteItemRequest);
+        // map conditionExpression and expected
+        tableMapping.getConditionMapper().apply(deleteItemRequest);
+
+        // map returned attributes
+        return MappedRequest.of(deleteItemRequest, deleteItemResult -> {
+            if (deleteItemResult.getAttributes() != null) {
+                deleteItemResult.setAttributes(tableMapping.getItemMapper().reverse(deleteItemResult.getAttributes()));
+            }
+            return deleteItemResult;
+        });
     }
 
     /**
@@ -156,10 +490,8 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
             mtTableDescriptionRepo.getTableDescription(describeTableRequest.getTableName()).withTableStatus("ACTIVE"));
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public GetItemResult getItem(GetItemRequest getItemRequest) {
+    @Override
+    protected MappedRequest<GetItemRequest, GetItemResult> mapGetItem(GetItemRequest getItemRequest) {
         // map table name
         getItemRequest = getItemRequest.clone();
         TableMapping tableMapping = getTableMapping(getItemRequest.getTableName());
@@ -169,12 +501,12 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         getItemRequest.setKey(tableMapping.getItemMapper().apply(getItemRequest.getKey()));
 
         // map result
-        GetItemResult getItemResult = getAmazonDynamoDb().getItem(getItemRequest);
-        if (getItemResult.getItem() != null) {
-            getItemResult.withItem(tableMapping.getItemMapper().reverse(getItemResult.getItem()));
-        }
-
-        return getItemResult;
+        return MappedRequest.of(getItemRequest, getItemResult -> {
+            if (getItemResult.getItem() != null) {
+                getItemResult.withItem(tableMapping.getItemMapper().reverse(getItemResult.getItem()));
+            }
+            return getItemResult;
+        });
     }
 
     private TableMapping getTableMapping(String virtualTableName) {
@@ -187,26 +519,30 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         }
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public PutItemResult putItem(PutItemRequest putItemRequest) {
+    @Override
+    protected MappedRequest<PutItemRequest, PutItemResult> mapPutItem(PutItemRequest putItemRequest) {
         // map table name
         putItemRequest = putItemRequest.clone();
         TableMapping tableMapping = getTableMapping(putItemRequest.getTableName());
         putItemRequest.withTableName(tableMapping.getPhysicalTable().getTableName());
 
         // map item
-        putItemRequest.setItem(tableMapping.getItemMapper().apply(putItemRequest.getItem()));
+        putItemRequest.setItem(tableMapping.getItemMapper().applyToItem(putItemRequest.getItem()));
 
-        // put
-        return getAmazonDynamoDb().putItem(putItemRequest);
+        // map conditionExpression and expected
+        tableMapping.getConditionMapper().apply(putItemRequest);
+
+        // map returned attributes
+        return MappedRequest.of(putItemRequest, putItemResult -> {
+            if (putItemResult.getAttributes() != null) {
+                putItemResult.setAttributes(tableMapping.getItemMapper().reverse(putItemResult.getAttributes()));
+            }
+            return putItemResult;
+        });
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public QueryResult query(QueryRequest queryRequest) {
+    @Override
+    protected MappedRequest<QueryRequest, QueryResult> mapQuery(QueryRequest queryRequest) {
         // map table name
         queryRequest = queryRequest.clone();
         TableMapping tableMapping = getTableMapping(queryRequest.getTableName());
@@ -216,20 +552,51 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         tableMapping.getQueryMapper().apply(queryRequest);
 
         // map result
-        QueryResult queryResult = getAmazonDynamoDb().query(queryRequest);
-        queryResult.setItems(
-            queryResult.getItems().stream().map(item -> tableMapping.getItemMapper().reverse(item)).collect(toList()));
+        return MappedRequest.of(queryRequest, queryResult -> {
+            queryResult.setItems(tableMapping.getItemMapper().reverseAll(queryResult.getItems()));
+            return queryResult;
+        });
+    }
 
-        return queryResult;
+    /**
+     * Maps the scan of the virtual table, optionally restricted to a single segment if Segment and TotalSegments are
+     * specified, to queries of the tenant partition index of the physical table, if it has one that supports the scan,
+     * rather than to scans of the whole physical table.  See scanTenantPartitions.
+     */
+    @Override
+    protected MappedScanQuery mapScanToQuery(ScanRequest scanRequest) {
+        TableMapping tableMapping = getTableMapping(scanRequest.getTableName());
+        Optional<TenantPartitionIndex> tenantPartitionIndex = tableMapping.getTenantPartitionIndex()
+            .filter(index -> index.supports(scanRequest));
+        if (!tenantPartitionIndex.isPresent()) {
+            return null;
+        }
+        PrimaryKey key = getScanKey(tableMapping, scanRequest);
+        return scanTenantPartitions(tableMapping, tenantPartitionIndex.get(),
+            mapScanRequest(tableMapping, key, scanRequest), key);
     }
 
     /**
-     * TODO: write Javadoc.
+     * Maps the scan of the virtual table, optionally restricted to a single segment if Segment and TotalSegments are
+     * specified, to scans of the physical table.  Since the LastEvaluatedKey returned is the virtual key of the last
+     * item returned, which maps back to a physical key within the same segment, paging through a segment never
+     * crosses into other segments.
      */
-    public ScanResult scan(ScanRequest scanRequest) {
+    @Override
+    protected MappedRequest<ScanRequest, ScanResult> mapScan(ScanRequest scanRequest) {
         TableMapping tableMapping = getTableMapping(scanRequest.getTableName());
-        PrimaryKey key = scanRequest.getIndexName() == null ? tableMapping.getVirtualTable().getPrimaryKey()
+        PrimaryKey key = getScanKey(tableMapping, scanRequest);
+        return mapPhysicalScan(tableMapping, key, mapScanRequest(tableMapping, key, scanRequest));
+    }
+
+    private static PrimaryKey getScanKey(TableMapping tableMapping, ScanRequest scanRequest) {
+        return scanRequest.getIndexName() == null ? tableMapping.getVirtualTable().getPrimaryKey()
             : tableMapping.getVirtualTable().findSi(scanRequest.getIndexName()).getPrimaryKey();
+    }
+
+    private ScanRequest mapScanRequest(TableMapping tableMapping, PrimaryKey key, ScanRequest scanRequest) {
+        Preconditions.checkArgument((scanRequest.getSegment() == null) == (scanRequest.getTotalSegments() == null),
+            "Segment and TotalSegments must be specified together");
 
         // Projection must include primary key, since we use it for paging.
         // (We could add key fields into projection and filter result in the future)
@@ -246,24 +613,161 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         clonedScanRequest.setExpressionAttributeValues(Optional.ofNullable(clonedScanRequest.getFilterExpression())
             .map(s -> new HashMap<>(clonedScanRequest.getExpressionAttributeValues())).orElseGet(HashMap::new));
         tableMapping.getQueryMapper().apply(clonedScanRequest);
+        return clonedScanRequest;
+    }
 
-        // scan until we find at least one record for current tenant or reach end
-        ScanResult scanResult;
-        while ((scanResult = getAmazonDynamoDb().scan(clonedScanRequest)).getItems().isEmpty()
-            && scanResult.getLastEvaluatedKey() != null) {
-            clonedScanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
-        }
-
+    private static MappedRequest<ScanRequest, ScanResult> mapPhysicalScan(TableMapping tableMapping,
+                                                                          PrimaryKey key,
+                                                                          ScanRequest physicalScanRequest) {
         // map result
-        List<Map<String, AttributeValue>> items = scanResult.getItems();
-        if (!items.isEmpty()) {
-            scanResult.setItems(items.stream().map(tableMapping.getItemMapper()::reverse).collect(toList()));
-            if (scanResult.getLastEvaluatedKey() != null) {
-                scanResult.setLastEvaluatedKey(getKeyFromItem(Iterables.getLast(scanResult.getItems()), key));
+        return MappedRequest.<ScanRequest, ScanResult>of(physicalScanRequest, scanResult -> {
+            List<Map<String, AttributeValue>> items = scanResult.getItems();
+            if (!items.isEmpty()) {
+                scanResult.setItems(tableMapping.getItemMapper().reverseAll(items));
+                if (scanResult.getLastEvaluatedKey() != null) {
+                    scanResult.setLastEvaluatedKey(getKeyFromItem(Iterables.getLast(scanResult.getItems()), key));
+                }
+            } // else: continuation ensures that getLastEvaluatedKey is null (no need to map)
+            return scanResult;
+        }).withContinuation(scanResult -> {
+            // scan until we find at least one record for current tenant or reach end
+            if (scanResult.getItems().isEmpty() && scanResult.getLastEvaluatedKey() != null) {
+                return physicalScanRequest.clone().withExclusiveStartKey(scanResult.getLastEvaluatedKey());
             }
-        } // else: while loop ensures that getLastEvaluatedKey is null (no need to map)
+            return null;
+        });
+    }
+
+    /*
+     * Queries the buckets of the tenant partition index that belong to the scan's segment in turn, starting from the
+     * bucket of the exclusive start key, if any, until at least one item is found or all buckets are exhausted.  The
+     * scanned count and consumed capacity of the scan add up those of all queries.
+     */
+    private static MappedScanQuery scanTenantPartitions(TableMapping tableMapping,
+                                                        TenantPartitionIndex index,
+                                                        ScanRequest physicalScanRequest,
+                                                        PrimaryKey virtualKey) {
+        int totalSegments = Optional.ofNullable(physicalScanRequest.getTotalSegments()).orElse(1);
+        // the state of the scan, which continuations are applied to in turn
+        int[] bucket = {index.getFirstBucket(physicalScanRequest)};
+        int[] scannedCount = {0};
+        ConsumedCapacity[] consumedCapacity = {null};
+        return MappedScanQuery.of(
+            index.toQueryRequest(physicalScanRequest, bucket[0], physicalScanRequest.getExclusiveStartKey()),
+            queryResult -> {
+                if (queryResult.getItems().isEmpty()) {
+                    return new ScanResult().withItems(new ArrayList<>()).withCount(0).withScannedCount(scannedCount[0])
+                        .withConsumedCapacity(consumedCapacity[0]);
+                }
+                List<Map<String, AttributeValue>> items = tableMapping.getItemMapper()
+                    .reverseAll(queryResult.getItems());
+                boolean hasMore = queryResult.getLastEvaluatedKey() != null
+                    || bucket[0] + totalSegments < index.getBuckets();
+                return new ScanResult()
+                    .withItems(items)
+                    .withCount(items.size())
+                    .withScannedCount(scannedCount[0])
+                    .withConsumedCapacity(consumedCapacity[0])
+                    .withLastEvaluatedKey(hasMore ? getKeyFromItem(Iterables.getLast(items), virtualKey) : null);
+            }).withContinuation(queryResult -> {
+                scannedCount[0] += queryResult.getScannedCount();
+                consumedCapacity[0] = addConsumedCapacity(consumedCapacity[0], queryResult.getConsumedCapacity());
+                if (!queryResult.getItems().isEmpty()) {
+                    return null;
+                }
+                if (queryResult.getLastEvaluatedKey() != null) {
+                    return index.toQueryRequest(physicalScanRequest, bucket[0], null)
+                        .withExclusiveStartKey(queryResult.getLastEvaluatedKey());
+                }
+                bucket[0] += totalSegments;
+                return bucket[0] < index.getBuckets() ? index.toQueryRequest(physicalScanRequest, bucket[0], null)
+                    : null;
+            });
+    }
+
+    /*
+     * Adds up the consumed capacity of two requests against the same table, either of which may be null.
+     */
+    private static ConsumedCapacity addConsumedCapacity(ConsumedCapacity total, ConsumedCapacity consumedCapacity) {
+        if (total == null || consumedCapacity == null) {
+            return total == null ? consumedCapacity : total;
+        }
+        Map<String, Capacity> globalSecondaryIndexes = addCapacities(total.getGlobalSecondaryIndexes(),
+            consumedCapacity.getGlobalSecondaryIndexes());
+        Map<String, Capacity> localSecondaryIndexes = addCapacities(total.getLocalSecondaryIndexes(),
+            consumedCapacity.getLocalSecondaryIndexes());
+        return new ConsumedCapacity()
+            .withTableName(total.getTableName())
+            .withCapacityUnits(addUnits(total.getCapacityUnits(), consumedCapacity.getCapacityUnits()))
+            .withTable(addCapacity(total.getTable(), consumedCapacity.getTable()))
+            .withGlobalSecondaryIndexes(globalSecondaryIndexes)
+            .withLocalSecondaryIndexes(localSecondaryIndexes);
+    }
+
+    private static Map<String, Capacity> addCapacities(Map<String, Capacity> total, Map<String, Capacity> capacities) {
+        if (total == null || capacities == null) {
+            return total == null ? capacities : total;
+        }
+        Map<String, Capacity> sum = new HashMap<>(total);
+        capacities.forEach((indexName, capacity) -> sum.merge(indexName, capacity,
+            MtAmazonDynamoDbBySharedTable::addCapacity));
+        return sum;
+    }
+
+    private static Capacity addCapacity(Capacity total, Capacity capacity) {
+        if (total == null || capacity == null) {
+            return total == null ? capacity : total;
+        }
+        return new Capacity().withCapacityUnits(addUnits(total.getCapacityUnits(), capacity.getCapacityUnits()));
+    }
+
+    private static Double addUnits(Double total, Double units) {
+        return total == null || units == null ? (total == null ? units : total) : total + units;
+    }
+
+    /**
+     * Scans the virtual table using totalSegments segments that are processed in parallel on the common ForkJoinPool.
+     * See parallelScan(ScanRequest, int, Consumer, Executor).
+     */
+    public void parallelScan(ScanRequest scanRequest, int totalSegments,
+                             Consumer<List<Map<String, AttributeValue>>> consumer) {
+        parallelScan(scanRequest, totalSegments, consumer, ForkJoinPool.commonPool());
+    }
 
-        return scanResult;
+    /**
+     * Scans the virtual table using totalSegments segments that are processed in parallel on the given executor.  Each
+     * segment is paged through until its end and each non-empty page of virtual items is passed to the consumer.  The
+     * consumer is invoked concurrently from multiple threads, so it must be thread-safe.  The multi-tenant context of
+     * the calling thread is propagated to the threads scanning the segments.  Returns once all segments are scanned.
+     */
+    public void parallelScan(ScanRequest scanRequest, int totalSegments,
+                             Consumer<List<Map<String, AttributeValue>>> consumer, Executor executor) {
+        Preconditions.checkArgument(totalSegments > 0, "totalSegments must be positive");
+        Preconditions.checkArgument(scanRequest.getSegment() == null && scanRequest.getTotalSegments() == null,
+            "parallelScan determines Segment and TotalSegments itself");
+        MtAmazonDynamoDbContextProvider mtContext = getMtContext();
+        CompletableFuture<?>[] segments = IntStream.range(0, totalSegments)
+            .mapToObj(segment -> mtContext.runAsync(() ->
+                scanSegment(scanRequest.clone().withSegment(segment).withTotalSegments(totalSegments), consumer),
+                executor))
+            .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(segments).join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    private void scanSegment(ScanRequest segmentRequest, Consumer<List<Map<String, AttributeValue>>> consumer) {
+        ScanResult scanResult;
+        do {
+            scanResult = scan(segmentRequest);
+            if (!scanResult.getItems().isEmpty()) {
+                consumer.accept(scanResult.getItems());
+            }
+            segmentRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        } while (scanResult.getLastEvaluatedKey() != null);
     }
 
     private boolean projectionContainsKey(ScanRequest request, PrimaryKey key) {
@@ -284,25 +788,16 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
 
     private boolean projectionContainsKey(String projection, Map<String, String> expressionNames,
                                           List<String> legacyProjection, String key) {
-        if (projection != null) {
-            // TODO we should probably parse expressions or use more sophisticated matching
-            if (expressionNames != null) {
-                String name = expressionNames.get(key);
-                if (name != null && projection.contains(name)) {
-                    return true;
-                }
-            }
-            if (projection.contains(key)) {
-                return true;
-            }
+        if (projection != null && ExpressionParser.parseProjection(projection).getPaths().stream()
+            .filter(PathNode::isAttribute)
+            .anyMatch(path -> key.equals(path.getAttributeName(expressionNames)))) {
+            return true;
         }
         return legacyProjection != null && legacyProjection.contains(key);
     }
 
-    /**
-     * TODO: write Javadoc.
-     */
-    public UpdateItemResult updateItem(UpdateItemRequest updateItemRequest) {
+    @Override
+    protected MappedRequest<UpdateItemRequest, UpdateItemResult> mapUpdateItem(UpdateItemRequest updateItemRequest) {
         // map table name
         updateItemRequest = updateItemRequest.clone();
         TableMapping tableMapping = getTableMapping(updateItemRequest.getTableName());
@@ -311,12 +806,42 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
         // map key
         updateItemRequest.setKey(tableMapping.getItemMapper().apply(updateItemRequest.getKey()));
 
-        // map attributeUpdates // TODO msgroi todo
+        // map updateExpression, attributeUpdates, conditionExpression, and expected
+        tableMapping.getUpdateMapper().apply(updateItemRequest);
+
+        // tag item with its tenant partition
+        UpdateItemRequest physicalUpdateItemRequest = updateItemRequest;
+        tableMapping.getTenantPartitionIndex().ifPresent(index -> index.addPartition(physicalUpdateItemRequest));
 
-        // map updateCondition // TODO msgroi todo
+        // map returned attributes
+        return MappedRequest.of(updateItemRequest, updateItemResult -> {
+            if (updateItemResult.getAttributes() != null) {
+                updateItemResult.setAttributes(tableMapping.getItemMapper().reverse(updateItemResult.getAttributes()));
+            }
+            return updateItemResult;
+        });
+    }
 
-        // update
-        return getAmazonDynamoDb().updateItem(updateItemRequest);
+    /**
+     * Invalidates the cached mapping of the given virtual table of the given tenant, e.g., when the table was deleted
+     * or recreated through another node.
+     */
+    @Override
+    public void invalidate(String context, String virtualTableName) {
+        tableMappingCache.invalidate(context, virtualTableName);
+    }
+
+    @Override
+    public void invalidateAll() {
+        tableMappingCache.invalidateAll();
+    }
+
+    /**
+     * Returns the stats of the table mapping cache, which are only recorded if its CacheBuilder was configured with
+     * recordStats.
+     */
+    public CacheStats getTableMappingCacheStats() {
+        return tableMappingCache.stats();
     }
 
     @Override
@@ -325,7 +850,7 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
     }
 
     @Override
-    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory) {
+    public List<MtStreamDescription> listStreams(IRecordProcessorFactory factory, MtRecordFilter filter) {
         return tableMappingCache.asMap().values().stream()
             .map(TableMapping::getPhysicalTable)
             .filter(physicalTable -> Optional.ofNullable(physicalTable.getStreamSpecification())
@@ -333,20 +858,23 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
             .map(physicalTable -> new MtStreamDescription()
                 .withLabel(physicalTable.getTableName())
                 .withArn(physicalTable.getLastStreamArn())
-                .withRecordProcessorFactory(newAdapter(factory, physicalTable))).collect(toList());
+                .withRecordProcessorFactory(newAdapter(factory, filter, physicalTable))).collect(toList());
     }
 
-    private IRecordProcessorFactory newAdapter(IRecordProcessorFactory factory, DynamoTableDescription physicalTable) {
-        return () -> new RecordProcessor(factory.createProcessor(), physicalTable);
+    private IRecordProcessorFactory newAdapter(IRecordProcessorFactory factory, MtRecordFilter filter,
+                                               DynamoTableDescription physicalTable) {
+        return () -> new RecordProcessor(factory.createProcessor(), filter, physicalTable);
     }
 
     private class RecordProcessor implements IRecordProcessor {
 
         private final IRecordProcessor processor;
+        private final MtRecordFilter filter;
         private final DynamoTableDescription physicalTable;
 
-        RecordProcessor(IRecordProcessor processor, DynamoTableDescription physicalTable) {
+        RecordProcessor(IRecordProcessor processor, MtRecordFilter filter, DynamoTableDescription physicalTable) {
             this.processor = processor;
+            this.filter = filter;
             this.physicalTable = physicalTable;
         }
 
@@ -357,38 +885,12 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
 
         @Override
         public void processRecords(ProcessRecordsInput processRecordsInput) {
-            List<com.amazonaws.services.kinesis.model.Record> records = processRecordsInput.getRecords().stream()
-                .map(RecordAdapter.class::cast).map(this::toMtRecord).collect(toList());
-            processor.processRecords(processRecordsInput.withRecords(records));
-        }
-
-        private com.amazonaws.services.kinesis.model.Record toMtRecord(RecordAdapter adapter) {
-            Record r = adapter.getInternalObject();
-            StreamRecord streamRecord = r.getDynamodb();
-            FieldValue fieldValue = new FieldPrefixFunction(".")
-                .reverse(streamRecord.getKeys().get(physicalTable.getPrimaryKey().getHashKey()).getS());
-            MtAmazonDynamoDbContextProvider mtContext = getMtContext();
-            TableMapping tableMapping;
-            try {
-                mtContext.setContext(fieldValue.getMtContext());
-                tableMapping = getTableMapping(
-                    fieldValue.getTableIndex()); // getting a table mapping requires tenant context
-            } finally {
-                mtContext.setContext(null);
-            }
-            ItemMapper itemMapper = tableMapping.getItemMapper();
-            streamRecord.setKeys(itemMapper.reverse(streamRecord.getKeys()));
-            streamRecord.setOldImage(itemMapper.reverse(streamRecord.getOldImage()));
-            streamRecord.setNewImage(itemMapper.reverse(streamRecord.getNewImage()));
-            return new RecordAdapter(new MtRecord()
-                .withAwsRegion(r.getAwsRegion())
-                .withDynamodb(streamRecord)
-                .withEventID(r.getEventID())
-                .withEventName(r.getEventName())
-                .withEventSource(r.getEventSource())
-                .withEventVersion(r.getEventVersion())
-                .withContext(fieldValue.getMtContext())
-                .withTableName(fieldValue.getTableIndex()));
+            List<Record> records = processRecordsInput.getRecords().stream()
+                .map(record -> ((RecordAdapter) record).getInternalObject()).collect(toList());
+            List<com.amazonaws.services.kinesis.model.Record> mtRecords = toMtRecords(records,
+                physicalTable.getPrimaryKey().getHashKey(), filter).stream().map(RecordAdapter::new)
+                .collect(toList());
+            processor.processRecords(processRecordsInput.withRecords(mtRecords));
         }
 
         @Override
@@ -398,6 +900,86 @@ public class MtAmazonDynamoDbBySharedTable extends MtAmazonDynamoDbBase {
 
     }
 
+    /*
+     * Maps the given records of the stream of a physical table with the given hash key to records of the virtual tables
+     * they belong to, in the same order.  The records are grouped by tenant and virtual table first, so that the table
+     * mapping of each group is looked up once, within its tenant's context, and the keys and images of each group are
+     * reverse-mapped in bulk.  The given records are left as is.
+     */
+    List<MtRecord> toMtRecords(List<Record> records, String physicalHashKey) {
+        return toMtRecords(records, physicalHashKey, MtRecordFilter.all());
+    }
+
+    /*
+     * Like toMtRecords(records, physicalHashKey), but drops records the given filter rejects.  Event type, tenant, and
+     * table are tested as soon as they are decoded, so that dropped records are never reverse-mapped.
+     */
+    List<MtRecord> toMtRecords(List<Record> records, String physicalHashKey, MtRecordFilter filter) {
+        Map<String, Map<String, List<Integer>>> recordsByTableByContext = new HashMap<>();
+        int accepted = 0;
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            if (!filter.testEventName(record.getEventName())) {
+                continue;
+            }
+            FieldValue fieldValue = streamFieldPrefixFunction
+                .reverse(record.getDynamodb().getKeys().get(physicalHashKey).getS());
+            if (!filter.testTenant(fieldValue.getMtContext()) || !filter.testTable(fieldValue.getTableIndex())) {
+                continue;
+            }
+            recordsByTableByContext.computeIfAbsent(fieldValue.getMtContext(), context -> new HashMap<>())
+                .computeIfAbsent(fieldValue.getTableIndex(), tableIndex -> new ArrayList<>())
+                .add(i);
+            accepted++;
+        }
+        MtRecord[] mtRecords = new MtRecord[records.size()];
+        recordsByTableByContext.forEach((context, recordsByTable) -> recordsByTable.forEach((tableIndex, indexes) -> {
+            // getting a table mapping requires tenant context
+            ItemMapper itemMapper = getMtContext().withContext(context, () -> getTableMapping(tableIndex))
+                .getItemMapper();
+            List<Map<String, AttributeValue>> keys = new ArrayList<>(indexes.size());
+            List<Map<String, AttributeValue>> oldImages = new ArrayList<>(indexes.size());
+            List<Map<String, AttributeValue>> newImages = new ArrayList<>(indexes.size());
+            for (int index : indexes) {
+                StreamRecord streamRecord = records.get(index).getDynamodb();
+                keys.add(streamRecord.getKeys());
+                oldImages.add(streamRecord.getOldImage());
+                newImages.add(streamRecord.getNewImage());
+            }
+            keys = itemMapper.reverseAll(keys);
+            oldImages = itemMapper.reverseAll(oldImages);
+            newImages = itemMapper.reverseAll(newImages);
+            for (int i = 0; i < indexes.size(); i++) {
+                Record record = records.get(indexes.get(i));
+                mtRecords[indexes.get(i)] = new MtRecord()
+                    .withAwsRegion(record.getAwsRegion())
+                    .withDynamodb(record.getDynamodb().clone()
+                        .withKeys(keys.get(i))
+                        .withOldImage(oldImages.get(i))
+                        .withNewImage(newImages.get(i)))
+                    .withEventID(record.getEventID())
+                    .withEventName(record.getEventName())
+                    .withEventSource(record.getEventSource())
+                    .withEventVersion(record.getEventVersion())
+                    .withContext(context)
+                    .withTableName(tableIndex);
+            }
+        }));
+        return accepted == mtRecords.length
+            ? Arrays.asList(mtRecords)
+            : Arrays.stream(mtRecords).filter(Objects::nonNull).collect(toList());
+    }
+
+    /*
+     * Returns a predicate that tests whether a record of the stream of a physical table with the given hash key belongs
+     * to the current tenant.
+     */
+    Predicate<Record> isOfCurrentTenant(String physicalHashKey) {
+        String context = getMtContext().getContext();
+        return record -> streamFieldPrefixFunction.hasContext(
+            record.getDynamodb().getKeys().get(physicalHashKey).getS(), context);
+    }
+
     private DeleteTableResult deleteTableInternal(DeleteTableRequest deleteTableRequest) {
         String tableDesc = "table=" + deleteTableRequest.getTableName() + " " + (deleteTableAsync ? "asynchronously"
             : "synchronously");
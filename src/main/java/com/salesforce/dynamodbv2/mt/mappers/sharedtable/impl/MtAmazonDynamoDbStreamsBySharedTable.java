@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.ListStreamsRequest;
+import com.amazonaws.services.dynamodbv2.model.ListStreamsResult;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDbStreamsBase;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Streams client for shared tables.  The streams are those of the physical tables, but getRecords returns only the
+ * records of the current tenant, mapped to the virtual tables they belong to, see MtRecord.
+ *
+ * <p>Since all tenants read the same physical shards, the pages returned by the physical GetRecords calls are kept in a
+ * bounded cache, keyed by their position in the shard rather than by shard iterator, so that tenants reading the same
+ * shard cost one physical call per page rather than one per tenant.  To that end, the shard iterators this client
+ * returns encode the shard position they point to.  Tenants that start reading a shard at TRIM_HORIZON move through it
+ * in the same pages and share them, whereas tenants that start at other positions generally page differently.  Pages
+ * past the records of a shard are immutable, but empty pages at the end of an open shard are only reused for a short
+ * time, after which new records are polled for again.
+ */
+public class MtAmazonDynamoDbStreamsBySharedTable extends MtAmazonDynamoDbStreamsBase {
+
+    private static final long DEFAULT_MAXIMUM_CACHED_PAGES = 100L;
+    private static final long DEFAULT_EMPTY_PAGE_TTL_MILLIS = 1000L;
+
+    private final MtAmazonDynamoDbBySharedTable mtDynamoDb;
+    private final Cache<ShardPosition, ShardPage> pageCache;
+    private final long emptyPageTtlNanos;
+    private final Map<String, String> physicalHashKeys = new ConcurrentHashMap<>();
+
+    public MtAmazonDynamoDbStreamsBySharedTable(AmazonDynamoDBStreams dynamoDbStreams,
+                                                MtAmazonDynamoDbBySharedTable mtDynamoDb) {
+        this(dynamoDbStreams, mtDynamoDb, DEFAULT_MAXIMUM_CACHED_PAGES, DEFAULT_EMPTY_PAGE_TTL_MILLIS);
+    }
+
+    /**
+     * Creates an instance that caches up to maximumCachedPages physical pages, of up to 1000 records each, and reuses
+     * empty pages at the end of open shards for up to emptyPageTtlMillis milliseconds.
+     */
+    public MtAmazonDynamoDbStreamsBySharedTable(AmazonDynamoDBStreams dynamoDbStreams,
+                                                MtAmazonDynamoDbBySharedTable mtDynamoDb,
+                                                long maximumCachedPages,
+                                                long emptyPageTtlMillis) {
+        super(dynamoDbStreams);
+        this.mtDynamoDb = mtDynamoDb;
+        this.pageCache = CacheBuilder.newBuilder().maximumSize(maximumCachedPages).build();
+        this.emptyPageTtlNanos = TimeUnit.MILLISECONDS.toNanos(emptyPageTtlMillis);
+    }
+
+    @Override
+    public ListStreamsResult listStreams(ListStreamsRequest request) {
+        return getAmazonDynamoDbStreams().listStreams(request);
+    }
+
+    /**
+     * Returns a shard iterator that encodes the requested shard position.  Only LATEST is resolved to a physical shard
+     * iterator right away, since its position depends on when it is requested.
+     */
+    @Override
+    public GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+        ShardPosition position = new ShardPosition(request.getStreamArn(), request.getShardId(),
+            request.getShardIteratorType(), request.getSequenceNumber());
+        String physicalIterator = position.isCacheable() ? null
+            : getAmazonDynamoDbStreams().getShardIterator(request).getShardIterator();
+        return new GetShardIteratorResult().withShardIterator(new ShardIterator(position, physicalIterator).toString());
+    }
+
+    /**
+     * Returns the records of the current tenant in the physical page at the given shard iterator.  If a Limit is
+     * specified, it caps the number of records returned rather than the number of physical records read.
+     */
+    @Override
+    public GetRecordsResult getRecords(GetRecordsRequest request) {
+        ShardIterator iterator = ShardIterator.fromString(request.getShardIterator());
+        ShardPosition position = iterator.getPosition();
+        ShardPage page = getPage(iterator);
+        String physicalHashKey = getPhysicalHashKey(position.getStreamArn());
+        Integer limit = request.getLimit();
+
+        Predicate<Record> isOfCurrentTenant = mtDynamoDb.isOfCurrentTenant(physicalHashKey);
+        List<Record> tenantRecords = new ArrayList<>();
+        List<Record> records = page.getRecords();
+        int i = 0;
+        for (; i < records.size() && (limit == null || tenantRecords.size() < limit); i++) {
+            if (isOfCurrentTenant.test(records.get(i))) {
+                tenantRecords.add(records.get(i));
+            }
+        }
+
+        ShardIterator nextIterator;
+        if (i < records.size()) {
+            // limit reached within page: continue after the last record read
+            nextIterator = new ShardIterator(position.after(records.get(i - 1)), null);
+        } else if (page.getNextPhysicalIterator() == null) {
+            // shard closed
+            nextIterator = null;
+        } else if (records.isEmpty()) {
+            nextIterator = new ShardIterator(position, page.getNextPhysicalIterator());
+        } else {
+            nextIterator = new ShardIterator(position.after(records.get(records.size() - 1)),
+                page.getNextPhysicalIterator());
+        }
+        return new GetRecordsResult()
+            .withRecords(new ArrayList<>(mtDynamoDb.toMtRecords(tenantRecords, physicalHashKey)))
+            .withNextShardIterator(nextIterator == null ? null : nextIterator.toString());
+    }
+
+    private ShardPage getPage(ShardIterator iterator) {
+        ShardPosition position = iterator.getPosition();
+        if (!position.isCacheable()) {
+            return loadPage(iterator);
+        }
+        ShardPage cachedPage = pageCache.getIfPresent(position);
+        if (cachedPage != null && cachedPage.isStale(emptyPageTtlNanos)) {
+            pageCache.asMap().remove(position, cachedPage);
+        }
+        try {
+            // concurrent readers of the same position wait for the first one to load the page
+            return pageCache.get(position, () -> loadPage(iterator));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException("exception loading stream page at " + position, e.getCause());
+        }
+    }
+
+    private ShardPage loadPage(ShardIterator iterator) {
+        String physicalIterator = iterator.getPhysicalIterator() != null ? iterator.getPhysicalIterator()
+            : getAmazonDynamoDbStreams().getShardIterator(iterator.getPosition().toShardIteratorRequest())
+                .getShardIterator();
+        GetRecordsResult result = getAmazonDynamoDbStreams()
+            .getRecords(new GetRecordsRequest().withShardIterator(physicalIterator));
+        return new ShardPage(result.getRecords(), result.getNextShardIterator(), System.nanoTime());
+    }
+
+    /*
+     * Looks up the hash key of the physical table of the given stream, which holds the tenant and virtual table that
+     * each record belongs to.
+     */
+    private String getPhysicalHashKey(String streamArn) {
+        return physicalHashKeys.computeIfAbsent(streamArn, arn -> new DynamoTableDescriptionImpl(
+            mtDynamoDb.getAmazonDynamoDb().describeTable(getTableName(arn)).getTable()).getPrimaryKey().getHashKey());
+    }
+
+    /*
+     * Returns the table name of the given stream ARN, e.g., arn:aws:dynamodb:region:account:table/name/stream/label.
+     */
+    static String getTableName(String streamArn) {
+        String[] parts = streamArn.split("/");
+        checkArgument(parts.length >= 2, "invalid stream arn %s", streamArn);
+        return parts[1];
+    }
+
+    /*
+     * A position in a shard, i.e., a shard iterator request.
+     */
+    static class ShardPosition {
+
+        private final String streamArn;
+        private final String shardId;
+        private final String iteratorType;
+        private final String sequenceNumber;
+
+        ShardPosition(String streamArn, String shardId, String iteratorType, String sequenceNumber) {
+            this.streamArn = streamArn;
+            this.shardId = shardId;
+            this.iteratorType = iteratorType;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        String getStreamArn() {
+            return streamArn;
+        }
+
+        /*
+         * LATEST positions move as records are added, so the pages read from them cannot be shared.
+         */
+        boolean isCacheable() {
+            return !ShardIteratorType.LATEST.toString().equals(iteratorType);
+        }
+
+        ShardPosition after(Record record) {
+            return new ShardPosition(streamArn, shardId, ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(),
+                record.getDynamodb().getSequenceNumber());
+        }
+
+        GetShardIteratorRequest toShardIteratorRequest() {
+            return new GetShardIteratorRequest()
+                .withStreamArn(streamArn)
+                .withShardId(shardId)
+                .withShardIteratorType(iteratorType)
+                .withSequenceNumber(sequenceNumber);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ShardPosition that = (ShardPosition) o;
+            return Objects.equals(streamArn, that.streamArn)
+                && Objects.equals(shardId, that.shardId)
+                && Objects.equals(iteratorType, that.iteratorType)
+                && Objects.equals(sequenceNumber, that.sequenceNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(streamArn, shardId, iteratorType, sequenceNumber);
+        }
+
+        @Override
+        public String toString() {
+            return streamArn + '|' + shardId + '|' + iteratorType + '|'
+                + (sequenceNumber == null ? "" : sequenceNumber);
+        }
+
+    }
+
+    /*
+     * A shard iterator of this client: the position it points to and, if known, a physical shard iterator at that
+     * position.  Physical shard iterators contain '|' themselves, so the physical iterator comes last.
+     */
+    static class ShardIterator {
+
+        private static final int PARTS = 5;
+
+        private final ShardPosition position;
+        private final String physicalIterator;
+
+        ShardIterator(ShardPosition position, String physicalIterator) {
+            this.position = position;
+            this.physicalIterator = physicalIterator;
+        }
+
+        static ShardIterator fromString(String iterator) {
+            String[] parts = iterator.split("\\|", PARTS);
+            checkArgument(parts.length == PARTS, "invalid shard iterator %s", iterator);
+            return new ShardIterator(new ShardPosition(parts[0], parts[1], parts[2],
+                parts[3].isEmpty() ? null : parts[3]), parts[4].isEmpty() ? null : parts[4]);
+        }
+
+        ShardPosition getPosition() {
+            return position;
+        }
+
+        String getPhysicalIterator() {
+            return physicalIterator;
+        }
+
+        @Override
+        public String toString() {
+            return position.toString() + '|' + (physicalIterator == null ? "" : physicalIterator);
+        }
+
+    }
+
+    /*
+     * A page of physical records along with the physical shard iterator for the next page, which is null if the shard
+     * is closed and all of its records have been read.
+     */
+    private static class ShardPage {
+
+        private final List<Record> records;
+        private final String nextPhysicalIterator;
+        private final long loadedAtNanos;
+
+        ShardPage(List<Record> records, String nextPhysicalIterator, long loadedAtNanos) {
+            this.records = records;
+            this.nextPhysicalIterator = nextPhysicalIterator;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+
+        List<Record> getRecords() {
+            return records;
+        }
+
+        String getNextPhysicalIterator() {
+            return nextPhysicalIterator;
+        }
+
+        /*
+         * Empty pages of open shards become stale, since records may have been added to the shard since.
+         */
+        boolean isStale(long emptyPageTtlNanos) {
+            return records.isEmpty() && nextPhysicalIterator != null
+                && System.nanoTime() - loadedAtNanos > emptyPageTtlNanos;
+        }
+
+    }
+
+}
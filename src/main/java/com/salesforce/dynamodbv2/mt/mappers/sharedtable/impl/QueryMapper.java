@@ -7,7 +7,6 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
-import static com.amazonaws.services.dynamodbv2.model.ComparisonOperator.EQ;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -16,21 +15,34 @@ import static org.apache.commons.lang3.StringUtils.isEmpty;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
-import com.google.common.base.Predicate;
-import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionMapper.RequestExpressions;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionMapper.ValueMapping;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.AndNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ComparisonNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ExpressionType;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.Node;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.OrNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ParenNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.PathNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ValueNode;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -38,15 +50,37 @@ import java.util.stream.Collectors;
  * Maps query and scan requests against virtual tables to their physical table counterpart according to the provided
  * TableMapping, delegating field mapping to the provided FieldMapper.
  *
+ * Expressions are parsed by ExpressionParser and mapped by ExpressionMapper, so that field references and the values
+ * they are compared with are found for any comparator, BETWEEN, IN, and begins_with, and rewritten in place.  Legacy
+ * key conditions and scan filters are first converted to equivalent expressions.
+ *
+ * Rewriting expressions and attribute names only depends on the shape of a request, i.e., its index name, expressions,
+ * expression attribute names, and the attribute names and operators of legacy conditions, but not on the values or
+ * the tenant context.  Therefore, the rewrite is compiled into a QueryPlan once per shape and cached, leaving only the
+ * mapping of values to be done for each request.
+ *
  * @author msgroi
  */
 class QueryMapper {
 
     private static final String NAME_PLACEHOLDER = "#___name___";
     private static final String VALUE_PLACEHOLDER = ":___value___";
+    private static final int MAX_CACHED_PLANS = 1024;
+    private static final Map<ComparisonOperator, String> COMPARATORS = ImmutableMap
+        .<ComparisonOperator, String>builder()
+        .put(ComparisonOperator.EQ, "=")
+        .put(ComparisonOperator.NE, "<>")
+        .put(ComparisonOperator.LE, "<=")
+        .put(ComparisonOperator.LT, "<")
+        .put(ComparisonOperator.GE, ">=")
+        .put(ComparisonOperator.GT, ">")
+        .build();
 
     private final FieldMapper fieldMapper;
     private final TableMapping tableMapping;
+    private final Cache<List<Object>, QueryPlan> planCache = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_PLANS)
+        .build();
 
     QueryMapper(TableMapping tableMapping, FieldMapper fieldMapper) {
         this.fieldMapper = fieldMapper;
@@ -72,120 +106,124 @@ class QueryMapper {
     }
 
     private void apply(RequestWrapper request) {
-        convertLegacyExpression(request);
-        applyKeyCondition(request);
+        getPlan(request).apply(request, fieldMapper);
         applyExclusiveStartKey(request);
     }
 
-    private void applyKeyCondition(RequestWrapper request) {
+    /*
+     * Returns the cached plan for the shape of the request, compiling it if there is none.  The lookup key references
+     * the request's mutable attribute names, so a copy is stored in the cache instead.
+     */
+    private QueryPlan getPlan(RequestWrapper request) {
+        QueryPlan plan = planCache.getIfPresent(getPlanKey(request, request.getExpressionAttributeNames()));
+        if (plan == null) {
+            Map<String, String> names = request.getExpressionAttributeNames();
+            plan = compile(request);
+            planCache.put(getPlanKey(request, names == null ? null : new HashMap<>(names)), plan);
+        }
+        return plan;
+    }
+
+    private static List<Object> getPlanKey(RequestWrapper request, Map<String, String> expressionAttributeNames) {
+        Map<String, Condition> legacyExpression = request.getLegacyExpression();
+        List<Object> legacyShape = null;
+        if (legacyExpression != null && !legacyExpression.isEmpty()) {
+            legacyShape = new ArrayList<>(legacyExpression.size() * 3 + 1);
+            legacyShape.add(request.getLegacyConditionalOperator());
+            for (Entry<String, Condition> condition : legacyExpression.entrySet()) {
+                legacyShape.add(condition.getKey());
+                legacyShape.add(condition.getValue().getComparisonOperator());
+                legacyShape.add(condition.getValue().getAttributeValueList() == null
+                    ? 0 : condition.getValue().getAttributeValueList().size());
+            }
+        }
+        return Arrays.asList(request.getIndexName(),
+            request.getPrimaryExpression(),
+            request.getFilterExpression(),
+            expressionAttributeNames,
+            legacyShape);
+    }
+
+    /*
+     * Compiles the rewrite of the request into a plan by applying it to a template that holds the request's shape but
+     * records value mappings rather than applying them.
+     */
+    private QueryPlan compile(RequestWrapper request) {
+        PlanBuilder plan = new PlanBuilder(request);
+        convertLegacyExpression(plan, request.getLegacyExpression(), request.getLegacyConditionalOperator());
+        applyKeyCondition(plan);
+        return plan.build();
+    }
+
+    private void applyKeyCondition(PlanBuilder request) {
         String virtualHashKey;
-        Collection<FieldMapping> fieldMappings;
+        Map<String, List<FieldMapping>> fieldMappings;
 
         if (request.getIndexName() == null) {
-            // query or scan does NOT use index
+            // query or scan does NOT use index; where a virtual field maps to more than one physical field, conditions
+            // use the first one, since it doesn't matter which field we use, the results should be the same
             virtualHashKey = tableMapping.getVirtualTable().getPrimaryKey().getHashKey();
-            Map<String, List<FieldMapping>> fieldMappingDeduped = tableMapping.getAllVirtualToPhysicalFieldMappings();
-            fieldMappings = dedupeFieldMappings(fieldMappingDeduped).values();
+            fieldMappings = tableMapping.getAllVirtualToPhysicalFieldMappings();
         } else {
             // query uses index
             DynamoSecondaryIndex virtualSecondaryIndex = tableMapping.getVirtualTable().findSi(request.getIndexName());
-            fieldMappings = tableMapping.getIndexPrimaryKeyFieldMappings(virtualSecondaryIndex);
-            request.setIndexName(((List<FieldMapping>) fieldMappings).get(0).getPhysicalIndexName());
+            List<FieldMapping> indexFieldMappings = tableMapping.getIndexPrimaryKeyFieldMappings(virtualSecondaryIndex);
+            request.setIndexName(indexFieldMappings.get(0).getPhysicalIndexName());
             virtualHashKey = virtualSecondaryIndex.getPrimaryKey().getHashKey();
+            fieldMappings = indexFieldMappings.stream().collect(Collectors.groupingBy(
+                fieldMapping -> fieldMapping.getSource().getName()));
         }
 
-        convertFieldNameLiteralsToExpressionNames(fieldMappings, request);
+        ExpressionMapper expressionMapper = new ExpressionMapper(fieldMappings);
+        RequestExpressions expressions = new RequestExpressions(request.getExpressionAttributeNames(),
+            new String[] {request.getPrimaryExpression(), request.getFilterExpression()},
+            new ExpressionType[] {ExpressionType.CONDITION, ExpressionType.CONDITION});
+        expressionMapper.convertFieldNameLiteralsToExpressionNames(expressions);
+
+        boolean containsHashKeyCondition = queryContainsHashKeyCondition(expressions.getExpression(0),
+            expressions.getNames(), virtualHashKey);
 
-        if (!queryContainsHashKeyCondition(request, virtualHashKey)) {
+        // map each field to its target name and apply field prefixing as appropriate
+        expressionMapper.mapFields(expressions);
+        request.setPrimaryExpression(expressions.getExpression(0));
+        request.setFilterExpression(expressions.getExpression(1));
+        request.addValueMappings(expressions.getValueMappings());
+
+        if (!containsHashKeyCondition) {
             /*
-             * the expression does not contain the table or index key that's being used in the
-             * query, add begins_with clause
+             * the expression does not restrict the table or index key that's being used in the query to a single
+             * value, add begins_with clause
              */
-            String physicalHashKey = fieldMappings.stream().filter((Predicate<FieldMapping>) fieldMapping ->
-                fieldMapping.getSource().getName().equals(virtualHashKey)).findFirst()
-                .orElseThrow((Supplier<IllegalArgumentException>) () ->
-                    new IllegalArgumentException("field mapping not found hashkey field " + virtualHashKey)).getTarget()
-                .getName();
-            FieldMapping fieldMapping = fieldMappings.stream().filter((Predicate<FieldMapping>) fieldMapping1 ->
-                fieldMapping1.getSource().getName().equals(virtualHashKey)).findFirst()
-                .orElseThrow((Supplier<IllegalArgumentException>) () ->
-                    new IllegalArgumentException("field mapping not found hashkey field " + virtualHashKey));
-            addBeginsWith(request, physicalHashKey, fieldMapping);
+            List<FieldMapping> hashKeyFieldMappings = fieldMappings.get(virtualHashKey);
+            checkArgument(hashKeyFieldMappings != null && !hashKeyFieldMappings.isEmpty(),
+                "field mapping not found hashkey field %s", virtualHashKey);
+            FieldMapping fieldMapping = hashKeyFieldMappings.get(0);
+            addBeginsWith(request, fieldMapping.getTarget().getName(), fieldMapping);
         }
 
         checkNotNull(request.getPrimaryExpression(), "request expression is required");
-
-        // map each field to its target name and apply field prefixing as appropriate
-        fieldMappings.forEach(targetFieldMapping -> applyKeyConditionToField(request, targetFieldMapping));
     }
 
     /*
-     * This method takes a mapping of virtual to physical fields, where it is possible that a single given virtual
-     * field may map to more than one physical field, and returns a mapping where each virtual field maps to exactly
-     * one physical field.  In cases where there is more than one physical field for a given virtual field, it
-     * arbitrarily chooses the first mapping.
-     *
-     * This method is called for any query or scan request that does not specify an index.
-     *
-     * It is an effective no-op, meaning, there are no duplicates to remove, except when a scan is performed against
-     * a table that maps a given virtual field to multiple physical fields.  In that case, it doesn't matter which
-     * field we use in the query, the results should be the same, so we choose one of the physical fields arbitrarily.
+     * Appends a begins_with clause on the physical hash key that restricts the request to the items of the current
+     * tenant and virtual table.  Disjunctions are parenthesized, so that the clause cannot be bypassed by an OR.
      */
-    private Map<String, FieldMapping> dedupeFieldMappings(Map<String, List<FieldMapping>> fieldMappings) {
-        return fieldMappings.entrySet().stream().collect(Collectors.toMap(
-            Entry::getKey,
-            fieldMappingEntry -> fieldMappingEntry.getValue().get(0)
-        ));
-    }
-
-    private void addBeginsWith(RequestWrapper request, String hashKey, FieldMapping fieldMapping) {
-        /*
-         * TODO make sure it properly identifies that it doesn't need to add this ... make sure it's an equals
-         * condition and that the equals condition can't be hacked ... make sure you can't negate the begins_with
-         * by adding an OR condition
-         */
+    private void addBeginsWith(PlanBuilder request, String hashKey, FieldMapping fieldMapping) {
         FieldMapping fieldMappingForPrefix = new FieldMapping(new Field(null, S),
             null,
             fieldMapping.getVirtualIndexName(),
             fieldMapping.getPhysicalIndexName(),
             fieldMapping.getIndexType(),
             fieldMapping.isContextAware());
-        AttributeValue physicalValuePrefixAttribute = fieldMapper.apply(fieldMappingForPrefix, new AttributeValue(""));
         request.putExpressionAttributeName(NAME_PLACEHOLDER, hashKey);
-        request.putExpressionAttributeValue(VALUE_PLACEHOLDER, physicalValuePrefixAttribute);
-        request.setPrimaryExpression(
-            (request.getPrimaryExpression() != null ? request.getPrimaryExpression() + " and " : "")
-                + "begins_with(" + NAME_PLACEHOLDER + ", " + VALUE_PLACEHOLDER + ")");
-    }
-
-    private void applyKeyConditionToField(RequestWrapper request, FieldMapping fieldMapping) {
-        applyKeyConditionToField(request, fieldMapping, request.getPrimaryExpression(), request.getFilterExpression());
-    }
-
-    /*
-     * Finds a virtual field name reference in the expression attribute names, finds the value in the right-hand side
-     * operand in the primary expression or filter expression, gets its value in the expression attribute values,
-     * applies the multi-mapping value mapping, and sets the physical name of the field to that of the target field.
-     */
-    private void applyKeyConditionToField(RequestWrapper request,
-        FieldMapping fieldMapping,
-        String primaryExpression,
-        String filterExpression) {
-        if (primaryExpression != null) {
-            String virtualAttrName = fieldMapping.getSource().getName();
-            Map<String, String> expressionAttrNames = request.getExpressionAttributeNames();
-            Optional<String> keyFieldName = expressionAttrNames != null ? expressionAttrNames.entrySet().stream()
-                .filter(entry -> entry.getValue().equals(virtualAttrName)).map(Entry::getKey).findAny()
-                : Optional.empty();
-            if (keyFieldName.isPresent() && !keyFieldName.get().equals(NAME_PLACEHOLDER)) {
-                String virtualValuePlaceholder = findVirtualValuePlaceholder(primaryExpression, filterExpression,
-                    keyFieldName.get());
-                AttributeValue virtualAttr = request.getExpressionAttributeValues().get(virtualValuePlaceholder);
-                AttributeValue physicalAttr =
-                    fieldMapping.isContextAware() ? fieldMapper.apply(fieldMapping, virtualAttr) : virtualAttr;
-                request.putExpressionAttributeValue(virtualValuePlaceholder, physicalAttr);
-                request.putExpressionAttributeName(keyFieldName.get(), fieldMapping.getTarget().getName());
-            }
+        request.setPrefixMapping(VALUE_PLACEHOLDER, fieldMappingForPrefix);
+        String beginsWith = "begins_with(" + NAME_PLACEHOLDER + ", " + VALUE_PLACEHOLDER + ")";
+        String primaryExpression = request.getPrimaryExpression();
+        if (primaryExpression == null) {
+            request.setPrimaryExpression(beginsWith);
+        } else {
+            request.setPrimaryExpression((ExpressionParser.parseCondition(primaryExpression) instanceof OrNode
+                ? "(" + primaryExpression + ")" : primaryExpression) + " and " + beginsWith);
         }
     }
 
@@ -197,45 +235,41 @@ class QueryMapper {
     }
 
     /*
-     * Finds the value in the right-hand side operand where the left-hand operator is a given field, first in the
-     * primary expression, then in the filterExpression.
+     * Returns true if the primary expression restricts the hash key to a single value, i.e., if one of its top-level
+     * conjuncts is an equality condition between the hash key and a value.
      */
-    private String findVirtualValuePlaceholder(String primaryExpression, String filterExpression, String keyFieldName) {
-        return findVirtualValuePlaceholder(primaryExpression, keyFieldName)
-            .orElseGet((Supplier<String>) () -> findVirtualValuePlaceholder(filterExpression, keyFieldName)
-                .orElseThrow((Supplier<IllegalArgumentException>) () ->
-                    new IllegalArgumentException("field " + keyFieldName + " not found in either conditionExpression="
-                        + primaryExpression + ", or filterExpression=" + filterExpression)));
+    private static boolean queryContainsHashKeyCondition(String conditionExpression,
+                                                         Map<String, String> expressionAttrNames,
+                                                         String hashKeyField) {
+        if (conditionExpression == null) {
+            // no filter criteria
+            return false;
+        }
+        return getConjuncts(ExpressionParser.parseCondition(conditionExpression)).stream()
+            .filter(ComparisonNode.class::isInstance)
+            .map(ComparisonNode.class::cast)
+            .filter(comparison -> comparison.getComparator().equals("="))
+            .anyMatch(comparison -> isFieldEqualToValue(comparison.getLeft(), comparison.getRight(), hashKeyField,
+                expressionAttrNames) || isFieldEqualToValue(comparison.getRight(), comparison.getLeft(), hashKeyField,
+                expressionAttrNames));
     }
 
-    /*
-     * Finds the value in the right-hand side operand of an expression where the left-hand operator is a given field.
-     */
-    private Optional<String> findVirtualValuePlaceholder(String conditionExpression, String keyFieldName) {
-        String toFind = keyFieldName + " = ";
-        int start = conditionExpression.indexOf(toFind);
-        if (start == -1) {
-            return Optional.empty();
-        }
-        int end = conditionExpression.indexOf(" ", start + toFind.length());
-        return Optional.of(conditionExpression.substring(start + toFind.length(),
-            end == -1 ? conditionExpression.length() : end)); // TODO add support for non-EQ operators
+    private static boolean isFieldEqualToValue(Node field, Node value, String fieldName,
+                                               Map<String, String> expressionAttrNames) {
+        return field instanceof PathNode && ((PathNode) field).isAttribute() && value instanceof ValueNode
+            && fieldName.equals(((PathNode) field).getAttributeName(expressionAttrNames));
     }
 
-    private boolean queryContainsHashKeyCondition(RequestWrapper request,
-        String hashKeyField) { // TODO look for hashkey in literals
-        String conditionExpression = request.getPrimaryExpression();
-        if (conditionExpression == null) {
-            // no filter criteria
-            return false;
+    private static List<Node> getConjuncts(Node condition) {
+        if (condition instanceof ParenNode) {
+            return getConjuncts(((ParenNode) condition).getCondition());
+        }
+        if (condition instanceof AndNode) {
+            List<Node> conjuncts = new ArrayList<>();
+            condition.getChildren().forEach(child -> conjuncts.addAll(getConjuncts(child)));
+            return conjuncts;
         }
-        Map<String, String> expressionAttrNames = request.getExpressionAttributeNames();
-        Optional<String> keyFieldName = expressionAttrNames != null ? expressionAttrNames.entrySet().stream()
-            .filter(entry -> entry.getValue().equals(hashKeyField)).map(Entry::getKey).findFirst() : Optional.empty();
-        String fieldToFind = (keyFieldName.orElse(hashKeyField));
-        String toFind = fieldToFind + " = ";
-        int start = conditionExpression.indexOf(toFind);
-        return start != -1;
+        return ImmutableList.of(condition);
     }
 
     @VisibleForTesting
@@ -263,6 +297,8 @@ class QueryMapper {
 
         Map<String, Condition> getLegacyExpression();
 
+        String getLegacyConditionalOperator();
+
         void clearLegacyExpression();
 
         Map<String, AttributeValue> getExclusiveStartKey();
@@ -342,6 +378,12 @@ class QueryMapper {
             return queryRequest.getKeyConditions();
         }
 
+        @Override
+        public String getLegacyConditionalOperator() {
+            // key conditions are always combined with AND
+            return null;
+        }
+
         @Override
         public void clearLegacyExpression() {
             queryRequest.clearKeyConditionsEntries();
@@ -432,9 +474,15 @@ class QueryMapper {
             return scanRequest.getScanFilter();
         }
 
+        @Override
+        public String getLegacyConditionalOperator() {
+            return scanRequest.getConditionalOperator();
+        }
+
         @Override
         public void clearLegacyExpression() {
             scanRequest.clearScanFilterEntries();
+            scanRequest.setConditionalOperator((String) null);
         }
 
         @Override
@@ -481,66 +529,273 @@ class QueryMapper {
      * and filterExpression's respectively because they are used by the DynamoDB document API
      * (https://docs.aws.amazon.com/AWSJavaSDK/latest/javadoc/com/amazonaws/services/dynamodbv2/document/DynamoDB.html).
      */
-    private void convertLegacyExpression(RequestWrapper request) {
-        if ((request.getLegacyExpression() != null && request.getLegacyExpression().keySet().size() > 0)) {
+    private void convertLegacyExpression(PlanBuilder request,
+                                         Map<String, Condition> legacyExpression,
+                                         String conditionalOperator) {
+        if ((legacyExpression != null && legacyExpression.keySet().size() > 0)) {
             List<String> keyConditionExpressionParts = new ArrayList<>();
             AtomicInteger counter = new AtomicInteger(1);
-            request.getLegacyExpression().forEach((key, condition) -> {
-                checkArgument(ComparisonOperator.valueOf(condition.getComparisonOperator()) == EQ,
-                    "unsupported comparison operator " + condition.getComparisonOperator() + " in condition="
-                        + condition);
-                checkArgument(condition.getAttributeValueList().size() == 1,
-                    "keyCondition with more than one(" + condition.getAttributeValueList().size()
-                        + ") encountered in condition=" + condition);
-                String field = "#field" + counter;
-                String value = ":value" + counter.getAndIncrement();
-                keyConditionExpressionParts.add(field + " = " + value);
+            legacyExpression.forEach((key, condition) -> {
+                int conditionNumber = counter.getAndIncrement();
+                String field = "#field" + conditionNumber;
+                List<AttributeValue> attributeValues = condition.getAttributeValueList();
+                List<String> values = new ArrayList<>();
+                for (int i = 0; attributeValues != null && i < attributeValues.size(); i++) {
+                    String value = ":value" + conditionNumber + (i == 0 ? "" : "_" + i);
+                    values.add(value);
+                    request.addLegacyValue(value, key, i);
+                }
+                keyConditionExpressionParts.add(toConditionExpression(field, values, condition));
                 request.putExpressionAttributeName(field, key);
-                request.putExpressionAttributeValue(value, condition.getAttributeValueList().get(0));
             });
-            request.setPrimaryExpression(Joiner.on(" AND ").join(keyConditionExpressionParts));
-            request.clearLegacyExpression();
+            request.setPrimaryExpression(Joiner.on(ConditionalOperator.OR.toString().equals(conditionalOperator)
+                ? " OR " : " AND ").join(keyConditionExpressionParts));
         }
     }
 
+    private static String toConditionExpression(String field, List<String> values, Condition condition) {
+        ComparisonOperator comparisonOperator = ComparisonOperator.fromValue(condition.getComparisonOperator());
+        switch (comparisonOperator) {
+            case EQ:
+            case NE:
+            case LE:
+            case LT:
+            case GE:
+            case GT:
+                checkValueCount(values, 1, condition);
+                return field + " " + COMPARATORS.get(comparisonOperator) + " " + values.get(0);
+            case BETWEEN:
+                checkValueCount(values, 2, condition);
+                return field + " BETWEEN " + values.get(0) + " AND " + values.get(1);
+            case BEGINS_WITH:
+                checkValueCount(values, 1, condition);
+                return "begins_with(" + field + ", " + values.get(0) + ")";
+            case CONTAINS:
+                checkValueCount(values, 1, condition);
+                return "contains(" + field + ", " + values.get(0) + ")";
+            case NOT_CONTAINS:
+                checkValueCount(values, 1, condition);
+                return "NOT contains(" + field + ", " + values.get(0) + ")";
+            case IN:
+                checkArgument(!values.isEmpty(), "no values encountered in condition=" + condition);
+                return field + " IN (" + Joiner.on(", ").join(values) + ")";
+            case NULL:
+                checkValueCount(values, 0, condition);
+                return "attribute_not_exists(" + field + ")";
+            case NOT_NULL:
+                checkValueCount(values, 0, condition);
+                return "attribute_exists(" + field + ")";
+            default:
+                throw new IllegalArgumentException("unsupported comparison operator " + comparisonOperator
+                    + " in condition=" + condition);
+        }
+    }
+
+    private static void checkValueCount(List<String> values, int expected, Condition condition) {
+        checkArgument(values.size() == expected, "expected " + expected + " value(s) but encountered "
+            + values.size() + " in condition=" + condition);
+    }
+
+    /*
+     * Replaces literal references to the virtual fields of the given field mappings in the request's expressions with
+     * expression attribute names, so that they can be mapped like any other field reference.
+     */
     @VisibleForTesting
     void convertFieldNameLiteralsToExpressionNames(Collection<FieldMapping> fieldMappings,
         RequestWrapper request) {
-        request.setPrimaryExpression(
-            convertFieldNameLiteralsToExpressionNames(fieldMappings, request.getPrimaryExpression(), request));
-        request.setFilterExpression(
-            convertFieldNameLiteralsToExpressionNames(fieldMappings, request.getFilterExpression(), request));
+        Map<String, List<FieldMapping>> fieldMappingsByName = fieldMappings.stream().collect(Collectors.groupingBy(
+            fieldMapping -> fieldMapping.getSource().getName()));
+        RequestExpressions expressions = new RequestExpressions(request.getExpressionAttributeNames() == null
+            ? new HashMap<>() : new HashMap<>(request.getExpressionAttributeNames()),
+            new String[] {request.getPrimaryExpression(), request.getFilterExpression()},
+            new ExpressionType[] {ExpressionType.CONDITION, ExpressionType.CONDITION});
+        new ExpressionMapper(fieldMappingsByName).convertFieldNameLiteralsToExpressionNames(expressions);
+        request.setPrimaryExpression(expressions.getExpression(0));
+        request.setFilterExpression(expressions.getExpression(1));
+        expressions.getNames().forEach(request::putExpressionAttributeName);
     }
 
-    private String convertFieldNameLiteralsToExpressionNames(Collection<FieldMapping> fieldMappings,
-        String conditionExpression,
-        RequestWrapper request) {
-        String newConditionExpression = conditionExpression;
-        if (conditionExpression != null) {
-            AtomicInteger counter = new AtomicInteger(1);
-            for (FieldMapping fieldMapping : fieldMappings) {
-                String virtualFieldName = fieldMapping.getSource().getName();
-                String toFind = " " + virtualFieldName + " =";
-                int start = (" " + newConditionExpression).indexOf(toFind); // TODO add support for non-EQ operators
-                while (start >= 0) {
-                    String fieldLiteral = newConditionExpression.substring(start, start + virtualFieldName.length());
-                    String fieldPlaceholder = getNextFieldPlaceholder(request.getExpressionAttributeNames(), counter);
-                    newConditionExpression = request.getPrimaryExpression()
-                        .replaceAll(fieldLiteral + " ", fieldPlaceholder + " ");
-                    request.putExpressionAttributeName(fieldPlaceholder, fieldLiteral);
-                    start = (" " + newConditionExpression).indexOf(toFind);
-                }
+    /*
+     * The compiled rewrite of a request shape.  Applying it to a request of that shape sets the rewritten index name,
+     * expressions, and attribute names, and maps the values that reference context-aware fields.
+     */
+    private static class QueryPlan {
+
+        private final String physicalIndexName;
+        private final String primaryExpression;
+        private final String filterExpression;
+        private final Map<String, String> expressionAttributeNames;
+        private final Map<String, LegacyValue> legacyValues;
+        private final Map<String, ValueMapping> valueMappings;
+        private final String prefixPlaceholder;
+        private final FieldMapping prefixMapping;
+
+        QueryPlan(PlanBuilder builder) {
+            this.physicalIndexName = builder.indexName;
+            this.primaryExpression = builder.primaryExpression;
+            this.filterExpression = builder.filterExpression;
+            this.expressionAttributeNames = builder.expressionAttributeNames;
+            this.legacyValues = builder.legacyValues;
+            this.valueMappings = builder.valueMappings;
+            this.prefixPlaceholder = builder.prefixPlaceholder;
+            this.prefixMapping = builder.prefixMapping;
+        }
+
+        void apply(RequestWrapper request, FieldMapper fieldMapper) {
+            Map<String, Condition> legacyExpression = request.getLegacyExpression();
+            if (legacyExpression != null && !legacyExpression.isEmpty()) {
+                legacyValues.forEach((placeholder, legacyValue) -> request.putExpressionAttributeValue(placeholder,
+                    legacyExpression.get(legacyValue.field).getAttributeValueList().get(legacyValue.index)));
+                request.clearLegacyExpression();
+            }
+            if (physicalIndexName != null) {
+                request.setIndexName(physicalIndexName);
+            }
+            request.setPrimaryExpression(primaryExpression);
+            request.setFilterExpression(filterExpression);
+            expressionAttributeNames.forEach(request::putExpressionAttributeName);
+            if (!valueMappings.isEmpty()) {
+                ExpressionMapper.applyValueMappings(valueMappings, request.getExpressionAttributeValues(),
+                    fieldMapper);
+            }
+            if (prefixMapping != null) {
+                request.putExpressionAttributeValue(prefixPlaceholder,
+                    fieldMapper.apply(prefixMapping, new AttributeValue("")));
             }
         }
-        return newConditionExpression;
+
     }
 
-    private String getNextFieldPlaceholder(Map<String, String> expressionAttributeNames, AtomicInteger counter) {
-        String fieldPlaceholderCandidate = "#field" + counter.get();
-        while (expressionAttributeNames != null && expressionAttributeNames.containsKey(fieldPlaceholderCandidate)) {
-            fieldPlaceholderCandidate = "#field" + counter.incrementAndGet();
+    /*
+     * Holds the shape of a request while its rewrite is compiled.  Values are not available, so value mappings are
+     * recorded instead of applied.
+     */
+    private static class PlanBuilder implements RequestWrapper {
+
+        private String indexName;
+        private String primaryExpression;
+        private String filterExpression;
+        private final Map<String, String> expressionAttributeNames;
+        private final Map<String, LegacyValue> legacyValues = new HashMap<>();
+        private final Map<String, ValueMapping> valueMappings = new HashMap<>();
+        private String prefixPlaceholder;
+        private FieldMapping prefixMapping;
+
+        PlanBuilder(RequestWrapper request) {
+            this.indexName = request.getIndexName();
+            this.primaryExpression = request.getPrimaryExpression();
+            this.filterExpression = request.getFilterExpression();
+            this.expressionAttributeNames = request.getExpressionAttributeNames() == null
+                ? new HashMap<>() : new HashMap<>(request.getExpressionAttributeNames());
+        }
+
+        void addLegacyValue(String placeholder, String field, int index) {
+            legacyValues.put(placeholder, new LegacyValue(field, index));
+        }
+
+        void addValueMappings(Map<String, ValueMapping> valueMappings) {
+            this.valueMappings.putAll(valueMappings);
+        }
+
+        void setPrefixMapping(String placeholder, FieldMapping fieldMapping) {
+            this.prefixPlaceholder = placeholder;
+            this.prefixMapping = fieldMapping;
         }
-        return fieldPlaceholderCandidate;
+
+        QueryPlan build() {
+            return new QueryPlan(this);
+        }
+
+        @Override
+        public String getIndexName() {
+            return indexName;
+        }
+
+        @Override
+        public void setIndexName(String indexName) {
+            this.indexName = indexName;
+        }
+
+        @Override
+        public Map<String, String> getExpressionAttributeNames() {
+            return expressionAttributeNames;
+        }
+
+        @Override
+        public void putExpressionAttributeName(String key, String value) {
+            expressionAttributeNames.put(key, value);
+        }
+
+        @Override
+        public Map<String, AttributeValue> getExpressionAttributeValues() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putExpressionAttributeValue(String key, AttributeValue value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getPrimaryExpression() {
+            return primaryExpression;
+        }
+
+        @Override
+        public void setPrimaryExpression(String expression) {
+            this.primaryExpression = expression;
+        }
+
+        @Override
+        public String getFilterExpression() {
+            return filterExpression;
+        }
+
+        @Override
+        public void setFilterExpression(String filterExpression) {
+            this.filterExpression = filterExpression;
+        }
+
+        @Override
+        public Map<String, Condition> getLegacyExpression() {
+            return null;
+        }
+
+        @Override
+        public String getLegacyConditionalOperator() {
+            return null;
+        }
+
+        @Override
+        public void clearLegacyExpression() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, AttributeValue> getExclusiveStartKey() {
+            return null;
+        }
+
+        @Override
+        public void setExclusiveStartKey(Map<String, AttributeValue> exclusiveStartKey) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /*
+     * References a value of a legacy condition by the name of its field and its position in the value list.
+     */
+    private static class LegacyValue {
+
+        private final String field;
+        private final int index;
+
+        LegacyValue(String field, int index) {
+            this.field = field;
+            this.index = index;
+        }
+
     }
 
-}
\ No newline at end of file
+}
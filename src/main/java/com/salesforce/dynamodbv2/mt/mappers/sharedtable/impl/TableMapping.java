@@ -33,6 +33,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -40,6 +41,9 @@ import java.util.stream.Stream;
  * Holds the state of mapping of a virtual table to a physical table.  It provides methods for retrieving the virtual
  * and physical descriptions, the mapping of fields from virtual to physical and back.
  *
+ * A TableMapping holds no tenant state.  The tenant prefix is bound at request time from the multi-tenant context, so
+ * one TableMapping is shared by all tenants whose virtual tables have the same description, see TableMappingFactory.
+ *
  * @author msgroi
  */
 class TableMapping {
@@ -50,9 +54,14 @@ class TableMapping {
     private final Map<String, List<FieldMapping>> virtualToPhysicalMappings;
     private final Map<String, List<FieldMapping>> physicalToVirtualMappings;
     private final Map<DynamoSecondaryIndex, List<FieldMapping>> secondaryIndexFieldMappings;
+    private final MtAmazonDynamoDbContextProvider mtContext;
+    private final String delimiter;
+    private Optional<TenantPartitionIndex> tenantPartitionIndex;
 
     private final ItemMapper itemMapper;
     private final QueryMapper queryMapper;
+    private final UpdateMapper updateMapper;
+    private final ConditionMapper conditionMapper;
 
     TableMapping(DynamoTableDescription virtualTable,
                  CreateTableRequestFactory createTableRequestFactory,
@@ -63,8 +72,11 @@ class TableMapping {
         validatePhysicalTable(physicalTable);
         this.secondaryIndexMapper = secondaryIndexMapper;
         this.virtualTable = virtualTable;
-        this.secondaryIndexFieldMappings =
-            buildIndexPrimaryKeyFieldMappings(virtualTable, physicalTable, secondaryIndexMapper);
+        this.mtContext = mtContext;
+        this.delimiter = delimiter;
+        this.tenantPartitionIndex = buildTenantPartitionIndex(physicalTable, true);
+        this.secondaryIndexFieldMappings = buildIndexPrimaryKeyFieldMappings(virtualTable,
+            TenantPartitionIndex.excludeFrom(physicalTable), secondaryIndexMapper);
         this.virtualToPhysicalMappings = buildAllVirtualToPhysicalFieldMappings(virtualTable);
         this.physicalToVirtualMappings = buildAllPhysicalToVirtualFieldMappings(virtualToPhysicalMappings);
         validateVirtualPhysicalCompatibility();
@@ -73,6 +85,8 @@ class TableMapping {
             new FieldPrefixFunction(delimiter));
         itemMapper = new ItemMapper(this, fieldMapper);
         queryMapper = new QueryMapper(this, fieldMapper);
+        updateMapper = new UpdateMapper(this, fieldMapper);
+        conditionMapper = new ConditionMapper(this, fieldMapper);
     }
 
     DynamoTableDescription getVirtualTable() {
@@ -91,6 +105,31 @@ class TableMapping {
         return queryMapper;
     }
 
+    UpdateMapper getUpdateMapper() {
+        return updateMapper;
+    }
+
+    ConditionMapper getConditionMapper() {
+        return conditionMapper;
+    }
+
+    /*
+     * Returns the tenant partition index if the physical table has one.
+     */
+    Optional<TenantPartitionIndex> getTenantPartitionIndex() {
+        return tenantPartitionIndex;
+    }
+
+    private Optional<TenantPartitionIndex> buildTenantPartitionIndex(DynamoTableDescription physicalTable,
+                                                                     boolean complete) {
+        return TenantPartitionIndex.findIndexName(physicalTable).map(indexName -> new TenantPartitionIndex(mtContext,
+            virtualTable.getTableName(),
+            new FieldPrefixFunction(delimiter),
+            physicalTable.getPrimaryKey().getHashKey(),
+            indexName,
+            complete));
+    }
+
     /*
      * Returns a mapping of virtual to physical fields.
      */
@@ -235,7 +274,7 @@ class TableMapping {
         }
 
         // validate secondary indexes
-        validateSecondaryIndexes(virtualTable, physicalTable, secondaryIndexMapper);
+        validateSecondaryIndexes(virtualTable, TenantPartitionIndex.excludeFrom(physicalTable), secondaryIndexMapper);
     }
 
     @VisibleForTesting
@@ -328,8 +367,13 @@ class TableMapping {
                 + primaryKey.getHashKeyType());
     }
 
-    void setPhysicalTable(DynamoTableDescription physicalTable) {
+    /*
+     * Sets the description of the existing physical table, which may differ from the requested one, e.g., in the
+     * number of buckets of its tenant partition index, and whether its tenant partition index contains all items.
+     */
+    void setPhysicalTable(DynamoTableDescription physicalTable, boolean tenantPartitionIndexComplete) {
         this.physicalTable = physicalTable;
+        this.tenantPartitionIndex = buildTenantPartitionIndex(physicalTable, tenantPartitionIndexComplete);
     }
 
 }
\ No newline at end of file
@@ -11,6 +11,11 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.salesforce.dynamodbv2.mt.admin.AmazonDynamoDbAdminUtils;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapper;
@@ -18,7 +23,9 @@ import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.CreateTableRequestFactory;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Creates TableMapping objects that contain the state of given mapping of a virtual table to a physical table.  The
@@ -38,6 +45,14 @@ public class TableMappingFactory {
     private final String delimiter;
     private final AmazonDynamoDB amazonDynamoDb;
     private final int pollIntervalSeconds;
+    /*
+     * Table mappings hold no tenant state, since field prefixes are computed from the context at request time, so all
+     * tenants whose virtual tables have the same description and map to the same physical table share one mapping.
+     * Values are weakly referenced, so mappings that are no longer cached for any tenant can be collected.
+     */
+    private final Cache<List<Object>, TableMapping> sharedTableMappings = CacheBuilder.newBuilder()
+        .weakValues()
+        .build();
 
     /**
      * TODO: write Javadoc.
@@ -58,31 +73,59 @@ public class TableMappingFactory {
         precreateTables(createTableRequestFactory);
     }
 
+    String getDelimiter() {
+        return delimiter;
+    }
+
     private void precreateTables(CreateTableRequestFactory createTableRequestFactory) {
         createTableRequestFactory.precreateTables().forEach(this::createTableIfNotExists);
     }
 
+    /*
+     * Returns the table mapping shared by all tenants with the same virtual table description and physical table,
+     * creating it if there is none yet.
+     */
+    TableMapping getTableMapping(DynamoTableDescription virtualTableDescription) {
+        CreateTableRequest physicalTable = createTableRequestFactory.getCreateTableRequest(virtualTableDescription);
+        if (physicalTable == null) {
+            // let the table mapping report the unsupported table
+            return createTableMapping(virtualTableDescription);
+        }
+        try {
+            return sharedTableMappings.get(ImmutableList.of(virtualTableDescription, physicalTable),
+                () -> createTableMapping(virtualTableDescription));
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /*
      * Creates the table mapping, creates the table if it does not exist, sets the physical table description
      * back onto the table mapping so it includes things that can only be determined after the physical
      * table is created, like the streamArn.
      */
-    TableMapping getTableMapping(DynamoTableDescription virtualTableDescription) {
+    private TableMapping createTableMapping(DynamoTableDescription virtualTableDescription) {
         TableMapping tableMapping = new TableMapping(virtualTableDescription,
             createTableRequestFactory,
             secondaryIndexMapper,
             mtContext,
             delimiter);
-        tableMapping.setPhysicalTable(createTableIfNotExists(tableMapping.getPhysicalTable().getCreateTableRequest()));
+        TableDescription physicalTable = createTableIfNotExists(
+            tableMapping.getPhysicalTable().getCreateTableRequest());
+        tableMapping.setPhysicalTable(new DynamoTableDescriptionImpl(physicalTable),
+            TenantPartitionIndex.isComplete(physicalTable));
         return tableMapping;
     }
 
-    private DynamoTableDescriptionImpl createTableIfNotExists(CreateTableRequest physicalTable) {
+    private TableDescription createTableIfNotExists(CreateTableRequest physicalTable) {
         // does not exist, create
         if (!getTableDescription(physicalTable.getTableName()).isPresent()) {
             dynamoDbAdminUtils.createTableIfNotExists(physicalTable, pollIntervalSeconds);
         }
-        return new DynamoTableDescriptionImpl(amazonDynamoDb.describeTable(physicalTable.getTableName()).getTable());
+        return amazonDynamoDb.describeTable(physicalTable.getTableName()).getTable();
     }
 
     private Optional<TableDescription> getTableDescription(String tableName) {
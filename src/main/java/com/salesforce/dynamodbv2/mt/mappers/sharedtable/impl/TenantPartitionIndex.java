@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeAction;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.UpdateAction;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/*
+ * Supports scanning a virtual table by querying a GSI on the physical table rather than scanning the whole physical
+ * table.  Physical tables opt in by defining a GSI named getIndexName(buckets), i.e., tenant_partition_<buckets>,
+ * whose hash key is HASH_KEY_FIELD (type S) and whose range key is the physical table's hash key.  Every item written
+ * to such a table is tagged with a partition value that is qualified with the tenant context and virtual table name,
+ * so that the items of a virtual table can be retrieved by querying the GSI for each of its partition values, making
+ * scan cost proportional to the size of the virtual table rather than to the size of the physical table.
+ *
+ * To avoid hot GSI partitions for large virtual tables, items may be spread over a number of buckets, where the
+ * bucket of an item is derived from its physical hash key.  Each bucket is queried in turn, and buckets map onto scan
+ * segments, so the number of buckets is also the maximum useful number of scan segments.  The number of buckets is
+ * part of the index name, since items are only found in the bucket they were written to, so it is fixed for the
+ * lifetime of the index.
+ *
+ * The index must be created along with the physical table, since items that were written before are not tagged and
+ * therefore missing from it.  Physical tables whose item count exceeds that of the index when they are opened are
+ * scanned in full instead.  HASH_KEY_FIELD is reserved in physical tables with the index, see ItemMapper.
+ */
+public class TenantPartitionIndex {
+
+    public static final String HASH_KEY_FIELD = "tp";
+    private static final String INDEX_NAME_PREFIX = "tenant_partition_";
+    private static final Pattern INDEX_NAME_PATTERN = Pattern.compile(INDEX_NAME_PREFIX + "([1-9][0-9]*)");
+    private static final String NAME_PLACEHOLDER = "#___tp___";
+    private static final String VALUE_PLACEHOLDER = ":___tp___";
+
+    private final MtAmazonDynamoDbContextProvider mtContext;
+    private final String virtualTableName;
+    private final FieldPrefixFunction fieldPrefixFunction;
+    private final String physicalHashKey;
+    private final String indexName;
+    private final int buckets;
+    private final boolean complete;
+
+    /*
+     * Takes the name of the index, which determines the number of buckets, and whether the index contains all items of
+     * the physical table, otherwise scans are not served by it.
+     */
+    TenantPartitionIndex(MtAmazonDynamoDbContextProvider mtContext,
+                         String virtualTableName,
+                         FieldPrefixFunction fieldPrefixFunction,
+                         String physicalHashKey,
+                         String indexName,
+                         boolean complete) {
+        Matcher matcher = INDEX_NAME_PATTERN.matcher(indexName);
+        checkArgument(matcher.matches(), "%s is not a tenant partition index", indexName);
+        this.mtContext = mtContext;
+        this.virtualTableName = virtualTableName;
+        this.fieldPrefixFunction = fieldPrefixFunction;
+        this.physicalHashKey = physicalHashKey;
+        this.indexName = indexName;
+        this.buckets = Integer.parseInt(matcher.group(1));
+        this.complete = complete;
+    }
+
+    /**
+     * Returns the name of a tenant partition index with the given number of buckets.
+     */
+    public static String getIndexName(int buckets) {
+        checkArgument(buckets > 0, "tenant partition buckets must be positive");
+        return INDEX_NAME_PREFIX + buckets;
+    }
+
+    private static boolean isIndexName(String indexName) {
+        return INDEX_NAME_PATTERN.matcher(indexName).matches();
+    }
+
+    /*
+     * Returns the name of the tenant partition index of the physical table, if it defines one.
+     */
+    static Optional<String> findIndexName(DynamoTableDescription physicalTable) {
+        return physicalTable.getGsis().stream()
+            .map(DynamoSecondaryIndex::getIndexName)
+            .filter(TenantPartitionIndex::isIndexName)
+            .findFirst();
+    }
+
+    /*
+     * Returns true if the physical table defines a tenant partition index.
+     */
+    static boolean isPresent(DynamoTableDescription physicalTable) {
+        return findIndexName(physicalTable).isPresent();
+    }
+
+    /*
+     * Returns false if the described physical table has more items than its tenant partition index, i.e., items that
+     * are not tagged with their partition because the index was added to the existing table.  Item counts are only
+     * updated periodically, so this check errs towards full scans of recently written tables.
+     */
+    static boolean isComplete(TableDescription physicalTable) {
+        Long indexItemCount = physicalTable.getGlobalSecondaryIndexes() == null ? null
+            : physicalTable.getGlobalSecondaryIndexes().stream()
+                .filter(gsi -> isIndexName(gsi.getIndexName()))
+                .map(GlobalSecondaryIndexDescription::getItemCount)
+                .filter(Objects::nonNull)
+                .findFirst().orElse(null);
+        return physicalTable.getItemCount() == null || indexItemCount == null
+            || physicalTable.getItemCount() <= indexItemCount;
+    }
+
+    /*
+     * Returns a description of the physical table without the tenant partition index, so that it is not considered
+     * when mapping virtual secondary indexes onto physical ones.
+     */
+    static DynamoTableDescription excludeFrom(DynamoTableDescription physicalTable) {
+        CreateTableRequest createTableRequest = physicalTable.getCreateTableRequest();
+        if (!isPresent(physicalTable) || createTableRequest == null) {
+            return physicalTable;
+        }
+        List<GlobalSecondaryIndex> gsis = createTableRequest.getGlobalSecondaryIndexes().stream()
+            .filter(gsi -> !isIndexName(gsi.getIndexName()))
+            .collect(toList());
+        return new DynamoTableDescriptionImpl(createTableRequest.clone()
+            .withGlobalSecondaryIndexes(gsis.isEmpty() ? null : gsis));
+    }
+
+    int getBuckets() {
+        return buckets;
+    }
+
+    /*
+     * Returns the bucket of the item or key given its physical hash key.
+     */
+    int getBucket(Map<String, AttributeValue> physicalItem) {
+        return Math.floorMod(physicalItem.get(physicalHashKey).getS().hashCode(), buckets);
+    }
+
+    private AttributeValue getPartition(int bucket) {
+        return new AttributeValue(fieldPrefixFunction.apply(mtContext, virtualTableName, String.valueOf(bucket))
+            .getQualifiedValue());
+    }
+
+    /*
+     * Tags a physical item that is about to be written with its partition.
+     */
+    void addPartition(Map<String, AttributeValue> physicalItem) {
+        physicalItem.put(HASH_KEY_FIELD, getPartition(getBucket(physicalItem)));
+    }
+
+    /*
+     * Adds an action to a physical update request that tags the item with its partition, since updates may create
+     * items.
+     */
+    void addPartition(UpdateItemRequest updateItemRequest) {
+        AttributeValue partition = getPartition(getBucket(updateItemRequest.getKey()));
+        String updateExpression = updateItemRequest.getUpdateExpression();
+        if (updateExpression != null) {
+            String partitionAction = NAME_PLACEHOLDER + " = " + VALUE_PLACEHOLDER;
+            Optional<UpdateAction> firstSetAction = ExpressionParser.parseUpdate(updateExpression).getActions().stream()
+                .filter(action -> action.getClause().equals("SET"))
+                .findFirst();
+            updateItemRequest.setUpdateExpression(firstSetAction.isPresent()
+                ? ExpressionParser.rewrite(updateExpression, ImmutableMap.of(
+                    ExpressionParser.insertionAt(firstSetAction.get().getStart()), partitionAction + ", "))
+                : "SET " + partitionAction + " " + updateExpression);
+            Map<String, String> names = updateItemRequest.getExpressionAttributeNames() == null
+                ? new HashMap<>() : new HashMap<>(updateItemRequest.getExpressionAttributeNames());
+            names.put(NAME_PLACEHOLDER, HASH_KEY_FIELD);
+            updateItemRequest.setExpressionAttributeNames(names);
+            Map<String, AttributeValue> values = updateItemRequest.getExpressionAttributeValues() == null
+                ? new HashMap<>() : new HashMap<>(updateItemRequest.getExpressionAttributeValues());
+            values.put(VALUE_PLACEHOLDER, partition);
+            updateItemRequest.setExpressionAttributeValues(values);
+        } else {
+            Map<String, AttributeValueUpdate> attributeUpdates = updateItemRequest.getAttributeUpdates() == null
+                ? new HashMap<>() : new HashMap<>(updateItemRequest.getAttributeUpdates());
+            checkArgument(!attributeUpdates.containsKey(HASH_KEY_FIELD), "field %s is reserved", HASH_KEY_FIELD);
+            attributeUpdates.put(HASH_KEY_FIELD, new AttributeValueUpdate(partition, AttributeAction.PUT));
+            updateItemRequest.setAttributeUpdates(attributeUpdates);
+        }
+    }
+
+    /*
+     * Returns true if the scan request, which may be virtual or mapped, can be served by querying the partition index.
+     * Incomplete indexes miss items, strongly consistent reads are not supported by GSIs, scans of secondary indexes
+     * are not partitioned, and counting is left to the physical scan since paging requires items.
+     */
+    boolean supports(ScanRequest scanRequest) {
+        return complete
+            && scanRequest.getIndexName() == null
+            && !Boolean.TRUE.equals(scanRequest.getConsistentRead())
+            && !Select.COUNT.toString().equals(scanRequest.getSelect());
+    }
+
+    /*
+     * Returns the bucket to start the scan from, which is either the segment, or the bucket of the exclusive start key
+     * if the scan is being continued.
+     */
+    int getFirstBucket(ScanRequest physicalScanRequest) {
+        return physicalScanRequest.getExclusiveStartKey() != null
+            ? getBucket(physicalScanRequest.getExclusiveStartKey())
+            : Optional.ofNullable(physicalScanRequest.getSegment()).orElse(0);
+    }
+
+    /*
+     * Converts a mapped physical scan request into a query of a single bucket of the partition index, starting after
+     * the given physical key, if any.
+     */
+    QueryRequest toQueryRequest(ScanRequest physicalScanRequest, int bucket,
+                                Map<String, AttributeValue> exclusiveStartKey) {
+        Map<String, String> names = physicalScanRequest.getExpressionAttributeNames() == null
+            ? new HashMap<>() : new HashMap<>(physicalScanRequest.getExpressionAttributeNames());
+        Map<String, AttributeValue> values = physicalScanRequest.getExpressionAttributeValues() == null
+            ? new HashMap<>() : new HashMap<>(physicalScanRequest.getExpressionAttributeValues());
+        names.put(NAME_PLACEHOLDER, HASH_KEY_FIELD);
+        values.put(VALUE_PLACEHOLDER, getPartition(bucket));
+        String projectionExpression = physicalScanRequest.getProjectionExpression();
+        List<String> attributesToGet = physicalScanRequest.getAttributesToGet();
+        if (projectionExpression == null && attributesToGet != null) {
+            // legacy parameters cannot be combined with the key condition expression
+            projectionExpression = IntStream.range(0, attributesToGet.size()).mapToObj(i -> {
+                names.put("#___p" + i + "___", attributesToGet.get(i));
+                return "#___p" + i + "___";
+            }).collect(joining(", "));
+        }
+        Map<String, AttributeValue> indexStartKey = null;
+        if (exclusiveStartKey != null) {
+            indexStartKey = new HashMap<>(exclusiveStartKey);
+            indexStartKey.put(HASH_KEY_FIELD, getPartition(bucket));
+        }
+        return new QueryRequest()
+            .withTableName(physicalScanRequest.getTableName())
+            .withIndexName(indexName)
+            .withKeyConditionExpression(NAME_PLACEHOLDER + " = " + VALUE_PLACEHOLDER)
+            .withFilterExpression(physicalScanRequest.getFilterExpression())
+            .withProjectionExpression(projectionExpression)
+            .withExpressionAttributeNames(names)
+            .withExpressionAttributeValues(values)
+            .withSelect(physicalScanRequest.getSelect())
+            .withLimit(physicalScanRequest.getLimit())
+            .withReturnConsumedCapacity(physicalScanRequest.getReturnConsumedCapacity())
+            .withExclusiveStartKey(indexStartKey);
+    }
+
+}
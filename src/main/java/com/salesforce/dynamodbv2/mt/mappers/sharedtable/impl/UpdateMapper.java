@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeAction;
+import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.google.common.collect.Maps;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionMapper.RequestExpressions;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ExpressionType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Maps update requests against virtual tables to their physical table counterpart according to the provided
+ * TableMapping, delegating field prefixing to the provided FieldMapper.  The key is mapped by the ItemMapper, whereas
+ * this class maps the update and condition expressions and the legacy attribute updates, so that updates and
+ * conditions on mapped fields, e.g., on the key fields of secondary indexes, apply to their physical fields.  Legacy
+ * expected conditions are mapped by the ConditionMapper.
+ */
+class UpdateMapper {
+
+    private final FieldMapper fieldMapper;
+    private final TableMapping tableMapping;
+
+    UpdateMapper(TableMapping tableMapping, FieldMapper fieldMapper) {
+        this.fieldMapper = fieldMapper;
+        this.tableMapping = tableMapping;
+    }
+
+    /*
+     * Takes an UpdateItemRequest representing an update of a virtual table item and mutates it so it can be applied to
+     * its physical table counterpart.
+     */
+    void apply(UpdateItemRequest updateItemRequest) {
+        Map<String, List<FieldMapping>> fieldMappings = tableMapping.getAllVirtualToPhysicalFieldMappings();
+        if (updateItemRequest.getUpdateExpression() != null || updateItemRequest.getConditionExpression() != null) {
+            RequestExpressions expressions = new RequestExpressions(
+                updateItemRequest.getExpressionAttributeNames() == null
+                    ? new HashMap<>() : new HashMap<>(updateItemRequest.getExpressionAttributeNames()),
+                new String[] {updateItemRequest.getUpdateExpression(), updateItemRequest.getConditionExpression()},
+                new ExpressionType[] {ExpressionType.UPDATE, ExpressionType.CONDITION});
+            ExpressionMapper expressionMapper = new ExpressionMapper(fieldMappings);
+            expressionMapper.convertFieldNameLiteralsToExpressionNames(expressions);
+            expressionMapper.mapFields(expressions);
+            updateItemRequest.setUpdateExpression(expressions.getExpression(0));
+            updateItemRequest.setConditionExpression(expressions.getExpression(1));
+            updateItemRequest.setExpressionAttributeNames(ConditionMapper.getNames(expressions,
+                updateItemRequest.getExpressionAttributeNames()));
+            updateItemRequest.setExpressionAttributeValues(tableMapping.getConditionMapper().applyValueMappings(
+                expressions, updateItemRequest.getExpressionAttributeValues()));
+        }
+        if (updateItemRequest.getAttributeUpdates() != null) {
+            updateItemRequest.setAttributeUpdates(mapAttributeUpdates(updateItemRequest.getAttributeUpdates(),
+                fieldMappings));
+        }
+        if (updateItemRequest.getExpected() != null) {
+            updateItemRequest.setExpected(tableMapping.getConditionMapper().mapExpected(
+                updateItemRequest.getExpected()));
+        }
+    }
+
+    /*
+     * Replaces the legacy attribute updates of mapped fields with updates of each of their target fields.  Values of
+     * context-aware fields can only be put or deleted, since their physical values could not be derived otherwise.
+     */
+    private Map<String, AttributeValueUpdate> mapAttributeUpdates(Map<String, AttributeValueUpdate> attributeUpdates,
+                                                                  Map<String, List<FieldMapping>> fieldMappings) {
+        Map<String, AttributeValueUpdate> mappedAttributeUpdates = Maps.newHashMapWithExpectedSize(
+            attributeUpdates.size());
+        attributeUpdates.forEach((field, attributeUpdate) -> {
+            List<FieldMapping> targets = fieldMappings.get(field);
+            if (targets == null || targets.isEmpty()) {
+                mappedAttributeUpdates.put(field, attributeUpdate);
+                return;
+            }
+            checkArgument(!targets.get(0).isContextAware() || attributeUpdate.getValue() == null
+                    || attributeUpdate.getAction() == null
+                    || AttributeAction.PUT.toString().equals(attributeUpdate.getAction()),
+                "field %s is context-aware and can only be put or deleted", field);
+            for (FieldMapping fieldMapping : targets) {
+                mappedAttributeUpdates.put(fieldMapping.getTarget().getName(),
+                    fieldMapping.isContextAware() && attributeUpdate.getValue() != null
+                        ? new AttributeValueUpdate(fieldMapper.apply(fieldMapping, attributeUpdate.getValue()),
+                            attributeUpdate.getAction())
+                        : attributeUpdate);
+            }
+        });
+        return mappedAttributeUpdates;
+    }
+
+}
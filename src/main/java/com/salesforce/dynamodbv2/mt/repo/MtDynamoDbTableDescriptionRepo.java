@@ -8,10 +8,13 @@
 package com.salesforce.dynamodbv2.mt.repo;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AmazonDynamoDBException;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
@@ -22,9 +25,18 @@ import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.Gson;
@@ -32,23 +44,68 @@ import com.salesforce.dynamodbv2.mt.admin.AmazonDynamoDbAdminUtils;
 import com.salesforce.dynamodbv2.mt.cache.MtCache;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /*
- * Stores table definitions in single table.  Each record represents a table.  Table names are prefixed with context.
+ * Stores table definitions in single table.  Each record represents a table.  In the V1 layout, records are keyed by
+ * table names prefixed with context.  In the V2 layout, records are keyed by context as hash key and table name as
+ * range key, so that the tables of a tenant can be loaded with a single query, see loadTenant().  Records of a V1 table
+ * can be copied into a V2 table with migrateFrom().
+ *
+ * Table descriptions are written as JSON or, if configured, in the binary format of TableDescriptionCodec.  Records of
+ * either format are read.
+ *
+ * Descriptions are cached per tenant and table until the table is deleted through this repo.  If tables are created or
+ * deleted through other nodes, enable the stream of the table description table and invalidate the caches of all
+ * nodes with MtTableMetadataStreamListener.
+ *
+ * Optionally, the cached descriptions can be written to a local snapshot file with writeSnapshot(), which new instances
+ * load on creation, see withSnapshotFile, so that they do not read the table description table for every table they
+ * access after a restart.  Each description loaded from the snapshot is served when it is first requested, and then
+ * validated against the table description table in the background.
+ *
+ * Optionally, tables that do not exist are cached as missing for a short time, see withNegativeCacheTtlMillis, so
+ * that clients probing for them do not read the table description table on every call.
  *
  * The AmazonDynamoDb that it uses must not, itself, be a MtAmazonDynamoDb* instance.  MtAmazonDynamoDbLogger
  * is supported.
  *
  * @author msgroi
  */
-public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
+public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo, MtTableMetadataCache {
+
+    /**
+     * Key schema of the table description table.
+     */
+    public enum Layout {
+        /**
+         * Hash key is the context and table name, separated by the delimiter.
+         */
+        V1,
+        /**
+         * Hash key is the context, range key is the table name.
+         */
+        V2
+    }
 
+    private static final Logger log = LoggerFactory.getLogger(MtDynamoDbTableDescriptionRepo.class);
     private static final String TABLEMETADATA_HKFIELD = "table";
+    private static final String TABLEMETADATA_V2_HKFIELD = "tenant";
+    private static final String TABLEMETADATA_V2_RKFIELD = "table";
     private static final String TABLEMETADATA_DATAFIELD = "data";
     private static final String DELIMITER = ".";
 
@@ -57,35 +114,69 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
     private final MtAmazonDynamoDbContextProvider mtContext;
     private final AmazonDynamoDbAdminUtils adminUtils;
     private final String tableDescriptionTableName;
+    private final Layout layout;
     private final String tableDescriptionTableHashKeyField;
+    private final String tableDescriptionTableRangeKeyField;
     private final String tableDescriptionTableDataField;
+    private final ProvisionedThroughput provisionedThroughput;
+    private final boolean binaryEncoding;
+    private final boolean streamEnabled;
     private final String delimiter;
     private final int pollIntervalSeconds;
     private final MtCache<TableDescription> cache;
+    private final MtCache<Boolean> missingTableCache;
+    private final Path snapshotFile;
+    private final Executor snapshotValidationExecutor;
+    private final TableDescriptionSnapshot snapshot;
+    private volatile boolean tableDescriptionTableExists;
 
     private MtDynamoDbTableDescriptionRepo(AmazonDynamoDB amazonDynamoDb,
                                            MtAmazonDynamoDbContextProvider mtContext,
                                            String tableDescriptionTableName,
                                            Optional<String> tablePrefix,
+                                           Layout layout,
                                            String tableDescriptionTableHashKeyField,
+                                           String tableDescriptionTableRangeKeyField,
                                            String tableDescriptionTableDataField,
+                                           ProvisionedThroughput provisionedThroughput,
+                                           boolean binaryEncoding,
+                                           boolean streamEnabled,
                                            String delimiter,
-                                           int pollIntervalSeconds) {
+                                           int pollIntervalSeconds,
+                                           CacheBuilder<Object, Object> cacheBuilder,
+                                           Executor cacheRefreshExecutor,
+                                           long negativeCacheTtlMillis,
+                                           long negativeCacheMaximumSize,
+                                           Path snapshotFile,
+                                           Executor snapshotValidationExecutor) {
         this.amazonDynamoDb = amazonDynamoDb;
         this.mtContext = mtContext;
         adminUtils = new AmazonDynamoDbAdminUtils(amazonDynamoDb);
         this.tableDescriptionTableName = prefix(tableDescriptionTableName, tablePrefix);
+        this.layout = layout;
         this.tableDescriptionTableHashKeyField = tableDescriptionTableHashKeyField;
+        this.tableDescriptionTableRangeKeyField = tableDescriptionTableRangeKeyField;
         this.tableDescriptionTableDataField = tableDescriptionTableDataField;
+        this.provisionedThroughput = provisionedThroughput;
+        this.binaryEncoding = binaryEncoding;
+        this.streamEnabled = streamEnabled;
         this.delimiter = delimiter;
         this.pollIntervalSeconds = pollIntervalSeconds;
-        cache = new MtCache<>(mtContext);
+        cache = new MtCache<>(mtContext, cacheBuilder, cacheRefreshExecutor);
+        missingTableCache = new MtCache<>(mtContext, CacheBuilder.newBuilder()
+            .maximumSize(negativeCacheTtlMillis > 0 ? negativeCacheMaximumSize : 0L)
+            .expireAfterWrite(negativeCacheTtlMillis, TimeUnit.MILLISECONDS));
+        this.snapshotFile = snapshotFile;
+        this.snapshotValidationExecutor = snapshotValidationExecutor;
+        snapshot = snapshotFile == null ? TableDescriptionSnapshot.empty() : loadSnapshot(snapshotFile);
     }
 
     @Override
     public TableDescription createTable(CreateTableRequest createTableRequest) {
         amazonDynamoDb.putItem(new PutItemRequest().withTableName(getTableDescriptionTableName())
             .withItem(createItem(createTableRequest)));
+        missingTableCache.invalidate(createTableRequest.getTableName());
+        snapshot.remove(mtContext.getContext(), createTableRequest.getTableName());
         return getTableDescription(createTableRequest.getTableName());
     }
 
@@ -94,13 +185,131 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
         return getTableDescriptionFromCache(tableName);
     }
 
+    @Override
+    public void invalidate(String context, String tableName) {
+        cache.invalidate(context, tableName);
+        missingTableCache.invalidate(context, tableName);
+        snapshot.remove(context, tableName);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+        missingTableCache.invalidateAll();
+    }
+
+    /**
+     * Returns the stats of the table description cache, which are only recorded if its CacheBuilder was configured
+     * with recordStats.
+     */
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Loads the descriptions of all tables of the current tenant into the cache, e.g., to warm up the cache for a
+     * tenant before serving its requests.  Requires the V2 layout, which loads them with a single (paged) query.
+     */
+    public void loadTenant() {
+        checkState(layout == Layout.V2, "loading all tables of a tenant requires the V2 layout");
+        QueryRequest queryRequest = new QueryRequest()
+            .withTableName(getTableDescriptionTableName())
+            .withKeyConditionExpression("#hk = :hk")
+            .withExpressionAttributeNames(new HashMap<>(ImmutableMap.of("#hk", tableDescriptionTableHashKeyField)))
+            .withExpressionAttributeValues(new HashMap<>(ImmutableMap.of(":hk",
+                new AttributeValue(mtContext.getContext()))));
+        QueryResult queryResult;
+        do {
+            queryResult = amazonDynamoDb.query(queryRequest);
+            queryResult.getItems().forEach(item -> {
+                String tableName = item.get(tableDescriptionTableRangeKeyField).getS();
+                cache.put(tableName, toTableDescription(item.get(tableDescriptionTableDataField)),
+                    () -> loadTableDescription(tableName));
+            });
+            queryRequest.setExclusiveStartKey(queryResult.getLastEvaluatedKey());
+        } while (queryResult.getLastEvaluatedKey() != null);
+    }
+
+    /**
+     * Copies the records of the given table description table in the V1 layout, with default field names, into the
+     * table of this repo, which must use the V2 layout.  See migrateFrom(String, String, String).
+     */
+    public int migrateFrom(String legacyTableName) {
+        return migrateFrom(legacyTableName, TABLEMETADATA_HKFIELD, TABLEMETADATA_DATAFIELD);
+    }
+
+    /**
+     * Copies the records of the given table description table in the V1 layout into the table of this repo, which must
+     * use the V2 layout.  Records that already exist in this repo's table are left as is, so that migrating again, or
+     * while tables are being created, does not overwrite newer records.  Assumes that contexts do not contain the
+     * delimiter.  Returns the number of records copied.
+     */
+    public int migrateFrom(String legacyTableName, String legacyHashKeyField, String legacyDataField) {
+        checkState(layout == Layout.V2, "migrating requires the V2 layout");
+        String tableName = getTableDescriptionTableName();
+        int migrated = 0;
+        ScanRequest scanRequest = new ScanRequest().withTableName(legacyTableName);
+        ScanResult scanResult;
+        do {
+            scanResult = amazonDynamoDb.scan(scanRequest);
+            for (Map<String, AttributeValue> legacyItem : scanResult.getItems()) {
+                String legacyKey = legacyItem.get(legacyHashKeyField).getS();
+                int contextEnd = getContextEnd(legacyKey);
+                Map<String, AttributeValue> item = getKey(legacyKey.substring(0, contextEnd),
+                    legacyKey.substring(contextEnd + delimiter.length()));
+                item.put(tableDescriptionTableDataField, legacyItem.get(legacyDataField));
+                try {
+                    amazonDynamoDb.putItem(new PutItemRequest().withTableName(tableName)
+                        .withItem(item)
+                        .withConditionExpression("attribute_not_exists(#hk)")
+                        .withExpressionAttributeNames(new HashMap<>(ImmutableMap.of("#hk",
+                            tableDescriptionTableHashKeyField))));
+                    migrated++;
+                } catch (ConditionalCheckFailedException e) {
+                    // already exists
+                }
+            }
+            scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        } while (scanResult.getLastEvaluatedKey() != null);
+        return migrated;
+    }
+
+    /**
+     * Writes the cached table descriptions of all tenants, and the descriptions loaded from the snapshot file that have
+     * not been requested yet, to the snapshot file, e.g., periodically or before shutting down.  Requires a snapshot
+     * file to be configured.
+     */
+    public void writeSnapshot() {
+        checkState(snapshotFile != null, "no snapshot file configured");
+        Map<String, Map<String, byte[]>> descriptions = snapshot.getEncodedDescriptions();
+        cache.asMapByContext().forEach((context, tableDescriptions) -> {
+            if (context != null) {
+                tableDescriptions.forEach((tableName, tableDescription) -> descriptions
+                    .computeIfAbsent(context, c -> new HashMap<>())
+                    .put(tableName, TableDescriptionCodec.encode(tableDescription)));
+            }
+        });
+        try {
+            TableDescriptionSnapshot.write(snapshotFile, descriptions);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public static MtDynamoDbTableDescriptionRepoBuilder builder() {
         return new MtDynamoDbTableDescriptionRepoBuilder();
     }
 
     private TableDescription getTableDescriptionFromCache(String tableName) throws ResourceNotFoundException {
         try {
-            return cache.get(tableName, () -> getTableDescriptionNoCache(tableName));
+            TableDescription tableDescription = cache.get(tableName, () -> loadTableDescription(tableName));
+            if (!snapshot.isEmpty() && snapshot.remove(mtContext.getContext(), tableName)) {
+                // validate after the snapshot description is cached, so that it does not overwrite the validated one
+                TableDescription snapshotDescription = tableDescription;
+                Runnable validation = () -> validateSnapshotDescription(tableName, snapshotDescription);
+                snapshotValidationExecutor.execute(mtContext.wrap(validation));
+            }
+            return tableDescription;
         } catch (UncheckedExecutionException e) {
             if (e.getCause() instanceof ResourceNotFoundException) {
                 throw (ResourceNotFoundException) e.getCause();
@@ -112,17 +321,65 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
         }
     }
 
+    /*
+     * Only called on misses of the table description cache, so that hits do not pay for the snapshot and the negative
+     * cache.
+     */
+    private TableDescription loadTableDescription(String tableName) {
+        TableDescription snapshotDescription = snapshot.get(mtContext.getContext(), tableName);
+        if (snapshotDescription != null) {
+            return snapshotDescription;
+        }
+        if (missingTableCache.getIfPresent(tableName) != null) {
+            throw newResourceNotFoundException(tableName);
+        }
+        try {
+            return getTableDescriptionNoCache(tableName);
+        } catch (ResourceNotFoundException e) {
+            missingTableCache.put(tableName, Boolean.TRUE);
+            throw e;
+        }
+    }
+
     private TableDescription getTableDescriptionNoCache(String tableName) {
         Map<String, AttributeValue> item = amazonDynamoDb.getItem(new GetItemRequest()
             .withTableName(getTableDescriptionTableName())
-            .withKey(new HashMap<>(ImmutableMap.of(tableDescriptionTableHashKeyField,
-                new AttributeValue(addPrefix(tableName)))))).getItem();
+            .withKey(getKey(tableName))).getItem();
         if (item == null) {
-            throw new ResourceNotFoundException("table metadata entry for '" + tableName + "' does not exist in "
-                + tableDescriptionTableName);
+            throw newResourceNotFoundException(tableName);
+        }
+        return toTableDescription(item.get(tableDescriptionTableDataField));
+    }
+
+    private void validateSnapshotDescription(String tableName, TableDescription snapshotDescription) {
+        try {
+            TableDescription tableDescription = getTableDescriptionNoCache(tableName);
+            if (!tableDescription.equals(snapshotDescription)) {
+                cache.put(tableName, tableDescription, () -> loadTableDescription(tableName));
+            }
+        } catch (ResourceNotFoundException e) {
+            cache.invalidate(tableName);
+        } catch (RuntimeException e) {
+            log.warn("failed to validate snapshot description of table {}, evicting it", tableName, e);
+            cache.invalidate(tableName);
         }
-        String tableDataJson = item.get(tableDescriptionTableDataField).getS();
-        return jsonToTableData(tableDataJson);
+    }
+
+    private static TableDescriptionSnapshot loadSnapshot(Path snapshotFile) {
+        if (!Files.exists(snapshotFile)) {
+            return TableDescriptionSnapshot.empty();
+        }
+        try {
+            return TableDescriptionSnapshot.load(snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("ignoring unreadable table description snapshot {}", snapshotFile, e);
+            return TableDescriptionSnapshot.empty();
+        }
+    }
+
+    private ResourceNotFoundException newResourceNotFoundException(String tableName) {
+        return new ResourceNotFoundException("table metadata entry for '" + tableName + "' does not exist in "
+            + tableDescriptionTableName);
     }
 
     @Override
@@ -130,37 +387,125 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
         TableDescription tableDescription = getTableDescription(tableName);
 
         cache.invalidate(tableName);
+        snapshot.remove(mtContext.getContext(), tableName);
 
         amazonDynamoDb.deleteItem(new DeleteItemRequest()
             .withTableName(getTableDescriptionTableName())
-            .withKey(new HashMap<>(ImmutableMap.of(tableDescriptionTableHashKeyField,
-                new AttributeValue(addPrefix(tableName))))));
+            .withKey(getKey(tableName)));
 
         return tableDescription;
     }
 
-    private String getTableDescriptionTableName() {
-        try {
-            cache.get(tableDescriptionTableName, () -> {
-                createTableDescriptionTableIfNotExists(pollIntervalSeconds);
-                return new TableDescription().withTableName(tableDescriptionTableName);
-            });
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
+    /*
+     * Returns the name of the table description table, creating the table if it does not exist yet.
+     */
+    String getTableDescriptionTableName() {
+        // tracked outside the description cache, so that it is neither refreshed, evicted nor invalidated with it
+        if (!tableDescriptionTableExists) {
+            synchronized (this) {
+                if (!tableDescriptionTableExists) {
+                    createTableDescriptionTableIfNotExists(pollIntervalSeconds);
+                    tableDescriptionTableExists = true;
+                }
+            }
         }
         return tableDescriptionTableName;
     }
 
     private void createTableDescriptionTableIfNotExists(int pollIntervalSeconds) {
-        adminUtils.createTableIfNotExists(
-            new CreateTableRequest().withTableName(tableDescriptionTableName)
-                .withKeySchema(new KeySchemaElement().withAttributeName(tableDescriptionTableHashKeyField)
-                    .withKeyType(KeyType.HASH))
+        CreateTableRequest createTableRequest = new CreateTableRequest().withTableName(tableDescriptionTableName)
+            .withKeySchema(new KeySchemaElement().withAttributeName(tableDescriptionTableHashKeyField)
+                .withKeyType(KeyType.HASH))
+            .withAttributeDefinitions(new AttributeDefinition()
+                .withAttributeName(tableDescriptionTableHashKeyField)
+                .withAttributeType(ScalarAttributeType.S))
+            .withProvisionedThroughput(provisionedThroughput);
+        if (streamEnabled) {
+            createTableRequest.withStreamSpecification(newStreamSpecification());
+        }
+        if (layout == Layout.V2) {
+            createTableRequest
+                .withKeySchema(new KeySchemaElement().withAttributeName(tableDescriptionTableRangeKeyField)
+                    .withKeyType(KeyType.RANGE))
                 .withAttributeDefinitions(new AttributeDefinition()
-                    .withAttributeName(tableDescriptionTableHashKeyField)
-                    .withAttributeType(ScalarAttributeType.S))
-                .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L)),
-            pollIntervalSeconds);
+                    .withAttributeName(tableDescriptionTableRangeKeyField)
+                    .withAttributeType(ScalarAttributeType.S));
+        }
+        // the throughput and stream of an existing table may differ from the configuration of this repo
+        adminUtils.createTableIfNotExistsMatchingPrimaryKey(createTableRequest, pollIntervalSeconds);
+        if (streamEnabled && !isStreamEnabled()) {
+            enableStream();
+        }
+    }
+
+    /*
+     * Enables the stream of a table description table that was created without one, e.g., before stream invalidation
+     * was configured.  Other nodes may enable it concurrently.
+     */
+    private void enableStream() {
+        try {
+            amazonDynamoDb.updateTable(new UpdateTableRequest()
+                .withTableName(tableDescriptionTableName)
+                .withStreamSpecification(newStreamSpecification()));
+            log.info("enabled stream of table description table {}", tableDescriptionTableName);
+        } catch (AmazonDynamoDBException e) {
+            if (!isStreamEnabled()) {
+                throw e;
+            }
+        }
+    }
+
+    private boolean isStreamEnabled() {
+        StreamSpecification streamSpecification = amazonDynamoDb.describeTable(tableDescriptionTableName).getTable()
+            .getStreamSpecification();
+        return streamSpecification != null && Boolean.TRUE.equals(streamSpecification.getStreamEnabled());
+    }
+
+    private static StreamSpecification newStreamSpecification() {
+        return new StreamSpecification().withStreamEnabled(true).withStreamViewType(StreamViewType.KEYS_ONLY);
+    }
+
+    private Map<String, AttributeValue> getKey(String tableName) {
+        return getKey(mtContext.getContext(), tableName);
+    }
+
+    private Map<String, AttributeValue> getKey(String context, String tableName) {
+        return layout == Layout.V1
+            ? new HashMap<>(ImmutableMap.of(tableDescriptionTableHashKeyField,
+                new AttributeValue(context + delimiter + tableName)))
+            : new HashMap<>(ImmutableMap.of(tableDescriptionTableHashKeyField, new AttributeValue(context),
+                tableDescriptionTableRangeKeyField, new AttributeValue(tableName)));
+    }
+
+    /*
+     * Returns the context of the given key of the table description table.
+     */
+    String getContext(Map<String, AttributeValue> key) {
+        if (layout == Layout.V2) {
+            return key.get(tableDescriptionTableHashKeyField).getS();
+        }
+        String hashKey = key.get(tableDescriptionTableHashKeyField).getS();
+        return hashKey.substring(0, getContextEnd(hashKey));
+    }
+
+    /*
+     * Returns the virtual table name of the given key of the table description table.
+     */
+    String getTableName(Map<String, AttributeValue> key) {
+        if (layout == Layout.V2) {
+            return key.get(tableDescriptionTableRangeKeyField).getS();
+        }
+        String hashKey = key.get(tableDescriptionTableHashKeyField).getS();
+        return hashKey.substring(getContextEnd(hashKey) + delimiter.length());
+    }
+
+    /*
+     * Assumes that contexts do not contain the delimiter.
+     */
+    private int getContextEnd(String hashKey) {
+        int contextEnd = hashKey.indexOf(delimiter);
+        checkArgument(contextEnd >= 0, "key %s is missing context prefix", hashKey);
+        return contextEnd;
     }
 
     private Map<String, AttributeValue> createItem(CreateTableRequest createTableRequest) {
@@ -188,10 +533,20 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
                         .withWriteCapacityUnits(gsi.getProvisionedThroughput().getWriteCapacityUnits())))
                 .collect(Collectors.toList()));
         }
-        String tableDataJson = tableDataToJson(tableDescription);
-        return new HashMap<>(ImmutableMap.of(
-            tableDescriptionTableHashKeyField, new AttributeValue(addPrefix(createTableRequest.getTableName())),
-            tableDescriptionTableDataField, new AttributeValue(tableDataJson)));
+        Map<String, AttributeValue> item = getKey(createTableRequest.getTableName());
+        item.put(tableDescriptionTableDataField, binaryEncoding
+            ? new AttributeValue().withB(ByteBuffer.wrap(TableDescriptionCodec.encode(tableDescription)))
+            : new AttributeValue(tableDataToJson(tableDescription)));
+        return item;
+    }
+
+    /*
+     * Decodes binary records and legacy JSON records, regardless of which encoding this repo writes.
+     */
+    private TableDescription toTableDescription(AttributeValue tableData) {
+        return tableData.getB() != null
+            ? TableDescriptionCodec.decode(tableData.getB())
+            : jsonToTableData(tableData.getS());
     }
 
     private String tableDataToJson(TableDescription tableDescription) {
@@ -202,23 +557,26 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
         return GSON.fromJson(tableDataString, TableDescription.class);
     }
 
-    private String addPrefix(String tableName) {
-        return getPrefix() + tableName;
-    }
-
-    private String getPrefix() {
-        return mtContext.getContext() + delimiter;
-    }
-
     public static class MtDynamoDbTableDescriptionRepoBuilder {
         private AmazonDynamoDB amazonDynamoDb;
         private MtAmazonDynamoDbContextProvider mtContext;
         private String tableDescriptionTableName;
+        private Layout layout;
         private String tableDescriptionTableHashKeyField;
+        private String tableDescriptionTableRangeKeyField;
         private String tableDescriptionTableDataField;
+        private ProvisionedThroughput provisionedThroughput;
+        private boolean binaryEncoding;
+        private boolean streamEnabled;
         private String delimiter;
         private Integer pollIntervalSeconds;
         private Optional<String> tablePrefix = Optional.empty();
+        private CacheBuilder<Object, Object> cacheBuilder;
+        private Executor cacheRefreshExecutor;
+        private long negativeCacheTtlMillis;
+        private long negativeCacheMaximumSize = 10_000L;
+        private Path snapshotFile;
+        private Executor snapshotValidationExecutor;
 
         public MtDynamoDbTableDescriptionRepoBuilder withAmazonDynamoDb(AmazonDynamoDB amazonDynamoDb) {
             this.amazonDynamoDb = amazonDynamoDb;
@@ -235,18 +593,66 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
             return this;
         }
 
+        /**
+         * Sets the key schema of the table description table.  Default: V1.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withLayout(Layout layout) {
+            this.layout = layout;
+            return this;
+        }
+
         public MtDynamoDbTableDescriptionRepoBuilder withTableDescriptionTableHashKeyField(
             String tableDescriptionTableHashKeyField) {
             this.tableDescriptionTableHashKeyField = tableDescriptionTableHashKeyField;
             return this;
         }
 
+        /**
+         * Sets the range key field of the table description table, which only the V2 layout has.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withTableDescriptionTableRangeKeyField(
+            String tableDescriptionTableRangeKeyField) {
+            this.tableDescriptionTableRangeKeyField = tableDescriptionTableRangeKeyField;
+            return this;
+        }
+
         public MtDynamoDbTableDescriptionRepoBuilder withTableDescriptionTableDataField(
             String tableDescriptionTableDataField) {
             this.tableDescriptionTableDataField = tableDescriptionTableDataField;
             return this;
         }
 
+        /**
+         * Sets the provisioned throughput of the table description table if it is created by this repo.  The throughput
+         * of an existing table is left as is, even if it differs.  Default: 1 read and 1 write capacity unit.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withProvisionedThroughput(long readCapacityUnits,
+                                                                              long writeCapacityUnits) {
+            this.provisionedThroughput = new ProvisionedThroughput(readCapacityUnits, writeCapacityUnits);
+            return this;
+        }
+
+        /**
+         * Sets whether table descriptions are written in a compact binary format rather than as JSON.  Either format is
+         * read regardless, so enable this only once all readers of the table description table support it.  Default:
+         * false.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withBinaryEncoding(boolean binaryEncoding) {
+            this.binaryEncoding = binaryEncoding;
+            return this;
+        }
+
+        /**
+         * Sets whether the table description table is created with a stream of the keys of changed records, which
+         * MtTableMetadataStreamListener consumes to invalidate caches.  If the table already exists without a stream,
+         * the stream is enabled with UpdateTable.  Nodes that do not set this work with the table either way.
+         * Default: false.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withStreamEnabled(boolean streamEnabled) {
+            this.streamEnabled = streamEnabled;
+            return this;
+        }
+
         public MtDynamoDbTableDescriptionRepoBuilder withDelimiter(String delimiter) {
             this.delimiter = delimiter;
             return this;
@@ -262,6 +668,64 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
             return this;
         }
 
+        /**
+         * Sets the CacheBuilder used to build the table description cache, which holds an entry per tenant and
+         * table, e.g., to bound its size with maximumSize, expire entries of cold tenants with expireAfterAccess, or
+         * to recordStats.  Default: an unbounded cache.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withCacheBuilder(CacheBuilder<Object, Object> cacheBuilder) {
+            this.cacheBuilder = cacheBuilder;
+            return this;
+        }
+
+        /**
+         * Sets the executor on which descriptions are reloaded when they are due for refresh according to the
+         * CacheBuilder's refreshAfterWrite, so that requests keep being served from the cache meanwhile.  Default:
+         * none, i.e., descriptions are reloaded by the request that finds them due.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withCacheRefreshExecutor(Executor cacheRefreshExecutor) {
+            this.cacheRefreshExecutor = cacheRefreshExecutor;
+            return this;
+        }
+
+        /**
+         * Sets how long tables that do not exist are cached as missing, per tenant and table.  Tables created through
+         * this repo, or invalidated, e.g., by MtTableMetadataStreamListener, are removed from the negative cache right
+         * away.  Otherwise, tables created through other nodes appear missing for up to this long, so keep it short.
+         * Default: 0, i.e., missing tables are not cached.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withNegativeCacheTtlMillis(long negativeCacheTtlMillis) {
+            this.negativeCacheTtlMillis = negativeCacheTtlMillis;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of tables that are cached as missing.  Default: 10,000.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withNegativeCacheMaximumSize(long negativeCacheMaximumSize) {
+            this.negativeCacheMaximumSize = negativeCacheMaximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the local file that table descriptions are loaded from on creation, if it exists, and written to by
+         * writeSnapshot.  Use a separate file per table description table.  Default: none.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withSnapshotFile(Path snapshotFile) {
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        /**
+         * Sets the executor on which descriptions loaded from the snapshot file are validated against the table
+         * description table.  Default: the common ForkJoinPool.
+         */
+        public MtDynamoDbTableDescriptionRepoBuilder withSnapshotValidationExecutor(
+            Executor snapshotValidationExecutor) {
+            this.snapshotValidationExecutor = snapshotValidationExecutor;
+            return this;
+        }
+
         /**
          * TODO: write Javadoc.
          */
@@ -273,21 +737,44 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
                 mtContext,
                 tableDescriptionTableName,
                 tablePrefix,
+                layout,
                 tableDescriptionTableHashKeyField,
+                tableDescriptionTableRangeKeyField,
                 tableDescriptionTableDataField,
+                provisionedThroughput,
+                binaryEncoding,
+                streamEnabled,
                 delimiter,
-                pollIntervalSeconds);
+                pollIntervalSeconds,
+                cacheBuilder,
+                cacheRefreshExecutor,
+                negativeCacheTtlMillis,
+                negativeCacheMaximumSize,
+                snapshotFile,
+                snapshotValidationExecutor);
         }
 
         private void validate() {
             checkArgument(amazonDynamoDb != null, "amazonDynamoDb is required");
             checkArgument(mtContext != null, "mtContext is required");
             checkArgument(tableDescriptionTableName != null, "tableDescriptionTableName is required");
+            checkArgument(negativeCacheTtlMillis >= 0, "negativeCacheTtlMillis must not be negative");
+            checkArgument(negativeCacheMaximumSize >= 0, "negativeCacheMaximumSize must not be negative");
         }
 
         private void setDefaults() {
+            if (layout == null) {
+                layout = Layout.V1;
+            }
             if (tableDescriptionTableHashKeyField == null) {
-                tableDescriptionTableHashKeyField = TABLEMETADATA_HKFIELD;
+                tableDescriptionTableHashKeyField = layout == Layout.V1 ? TABLEMETADATA_HKFIELD
+                    : TABLEMETADATA_V2_HKFIELD;
+            }
+            if (tableDescriptionTableRangeKeyField == null) {
+                tableDescriptionTableRangeKeyField = TABLEMETADATA_V2_RKFIELD;
+            }
+            if (provisionedThroughput == null) {
+                provisionedThroughput = new ProvisionedThroughput(1L, 1L);
             }
             if (tableDescriptionTableDataField == null) {
                 tableDescriptionTableDataField = TABLEMETADATA_DATAFIELD;
@@ -298,6 +785,12 @@ public class MtDynamoDbTableDescriptionRepo implements MtTableDescriptionRepo {
             if (pollIntervalSeconds == null) {
                 pollIntervalSeconds = 5;
             }
+            if (cacheBuilder == null) {
+                cacheBuilder = CacheBuilder.newBuilder();
+            }
+            if (snapshotValidationExecutor == null) {
+                snapshotValidationExecutor = ForkJoinPool.commonPool();
+            }
         }
 
     }
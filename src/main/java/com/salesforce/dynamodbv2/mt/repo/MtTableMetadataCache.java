@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+/**
+ * A cache of metadata derived from virtual table descriptions, e.g., the descriptions themselves or table mappings,
+ * whose entries can be invalidated when a table description changes.  See MtTableMetadataStreamListener.
+ */
+public interface MtTableMetadataCache {
+
+    /**
+     * Invalidates the cached metadata of the given virtual table of the given tenant.
+     */
+    void invalidate(String context, String tableName);
+
+    /**
+     * Invalidates the cached metadata of all virtual tables, e.g., when changes may have been missed.
+     */
+    void invalidateAll();
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Invalidates cached table metadata on every node when virtual tables are created or deleted through any node, by
+ * polling the stream of the table description table of a MtDynamoDbTableDescriptionRepo, whose stream must be enabled,
+ * see MtDynamoDbTableDescriptionRepoBuilder.withStreamEnabled.  Each node runs its own listener, which evicts the
+ * entries of changed tables from the repo's cache and from the additional caches it is built with, e.g., the table
+ * mapping cache of MtAmazonDynamoDbBySharedTable.
+ *
+ * <p>The listener reads the open shards of the stream from their latest records on.  Since changes that occurred
+ * before, or that could not be read because shard iterators expired, are unknown, it invalidates all cached metadata
+ * whenever it (re)starts reading the stream.  Usage:
+ *
+ * <pre>
+ * MtTableMetadataStreamListener listener = MtTableMetadataStreamListener.builder()
+ *     .withAmazonDynamoDb(amazonDynamoDb)
+ *     .withAmazonDynamoDbStreams(amazonDynamoDbStreams)
+ *     .withTableDescriptionRepo(tableDescriptionRepo)
+ *     .withCaches(mtAmazonDynamoDbBySharedTable)
+ *     .build();
+ * listener.start();
+ * </pre>
+ */
+public class MtTableMetadataStreamListener implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(MtTableMetadataStreamListener.class);
+
+    private final AmazonDynamoDB amazonDynamoDb;
+    private final AmazonDynamoDBStreams amazonDynamoDbStreams;
+    private final MtDynamoDbTableDescriptionRepo tableDescriptionRepo;
+    private final List<MtTableMetadataCache> caches;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final long pollIntervalMillis;
+
+    // shard iterators by shard id, of shards that have not been read completely
+    private final Map<String, String> shardIterators = new LinkedHashMap<>();
+    private final Set<String> closedShardIds = new HashSet<>();
+    private String streamArn;
+    private boolean discoverShards;
+    private ScheduledFuture<?> pollFuture;
+
+    private MtTableMetadataStreamListener(AmazonDynamoDB amazonDynamoDb,
+                                          AmazonDynamoDBStreams amazonDynamoDbStreams,
+                                          MtDynamoDbTableDescriptionRepo tableDescriptionRepo,
+                                          List<MtTableMetadataCache> caches,
+                                          ScheduledExecutorService executor,
+                                          boolean ownsExecutor,
+                                          long pollIntervalMillis) {
+        this.amazonDynamoDb = amazonDynamoDb;
+        this.amazonDynamoDbStreams = amazonDynamoDbStreams;
+        this.tableDescriptionRepo = tableDescriptionRepo;
+        this.caches = caches;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public static MtTableMetadataStreamListenerBuilder builder() {
+        return new MtTableMetadataStreamListenerBuilder();
+    }
+
+    /**
+     * Starts polling the stream in the background.
+     */
+    public synchronized void start() {
+        checkState(pollFuture == null, "listener was already started");
+        pollFuture = executor.scheduleWithFixedDelay(this::pollSafely, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling the stream, and shuts down the executor, unless it was passed to the builder.
+     */
+    @Override
+    public synchronized void close() {
+        if (pollFuture != null) {
+            pollFuture.cancel(false);
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.error("failed to poll table description stream, restarting from latest records", e);
+            reset();
+        }
+    }
+
+    /*
+     * Reads the records that were added to the stream since the last poll and invalidates the metadata of the tables
+     * they refer to.
+     */
+    synchronized void poll() {
+        if (streamArn == null) {
+            initialize();
+        } else if (discoverShards) {
+            discoverShards(ShardIteratorType.TRIM_HORIZON);
+        }
+        Iterator<Map.Entry<String, String>> shardIterator = shardIterators.entrySet().iterator();
+        while (shardIterator.hasNext()) {
+            Map.Entry<String, String> entry = shardIterator.next();
+            GetRecordsResult result;
+            try {
+                result = amazonDynamoDbStreams.getRecords(new GetRecordsRequest().withShardIterator(entry.getValue()));
+            } catch (ExpiredIteratorException | TrimmedDataAccessException e) {
+                log.warn("missed records of table description stream, restarting from latest records", e);
+                reset();
+                return;
+            }
+            for (Record record : result.getRecords()) {
+                invalidate(record.getDynamodb().getKeys());
+            }
+            if (result.getNextShardIterator() == null) {
+                // shard was split or rotated, so read its children next
+                closedShardIds.add(entry.getKey());
+                shardIterator.remove();
+                discoverShards = true;
+            } else {
+                entry.setValue(result.getNextShardIterator());
+            }
+        }
+    }
+
+    private void initialize() {
+        String tableName = tableDescriptionRepo.getTableDescriptionTableName();
+        String latestStreamArn = amazonDynamoDb.describeTable(tableName).getTable().getLatestStreamArn();
+        checkState(latestStreamArn != null, "stream of table description table %s is not enabled", tableName);
+        streamArn = latestStreamArn;
+        discoverShards(ShardIteratorType.LATEST);
+        // changes before the latest records are unknown
+        invalidateAll();
+    }
+
+    private void reset() {
+        streamArn = null;
+        shardIterators.clear();
+        closedShardIds.clear();
+    }
+
+    /*
+     * Acquires iterators for shards that are not read yet.  Closed shards are skipped when reading from the latest
+     * records, since they have no records after those.
+     */
+    private void discoverShards(ShardIteratorType iteratorType) {
+        DescribeStreamRequest describeStreamRequest = new DescribeStreamRequest().withStreamArn(streamArn);
+        StreamDescription streamDescription;
+        do {
+            streamDescription = amazonDynamoDbStreams.describeStream(describeStreamRequest).getStreamDescription();
+            for (Shard shard : streamDescription.getShards()) {
+                String shardId = shard.getShardId();
+                if (shardIterators.containsKey(shardId) || closedShardIds.contains(shardId)) {
+                    continue;
+                }
+                if (iteratorType == ShardIteratorType.LATEST
+                    && shard.getSequenceNumberRange().getEndingSequenceNumber() != null) {
+                    closedShardIds.add(shardId);
+                    continue;
+                }
+                shardIterators.put(shardId, amazonDynamoDbStreams.getShardIterator(new GetShardIteratorRequest()
+                    .withStreamArn(streamArn)
+                    .withShardId(shardId)
+                    .withShardIteratorType(iteratorType)).getShardIterator());
+            }
+            describeStreamRequest.setExclusiveStartShardId(streamDescription.getLastEvaluatedShardId());
+        } while (streamDescription.getLastEvaluatedShardId() != null);
+        discoverShards = false;
+    }
+
+    private void invalidate(Map<String, AttributeValue> key) {
+        String context = tableDescriptionRepo.getContext(key);
+        String tableName = tableDescriptionRepo.getTableName(key);
+        log.debug("invalidating metadata of table {} of context {}", tableName, context);
+        tableDescriptionRepo.invalidate(context, tableName);
+        caches.forEach(cache -> cache.invalidate(context, tableName));
+    }
+
+    private void invalidateAll() {
+        tableDescriptionRepo.invalidateAll();
+        caches.forEach(MtTableMetadataCache::invalidateAll);
+    }
+
+    public static class MtTableMetadataStreamListenerBuilder {
+        private AmazonDynamoDB amazonDynamoDb;
+        private AmazonDynamoDBStreams amazonDynamoDbStreams;
+        private MtDynamoDbTableDescriptionRepo tableDescriptionRepo;
+        private List<MtTableMetadataCache> caches = new ArrayList<>();
+        private ScheduledExecutorService executor;
+        private long pollIntervalMillis = 1000L;
+
+        public MtTableMetadataStreamListenerBuilder withAmazonDynamoDb(AmazonDynamoDB amazonDynamoDb) {
+            this.amazonDynamoDb = amazonDynamoDb;
+            return this;
+        }
+
+        public MtTableMetadataStreamListenerBuilder withAmazonDynamoDbStreams(
+            AmazonDynamoDBStreams amazonDynamoDbStreams) {
+            this.amazonDynamoDbStreams = amazonDynamoDbStreams;
+            return this;
+        }
+
+        /**
+         * Sets the repo whose table description table's stream is polled and whose cache is invalidated.
+         */
+        public MtTableMetadataStreamListenerBuilder withTableDescriptionRepo(
+            MtDynamoDbTableDescriptionRepo tableDescriptionRepo) {
+            this.tableDescriptionRepo = tableDescriptionRepo;
+            return this;
+        }
+
+        /**
+         * Sets caches of metadata derived from the repo's table descriptions that are invalidated in addition to the
+         * repo's cache.
+         */
+        public MtTableMetadataStreamListenerBuilder withCaches(MtTableMetadataCache... caches) {
+            this.caches = Arrays.asList(caches);
+            return this;
+        }
+
+        /**
+         * Sets the executor that polls the stream.  Default: a single daemon thread, which is shut down on close.
+         */
+        public MtTableMetadataStreamListenerBuilder withExecutor(ScheduledExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the delay between polls of the stream, which bounds how long other nodes serve stale metadata.  Must be
+         * well below the 15 minute lifetime of shard iterators.  Default: 1 second.
+         */
+        public MtTableMetadataStreamListenerBuilder withPollIntervalMillis(long pollIntervalMillis) {
+            this.pollIntervalMillis = pollIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Builds the listener, which does not poll the stream until it is started.
+         */
+        public MtTableMetadataStreamListener build() {
+            checkArgument(amazonDynamoDb != null, "amazonDynamoDb is required");
+            checkArgument(amazonDynamoDbStreams != null, "amazonDynamoDbStreams is required");
+            checkArgument(tableDescriptionRepo != null, "tableDescriptionRepo is required");
+            checkArgument(pollIntervalMillis > 0, "pollIntervalMillis must be positive");
+            boolean ownsExecutor = executor == null;
+            return new MtTableMetadataStreamListener(amazonDynamoDb, amazonDynamoDbStreams, tableDescriptionRepo,
+                new ArrayList<>(caches), ownsExecutor ? newDaemonExecutor() : executor, ownsExecutor,
+                pollIntervalMillis);
+        }
+
+        private static ScheduledExecutorService newDaemonExecutor() {
+            return Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mt-table-metadata-stream-listener");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Encodes the parts of virtual table descriptions that MtDynamoDbTableDescriptionRepo stores in a compact, versioned
+ * binary format: table name, key schema, attribute definitions, provisioned throughput, stream specification, and
+ * secondary indexes with their key schema, projection, and provisioned throughput.  Other fields are not encoded.
+ *
+ * The first byte is the format version.  Values are written in a fixed order without field names.  Lists are prefixed
+ * with their size and optional values with a presence flag, so that null and empty values are distinguished.  Values
+ * of DynamoDB enumerations, e.g., key types, are written as a single byte, unless they are not known to this version.
+ */
+final class TableDescriptionCodec {
+
+    static final byte VERSION = 1;
+
+    private static final List<String> KEY_TYPES = Arrays.asList("HASH", "RANGE");
+    private static final List<String> ATTRIBUTE_TYPES = Arrays.asList("S", "N", "B");
+    private static final List<String> PROJECTION_TYPES = Arrays.asList("ALL", "KEYS_ONLY", "INCLUDE");
+    private static final List<String> STREAM_VIEW_TYPES = Arrays.asList("NEW_IMAGE", "OLD_IMAGE", "NEW_AND_OLD_IMAGES",
+        "KEYS_ONLY");
+    private static final int UNKNOWN_SYMBOL = 0xFF;
+
+    private TableDescriptionCodec() {
+    }
+
+    static byte[] encode(TableDescription tableDescription) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeString(out, tableDescription.getTableName());
+            writeKeySchema(out, tableDescription.getKeySchema());
+            List<AttributeDefinition> attributeDefinitions = tableDescription.getAttributeDefinitions();
+            writeSize(out, attributeDefinitions);
+            if (attributeDefinitions != null) {
+                for (AttributeDefinition attributeDefinition : attributeDefinitions) {
+                    writeString(out, attributeDefinition.getAttributeName());
+                    writeSymbol(out, attributeDefinition.getAttributeType(), ATTRIBUTE_TYPES);
+                }
+            }
+            writeThroughput(out, tableDescription.getProvisionedThroughput());
+            StreamSpecification streamSpecification = tableDescription.getStreamSpecification();
+            out.writeBoolean(streamSpecification != null);
+            if (streamSpecification != null) {
+                writeBoolean(out, streamSpecification.getStreamEnabled());
+                writeSymbol(out, streamSpecification.getStreamViewType(), STREAM_VIEW_TYPES);
+            }
+            List<LocalSecondaryIndexDescription> lsis = tableDescription.getLocalSecondaryIndexes();
+            writeSize(out, lsis);
+            if (lsis != null) {
+                for (LocalSecondaryIndexDescription lsi : lsis) {
+                    writeString(out, lsi.getIndexName());
+                    writeKeySchema(out, lsi.getKeySchema());
+                    writeProjection(out, lsi.getProjection());
+                }
+            }
+            List<GlobalSecondaryIndexDescription> gsis = tableDescription.getGlobalSecondaryIndexes();
+            writeSize(out, gsis);
+            if (gsis != null) {
+                for (GlobalSecondaryIndexDescription gsi : gsis) {
+                    writeString(out, gsi.getIndexName());
+                    writeKeySchema(out, gsi.getKeySchema());
+                    writeProjection(out, gsi.getProjection());
+                    writeThroughput(out, gsi.getProvisionedThroughput());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * Decodes the remaining bytes of the given buffer, leaving the buffer's position as is.
+     */
+    static TableDescription decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+            checkArgument(version == VERSION, "unsupported table description version %s", version);
+            TableDescription tableDescription = new TableDescription()
+                .withTableName(readString(in))
+                .withKeySchema(readKeySchema(in));
+            int attributeDefinitionCount = in.readShort();
+            if (attributeDefinitionCount >= 0) {
+                List<AttributeDefinition> attributeDefinitions = new ArrayList<>(attributeDefinitionCount);
+                for (int i = 0; i < attributeDefinitionCount; i++) {
+                    attributeDefinitions.add(new AttributeDefinition()
+                        .withAttributeName(readString(in))
+                        .withAttributeType(readSymbol(in, ATTRIBUTE_TYPES)));
+                }
+                tableDescription.setAttributeDefinitions(attributeDefinitions);
+            }
+            tableDescription.setProvisionedThroughput(readThroughput(in));
+            if (in.readBoolean()) {
+                tableDescription.setStreamSpecification(new StreamSpecification()
+                    .withStreamEnabled(readBoolean(in))
+                    .withStreamViewType(readSymbol(in, STREAM_VIEW_TYPES)));
+            }
+            int lsiCount = in.readShort();
+            if (lsiCount >= 0) {
+                List<LocalSecondaryIndexDescription> lsis = new ArrayList<>(lsiCount);
+                for (int i = 0; i < lsiCount; i++) {
+                    lsis.add(new LocalSecondaryIndexDescription()
+                        .withIndexName(readString(in))
+                        .withKeySchema(readKeySchema(in))
+                        .withProjection(readProjection(in)));
+                }
+                tableDescription.setLocalSecondaryIndexes(lsis);
+            }
+            int gsiCount = in.readShort();
+            if (gsiCount >= 0) {
+                List<GlobalSecondaryIndexDescription> gsis = new ArrayList<>(gsiCount);
+                for (int i = 0; i < gsiCount; i++) {
+                    gsis.add(new GlobalSecondaryIndexDescription()
+                        .withIndexName(readString(in))
+                        .withKeySchema(readKeySchema(in))
+                        .withProjection(readProjection(in))
+                        .withProvisionedThroughput(readThroughput(in)));
+                }
+                tableDescription.setGlobalSecondaryIndexes(gsis);
+            }
+            return tableDescription;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeKeySchema(DataOutput out, List<KeySchemaElement> keySchema) throws IOException {
+        writeSize(out, keySchema);
+        if (keySchema != null) {
+            for (KeySchemaElement keySchemaElement : keySchema) {
+                writeString(out, keySchemaElement.getAttributeName());
+                writeSymbol(out, keySchemaElement.getKeyType(), KEY_TYPES);
+            }
+        }
+    }
+
+    private static List<KeySchemaElement> readKeySchema(DataInput in) throws IOException {
+        int size = in.readShort();
+        if (size < 0) {
+            return null;
+        }
+        List<KeySchemaElement> keySchema = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            keySchema.add(new KeySchemaElement()
+                .withAttributeName(readString(in))
+                .withKeyType(readSymbol(in, KEY_TYPES)));
+        }
+        return keySchema;
+    }
+
+    private static void writeProjection(DataOutput out, Projection projection) throws IOException {
+        out.writeBoolean(projection != null);
+        if (projection != null) {
+            writeSymbol(out, projection.getProjectionType(), PROJECTION_TYPES);
+            List<String> nonKeyAttributes = projection.getNonKeyAttributes();
+            writeSize(out, nonKeyAttributes);
+            if (nonKeyAttributes != null) {
+                for (String nonKeyAttribute : nonKeyAttributes) {
+                    writeString(out, nonKeyAttribute);
+                }
+            }
+        }
+    }
+
+    private static Projection readProjection(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Projection projection = new Projection().withProjectionType(readSymbol(in, PROJECTION_TYPES));
+        int size = in.readShort();
+        if (size >= 0) {
+            List<String> nonKeyAttributes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                nonKeyAttributes.add(readString(in));
+            }
+            projection.setNonKeyAttributes(nonKeyAttributes);
+        }
+        return projection;
+    }
+
+    private static void writeThroughput(DataOutput out, ProvisionedThroughputDescription throughput)
+        throws IOException {
+        out.writeBoolean(throughput != null);
+        if (throughput != null) {
+            writeLong(out, throughput.getReadCapacityUnits());
+            writeLong(out, throughput.getWriteCapacityUnits());
+        }
+    }
+
+    private static ProvisionedThroughputDescription readThroughput(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new ProvisionedThroughputDescription()
+            .withReadCapacityUnits(readLong(in))
+            .withWriteCapacityUnits(readLong(in));
+    }
+
+    private static void writeSize(DataOutput out, List<?> list) throws IOException {
+        if (list == null) {
+            out.writeShort(-1);
+        } else {
+            checkArgument(list.size() <= Short.MAX_VALUE, "list of %s elements is too long", list.size());
+            out.writeShort(list.size());
+        }
+    }
+
+    private static void writeSymbol(DataOutput out, String value, List<String> symbols) throws IOException {
+        int index = value == null ? -1 : symbols.indexOf(value);
+        if (index >= 0) {
+            out.writeByte(index);
+        } else {
+            out.writeByte(UNKNOWN_SYMBOL);
+            writeString(out, value);
+        }
+    }
+
+    private static String readSymbol(DataInput in, List<String> symbols) throws IOException {
+        int index = in.readUnsignedByte();
+        return index == UNKNOWN_SYMBOL ? readString(in) : symbols.get(index);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeBoolean(DataOutput out, Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : value ? 1 : 0);
+    }
+
+    private static Boolean readBoolean(DataInput in) throws IOException {
+        byte value = in.readByte();
+        return value < 0 ? null : value == 1;
+    }
+
+}
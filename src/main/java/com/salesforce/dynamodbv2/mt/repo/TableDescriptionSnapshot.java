@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * A read-only snapshot of table descriptions by context and table name, stored in a local file that is memory-mapped,
+ * so that loading it only indexes the entries, while descriptions are decoded when they are first requested.
+ *
+ * The file starts with a magic number and the format version, followed by the number of entries and the entries.  Each
+ * entry consists of the context and table name, each prefixed with its length, and the description as encoded by
+ * TableDescriptionCodec, prefixed with its length.  Snapshots are written to a temporary file first, which then
+ * replaces the snapshot file, so that concurrent readers never see a partially written file.
+ */
+final class TableDescriptionSnapshot {
+
+    private static final int MAGIC = 0x4d544453;
+    private static final byte VERSION = 1;
+
+    private final ByteBuffer buffer;
+    // positions and lengths of the descriptions in the buffer, packed into a long, by context and table name
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> entries;
+
+    private TableDescriptionSnapshot(ByteBuffer buffer, ConcurrentMap<String, ConcurrentMap<String, Long>> entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    static TableDescriptionSnapshot empty() {
+        return new TableDescriptionSnapshot(ByteBuffer.allocate(0), new ConcurrentHashMap<>());
+    }
+
+    /*
+     * Maps the given snapshot file and indexes its entries.  Throws IllegalArgumentException if the file is not a
+     * snapshot of a supported version.
+     */
+    static TableDescriptionSnapshot load(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer in = buffer.duplicate();
+        checkArgument(in.remaining() >= 9 && in.getInt() == MAGIC, "%s is not a table description snapshot", file);
+        byte version = in.get();
+        checkArgument(version == VERSION, "unsupported table description snapshot version %s", version);
+        int count = in.getInt();
+        ConcurrentMap<String, ConcurrentMap<String, Long>> entries = new ConcurrentHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String context = readString(in);
+            String tableName = readString(in);
+            int length = in.getInt();
+            int position = in.position();
+            checkArgument(length >= 0 && length <= in.remaining(), "%s is truncated", file);
+            in.position(position + length);
+            entries.computeIfAbsent(context, c -> new ConcurrentHashMap<>())
+                .put(tableName, (long) position << 32 | length);
+        }
+        return new TableDescriptionSnapshot(buffer, entries);
+    }
+
+    /*
+     * Writes the given encoded table descriptions by context and table name to the given file.
+     */
+    static void write(Path file, Map<String, Map<String, byte[]>> descriptions) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(descriptions.values().stream().mapToInt(Map::size).sum());
+            for (Map.Entry<String, Map<String, byte[]>> contextEntry : descriptions.entrySet()) {
+                for (Map.Entry<String, byte[]> tableEntry : contextEntry.getValue().entrySet()) {
+                    writeString(out, contextEntry.getKey());
+                    writeString(out, tableEntry.getKey());
+                    out.writeInt(tableEntry.getValue().length);
+                    out.write(tableEntry.getValue());
+                }
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /*
+     * Returns the description of the given table of the given context, or null if the snapshot does not contain it.
+     */
+    TableDescription get(String context, String tableName) {
+        Long entry = getEntry(context, tableName);
+        return entry == null ? null : TableDescriptionCodec.decode(slice(entry));
+    }
+
+    /*
+     * Removes the given table of the given context from the snapshot.  Returns whether the snapshot contained it.
+     */
+    boolean remove(String context, String tableName) {
+        Map<String, Long> tables = context == null ? null : entries.get(context);
+        if (tables == null || tables.remove(tableName) == null) {
+            return false;
+        }
+        if (tables.isEmpty()) {
+            // entries are never added after loading, so that the snapshot becomes empty once all are removed
+            entries.remove(context, tables);
+        }
+        return true;
+    }
+
+    /*
+     * Returns copies of the encoded descriptions remaining in the snapshot, by context and table name.
+     */
+    Map<String, Map<String, byte[]>> getEncodedDescriptions() {
+        Map<String, Map<String, byte[]>> descriptions = new HashMap<>();
+        entries.forEach((context, tables) -> tables.forEach((tableName, entry) -> {
+            ByteBuffer slice = slice(entry);
+            byte[] bytes = new byte[slice.remaining()];
+            slice.get(bytes);
+            descriptions.computeIfAbsent(context, c -> new HashMap<>()).put(tableName, bytes);
+        }));
+        return descriptions;
+    }
+
+    private Long getEntry(String context, String tableName) {
+        Map<String, Long> tables = context == null ? null : entries.get(context);
+        return tables == null ? null : tables.get(tableName);
+    }
+
+    private ByteBuffer slice(long entry) {
+        int position = (int) (entry >>> 32);
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position);
+        slice.limit(position + (int) entry);
+        return slice;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        checkArgument(bytes.length <= 0xFFFF, "%s is too long", value);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests MtCache.
+ */
+class MtCacheTest {
+
+    private static final MtAmazonDynamoDbContextProvider MT_CONTEXT = new MtAmazonDynamoDbContextProviderImpl();
+
+    @Test
+    void entriesAreScopedToContext() {
+        MtCache<String> sut = new MtCache<>(MT_CONTEXT);
+        MT_CONTEXT.setContext("ctx1");
+        sut.put("key", "value1");
+        MT_CONTEXT.setContext("ctx2");
+        assertNull(sut.getIfPresent("key"));
+        sut.put("key", "value2");
+        assertEquals("value2", sut.getIfPresent("key"));
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals("value1", sut.getIfPresent("key"));
+        sut.invalidate("key");
+        assertNull(sut.getIfPresent("key"));
+        MT_CONTEXT.setContext("ctx2");
+        assertEquals("value2", sut.getIfPresent("key"));
+    }
+
+    @Test
+    void keysDoNotCollideAcrossContexts() {
+        MtCache<String> sut = new MtCache<>(MT_CONTEXT);
+        MT_CONTEXT.setContext("a-b");
+        sut.put("c", "value1");
+        MT_CONTEXT.setContext("a");
+        assertNull(sut.getIfPresent("b-c"));
+    }
+
+    @Test
+    void maximumSizeAndStats() throws Exception {
+        MtCache<String> sut = new MtCache<>(MT_CONTEXT, CacheBuilder.newBuilder().maximumSize(1).recordStats());
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals("value1", sut.get("key", () -> "value1"));
+        assertEquals("value1", sut.get("key", () -> "other"));
+        MT_CONTEXT.setContext("ctx2");
+        assertEquals("value2", sut.get("key", () -> "value2"));
+        assertEquals(1, sut.size());
+        assertEquals(1, sut.stats().hitCount());
+        assertEquals(2, sut.stats().missCount());
+        assertEquals(1, sut.stats().evictionCount());
+    }
+
+    @Test
+    void refreshesWithLoaderOfKey() throws Exception {
+        AtomicLong nanoTime = new AtomicLong();
+        MtCache<String> sut = new MtCache<>(MT_CONTEXT, CacheBuilder.newBuilder()
+            .ticker(new Ticker() {
+                @Override
+                public long read() {
+                    return nanoTime.get();
+                }
+            })
+            .refreshAfterWrite(1, TimeUnit.SECONDS));
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals("first", sut.get("get", () -> "first"));
+        assertEquals("first", sut.get("getIfPresent", () -> "first"));
+        sut.put("putWithLoader", "put", () -> "loaded");
+        sut.put("put", "put");
+        sut.put("putThenGet", "put");
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        // get reloads with the loader passed to it
+        assertEquals("second", sut.get("get", () -> "second"));
+        assertEquals("second", sut.get("putThenGet", () -> "second"));
+        // getIfPresent reloads with the loader of the get or put that added the entry, if any
+        assertEquals("first", sut.getIfPresent("getIfPresent"));
+        assertEquals("loaded", sut.getIfPresent("putWithLoader"));
+        assertEquals("put", sut.getIfPresent("put"));
+        // which restarts the refresh interval of entries put without a loader
+        assertEquals("put", sut.get("put", () -> "second"));
+    }
+
+    @Test
+    void refreshesAsynchronouslyWithinContext() throws Exception {
+        AtomicLong nanoTime = new AtomicLong();
+        List<Runnable> refreshes = new ArrayList<>();
+        MtCache<String> sut = new MtCache<>(MT_CONTEXT, CacheBuilder.newBuilder()
+            .ticker(new Ticker() {
+                @Override
+                public long read() {
+                    return nanoTime.get();
+                }
+            })
+            .refreshAfterWrite(1, TimeUnit.SECONDS), refreshes::add);
+        AtomicInteger loads = new AtomicInteger();
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals("ctx1-1", sut.get("key", () -> MT_CONTEXT.getContext() + "-" + loads.incrementAndGet()));
+
+        // the stale value is served while the reload is pending
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals("ctx1-1", sut.get("key", () -> MT_CONTEXT.getContext() + "-" + loads.incrementAndGet()));
+        assertEquals(1, refreshes.size());
+        assertEquals(1, loads.get());
+
+        // the reload runs within the context of the entry
+        MT_CONTEXT.setContext("ctx2");
+        refreshes.forEach(Runnable::run);
+        assertNull(sut.getIfPresent("key"));
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals("ctx1-2", sut.getIfPresent("key"));
+    }
+
+}
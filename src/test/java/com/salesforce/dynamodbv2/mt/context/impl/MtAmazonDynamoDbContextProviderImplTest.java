@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.context.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests MtAmazonDynamoDbContextProviderImpl and the scoped context API of MtAmazonDynamoDbContextProvider.
+ */
+class MtAmazonDynamoDbContextProviderImplTest {
+
+    private final MtAmazonDynamoDbContextProviderImpl mtContext = new MtAmazonDynamoDbContextProviderImpl();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void noContext() {
+        assertThrows(IllegalStateException.class, mtContext::getContext);
+        assertEquals(Optional.empty(), mtContext.getContextOpt());
+        mtContext.setContext("ctx");
+        mtContext.setContext(null);
+        assertEquals(Optional.empty(), mtContext.getContextOpt());
+    }
+
+    @Test
+    void withContextRestoresPreviousContext() {
+        mtContext.setContext("outer");
+        assertEquals("inner", mtContext.withContext("inner", mtContext::getContext));
+        assertEquals("outer", mtContext.getContext());
+        assertThrows(IllegalStateException.class, () -> mtContext.withContext("inner", () -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals("outer", mtContext.getContext());
+        mtContext.withContext(null, () -> assertFalse(mtContext.getContextOpt().isPresent()));
+        assertEquals("outer", mtContext.getContext());
+        mtContext.setContext(null);
+    }
+
+    @Test
+    void callWithContextRestoresPreviousContext() throws Exception {
+        mtContext.setContext("outer");
+        assertEquals("inner", mtContext.callWithContext("inner", mtContext::getContext));
+        assertEquals("outer", mtContext.getContext());
+        assertThrows(IOException.class, () -> mtContext.callWithContext("inner", () -> {
+            throw new IOException();
+        }));
+        assertEquals("outer", mtContext.getContext());
+        mtContext.setContext(null);
+    }
+
+    @Test
+    void wrappedExecutorServicePropagatesContext() throws Exception {
+        ExecutorService wrapped = mtContext.wrap(executor);
+        mtContext.setContext("ctx1");
+        Future<String> first = wrapped.submit(mtContext::getContext);
+        mtContext.setContext("ctx2");
+        Future<String> second = wrapped.submit(mtContext::getContext);
+        mtContext.setContext(null);
+        assertEquals("ctx1", first.get());
+        assertEquals("ctx2", second.get());
+        // the pooled thread does not retain the context of the tasks it ran
+        assertEquals(Optional.empty(), executor.submit(mtContext::getContextOpt).get());
+    }
+
+    @Test
+    void supplyAsyncPropagatesContext() {
+        mtContext.setContext("ctx");
+        assertEquals("ctx", mtContext.supplyAsync(mtContext::getContext, executor).join());
+        mtContext.setContext(null);
+    }
+
+}
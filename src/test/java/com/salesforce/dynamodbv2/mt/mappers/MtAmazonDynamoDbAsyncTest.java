@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.SharedTableBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests MtAmazonDynamoDbAsync against a chain of mappers on top of an asynchronous client that completes requests on
+ * other threads.
+ */
+class MtAmazonDynamoDbAsyncTest {
+
+    private static final AmazonDynamoDB localAmazonDynamoDb = MtAmazonDynamoDbTestRunner.getLocalAmazonDynamoDb();
+
+    @Test
+    void putAndGetItem() throws Exception {
+        MtAmazonDynamoDbContextProviderImpl mtContext = new MtAmazonDynamoDbContextProviderImpl();
+        MtAmazonDynamoDbLogger logger = MtAmazonDynamoDbLogger.builder()
+            .withAmazonDynamoDb(new LocalAmazonDynamoDbAsync())
+            .withContext(mtContext)
+            .withMethodsToLog(ImmutableList.of("getItem", "putItem")).build();
+        MtAmazonDynamoDbByTable byTable = MtAmazonDynamoDbByTable.builder()
+            .withAmazonDynamoDb(logger)
+            .withTablePrefix("async.")
+            .withContext(mtContext).build();
+        MtAmazonDynamoDbAsync mtAmazonDynamoDbAsync = MtAmazonDynamoDbAsync.builder()
+            .withAmazonDynamoDb(byTable).build();
+
+        mtContext.setContext("ctx1");
+        mtAmazonDynamoDbAsync.createTable(CreateTableRequestBuilder.builder()
+            .withTableName("table")
+            .withTableKeySchema("hk", S)
+            .withProvisionedThroughput(1L, 1L).build());
+        Map<String, AttributeValue> item = ImmutableMap.of("hk", new AttributeValue("hkvalue"),
+            "attr", new AttributeValue("value"));
+        Future<PutItemResult> putItemResult = mtAmazonDynamoDbAsync.putItemAsync(new PutItemRequest()
+            .withTableName("table").withItem(item));
+        mtContext.setContext("ctx2");
+        putItemResult.get();
+
+        // the item was written to the table of the context at the time of the call
+        assertEquals(item, localAmazonDynamoDb.getItem(new GetItemRequest()
+            .withTableName("async.ctx1.table")
+            .withKey(ImmutableMap.of("hk", new AttributeValue("hkvalue")))).getItem());
+
+        mtContext.setContext("ctx1");
+        CompletableFuture<GetItemResult> handled = new CompletableFuture<>();
+        Future<GetItemResult> getItemResult = mtAmazonDynamoDbAsync.getItemAsync(new GetItemRequest()
+                .withTableName("table").withKey(ImmutableMap.of("hk", new AttributeValue("hkvalue"))),
+            new AsyncHandler<GetItemRequest, GetItemResult>() {
+                @Override
+                public void onError(Exception exception) {
+                    handled.completeExceptionally(exception);
+                }
+
+                @Override
+                public void onSuccess(GetItemRequest request, GetItemResult getItemResult) {
+                    handled.complete(getItemResult);
+                }
+            });
+        assertEquals(item, getItemResult.get().getItem());
+        assertEquals(item, handled.get().getItem());
+
+        mtContext.setContext(null);
+        localAmazonDynamoDb.deleteTable("async.ctx1.table");
+    }
+
+    @Test
+    void getItemOfMissingTableFails() {
+        MtAmazonDynamoDbContextProviderImpl mtContext = new MtAmazonDynamoDbContextProviderImpl();
+        MtAmazonDynamoDbAsync mtAmazonDynamoDbAsync = MtAmazonDynamoDbAsync.builder()
+            .withAmazonDynamoDb(MtAmazonDynamoDbByTable.builder()
+                .withAmazonDynamoDb(new LocalAmazonDynamoDbAsync())
+                .withContext(mtContext).build()).build();
+        mtContext.setContext("ctx1");
+        Future<GetItemResult> getItemResult = mtAmazonDynamoDbAsync.getItemAsync(new GetItemRequest()
+            .withTableName("missing").withKey(ImmutableMap.of("hk", new AttributeValue("hkvalue"))));
+        assertThrows(ExecutionException.class, getItemResult::get);
+        mtContext.setContext(null);
+    }
+
+    /*
+     * Scans a virtual table with a page size of one, so that most physical pages of the shared table contain no items
+     * of the tenant and the mapped scan continues with the next physical page.
+     */
+    @Test
+    void scanOfSharedTable() throws Exception {
+        scanOfSharedTable("asyncScan-", sharedTable -> sharedTable);
+    }
+
+    /*
+     * Same as scanOfSharedTable, with a logger on top of the shared table, which maps requests recursively.
+     */
+    @Test
+    void scanOfLoggedSharedTable() throws Exception {
+        scanOfSharedTable("asyncLoggedScan-", sharedTable -> MtAmazonDynamoDbLogger.builder()
+            .withAmazonDynamoDb(sharedTable)
+            .withContext(sharedTable.getMtContext())
+            .withMethodsToLog(ImmutableList.of("scan")).build());
+    }
+
+    private void scanOfSharedTable(String tablePrefix,
+                                   Function<MtAmazonDynamoDbBySharedTable, MtAmazonDynamoDbBase> chain)
+        throws Exception {
+        MtAmazonDynamoDbContextProviderImpl mtContext = new MtAmazonDynamoDbContextProviderImpl();
+        LocalAmazonDynamoDbAsync localAmazonDynamoDbAsync = new LocalAmazonDynamoDbAsync();
+        MtAmazonDynamoDbBySharedTable sharedTable = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(localAmazonDynamoDbAsync)
+            .withContext(mtContext)
+            .withTablePrefix(tablePrefix)
+            .withPollIntervalSeconds(0)
+            .build();
+        MtAmazonDynamoDbAsync mtAmazonDynamoDbAsync = MtAmazonDynamoDbAsync.builder()
+            .withAmazonDynamoDb(chain.apply(sharedTable)).build();
+        Map<String, AttributeValue> item = ImmutableMap.of("hk", new AttributeValue("hkvalue"));
+        for (String context : ImmutableList.of("ctx1", "ctx2")) {
+            mtContext.setContext(context);
+            sharedTable.createTable(CreateTableRequestBuilder.builder()
+                .withTableName("table")
+                .withTableKeySchema("hk", S)
+                .withProvisionedThroughput(1L, 1L).build());
+        }
+        mtContext.setContext("ctx1");
+        IntStream.range(0, 10).forEach(i -> sharedTable.putItem(new PutItemRequest().withTableName("table")
+            .withItem(ImmutableMap.of("hk", new AttributeValue("hkvalue" + i)))));
+        mtContext.setContext("ctx2");
+        sharedTable.putItem(new PutItemRequest().withTableName("table").withItem(item));
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        ScanRequest scanRequest = new ScanRequest().withTableName("table").withLimit(1);
+        int scans = 0;
+        ScanResult scanResult;
+        do {
+            scanResult = mtAmazonDynamoDbAsync.scanAsync(scanRequest).get();
+            scans++;
+            items.addAll(scanResult.getItems());
+            scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        } while (scanResult.getLastEvaluatedKey() != null);
+
+        // all eleven physical items were scanned, while each virtual scan returned at most one item
+        assertEquals(ImmutableList.of(item), items);
+        assertTrue(localAmazonDynamoDbAsync.scans.get() >= 11);
+        assertTrue(scans < localAmazonDynamoDbAsync.scans.get());
+
+        sharedTable.deleteTable("table");
+        mtContext.setContext("ctx1");
+        sharedTable.deleteTable("table");
+        mtContext.setContext(null);
+    }
+
+    /*
+     * Scans a virtual table of a shared table with a tenant partition index with a page size of one, so that pages span
+     * empty buckets, and checks that the asynchronous scan queries the index and returns the same pages as the blocking
+     * scan, with the consumed capacity of all queries of a page added up.
+     */
+    @Test
+    void tenantPartitionedScanOfSharedTable() throws Exception {
+        MtAmazonDynamoDbContextProviderImpl mtContext = new MtAmazonDynamoDbContextProviderImpl();
+        LocalAmazonDynamoDbAsync localAmazonDynamoDbAsync = new LocalAmazonDynamoDbAsync();
+        MtAmazonDynamoDbBySharedTable sharedTable = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(localAmazonDynamoDbAsync)
+            .withContext(mtContext)
+            .withTablePrefix("asyncPartitionedScan-")
+            .withTenantPartitionedScan(true)
+            .withTenantPartitionBuckets(3)
+            .withPollIntervalSeconds(0)
+            .build();
+        MtAmazonDynamoDbAsync mtAmazonDynamoDbAsync = MtAmazonDynamoDbAsync.builder()
+            .withAmazonDynamoDb(MtAmazonDynamoDbLogger.builder()
+                .withAmazonDynamoDb(sharedTable)
+                .withContext(mtContext)
+                .withMethodsToLog(ImmutableList.of("scan")).build()).build();
+        for (String context : ImmutableList.of("ctx1", "ctx2")) {
+            mtContext.setContext(context);
+            sharedTable.createTable(CreateTableRequestBuilder.builder()
+                .withTableName("table")
+                .withTableKeySchema("hk", S)
+                .withProvisionedThroughput(1L, 1L).build());
+            IntStream.range(0, 5).forEach(i -> sharedTable.putItem(new PutItemRequest().withTableName("table")
+                .withItem(ImmutableMap.of("hk", new AttributeValue(context + "hkvalue" + i)))));
+        }
+
+        mtContext.setContext("ctx1");
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        ScanRequest scanRequest = new ScanRequest().withTableName("table").withLimit(1)
+            .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        int pages = 0;
+        double capacityUnits = 0;
+        ScanResult scanResult;
+        do {
+            scanResult = mtAmazonDynamoDbAsync.scanAsync(scanRequest.clone()).get();
+            ScanResult blockingScanResult = sharedTable.scan(scanRequest.clone());
+            assertEquals(blockingScanResult.getItems(), scanResult.getItems());
+            assertEquals(blockingScanResult.getLastEvaluatedKey(), scanResult.getLastEvaluatedKey());
+            pages++;
+            capacityUnits += scanResult.getConsumedCapacity().getCapacityUnits();
+            items.addAll(scanResult.getItems());
+            scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        } while (scanResult.getLastEvaluatedKey() != null);
+
+        assertEquals(IntStream.range(0, 5).mapToObj(i -> "ctx1hkvalue" + i).collect(Collectors.toSet()),
+            items.stream().map(item -> item.get("hk").getS()).collect(Collectors.toSet()));
+        assertEquals(0, localAmazonDynamoDbAsync.scans.get());
+        assertTrue(localAmazonDynamoDbAsync.queries.get() > pages);
+        assertEquals(localAmazonDynamoDbAsync.queries.get(), capacityUnits);
+
+        sharedTable.deleteTable("table");
+        mtContext.setContext("ctx2");
+        sharedTable.deleteTable("table");
+        mtContext.setContext(null);
+    }
+
+    /*
+     * Asynchronous client that issues requests against the local DynamoDB on the common ForkJoinPool.  Synchronous
+     * requests, e.g., to create tables and to read and write table descriptions, are passed to the local DynamoDB.
+     */
+    private static class LocalAmazonDynamoDbAsync extends AbstractAmazonDynamoDBAsync {
+
+        private final AtomicInteger scans = new AtomicInteger();
+        private final AtomicInteger queries = new AtomicInteger();
+
+        @Override
+        public Future<GetItemResult> getItemAsync(GetItemRequest getItemRequest,
+                                                  AsyncHandler<GetItemRequest, GetItemResult> asyncHandler) {
+            return supplyAsync(getItemRequest, asyncHandler, () -> localAmazonDynamoDb.getItem(getItemRequest));
+        }
+
+        @Override
+        public Future<PutItemResult> putItemAsync(PutItemRequest putItemRequest,
+                                                  AsyncHandler<PutItemRequest, PutItemResult> asyncHandler) {
+            return supplyAsync(putItemRequest, asyncHandler, () -> localAmazonDynamoDb.putItem(putItemRequest));
+        }
+
+        @Override
+        public Future<ScanResult> scanAsync(ScanRequest scanRequest,
+                                            AsyncHandler<ScanRequest, ScanResult> asyncHandler) {
+            scans.incrementAndGet();
+            return supplyAsync(scanRequest, asyncHandler, () -> localAmazonDynamoDb.scan(scanRequest));
+        }
+
+        @Override
+        public Future<QueryResult> queryAsync(QueryRequest queryRequest,
+                                              AsyncHandler<QueryRequest, QueryResult> asyncHandler) {
+            queries.incrementAndGet();
+            return supplyAsync(queryRequest, asyncHandler, () -> query(queryRequest));
+        }
+
+        /*
+         * The local DynamoDB may not report consumed capacity, so each query reports one capacity unit instead.
+         */
+        @Override
+        public QueryResult query(QueryRequest queryRequest) {
+            return localAmazonDynamoDb.query(queryRequest).withConsumedCapacity(new ConsumedCapacity()
+                .withTableName(queryRequest.getTableName()).withCapacityUnits(1.0));
+        }
+
+        @Override
+        public CreateTableResult createTable(CreateTableRequest createTableRequest) {
+            return localAmazonDynamoDb.createTable(createTableRequest);
+        }
+
+        @Override
+        public DescribeTableResult describeTable(DescribeTableRequest describeTableRequest) {
+            return localAmazonDynamoDb.describeTable(describeTableRequest);
+        }
+
+        @Override
+        public GetItemResult getItem(GetItemRequest getItemRequest) {
+            return localAmazonDynamoDb.getItem(getItemRequest);
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest putItemRequest) {
+            return localAmazonDynamoDb.putItem(putItemRequest);
+        }
+
+        @Override
+        public DeleteItemResult deleteItem(DeleteItemRequest deleteItemRequest) {
+            return localAmazonDynamoDb.deleteItem(deleteItemRequest);
+        }
+
+        private static <RequestT extends AmazonWebServiceRequest, ResultT> Future<ResultT> supplyAsync(
+            RequestT request, AsyncHandler<RequestT, ResultT> asyncHandler, Supplier<ResultT> supplier) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    ResultT result = supplier.get();
+                    asyncHandler.onSuccess(request, result);
+                    return result;
+                } catch (RuntimeException e) {
+                    asyncHandler.onError(e);
+                    throw e;
+                }
+            });
+        }
+
+    }
+
+}
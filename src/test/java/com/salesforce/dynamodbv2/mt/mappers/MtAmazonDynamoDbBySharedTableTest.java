@@ -10,6 +10,16 @@ package com.salesforce.dynamodbv2.mt.mappers;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.N;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
 import static java.util.UUID.randomUUID;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
@@ -21,17 +31,30 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreamsClientBuilder;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
 import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndex;
 import com.amazonaws.services.dynamodbv2.model.Projection;
 import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
 import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.amazonaws.services.dynamodbv2.model.StreamViewType;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.salesforce.dynamodbv2.TestAmazonDynamoDbAdminUtils;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
@@ -39,8 +62,17 @@ import com.salesforce.dynamodbv2.mt.mappers.sharedtable.CreateTableRequestFactor
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.SharedTableBuilder;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.SharedTableCustomDynamicBuilder;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.SharedTableCustomStaticBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -173,6 +205,347 @@ class MtAmazonDynamoDbBySharedTableTest {
             .withTruncateOnDeleteTable(true)).build());
     }
 
+    /*
+     * Reads keys of two virtual tables that map to the same physical table, which requires merging their keys and
+     * splitting them into multiple physical batches.
+     */
+    @Test
+    void batchGetItem() {
+        MtAmazonDynamoDbBySharedTable amazonDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AMAZON_DYNAMO_DB)
+            .withContext(MT_CONTEXT)
+            .withTablePrefix(getPrefix() + "batchGetItem-")
+            .withPollIntervalSeconds(IS_LOCAL_DYNAMO ? 0 : 5)
+            .build();
+        String table1 = random("batchGetItemTable1");
+        String table2 = random("batchGetItemTable2");
+        MT_CONTEXT.setContext("ctx1");
+        List<Map<String, AttributeValue>> items1 = createBatchTable(amazonDynamoDb, table1, 75);
+        List<Map<String, AttributeValue>> items2 = createBatchTable(amazonDynamoDb, table2, 75);
+        MT_CONTEXT.setContext("ctx2");
+        createBatchTable(amazonDynamoDb, table1, 0);
+
+        // read all keys in ctx1
+        MT_CONTEXT.setContext("ctx1");
+        BatchGetItemResult result = amazonDynamoDb.batchGetItem(new BatchGetItemRequest().withRequestItems(
+            ImmutableMap.of(table1, new KeysAndAttributes().withKeys(getKeys(items1)),
+                table2, new KeysAndAttributes().withKeys(getKeys(items2)))));
+        assertEquals(new HashSet<>(items1), new HashSet<>(result.getResponses().get(table1)));
+        assertEquals(new HashSet<>(items2), new HashSet<>(result.getResponses().get(table2)));
+        assertTrue(result.getUnprocessedKeys().isEmpty());
+
+        // same keys are not visible in ctx2
+        MT_CONTEXT.setContext("ctx2");
+        result = amazonDynamoDb.batchGetItem(new BatchGetItemRequest().withRequestItems(
+            ImmutableMap.of(table1, new KeysAndAttributes().withKeys(getKeys(items1)))));
+        assertTrue(result.getResponses().get(table1).isEmpty());
+
+        amazonDynamoDb.deleteTable(table1);
+        MT_CONTEXT.setContext("ctx1");
+        amazonDynamoDb.deleteTable(table1);
+        amazonDynamoDb.deleteTable(table2);
+    }
+
+    /*
+     * Reads keys of two virtual tables that map to the same physical table against a physical table that leaves the
+     * first key of each virtual table unprocessed, and makes sure that those keys are mapped back to the virtual tables
+     * they were requested from, along with their request attributes.
+     */
+    @Test
+    void batchGetItemUnprocessedKeys() {
+        AmazonDynamoDB physicalAmazonDynamoDb = mock(AmazonDynamoDB.class, delegatesTo(ROOT_AMAZON_DYNAMO_DB));
+        willAnswer(invocation -> {
+            BatchGetItemRequest request = invocation.getArgument(0);
+            Map<String, KeysAndAttributes> processedKeys = new HashMap<>();
+            Map<String, KeysAndAttributes> unprocessedKeys = new HashMap<>();
+            request.getRequestItems().forEach((physicalTableName, keysAndAttributes) ->
+                keysAndAttributes.getKeys().forEach(key -> (key.values().stream()
+                    .anyMatch(value -> value.getS() != null && value.getS().endsWith("0"))
+                    ? unprocessedKeys : processedKeys)
+                    .computeIfAbsent(physicalTableName, tableName -> keysAndAttributes.clone()
+                        .withKeys(new ArrayList<Map<String, AttributeValue>>()))
+                    .getKeys().add(key)));
+            BatchGetItemResult result = processedKeys.isEmpty()
+                ? new BatchGetItemResult().withResponses(new HashMap<>())
+                : ROOT_AMAZON_DYNAMO_DB.batchGetItem(new BatchGetItemRequest().withRequestItems(processedKeys));
+            return result.withUnprocessedKeys(unprocessedKeys);
+        }).given(physicalAmazonDynamoDb).batchGetItem(any(BatchGetItemRequest.class));
+        MtAmazonDynamoDbBySharedTable amazonDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(physicalAmazonDynamoDb)
+            .withContext(MT_CONTEXT)
+            .withTablePrefix(getPrefix() + "batchGetItemUnprocessedKeys-")
+            .withPollIntervalSeconds(IS_LOCAL_DYNAMO ? 0 : 5)
+            .build();
+        String table1 = random("batchGetItemUnprocessedKeysTable1");
+        String table2 = random("batchGetItemUnprocessedKeysTable2");
+        MT_CONTEXT.setContext("ctx1");
+        List<Map<String, AttributeValue>> items1 = createBatchTable(amazonDynamoDb, table1, 3);
+        List<Map<String, AttributeValue>> items2 = createBatchTable(amazonDynamoDb, table2, 3);
+
+        BatchGetItemResult result = amazonDynamoDb.batchGetItem(new BatchGetItemRequest().withRequestItems(
+            ImmutableMap.of(table1, new KeysAndAttributes().withKeys(getKeys(items1)).withConsistentRead(true),
+                table2, new KeysAndAttributes().withKeys(getKeys(items2)).withConsistentRead(true))));
+        then(physicalAmazonDynamoDb).should(times(1)).batchGetItem(any(BatchGetItemRequest.class));
+        assertEquals(new HashSet<>(items1.subList(1, 3)), new HashSet<>(result.getResponses().get(table1)));
+        assertEquals(new HashSet<>(items2.subList(1, 3)), new HashSet<>(result.getResponses().get(table2)));
+        assertEquals(ImmutableMap.of(
+            table1, new KeysAndAttributes().withKeys(getKeys(items1).subList(0, 1)).withConsistentRead(true),
+            table2, new KeysAndAttributes().withKeys(getKeys(items2).subList(0, 1)).withConsistentRead(true)),
+            result.getUnprocessedKeys());
+
+        amazonDynamoDb.deleteTable(table1);
+        amazonDynamoDb.deleteTable(table2);
+    }
+
+    /*
+     * Writes items of two virtual tables that map to the same physical table in a single request that exceeds the
+     * physical batch size.
+     */
+    @Test
+    void batchWriteItem() {
+        MtAmazonDynamoDbBySharedTable amazonDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AMAZON_DYNAMO_DB)
+            .withContext(MT_CONTEXT)
+            .withTablePrefix(getPrefix() + "batchWriteItem-")
+            .withPollIntervalSeconds(IS_LOCAL_DYNAMO ? 0 : 5)
+            .build();
+        String table1 = random("batchWriteItemTable1");
+        String table2 = random("batchWriteItemTable2");
+        MT_CONTEXT.setContext("ctx1");
+        createBatchTable(amazonDynamoDb, table1, 0);
+        createBatchTable(amazonDynamoDb, table2, 0);
+        List<Map<String, AttributeValue>> items1 = IntStream.range(0, 20)
+            .mapToObj(i -> ImmutableMap.of(HASH_KEY_FIELD, new AttributeValue(table1 + i),
+                "someField", new AttributeValue("someValue" + i)))
+            .collect(toList());
+        List<Map<String, AttributeValue>> items2 = IntStream.range(0, 20)
+            .mapToObj(i -> ImmutableMap.of(HASH_KEY_FIELD, new AttributeValue(table2 + i),
+                "someField", new AttributeValue("someValue" + i)))
+            .collect(toList());
+
+        // put items
+        BatchWriteItemResult result = amazonDynamoDb.batchWriteItem(new BatchWriteItemRequest().withRequestItems(
+            ImmutableMap.of(
+                table1, items1.stream().map(item -> new WriteRequest(new PutRequest(item))).collect(toList()),
+                table2, items2.stream().map(item -> new WriteRequest(new PutRequest(item))).collect(toList()))));
+        assertTrue(result.getUnprocessedItems().isEmpty());
+        BatchGetItemResult getResult = amazonDynamoDb.batchGetItem(new BatchGetItemRequest().withRequestItems(
+            ImmutableMap.of(table1, new KeysAndAttributes().withKeys(getKeys(items1)),
+                table2, new KeysAndAttributes().withKeys(getKeys(items2)))));
+        assertEquals(new HashSet<>(items1), new HashSet<>(getResult.getResponses().get(table1)));
+        assertEquals(new HashSet<>(items2), new HashSet<>(getResult.getResponses().get(table2)));
+
+        // delete items of one table
+        result = amazonDynamoDb.batchWriteItem(new BatchWriteItemRequest().withRequestItems(
+            ImmutableMap.of(table1, getKeys(items1).stream()
+                .map(key -> new WriteRequest(new DeleteRequest(key))).collect(toList()))));
+        assertTrue(result.getUnprocessedItems().isEmpty());
+        getResult = amazonDynamoDb.batchGetItem(new BatchGetItemRequest().withRequestItems(
+            ImmutableMap.of(table1, new KeysAndAttributes().withKeys(getKeys(items1)),
+                table2, new KeysAndAttributes().withKeys(getKeys(items2)))));
+        assertTrue(getResult.getResponses().get(table1).isEmpty());
+        assertEquals(new HashSet<>(items2), new HashSet<>(getResult.getResponses().get(table2)));
+
+        amazonDynamoDb.deleteTable(table1);
+        amazonDynamoDb.deleteTable(table2);
+    }
+
+    /*
+     * Writes items of two virtual tables that map to the same physical table against a physical table that never
+     * processes the first write request of each physical batch, and makes sure that the other requests are retried,
+     * that retries stop after the maximum number of attempts, and that the requests left over are mapped back to their
+     * virtual tables.  Then makes sure that an interrupted call returns the remaining batches without issuing them.
+     */
+    @Test
+    void batchWriteItemUnprocessedItems() {
+        AmazonDynamoDB physicalAmazonDynamoDb = mock(AmazonDynamoDB.class, delegatesTo(ROOT_AMAZON_DYNAMO_DB));
+        Set<WriteRequest> seenWriteRequests = new HashSet<>();
+        Set<WriteRequest> stuckWriteRequests = new HashSet<>();
+        willAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            Map<String, List<WriteRequest>> processedItems = new HashMap<>();
+            Map<String, List<WriteRequest>> unprocessedItems = new HashMap<>();
+            request.getRequestItems().forEach((physicalTableName, writeRequests) -> {
+                if (writeRequests.stream().noneMatch(seenWriteRequests::contains)) {
+                    stuckWriteRequests.add(writeRequests.get(0));
+                }
+                seenWriteRequests.addAll(writeRequests);
+                writeRequests.forEach(writeRequest -> (stuckWriteRequests.contains(writeRequest)
+                    ? unprocessedItems : processedItems)
+                    .computeIfAbsent(physicalTableName, tableName -> new ArrayList<>()).add(writeRequest));
+            });
+            if (!processedItems.isEmpty()) {
+                ROOT_AMAZON_DYNAMO_DB.batchWriteItem(new BatchWriteItemRequest().withRequestItems(processedItems));
+            }
+            return new BatchWriteItemResult().withUnprocessedItems(unprocessedItems);
+        }).given(physicalAmazonDynamoDb).batchWriteItem(any(BatchWriteItemRequest.class));
+        MtAmazonDynamoDbBySharedTable amazonDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(physicalAmazonDynamoDb)
+            .withContext(MT_CONTEXT)
+            .withTablePrefix(getPrefix() + "batchWriteItemUnprocessedItems-")
+            .withPollIntervalSeconds(IS_LOCAL_DYNAMO ? 0 : 5)
+            .build();
+        String table1 = random("batchWriteItemUnprocessedItemsTable1");
+        String table2 = random("batchWriteItemUnprocessedItemsTable2");
+        MT_CONTEXT.setContext("ctx1");
+        createBatchTable(amazonDynamoDb, table1, 0);
+        List<Map<String, AttributeValue>> items2 = createBatchTable(amazonDynamoDb, table2, 15);
+        List<Map<String, AttributeValue>> items1 = IntStream.range(0, 15)
+            .mapToObj(i -> ImmutableMap.of(HASH_KEY_FIELD, new AttributeValue(table1 + i),
+                "someField", new AttributeValue("someValue" + i)))
+            .collect(toList());
+        List<WriteRequest> putRequests1 = items1.stream().map(item -> new WriteRequest(new PutRequest(item)))
+            .collect(toList());
+        List<WriteRequest> deleteRequests2 = getKeys(items2).stream()
+            .map(key -> new WriteRequest(new DeleteRequest(key))).collect(toList());
+        BatchWriteItemRequest request = new BatchWriteItemRequest().withRequestItems(
+            ImmutableMap.of(table1, putRequests1, table2, deleteRequests2));
+
+        // physical batches of 25 and 5 requests, of which the first put and the first delete remain unprocessed
+        BatchWriteItemResult result = amazonDynamoDb.batchWriteItem(request);
+        then(physicalAmazonDynamoDb).should(times(2 * 6)).batchWriteItem(any(BatchWriteItemRequest.class));
+        assertEquals(ImmutableMap.of(table1, putRequests1.subList(0, 1), table2, deleteRequests2.subList(10, 11)),
+            result.getUnprocessedItems());
+        BatchGetItemResult getResult = amazonDynamoDb.batchGetItem(new BatchGetItemRequest().withRequestItems(
+            ImmutableMap.of(table1, new KeysAndAttributes().withKeys(getKeys(items1)),
+                table2, new KeysAndAttributes().withKeys(getKeys(items2)))));
+        assertEquals(new HashSet<>(items1.subList(1, 15)), new HashSet<>(getResult.getResponses().get(table1)));
+        assertEquals(ImmutableList.of(items2.get(10)), getResult.getResponses().get(table2));
+
+        // once interrupted, the pending requests of the first batch and all requests of the second batch are returned
+        clearInvocations(physicalAmazonDynamoDb);
+        Thread.currentThread().interrupt();
+        result = amazonDynamoDb.batchWriteItem(request);
+        assertTrue(Thread.interrupted());
+        then(physicalAmazonDynamoDb).should(times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
+        assertEquals(ImmutableMap.of(table1, putRequests1.subList(0, 1), table2, deleteRequests2.subList(10, 15)),
+            result.getUnprocessedItems());
+
+        amazonDynamoDb.deleteTable(table1);
+        amazonDynamoDb.deleteTable(table2);
+    }
+
+    /*
+     * Scans a virtual table in parallel segments and makes sure all of its items, and only those, are returned.
+     */
+    @Test
+    void parallelScan() {
+        MtAmazonDynamoDbBySharedTable amazonDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AMAZON_DYNAMO_DB)
+            .withContext(MT_CONTEXT)
+            .withTablePrefix(getPrefix() + "parallelScan-")
+            .withPollIntervalSeconds(IS_LOCAL_DYNAMO ? 0 : 5)
+            .build();
+        String table1 = random("parallelScanTable1");
+        String table2 = random("parallelScanTable2");
+        MT_CONTEXT.setContext("ctx1");
+        List<Map<String, AttributeValue>> items = createBatchTable(amazonDynamoDb, table1, 50);
+        createBatchTable(amazonDynamoDb, table2, 10);
+
+        Set<Map<String, AttributeValue>> scannedItems = ConcurrentHashMap.newKeySet();
+        amazonDynamoDb.parallelScan(new ScanRequest().withTableName(table1).withLimit(5), 4, scannedItems::addAll);
+        assertEquals(new HashSet<>(items), scannedItems);
+
+        amazonDynamoDb.deleteTable(table1);
+        amazonDynamoDb.deleteTable(table2);
+    }
+
+    /*
+     * Scans a virtual table whose items are spread over the buckets of the tenant partition index, sequentially and in
+     * parallel segments, and makes sure all of its items, and only those, are returned, also when the table is opened
+     * with a different number of buckets later.
+     */
+    @Test
+    void tenantPartitionedScan() {
+        MtAmazonDynamoDbBySharedTable amazonDynamoDb = buildTenantPartitionedTable(3);
+        String table1 = random("tenantPartitionedScanTable1");
+        String table2 = random("tenantPartitionedScanTable2");
+        MT_CONTEXT.setContext("ctx1");
+        List<Map<String, AttributeValue>> items = new ArrayList<>(createBatchTable(amazonDynamoDb, table1, 20));
+        createBatchTable(amazonDynamoDb, table2, 10);
+        Map<String, AttributeValue> updatedItem = ImmutableMap.of(HASH_KEY_FIELD, new AttributeValue(table1 + 20),
+            "someField", new AttributeValue("someValue20"));
+        amazonDynamoDb.updateItem(new UpdateItemRequest()
+            .withTableName(table1)
+            .withKey(ImmutableMap.of(HASH_KEY_FIELD, new AttributeValue(table1 + 20)))
+            .withUpdateExpression("SET #field = :value")
+            .withExpressionAttributeNames(ImmutableMap.of("#field", "someField"))
+            .withExpressionAttributeValues(ImmutableMap.of(":value", new AttributeValue("someValue20"))));
+        items.add(updatedItem);
+        MT_CONTEXT.setContext("ctx2");
+        List<Map<String, AttributeValue>> otherTenantItems = createBatchTable(amazonDynamoDb, table1, 5);
+
+        // page through all buckets
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals(new HashSet<>(items), scanAll(amazonDynamoDb, table1, 4));
+
+        // buckets are distributed over segments
+        Set<Map<String, AttributeValue>> parallelScannedItems = ConcurrentHashMap.newKeySet();
+        amazonDynamoDb.parallelScan(new ScanRequest().withTableName(table1), 2, parallelScannedItems::addAll);
+        assertEquals(new HashSet<>(items), parallelScannedItems);
+
+        MT_CONTEXT.setContext("ctx2");
+        assertEquals(new HashSet<>(otherTenantItems),
+            new HashSet<>(amazonDynamoDb.scan(new ScanRequest().withTableName(table1)).getItems()));
+
+        // the existing physical tables keep the number of buckets they were created with
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals(new HashSet<>(items), scanAll(buildTenantPartitionedTable(5), table1, 4));
+
+        MT_CONTEXT.setContext("ctx2");
+        amazonDynamoDb.deleteTable(table1);
+        MT_CONTEXT.setContext("ctx1");
+        amazonDynamoDb.deleteTable(table1);
+        amazonDynamoDb.deleteTable(table2);
+    }
+
+    private MtAmazonDynamoDbBySharedTable buildTenantPartitionedTable(int tenantPartitionBuckets) {
+        return SharedTableBuilder.builder()
+            .withTenantPartitionedScan(true)
+            .withTenantPartitionBuckets(tenantPartitionBuckets)
+            .withAmazonDynamoDb(AMAZON_DYNAMO_DB)
+            .withContext(MT_CONTEXT)
+            .withTablePrefix(getPrefix() + "tenantPartitionedScan-")
+            .withPollIntervalSeconds(IS_LOCAL_DYNAMO ? 0 : 5)
+            .build();
+    }
+
+    /*
+     * Pages through the scan of the virtual table and makes sure no item is returned twice.
+     */
+    private Set<Map<String, AttributeValue>> scanAll(AmazonDynamoDB amazonDynamoDb, String tableName, int limit) {
+        Set<Map<String, AttributeValue>> scannedItems = new HashSet<>();
+        ScanRequest scanRequest = new ScanRequest().withTableName(tableName).withLimit(limit);
+        ScanResult scanResult;
+        do {
+            scanResult = amazonDynamoDb.scan(scanRequest);
+            scanResult.getItems().forEach(item -> assertTrue(scannedItems.add(item)));
+            scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        } while (scanResult.getLastEvaluatedKey() != null);
+        return scannedItems;
+    }
+
+    private List<Map<String, AttributeValue>> createBatchTable(AmazonDynamoDB amazonDynamoDb, String tableName,
+                                                               int itemCount) {
+        amazonDynamoDb.createTable(new CreateTableRequest()
+            .withTableName(tableName)
+            .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L))
+            .withAttributeDefinitions(new AttributeDefinition(HASH_KEY_FIELD, S))
+            .withKeySchema(new KeySchemaElement(HASH_KEY_FIELD, KeyType.HASH)));
+        List<Map<String, AttributeValue>> items = IntStream.range(0, itemCount)
+            .mapToObj(i -> ImmutableMap.of(HASH_KEY_FIELD, new AttributeValue(tableName + i),
+                "someField", new AttributeValue("someValue" + i)))
+            .collect(toList());
+        items.forEach(item -> amazonDynamoDb.putItem(tableName, item));
+        return items;
+    }
+
+    private List<Map<String, AttributeValue>> getKeys(List<Map<String, AttributeValue>> items) {
+        return items.stream()
+            .map(item -> ImmutableMap.of(HASH_KEY_FIELD, item.get(HASH_KEY_FIELD)))
+            .collect(toList());
+    }
+
     /*
      * Each test run needs its own AmazonDynamoDB because table mappings are cached per instance and running
      * consecutive tests using the same table names with different primary key types trigger makes the caches invalid.
@@ -8,8 +8,13 @@
 package com.salesforce.dynamodbv2.mt.mappers;
 
 import static com.amazonaws.services.dynamodbv2.model.StreamViewType.KEYS_ONLY;
+import static java.util.stream.Collectors.toList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
@@ -23,6 +28,8 @@ import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
 import com.google.common.collect.ImmutableList;
 import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
 import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtStreamDescription;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -123,4 +130,71 @@ class MtAmazonDynamoDbByTableTest {
         assertEquals(count, amazonDynamoDbByTable.listStreams(null).size());
     }
 
+    @Test
+    void listStreamsWithAlternatingFilters() {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class, delegatesTo(localAmazonDynamoDb));
+        MtAmazonDynamoDbContextProvider mtContext = new MtAmazonDynamoDbContextProviderImpl();
+        MtAmazonDynamoDbByTable amazonDynamoDbByTable = MtAmazonDynamoDbByTable.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix("alternatingFilters-")
+            .withContext(mtContext).build();
+        List<String> tenants = ImmutableList.of("ctx1", "ctx2");
+        tenants.forEach(tenant -> mtContext.withContext(tenant, () -> amazonDynamoDbByTable.createTable(
+            new CreateTableRequest()
+                .withAttributeDefinitions(new AttributeDefinition("hk", ScalarAttributeType.S))
+                .withKeySchema(new KeySchemaElement("hk", KeyType.HASH))
+                .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L))
+                .withTableName("table")
+                .withStreamSpecification(new StreamSpecification()
+                    .withStreamEnabled(true)
+                    .withStreamViewType(KEYS_ONLY)))));
+
+        // listing the streams of one tenant does not evict the descriptions of the other's
+        for (int i = 0; i < 3; i++) {
+            for (String tenant : tenants) {
+                MtRecordFilter filter = MtRecordFilter.builder().withTenants(ImmutableList.of(tenant)).build();
+                assertEquals(ImmutableList.of("alternatingFilters-" + tenant + ".table"),
+                    amazonDynamoDbByTable.listStreams(null, filter).stream()
+                        .map(MtStreamDescription::getLabel).collect(toList()));
+            }
+        }
+        then(amazonDynamoDb).should(times(1)).describeTable("alternatingFilters-ctx1.table");
+        then(amazonDynamoDb).should(times(1)).describeTable("alternatingFilters-ctx2.table");
+
+        tenants.forEach(tenant -> mtContext.withContext(tenant, () -> amazonDynamoDbByTable.deleteTable("table")));
+    }
+
+    @Test
+    void listStreamsSkipsRejectedTables() {
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class, delegatesTo(localAmazonDynamoDb));
+        MtAmazonDynamoDbContextProvider mtContext = new MtAmazonDynamoDbContextProviderImpl();
+        MtAmazonDynamoDbByTable amazonDynamoDbByTable = MtAmazonDynamoDbByTable.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withTablePrefix("rejectedTables-")
+            .withContext(mtContext).build();
+        List<String> tables = ImmutableList.of("ctx1.table1", "ctx1.other", "ctx2.table1", "ctx1.table2");
+        tables.forEach(table -> mtContext.withContext(table.substring(0, 4), () -> amazonDynamoDbByTable.createTable(
+            new CreateTableRequest()
+                .withAttributeDefinitions(new AttributeDefinition("hk", ScalarAttributeType.S))
+                .withKeySchema(new KeySchemaElement("hk", KeyType.HASH))
+                .withProvisionedThroughput(new ProvisionedThroughput(1L, 1L))
+                .withTableName(table.substring(5))
+                .withStreamSpecification(new StreamSpecification()
+                    .withStreamEnabled(true)
+                    .withStreamViewType(KEYS_ONLY)))));
+
+        MtRecordFilter filter = MtRecordFilter.builder()
+            .withTenants(ImmutableList.of("ctx1"))
+            .withTableFilter(tableName -> tableName.startsWith("table"))
+            .build();
+        assertEquals(ImmutableList.of("rejectedTables-ctx1.table1", "rejectedTables-ctx1.table2"),
+            amazonDynamoDbByTable.listStreams(null, filter).stream()
+                .map(MtStreamDescription::getLabel).sorted().collect(toList()));
+        then(amazonDynamoDb).should(never()).describeTable("rejectedTables-ctx1.other");
+        then(amazonDynamoDb).should(never()).describeTable("rejectedTables-ctx2.table1");
+
+        tables.forEach(table -> mtContext.withContext(table.substring(0, 4),
+            () -> amazonDynamoDbByTable.deleteTable(table.substring(5))));
+    }
+
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.mock;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbBySharedTable;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.MtAmazonDynamoDbStreamsBySharedTable;
 import org.apache.commons.lang3.NotImplementedException;
 import org.junit.jupiter.api.Test;
 
@@ -47,8 +48,10 @@ class MtAmazonDynamoDbStreamsTest {
 
     @Test
     void testCreateFromDynamoByIndex() {
-        // TODO Not implemented yet
-        assertThrows(NotImplementedException.class, () -> MtAmazonDynamoDbStreams
-            .createFromDynamo(mock(MtAmazonDynamoDbBySharedTable.class), mock(AmazonDynamoDBStreams.class)));
+        AmazonDynamoDBStreams actual = MtAmazonDynamoDbStreams
+            .createFromDynamo(mock(MtAmazonDynamoDbBySharedTable.class), mock(AmazonDynamoDBStreams.class));
+
+        assertTrue(actual instanceof MtAmazonDynamoDbStreamsBySharedTable,
+            "Expected an instance of MtAmazonDynamoDbStreamsBySharedTable");
     }
 }
\ No newline at end of file
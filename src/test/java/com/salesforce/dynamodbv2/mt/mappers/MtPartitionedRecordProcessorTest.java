@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.streamsadapter.model.RecordAdapter;
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.KinesisClientLibException;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessorCheckpointer;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.v2.IRecordProcessor;
+import com.amazonaws.services.kinesis.clientlibrary.lib.worker.ShutdownReason;
+import com.amazonaws.services.kinesis.clientlibrary.types.InitializationInput;
+import com.amazonaws.services.kinesis.clientlibrary.types.ProcessRecordsInput;
+import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownInput;
+import com.amazonaws.services.kinesis.model.Record;
+import com.google.common.collect.ImmutableList;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtRecord;
+import com.salesforce.dynamodbv2.mt.mappers.MtPartitionedRecordProcessorFactory.Partitioning;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests MtPartitionedRecordProcessor with tenants ctx1 and ctx2, which fall into different partitions.
+ */
+class MtPartitionedRecordProcessorTest {
+
+    private ExecutorService executor;
+    private IRecordProcessorCheckpointer checkpointer;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        checkpointer = mock(IRecordProcessorCheckpointer.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Record record(String context, String sequenceNumber) {
+        return new RecordAdapter(new MtRecord()
+            .withContext(context)
+            .withTableName("table")
+            .withDynamodb(new StreamRecord().withSequenceNumber(sequenceNumber)));
+    }
+
+    private static String getContext(Record record) {
+        return ((MtRecord) ((RecordAdapter) record).getInternalObject()).getContext();
+    }
+
+    private IRecordProcessor createProcessor(Consumer<Record> consumer) {
+        return createProcessor(consumer, executor);
+    }
+
+    private IRecordProcessor createProcessor(Consumer<Record> consumer, Executor executor) {
+        IRecordProcessor processor = MtPartitionedRecordProcessorFactory.builder()
+            .withRecordProcessorFactory(() -> new CheckpointingRecordProcessor(consumer))
+            .withExecutor(executor)
+            .withPartitions(2)
+            .withPartitioning(Partitioning.TENANT)
+            .withMaxPendingBatches(2)
+            .build().createProcessor();
+        processor.initialize(new InitializationInput().withShardId("shard"));
+        return processor;
+    }
+
+    private void processRecords(IRecordProcessor processor, Record... records) {
+        processor.processRecords(new ProcessRecordsInput()
+            .withRecords(ImmutableList.copyOf(records))
+            .withCheckpointer(checkpointer));
+    }
+
+    @Test
+    void processesRecordsOfTenantInOrder() throws Exception {
+        Map<String, List<String>> processed = new ConcurrentHashMap<>();
+        IRecordProcessor processor = createProcessor(record -> processed
+            .computeIfAbsent(getContext(record), context -> new ArrayList<>())
+            .add(record.getSequenceNumber()));
+
+        processRecords(processor, record("ctx1", "1"), record("ctx2", "2"), record("ctx1", "3"));
+        processRecords(processor, record("ctx2", "4"), record("ctx2", "5"));
+        Record last = record("ctx1", "7");
+        processRecords(processor, record("ctx2", "6"), last);
+        processor.shutdown(new ShutdownInput()
+            .withShutdownReason(ShutdownReason.TERMINATE)
+            .withCheckpointer(checkpointer));
+
+        assertEquals(ImmutableList.of("1", "3", "7"), processed.get("ctx1"));
+        assertEquals(ImmutableList.of("2", "4", "5", "6"), processed.get("ctx2"));
+        verify(checkpointer).checkpoint(last);
+        verify(checkpointer).checkpoint();
+    }
+
+    @Test
+    void checkpointsOnceAllPartitionsCompleted() throws Exception {
+        CountDownLatch ctx1Released = new CountDownLatch(1);
+        CountDownLatch ctx2Processed = new CountDownLatch(1);
+        IRecordProcessor processor = createProcessor(record -> {
+            if ("ctx1".equals(getContext(record))) {
+                try {
+                    ctx1Released.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            } else {
+                ctx2Processed.countDown();
+            }
+        });
+
+        Record last = record("ctx2", "2");
+        processRecords(processor, record("ctx1", "1"), last);
+
+        // the slow tenant does not hold up the other one, but does hold up the checkpoint
+        assertTrue(ctx2Processed.await(1, TimeUnit.SECONDS));
+        verify(checkpointer, never()).checkpoint(any(Record.class));
+
+        ctx1Released.countDown();
+        verify(checkpointer, timeout(1000)).checkpoint(last);
+    }
+
+    @Test
+    void skipsRejectedRecords() {
+        List<Record> processed = new ArrayList<>();
+        IRecordProcessor processor = createProcessor(processed::add, runnable -> {
+            throw new RejectedExecutionException("rejected");
+        });
+
+        // more batches than may be pending, none of which are processed or block the KCL thread or shutdown
+        processRecords(processor, record("ctx1", "1"), record("ctx2", "2"));
+        processRecords(processor, record("ctx1", "3"));
+        processRecords(processor, record("ctx2", "4"));
+        processor.shutdown(new ShutdownInput()
+            .withShutdownReason(ShutdownReason.TERMINATE)
+            .withCheckpointer(checkpointer));
+
+        assertTrue(processed.isEmpty());
+        verifyZeroInteractions(checkpointer);
+    }
+
+    /*
+     * Consumes each record and checkpoints at the end of each batch and on termination.
+     */
+    private static class CheckpointingRecordProcessor implements IRecordProcessor {
+
+        private final Consumer<Record> consumer;
+
+        CheckpointingRecordProcessor(Consumer<Record> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void initialize(InitializationInput initializationInput) {
+        }
+
+        @Override
+        public void processRecords(ProcessRecordsInput processRecordsInput) {
+            processRecordsInput.getRecords().forEach(consumer);
+            checkpoint(processRecordsInput.getCheckpointer());
+        }
+
+        @Override
+        public void shutdown(ShutdownInput shutdownInput) {
+            if (shutdownInput.getShutdownReason() == ShutdownReason.TERMINATE) {
+                checkpoint(shutdownInput.getCheckpointer());
+            }
+        }
+
+        private static void checkpoint(IRecordProcessorCheckpointer checkpointer) {
+            try {
+                checkpointer.checkpoint();
+            } catch (KinesisClientLibException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import static com.amazonaws.services.dynamodbv2.model.OperationType.INSERT;
+import static com.amazonaws.services.dynamodbv2.model.OperationType.MODIFY;
+import static com.amazonaws.services.dynamodbv2.model.OperationType.REMOVE;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtRecord;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests MtRecordFilter.
+ */
+class MtRecordFilterTest {
+
+    private static MtRecord record(String context, String tableName, String eventName) {
+        return new MtRecord().withContext(context).withTableName(tableName).withEventName(eventName);
+    }
+
+    @Test
+    void all() {
+        MtRecordFilter filter = MtRecordFilter.all();
+        assertTrue(filter.test(record("ctx1", "table1", INSERT.toString())));
+        assertTrue(filter.test(record("ctx2", "table2", REMOVE.toString())));
+    }
+
+    @Test
+    void tenantsTablesAndEventNames() {
+        MtRecordFilter filter = MtRecordFilter.builder()
+            .withTenants(ImmutableList.of("ctx1", "ctx2"))
+            .withTableFilter(tableName -> tableName.startsWith("table"))
+            .withEventNames(INSERT, MODIFY)
+            .build();
+        assertTrue(filter.test(record("ctx1", "table1", INSERT.toString())));
+        assertTrue(filter.test(record("ctx2", "table2", MODIFY.toString())));
+        assertFalse(filter.test(record("ctx3", "table1", INSERT.toString())));
+        assertFalse(filter.test(record("ctx1", "other", INSERT.toString())));
+        assertFalse(filter.test(record("ctx1", "table1", REMOVE.toString())));
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests TableStreamDiscovery.
+ */
+class TableStreamDiscoveryTest {
+
+    private static final long MAX_AGE_MILLIS = 1000L;
+
+    private final TableDescription streamTable = table("streamTable", true);
+    private final TableDescription plainTable = table("plainTable", false);
+    private AmazonDynamoDB amazonDynamoDb;
+    private AtomicLong nanoTime;
+    private TableStreamDiscovery streamDiscovery;
+
+    private static TableDescription table(String tableName, boolean streamEnabled) {
+        return new TableDescription().withTableName(tableName)
+            .withStreamSpecification(new StreamSpecification().withStreamEnabled(streamEnabled));
+    }
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDb = mock(AmazonDynamoDB.class);
+        given(amazonDynamoDb.describeTable("streamTable")).willReturn(new DescribeTableResult().withTable(streamTable));
+        given(amazonDynamoDb.describeTable("plainTable")).willReturn(new DescribeTableResult().withTable(plainTable));
+        given(amazonDynamoDb.describeTable("deletedTable")).willThrow(new ResourceNotFoundException("deleted"));
+        nanoTime = new AtomicLong();
+        streamDiscovery = new TableStreamDiscovery(amazonDynamoDb, ForkJoinPool.commonPool(), 2, MAX_AGE_MILLIS,
+            nanoTime::get);
+    }
+
+    @Test
+    void describesOnlyNewTables() {
+        assertEquals(ImmutableList.of(streamTable),
+            streamDiscovery.getStreamTables(ImmutableList.of("streamTable", "plainTable", "deletedTable"),
+                tableName -> true));
+        assertEquals(ImmutableList.of(streamTable),
+            streamDiscovery.getStreamTables(ImmutableList.of("streamTable", "plainTable", "deletedTable"),
+                tableName -> true));
+        then(amazonDynamoDb).should(times(1)).describeTable("streamTable");
+        then(amazonDynamoDb).should(times(1)).describeTable("plainTable");
+        then(amazonDynamoDb).should(times(1)).describeTable("deletedTable");
+    }
+
+    @Test
+    void refreshesExpiredAndRelistedTables() {
+        streamDiscovery.getStreamTables(ImmutableList.of("streamTable", "plainTable"), tableName -> true);
+
+        // plainTable is no longer listed, so it is described again once it reappears
+        streamDiscovery.getStreamTables(ImmutableList.of("streamTable"), tableName -> true);
+        TableDescription enabledTable = table("plainTable", true);
+        given(amazonDynamoDb.describeTable("plainTable")).willReturn(new DescribeTableResult().withTable(enabledTable));
+        assertEquals(ImmutableList.of(streamTable, enabledTable),
+            streamDiscovery.getStreamTables(ImmutableList.of("streamTable", "plainTable"), tableName -> true));
+        then(amazonDynamoDb).should(times(1)).describeTable("streamTable");
+
+        // descriptions are refreshed once they are older than the maximum age
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(MAX_AGE_MILLIS));
+        streamDiscovery.getStreamTables(ImmutableList.of("streamTable", "plainTable"), tableName -> true);
+        then(amazonDynamoDb).should(times(2)).describeTable("streamTable");
+        then(amazonDynamoDb).should(times(3)).describeTable("plainTable");
+    }
+
+}
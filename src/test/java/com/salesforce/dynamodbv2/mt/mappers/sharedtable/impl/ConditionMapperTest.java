@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex.DynamoSecondaryIndexType.GSI;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByTypeImpl;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests ConditionMapper.
+ */
+class ConditionMapperTest {
+
+    private static final DynamoTableDescription VIRTUAL_TABLE_DESCRIPTION = new DynamoTableDescriptionImpl(
+            CreateTableRequestBuilder.builder()
+                    .withTableKeySchema("virtualhk", S)
+                    .addSi("virtualgsi", GSI, new PrimaryKey("virtualgsihk", S), 1L).build());
+    private static final DynamoTableDescription PHYSICAL_TABLE_DESCRIPTION = new DynamoTableDescriptionImpl(
+            CreateTableRequestBuilder.builder()
+                    .withTableKeySchema("physicalhk", S)
+                    .addSi("physicalgsi", GSI, new PrimaryKey("physicalgsihk", S), 1L).build());
+    // Suppresses "'lambda arguments' has incorrect indentation level" warning.
+    @SuppressWarnings("checkstyle:Indentation")
+    private static final TableMapping TABLE_MAPPING = new TableMapping(VIRTUAL_TABLE_DESCRIPTION,
+            virtualTableDescription1 -> PHYSICAL_TABLE_DESCRIPTION.getCreateTableRequest(),
+            new DynamoSecondaryIndexMapperByTypeImpl(),
+            () -> "ctx",
+            "."
+    );
+
+    @Test
+    void putWithConditionExpression() {
+        PutItemRequest putItemRequest = new PutItemRequest()
+                .withConditionExpression("attribute_not_exists(virtualhk) OR virtualgsihk = :gsihk")
+                .withExpressionAttributeValues(ImmutableMap.of(":gsihk", new AttributeValue("gsivalue")));
+
+        TABLE_MAPPING.getConditionMapper().apply(putItemRequest);
+
+        assertEquals(new PutItemRequest()
+                .withConditionExpression("attribute_not_exists(#field1) OR #field2 = :gsihk")
+                .withExpressionAttributeNames(ImmutableMap.of("#field1", "physicalhk", "#field2", "physicalgsihk"))
+                .withExpressionAttributeValues(ImmutableMap.of(":gsihk",
+                        new AttributeValue("ctx.virtualgsi.gsivalue"))), putItemRequest);
+    }
+
+    @Test
+    void deleteWithExpected() {
+        DeleteItemRequest deleteItemRequest = new DeleteItemRequest()
+                .withExpected(ImmutableMap.of(
+                        "virtualgsihk", new ExpectedAttributeValue(new AttributeValue("gsivalue")),
+                        "attr", new ExpectedAttributeValue()
+                                .withComparisonOperator(ComparisonOperator.CONTAINS)
+                                .withAttributeValueList(new AttributeValue("value"))));
+
+        TABLE_MAPPING.getConditionMapper().apply(deleteItemRequest);
+
+        assertEquals(new DeleteItemRequest()
+                .withExpected(ImmutableMap.of(
+                        "physicalgsihk", new ExpectedAttributeValue(new AttributeValue("ctx.virtualgsi.gsivalue")),
+                        "attr", new ExpectedAttributeValue()
+                                .withComparisonOperator(ComparisonOperator.CONTAINS)
+                                .withAttributeValueList(new AttributeValue("value")))), deleteItemRequest);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.IndexType.SECONDARYINDEX;
+import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.IndexType.TABLE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionMapper.RequestExpressions;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ExpressionType;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.Field;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests ExpressionMapper.
+ */
+class ExpressionMapperTest {
+
+    private static final FieldMapping HK_MAPPING = new FieldMapping(new Field("hk", S),
+        new Field("physicalhk", S), "virtualtable", "physicaltable", TABLE, true);
+    private static final FieldMapping GSI1_MAPPING = new FieldMapping(new Field("gsihk", S),
+        new Field("physicalgsi1hk", S), "virtualgsi1", "physicalgsi1", SECONDARYINDEX, true);
+    private static final FieldMapping GSI2_MAPPING = new FieldMapping(new Field("gsihk", S),
+        new Field("physicalgsi2hk", S), "virtualgsi2", "physicalgsi2", SECONDARYINDEX, true);
+    private static final Map<String, List<FieldMapping>> FIELD_MAPPINGS = ImmutableMap.of(
+        "hk", ImmutableList.of(HK_MAPPING),
+        "gsihk", ImmutableList.of(GSI1_MAPPING, GSI2_MAPPING));
+    private static final FieldMapper FIELD_MAPPER = new FieldMapper(() -> "ctx", "virtualtable",
+        new FieldPrefixFunction("."));
+
+    private static RequestExpressions map(Map<String, String> names, String update, String condition) {
+        RequestExpressions expressions = new RequestExpressions(new HashMap<>(names),
+            new String[] {update, condition},
+            new ExpressionType[] {ExpressionType.UPDATE, ExpressionType.CONDITION});
+        ExpressionMapper expressionMapper = new ExpressionMapper(FIELD_MAPPINGS);
+        expressionMapper.convertFieldNameLiteralsToExpressionNames(expressions);
+        expressionMapper.mapFields(expressions);
+        return expressions;
+    }
+
+    private static Map<String, AttributeValue> applyValueMappings(RequestExpressions expressions,
+                                                                  Map<String, AttributeValue> values) {
+        Map<String, AttributeValue> mappedValues = new HashMap<>(values);
+        ExpressionMapper.applyValueMappings(expressions.getValueMappings(), mappedValues, FIELD_MAPPER);
+        return mappedValues;
+    }
+
+    @Test
+    void conditionWithLiteralsAndSharedValue() {
+        RequestExpressions expressions = map(ImmutableMap.of(), null, "hk = :v OR attr = :v");
+        assertEquals("#field1 = :___v_0___ OR attr = :v", expressions.getExpression(1));
+        assertEquals(ImmutableMap.of("#field1", "physicalhk"), expressions.getNames());
+        assertEquals(ImmutableMap.of(":v", new AttributeValue("v"),
+            ":___v_0___", new AttributeValue("ctx.virtualtable.v")),
+            applyValueMappings(expressions, ImmutableMap.of(":v", new AttributeValue("v"))));
+    }
+
+    @Test
+    void updateOfFieldWithMultipleTargets() {
+        RequestExpressions expressions = map(ImmutableMap.of("#g", "gsihk"),
+            "SET #g = :g, attr = :a REMOVE other", "attribute_not_exists(#g) OR #g = :g");
+        assertEquals("SET #g = :g, #___field1___ = :___g_1___, attr = :a REMOVE other", expressions.getExpression(0));
+        assertEquals("attribute_not_exists(#g) OR #g = :g", expressions.getExpression(1));
+        assertEquals(ImmutableMap.of("#g", "physicalgsi1hk", "#___field1___", "physicalgsi2hk"),
+            expressions.getNames());
+        assertEquals(ImmutableMap.of(
+            ":g", new AttributeValue("ctx.virtualgsi1.g"),
+            ":___g_1___", new AttributeValue("ctx.virtualgsi2.g"),
+            ":a", new AttributeValue("a")),
+            applyValueMappings(expressions, ImmutableMap.of(":g", new AttributeValue("g"),
+                ":a", new AttributeValue("a"))));
+    }
+
+    @Test
+    void removeOfFieldWithMultipleTargets() {
+        RequestExpressions expressions = map(ImmutableMap.of(), "REMOVE gsihk", null);
+        assertEquals("REMOVE #field1, #___field1___", expressions.getExpression(0));
+        assertEquals(ImmutableMap.of("#field1", "physicalgsi1hk", "#___field1___", "physicalgsi2hk"),
+            expressions.getNames());
+    }
+
+    @Test
+    void ifNotExists() {
+        RequestExpressions expressions = map(ImmutableMap.of("#h", "hk"), "SET attr = if_not_exists(#h, :h)", null);
+        assertEquals(ImmutableMap.of(":h", new AttributeValue("ctx.virtualtable.h")),
+            applyValueMappings(expressions, ImmutableMap.of(":h", new AttributeValue("h"))));
+    }
+
+    @Test
+    void undefinedValue() {
+        RequestExpressions expressions = map(ImmutableMap.of(), null, "hk = :v");
+        assertThrows(IllegalArgumentException.class, () -> applyValueMappings(expressions, ImmutableMap.of()));
+    }
+
+    @Test
+    void unsupportedUpdateOfFieldWithMultipleTargets() {
+        assertThrows(IllegalArgumentException.class, () -> map(ImmutableMap.of(), "SET gsihk = attr", null));
+    }
+
+}
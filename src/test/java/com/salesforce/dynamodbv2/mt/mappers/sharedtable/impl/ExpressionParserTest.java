@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.AndNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.Node;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.OrNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.PathNode;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.UpdateAction;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.ExpressionParser.ValueNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests ExpressionParser.
+ */
+class ExpressionParserTest {
+
+    private static List<String> getNodeTexts(String expression, Node root) {
+        List<String> texts = new ArrayList<>();
+        root.forEach(node -> texts.add(expression.substring(node.getStart(), node.getEnd())));
+        return texts;
+    }
+
+    @Test
+    void conditionPrecedence() {
+        String expression = "#a = :a or b BETWEEN :l AND :h and NOT begins_with(#c, :c)";
+        Node root = ExpressionParser.parseCondition(expression);
+        assertTrue(root instanceof OrNode);
+        assertTrue(root.getChildren().get(1) instanceof AndNode);
+        assertEquals(ImmutableList.of(expression,
+            "#a = :a", "#a", ":a",
+            "b BETWEEN :l AND :h and NOT begins_with(#c, :c)",
+            "b BETWEEN :l AND :h", "b", ":l", ":h",
+            "NOT begins_with(#c, :c)", "begins_with(#c, :c)", "#c", ":c"), getNodeTexts(expression, root));
+    }
+
+    @Test
+    void comparatorsAndFunctions() {
+        String expression = "(size(#a.b[1]) <= :s) AND c IN (:x, :y) AND d <> :d AND attribute_exists(e)";
+        assertEquals(ImmutableList.of(":s", ":x", ":y", ":d"),
+            getValues(ExpressionParser.parseCondition(expression)));
+    }
+
+    @Test
+    void projection() {
+        Map<String, String> names = ImmutableMap.of("#b", "b");
+        assertEquals(ImmutableList.of("a", "b", "c"), ExpressionParser.parseProjection("a, #b.x, c[0]").getPaths()
+            .stream().map(path -> path.getAttributeName(names)).collect(Collectors.toList()));
+        assertEquals(ImmutableList.of(true, false, false), ExpressionParser.parseProjection("a, #b.x, c[0]")
+            .getPaths().stream().map(PathNode::isAttribute).collect(Collectors.toList()));
+    }
+
+    @Test
+    void update() {
+        List<UpdateAction> actions = ExpressionParser.parseUpdate(
+            "set #a = if_not_exists(#a, :zero) + :one, b = :b REMOVE c ADD d :d DELETE e :e").getActions();
+        assertEquals(ImmutableList.of("SET", "SET", "REMOVE", "ADD", "DELETE"),
+            actions.stream().map(UpdateAction::getClause).collect(Collectors.toList()));
+        assertEquals(ImmutableList.of(":zero", ":one"), getValues(actions.get(0)));
+    }
+
+    @Test
+    void rewrite() {
+        String expression = "#a = :v and b = :v";
+        Map<ExpressionParser.Span, String> replacements = new HashMap<>();
+        ExpressionParser.parseCondition(expression).forEach(node -> {
+            if (node instanceof PathNode && !((PathNode) node).isPlaceholder()) {
+                replacements.put(((PathNode) node).getNameToken(), "#b");
+            }
+        });
+        assertEquals("#a = :v and #b = :v", ExpressionParser.rewrite(expression, replacements));
+    }
+
+    @Test
+    void invalidExpressions() {
+        for (String expression : ImmutableList.of("", "#a =", "#a = :v)", "#a BETWEEN :l", "# = :v", "#a == :v",
+            "#a = :v or")) {
+            assertThrows(IllegalArgumentException.class, () -> ExpressionParser.parseCondition(expression),
+                expression);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ExpressionParser.parseUpdate("SET a = :a SET b = :b"));
+        assertThrows(IllegalArgumentException.class, () -> ExpressionParser.parseProjection("a,"));
+    }
+
+    private static List<String> getValues(Node root) {
+        List<String> values = new ArrayList<>();
+        root.forEach(node -> {
+            if (node instanceof ValueNode) {
+                values.add(((ValueNode) node).getPlaceholder());
+            }
+        });
+        return values;
+    }
+
+}
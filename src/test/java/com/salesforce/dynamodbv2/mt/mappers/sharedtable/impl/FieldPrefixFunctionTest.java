@@ -8,6 +8,9 @@
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldPrefixFunction.FieldValue;
 import org.junit.jupiter.api.Test;
@@ -30,4 +33,38 @@ class FieldPrefixFunctionTest {
         assertEquals(expected, SUT.reverse(applied.getQualifiedValue()));
     }
 
+    @Test
+    void qualifyAndUnqualify() {
+        assertEquals("ctx.table.value.with.delimiters", SUT.qualify("ctx", "table", "value.with.delimiters"));
+        assertEquals("ctx.table.value", SUT.qualify("ctx", "table", "value"));
+        assertEquals("value.with.delimiters", SUT.unqualify("ctx.table.value.with.delimiters"));
+        assertEquals("", SUT.unqualify("ctx.table."));
+    }
+
+    @Test
+    void multiCharacterDelimiter() {
+        FieldPrefixFunction sut = new FieldPrefixFunction("::");
+
+        FieldValue fieldValue = sut.reverse(sut.qualify("ctx", "table", "value"));
+
+        assertEquals("ctx::table::value", fieldValue.getQualifiedValue());
+        assertEquals("ctx", fieldValue.getMtContext());
+        assertEquals("table", fieldValue.getTableIndex());
+        assertEquals("value", fieldValue.getUnqualifiedValue());
+    }
+
+    @Test
+    void hasContext() {
+        assertTrue(SUT.hasContext("ctx.table.value", "ctx"));
+        assertFalse(SUT.hasContext("ctx.table.value", "ct"));
+        assertFalse(SUT.hasContext("ctx2.table.value", "ctx"));
+        assertFalse(SUT.hasContext("ctx", "ctx"));
+    }
+
+    @Test
+    void reverseUnqualifiedValue() {
+        assertThrows(IllegalArgumentException.class, () -> SUT.reverse("value"));
+        assertThrows(IllegalArgumentException.class, () -> SUT.unqualify("ctx.value"));
+    }
+
 }
\ No newline at end of file
@@ -8,15 +8,22 @@
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex.DynamoSecondaryIndexType.GSI;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
 import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByTypeImpl;
 import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
 
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 
@@ -52,6 +59,55 @@ class ItemMapperTest {
         assertEquals(item, reversedItem);
     }
 
+    @Test
+    void reverseAll() {
+        List<Map<String, AttributeValue>> mappedItems = ImmutableList.of(
+            ImmutableMap.of("physicalhk", new AttributeValue().withS(PREFIX + "hkvalue1")),
+            ImmutableMap.of("physicalhk", new AttributeValue().withS(PREFIX + "hkvalue2"),
+                "somefield", new AttributeValue().withS("somevalue")));
+
+        List<Map<String, AttributeValue>> reversedItems = SUT.reverseAll(mappedItems);
+
+        assertEquals(ImmutableList.of(
+            ImmutableMap.of("virtualhk", new AttributeValue().withS("hkvalue1")),
+            ImmutableMap.of("virtualhk", new AttributeValue().withS("hkvalue2"),
+                "somefield", new AttributeValue().withS("somevalue"))), reversedItems);
+    }
+
+    @Test
+    void unmappedItemIsNotCopied() {
+        Map<String, AttributeValue> item = ImmutableMap.of("somefield", new AttributeValue().withS("somevalue"));
+
+        assertSame(item, SUT.apply(item));
+        assertSame(item, SUT.reverse(item));
+    }
+
+    @Test
+    void reservedFields() {
+        assertThrows(IllegalArgumentException.class, () -> SUT.applyToItem(ImmutableMap.of(
+            "virtualhk", new AttributeValue().withS("hkvalue"),
+            "physicalhk", new AttributeValue().withS("somevalue"))));
+
+        ItemMapper partitionedSut = new ItemMapper(new TableMapping(new DynamoTableDescriptionImpl(
+            CreateTableRequestBuilder.builder()
+                .withTableName("virtualtable")
+                .withTableKeySchema("virtualhk", S).build()),
+            virtualTableDescription1 -> CreateTableRequestBuilder.builder()
+                .withTableKeySchema("physicalhk", S)
+                .addSi(TenantPartitionIndex.getIndexName(2), GSI,
+                    new PrimaryKey(TenantPartitionIndex.HASH_KEY_FIELD, S, "physicalhk", S), 1L)
+                .build(),
+            new DynamoSecondaryIndexMapperByTypeImpl(),
+            () -> "ctx",
+            "."
+        ), new MockFieldMapper());
+        assertTrue(partitionedSut.applyToItem(ImmutableMap.of("virtualhk", new AttributeValue().withS("hkvalue")))
+            .containsKey(TenantPartitionIndex.HASH_KEY_FIELD));
+        assertThrows(IllegalArgumentException.class, () -> partitionedSut.applyToItem(ImmutableMap.of(
+            "virtualhk", new AttributeValue().withS("hkvalue"),
+            TenantPartitionIndex.HASH_KEY_FIELD, new AttributeValue().withS("somevalue"))));
+    }
+
     @Test
     void reverseNull() {
         assertNull(SUT.reverse(null));
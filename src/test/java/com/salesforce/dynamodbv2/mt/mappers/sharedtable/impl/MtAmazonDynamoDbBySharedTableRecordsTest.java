@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.amazonaws.services.dynamodbv2.model.OperationType.INSERT;
+import static com.amazonaws.services.dynamodbv2.model.OperationType.MODIFY;
+import static com.amazonaws.services.dynamodbv2.model.OperationType.REMOVE;
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.AmazonDynamoDbLocal;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtRecord;
+import com.salesforce.dynamodbv2.mt.mappers.MtRecordFilter;
+import com.salesforce.dynamodbv2.mt.mappers.sharedtable.SharedTableBuilder;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests how MtAmazonDynamoDbBySharedTable maps records of the streams of its physical tables to virtual records.
+ */
+class MtAmazonDynamoDbBySharedTableRecordsTest {
+
+    private static final MtAmazonDynamoDbContextProvider MT_CONTEXT = new MtAmazonDynamoDbContextProviderImpl();
+
+    private static Record record(String qualifiedHashKey, OperationType eventName) {
+        return new Record()
+            .withEventName(eventName.toString())
+            .withDynamodb(new StreamRecord()
+                .withKeys(new HashMap<>(ImmutableMap.of("hk", new AttributeValue(qualifiedHashKey)))));
+    }
+
+    /*
+     * Rejected records are dropped before their table mapping is looked up.  The rejected tenant has no virtual tables,
+     * so looking up its table mapping would fail.
+     */
+    @Test
+    void toMtRecordsWithFilter() {
+        MtAmazonDynamoDbBySharedTable amazonDynamoDb = SharedTableBuilder.builder()
+            .withAmazonDynamoDb(AmazonDynamoDbLocal.getAmazonDynamoDbLocal())
+            .withContext(MT_CONTEXT)
+            .withTablePrefix("toMtRecordsWithFilter-")
+            .withPollIntervalSeconds(0)
+            .build();
+        MT_CONTEXT.withContext("ctx1", () -> ImmutableList.of("table1", "table2").forEach(tableName ->
+            amazonDynamoDb.createTable(CreateTableRequestBuilder.builder()
+                .withTableName(tableName)
+                .withTableKeySchema("hk", S)
+                .withProvisionedThroughput(1L, 1L).build())));
+        MtRecordFilter filter = MtRecordFilter.builder()
+            .withTenants(ImmutableList.of("ctx1"))
+            .withTableFilter(tableName -> tableName.startsWith("table"))
+            .withEventNames(INSERT, MODIFY)
+            .build();
+
+        List<MtRecord> mtRecords = amazonDynamoDb.toMtRecords(ImmutableList.of(
+            record("ctx1.table2.a", MODIFY),
+            record("ctx2.table1.b", INSERT), // rejected tenant
+            record("ctx1.table1.c", INSERT),
+            record("ctx1.table1.d", REMOVE), // rejected event
+            record("ctx1.other.e", INSERT), // rejected table
+            record("ctx1.table2.f", INSERT)), "hk", filter);
+
+        assertEquals(ImmutableList.of("ctx1.table2.a", "ctx1.table1.c", "ctx1.table2.f"), mtRecords.stream()
+            .map(mtRecord -> mtRecord.getContext() + "." + mtRecord.getTableName() + "."
+                + mtRecord.getDynamodb().getKeys().get("hk").getS())
+            .collect(toList()));
+
+        MT_CONTEXT.withContext("ctx1", () -> ImmutableList.of("table1", "table2").forEach(amazonDynamoDb::deleteTable));
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.amazonaws.services.dynamodbv2.model.ShardIteratorType.TRIM_HORIZON;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.collect.ImmutableList;
+import com.salesforce.dynamodbv2.mt.mappers.MtAmazonDynamoDb.MtRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests MtAmazonDynamoDbStreamsBySharedTable.
+ */
+class MtAmazonDynamoDbStreamsBySharedTableTest {
+
+    private static final String STREAM_ARN = "arn:aws:dynamodb:region:account:table/physicaltable/stream/label";
+    private static final String SHARD_ID = "shard";
+
+    private final Record record1 = record("1");
+    private final Record record2 = record("2");
+    private final Record record3 = record("3");
+    private final MtRecord mtRecord1 = new MtRecord().withContext("ctx1");
+    private final MtRecord mtRecord3 = new MtRecord().withContext("ctx1");
+    private final MtRecord mtRecord2 = new MtRecord().withContext("ctx2");
+    private AmazonDynamoDBStreams amazonDynamoDbStreams;
+    private MtAmazonDynamoDbBySharedTable mtDynamoDb;
+    private MtAmazonDynamoDbStreamsBySharedTable mtDynamoDbStreams;
+
+    private static Record record(String sequenceNumber) {
+        return new Record().withDynamodb(new StreamRecord().withSequenceNumber(sequenceNumber));
+    }
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDbStreams = mock(AmazonDynamoDBStreams.class);
+        AmazonDynamoDB amazonDynamoDb = mock(AmazonDynamoDB.class);
+        given(amazonDynamoDb.describeTable("physicaltable")).willReturn(new DescribeTableResult().withTable(
+            new TableDescription().withTableName("physicaltable")
+                .withKeySchema(new KeySchemaElement("hk", KeyType.HASH))
+                .withAttributeDefinitions(new AttributeDefinition("hk", ScalarAttributeType.S))));
+        mtDynamoDb = mock(MtAmazonDynamoDbBySharedTable.class);
+        given(mtDynamoDb.getAmazonDynamoDb()).willReturn(amazonDynamoDb);
+        given(amazonDynamoDbStreams.getShardIterator(any())).willReturn(
+            new GetShardIteratorResult().withShardIterator("physical|iterator"));
+        given(amazonDynamoDbStreams.getRecords(new GetRecordsRequest().withShardIterator("physical|iterator")))
+            .willReturn(new GetRecordsResult()
+                .withRecords(record1, record2, record3)
+                .withNextShardIterator("next|physical|iterator"));
+        mtDynamoDbStreams = new MtAmazonDynamoDbStreamsBySharedTable(amazonDynamoDbStreams, mtDynamoDb);
+    }
+
+    private String getTrimHorizonIterator() {
+        return mtDynamoDbStreams.getShardIterator(new GetShardIteratorRequest()
+            .withStreamArn(STREAM_ARN)
+            .withShardId(SHARD_ID)
+            .withShardIteratorType(TRIM_HORIZON)).getShardIterator();
+    }
+
+    @Test
+    void tenantsShareShardPages() {
+        given(mtDynamoDb.isOfCurrentTenant("hk")).willReturn(record -> record != record2);
+        given(mtDynamoDb.toMtRecords(ImmutableList.of(record1, record3), "hk"))
+            .willReturn(ImmutableList.of(mtRecord1, mtRecord3));
+        GetRecordsResult result1 = mtDynamoDbStreams.getRecords(new GetRecordsRequest()
+            .withShardIterator(getTrimHorizonIterator()));
+        assertEquals(ImmutableList.of(mtRecord1, mtRecord3), result1.getRecords());
+
+        given(mtDynamoDb.isOfCurrentTenant("hk")).willReturn(record -> record == record2);
+        given(mtDynamoDb.toMtRecords(ImmutableList.of(record2), "hk")).willReturn(ImmutableList.of(mtRecord2));
+        GetRecordsResult result2 = mtDynamoDbStreams.getRecords(new GetRecordsRequest()
+            .withShardIterator(getTrimHorizonIterator()));
+        assertEquals(ImmutableList.of(mtRecord2), result2.getRecords());
+
+        // one physical page read for both tenants, and both continue at the same position
+        then(amazonDynamoDbStreams).should(times(1)).getRecords(any());
+        assertEquals(result1.getNextShardIterator(), result2.getNextShardIterator());
+        assertEquals(STREAM_ARN + "|" + SHARD_ID + "|AFTER_SEQUENCE_NUMBER|3|next|physical|iterator",
+            result1.getNextShardIterator());
+    }
+
+    @Test
+    void limitContinuesWithinPage() {
+        given(mtDynamoDb.isOfCurrentTenant("hk")).willReturn(record -> record != record2);
+        given(mtDynamoDb.toMtRecords(ImmutableList.of(record1), "hk")).willReturn(ImmutableList.of(mtRecord1));
+        GetRecordsResult result = mtDynamoDbStreams.getRecords(new GetRecordsRequest()
+            .withShardIterator(getTrimHorizonIterator())
+            .withLimit(1));
+        assertEquals(ImmutableList.of(mtRecord1), result.getRecords());
+        assertEquals(STREAM_ARN + "|" + SHARD_ID + "|AFTER_SEQUENCE_NUMBER|1|", result.getNextShardIterator());
+    }
+
+    @Test
+    void closedShard() {
+        given(amazonDynamoDbStreams.getRecords(new GetRecordsRequest().withShardIterator("physical|iterator")))
+            .willReturn(new GetRecordsResult().withRecords(ImmutableList.of()));
+        given(mtDynamoDb.isOfCurrentTenant("hk")).willReturn(record -> true);
+        given(mtDynamoDb.toMtRecords(ImmutableList.of(), "hk")).willReturn(ImmutableList.of());
+        GetRecordsResult result = mtDynamoDbStreams.getRecords(new GetRecordsRequest()
+            .withShardIterator(getTrimHorizonIterator()));
+        assertEquals(ImmutableList.of(), result.getRecords());
+        assertNull(result.getNextShardIterator());
+    }
+
+    @Test
+    void getTableName() {
+        assertEquals("physicaltable", MtAmazonDynamoDbStreamsBySharedTable.getTableName(STREAM_ARN));
+    }
+
+}
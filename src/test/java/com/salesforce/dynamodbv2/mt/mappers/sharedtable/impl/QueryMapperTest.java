@@ -7,7 +7,9 @@
 
 package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
 
+import static com.amazonaws.services.dynamodbv2.model.ComparisonOperator.BETWEEN;
 import static com.amazonaws.services.dynamodbv2.model.ComparisonOperator.EQ;
+import static com.amazonaws.services.dynamodbv2.model.ComparisonOperator.NOT_NULL;
 import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
 import static com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex.DynamoSecondaryIndexType.GSI;
 import static com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl.FieldMapping.IndexType.TABLE;
@@ -134,6 +136,30 @@ class QueryMapperTest {
                 queryRequest);
     }
 
+    @Test
+    void queryPlanIsReusedForRequestsOfSameShape() {
+        FieldMapper fieldMapper = mock(FieldMapper.class);
+        when(fieldMapper.apply(any(), any())).thenAnswer(invocation ->
+                new AttributeValue().withS("prefixed-" + invocation.<AttributeValue>getArgument(1).getS()));
+        QueryMapper sut = new QueryMapper(TABLE_MAPPING, fieldMapper);
+        for (String value : ImmutableList.of("hkvalue1", "hkvalue2")) {
+            QueryRequest queryRequest = new QueryRequest()
+                    .withKeyConditions(ImmutableMap.of("virtualhk",
+                            new Condition()
+                                    .withComparisonOperator(EQ)
+                                    .withAttributeValueList(new AttributeValue().withS(value))));
+
+            sut.apply(queryRequest);
+
+            assertEquals(new QueryRequest()
+                            .withKeyConditionExpression("#field1 = :value1")
+                            .withExpressionAttributeNames(ImmutableMap.of("#field1", "physicalhk"))
+                            .withExpressionAttributeValues(ImmutableMap.of(":value1",
+                                    new AttributeValue().withS("prefixed-" + value))),
+                    queryRequest);
+        }
+    }
+
     @Test
     void queryWithKeyConditionExpressionAndKeyConditions() {
         try {
@@ -195,6 +221,66 @@ class QueryMapperTest {
                 scanRequest);
     }
 
+    @Test
+    void scanWithDisjunctionAndSharedValue() {
+        ScanRequest scanRequest = new ScanRequest()
+                .withFilterExpression("#field > :value OR #other = :value")
+                .withExpressionAttributeNames(ImmutableMap.of("#field", "virtualhk", "#other", "other"))
+                .withExpressionAttributeValues(ImmutableMap.of(":value", new AttributeValue().withS("value")));
+
+        getMockQueryMapper("prefixed").apply(scanRequest);
+
+        assertEquals(new ScanRequest()
+                        .withFilterExpression("(#field > :___value_0___ OR #other = :value) "
+                                + "and begins_with(#___name___, :___value___)")
+                        .withExpressionAttributeNames(ImmutableMap.of("#field", "physicalhk",
+                                "#other", "other",
+                                "#___name___", "physicalhk"))
+                        .withExpressionAttributeValues(ImmutableMap.of(":value", new AttributeValue().withS("value"),
+                                ":___value_0___", new AttributeValue().withS("prefixed"),
+                                ":___value___", new AttributeValue().withS("prefixed"))),
+                scanRequest);
+    }
+
+    @Test
+    void scanWithLegacyBetween() {
+        ScanRequest scanRequest = new ScanRequest()
+                .withScanFilter(ImmutableMap.of("virtualhk",
+                        new Condition()
+                                .withComparisonOperator(BETWEEN)
+                                .withAttributeValueList(new AttributeValue().withS("a"),
+                                        new AttributeValue().withS("b"))));
+
+        getMockQueryMapper("prefixed").apply(scanRequest);
+
+        assertEquals(new ScanRequest()
+                        .withFilterExpression("#field1 BETWEEN :value1 AND :value1_1 "
+                                + "and begins_with(#___name___, :___value___)")
+                        .withExpressionAttributeNames(ImmutableMap.of("#field1", "physicalhk",
+                                "#___name___", "physicalhk"))
+                        .withExpressionAttributeValues(ImmutableMap.of(
+                                ":value1", new AttributeValue().withS("prefixed"),
+                                ":value1_1", new AttributeValue().withS("prefixed"),
+                                ":___value___", new AttributeValue().withS("prefixed"))),
+                scanRequest);
+    }
+
+    @Test
+    void scanWithLegacyAttributeExists() {
+        ScanRequest scanRequest = new ScanRequest()
+                .withScanFilter(ImmutableMap.of("attr", new Condition().withComparisonOperator(NOT_NULL)));
+
+        getMockQueryMapper("prefixed").apply(scanRequest);
+
+        assertEquals(new ScanRequest()
+                        .withFilterExpression("attribute_exists(#field1) and begins_with(#___name___, :___value___)")
+                        .withExpressionAttributeNames(ImmutableMap.of("#field1", "attr",
+                                "#___name___", "physicalhk"))
+                        .withExpressionAttributeValues(ImmutableMap.of(":___value___",
+                                new AttributeValue().withS("prefixed"))),
+                scanRequest);
+    }
+
     @Test
     void scanWithFilterExpressionAndScanFilter() {
         try {
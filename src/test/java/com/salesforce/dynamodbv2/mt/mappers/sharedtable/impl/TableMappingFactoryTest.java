@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.AmazonDynamoDbLocal;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByTypeImpl;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests TableMappingFactory.
+ */
+class TableMappingFactoryTest {
+
+    private static final MtAmazonDynamoDbContextProvider MT_CONTEXT = new MtAmazonDynamoDbContextProviderImpl();
+
+    private final AmazonDynamoDB amazonDynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+    private final CreateTableRequest physicalTable = physicalTable("tableMappingFactory-physical");
+    private final CreateTableRequest otherPhysicalTable = physicalTable("tableMappingFactory-otherPhysical");
+    // maps virtual tables named "other" to the other physical table
+    private final TableMappingFactory sut = new TableMappingFactory(
+        virtualTable -> virtualTable.getTableName().equals("other") ? otherPhysicalTable : physicalTable,
+        MT_CONTEXT,
+        new DynamoSecondaryIndexMapperByTypeImpl(),
+        ".",
+        amazonDynamoDb,
+        0);
+
+    private static CreateTableRequest physicalTable(String tableName) {
+        return CreateTableRequestBuilder.builder()
+            .withTableName(tableName)
+            .withTableKeySchema("hk", S)
+            .withProvisionedThroughput(1L, 1L).build();
+    }
+
+    private static DynamoTableDescription virtualTable(String tableName, String hashKeyField) {
+        return new DynamoTableDescriptionImpl(CreateTableRequestBuilder.builder()
+            .withTableName(tableName)
+            .withTableKeySchema(hashKeyField, S)
+            .withProvisionedThroughput(1L, 1L).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        MT_CONTEXT.setContext(null);
+        amazonDynamoDb.deleteTable(physicalTable.getTableName());
+        amazonDynamoDb.deleteTable(otherPhysicalTable.getTableName());
+    }
+
+    @Test
+    void sharesTableMappingsAcrossTenants() {
+        MT_CONTEXT.setContext("ctx1");
+        TableMapping tableMapping1 = sut.getTableMapping(virtualTable("table", "hk"));
+        MT_CONTEXT.setContext("ctx2");
+        TableMapping tableMapping2 = sut.getTableMapping(virtualTable("table", "hk"));
+        assertSame(tableMapping1, tableMapping2);
+
+        // the shared mapping qualifies values with the context of each caller
+        ImmutableMap<String, AttributeValue> item = ImmutableMap.of("hk", new AttributeValue("value"));
+        assertEquals("ctx2.table.value", tableMapping2.getItemMapper().apply(item).get("hk").getS());
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals("ctx1.table.value", tableMapping1.getItemMapper().apply(item).get("hk").getS());
+
+        // virtual tables with other descriptions or physical tables get mappings of their own
+        assertNotSame(tableMapping1, sut.getTableMapping(virtualTable("table", "otherhk")));
+        TableMapping otherTableMapping = sut.getTableMapping(virtualTable("other", "hk"));
+        assertEquals(otherPhysicalTable.getTableName(), otherTableMapping.getPhysicalTable().getTableName());
+        MT_CONTEXT.setContext("ctx2");
+        assertSame(otherTableMapping, sut.getTableMapping(virtualTable("other", "hk")));
+    }
+
+}
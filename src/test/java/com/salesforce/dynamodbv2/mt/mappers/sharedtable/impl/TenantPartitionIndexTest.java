@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests TenantPartitionIndex.
+ */
+class TenantPartitionIndexTest {
+
+    private static TenantPartitionIndex index(String indexName, boolean complete) {
+        return new TenantPartitionIndex(() -> "ctx", "table", new FieldPrefixFunction("."), "hk", indexName, complete);
+    }
+
+    private static TableDescription table(Long itemCount, Long indexItemCount) {
+        return new TableDescription()
+            .withItemCount(itemCount)
+            .withGlobalSecondaryIndexes(
+                new GlobalSecondaryIndexDescription().withIndexName("gsi").withItemCount(0L),
+                new GlobalSecondaryIndexDescription().withIndexName(TenantPartitionIndex.getIndexName(2))
+                    .withItemCount(indexItemCount));
+    }
+
+    @Test
+    void bucketsAreTakenFromIndexName() {
+        assertEquals(4, index(TenantPartitionIndex.getIndexName(4), true).getBuckets());
+        assertThrows(IllegalArgumentException.class, () -> index("tenant_partition", true));
+        assertThrows(IllegalArgumentException.class, () -> index("tenant_partition_0", true));
+        assertThrows(IllegalArgumentException.class, () -> TenantPartitionIndex.getIndexName(0));
+    }
+
+    @Test
+    void isComplete() {
+        assertTrue(TenantPartitionIndex.isComplete(table(10L, 10L)));
+        assertTrue(TenantPartitionIndex.isComplete(table(null, null)));
+        assertTrue(TenantPartitionIndex.isComplete(new TableDescription().withItemCount(10L)));
+        assertFalse(TenantPartitionIndex.isComplete(table(10L, 9L)));
+    }
+
+    /*
+     * Indexes that miss items of the physical table, e.g., because they were added to an existing table, are only
+     * used for tagging items, while scans read the whole physical table.
+     */
+    @Test
+    void incompleteIndexDoesNotSupportScans() {
+        String indexName = TenantPartitionIndex.getIndexName(2);
+        assertTrue(index(indexName, true).supports(new ScanRequest()));
+        assertFalse(index(indexName, false).supports(new ScanRequest()));
+    }
+
+}
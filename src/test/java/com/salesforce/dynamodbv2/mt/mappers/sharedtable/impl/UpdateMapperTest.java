@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.mappers.sharedtable.impl;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndex.DynamoSecondaryIndexType.GSI;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeAction;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.mappers.index.DynamoSecondaryIndexMapperByTypeImpl;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescription;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.DynamoTableDescriptionImpl;
+import com.salesforce.dynamodbv2.mt.mappers.metadata.PrimaryKey;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Tests UpdateMapper.
+ */
+class UpdateMapperTest {
+
+    private static final DynamoTableDescription VIRTUAL_TABLE_DESCRIPTION = new DynamoTableDescriptionImpl(
+            CreateTableRequestBuilder.builder()
+                    .withTableKeySchema("virtualhk", S)
+                    .addSi("virtualgsi", GSI, new PrimaryKey("virtualgsihk", S), 1L).build());
+    private static final DynamoTableDescription PHYSICAL_TABLE_DESCRIPTION = new DynamoTableDescriptionImpl(
+            CreateTableRequestBuilder.builder()
+                    .withTableKeySchema("physicalhk", S)
+                    .addSi("physicalgsi", GSI, new PrimaryKey("physicalgsihk", S), 1L).build());
+    // Suppresses "'lambda arguments' has incorrect indentation level" warning.
+    @SuppressWarnings("checkstyle:Indentation")
+    private static final TableMapping TABLE_MAPPING = new TableMapping(VIRTUAL_TABLE_DESCRIPTION,
+            virtualTableDescription1 -> PHYSICAL_TABLE_DESCRIPTION.getCreateTableRequest(),
+            new DynamoSecondaryIndexMapperByTypeImpl(),
+            () -> "ctx",
+            "."
+    );
+
+    @Test
+    void updateAndConditionExpressions() {
+        UpdateItemRequest updateItemRequest = new UpdateItemRequest()
+                .withUpdateExpression("SET virtualgsihk = :gsihk, #attr = :attr")
+                .withConditionExpression("#gsihk <> :gsihk AND #attr = :old")
+                .withExpressionAttributeNames(ImmutableMap.of("#attr", "attr", "#gsihk", "virtualgsihk"))
+                .withExpressionAttributeValues(ImmutableMap.of(
+                        ":gsihk", new AttributeValue("gsivalue"),
+                        ":attr", new AttributeValue("new"),
+                        ":old", new AttributeValue("old")));
+
+        TABLE_MAPPING.getUpdateMapper().apply(updateItemRequest);
+
+        assertEquals(new UpdateItemRequest()
+                .withUpdateExpression("SET #field1 = :gsihk, #attr = :attr")
+                .withConditionExpression("#gsihk <> :gsihk AND #attr = :old")
+                .withExpressionAttributeNames(ImmutableMap.of("#attr", "attr",
+                        "#gsihk", "physicalgsihk",
+                        "#field1", "physicalgsihk"))
+                .withExpressionAttributeValues(ImmutableMap.of(
+                        ":gsihk", new AttributeValue("ctx.virtualgsi.gsivalue"),
+                        ":attr", new AttributeValue("new"),
+                        ":old", new AttributeValue("old"))), updateItemRequest);
+    }
+
+    /*
+     * Context-aware fields can only be set to values, since their qualified values could not be derived otherwise.
+     */
+    @Test
+    void updateExpressionsOfContextAwareFields() {
+        ImmutableList.of(
+            "SET #gsihk = #attr",
+            "SET #gsihk = if_not_exists(#attr, :v)",
+            "SET #gsihk = list_append(#attr, :v)",
+            "SET #gsihk = :v + :v",
+            "ADD #gsihk :v",
+            "DELETE #gsihk :v").forEach(updateExpression -> {
+                UpdateItemRequest updateItemRequest = new UpdateItemRequest()
+                    .withUpdateExpression(updateExpression)
+                    .withExpressionAttributeNames(ImmutableMap.of("#gsihk", "virtualgsihk", "#attr", "attr"))
+                    .withExpressionAttributeValues(ImmutableMap.of(":v", new AttributeValue("v")));
+                assertThrows(IllegalArgumentException.class,
+                    () -> TABLE_MAPPING.getUpdateMapper().apply(updateItemRequest), updateExpression);
+            });
+
+        UpdateItemRequest updateItemRequest = new UpdateItemRequest()
+            .withUpdateExpression("REMOVE #gsihk")
+            .withExpressionAttributeNames(ImmutableMap.of("#gsihk", "virtualgsihk"));
+        TABLE_MAPPING.getUpdateMapper().apply(updateItemRequest);
+        assertEquals(new UpdateItemRequest()
+            .withUpdateExpression("REMOVE #gsihk")
+            .withExpressionAttributeNames(ImmutableMap.of("#gsihk", "physicalgsihk")), updateItemRequest);
+    }
+
+    @Test
+    void attributeUpdatesOfContextAwareFields() {
+        ImmutableList.of(AttributeAction.ADD, AttributeAction.DELETE).forEach(action ->
+            assertThrows(IllegalArgumentException.class, () -> TABLE_MAPPING.getUpdateMapper().apply(
+                new UpdateItemRequest().withAttributeUpdates(ImmutableMap.of(
+                    "virtualgsihk", new AttributeValueUpdate(new AttributeValue("v"), action)))), action.toString()));
+    }
+
+    @Test
+    void attributeUpdatesAndExpected() {
+        UpdateItemRequest updateItemRequest = new UpdateItemRequest()
+                .withAttributeUpdates(ImmutableMap.of(
+                        "virtualgsihk", new AttributeValueUpdate(new AttributeValue("gsivalue"), AttributeAction.PUT),
+                        "attr", new AttributeValueUpdate(new AttributeValue("new"), AttributeAction.PUT)))
+                .withExpected(ImmutableMap.of(
+                        "virtualgsihk", new ExpectedAttributeValue()
+                                .withComparisonOperator(ComparisonOperator.BEGINS_WITH)
+                                .withAttributeValueList(new AttributeValue("gsi")),
+                        "attr", new ExpectedAttributeValue(false)));
+
+        TABLE_MAPPING.getUpdateMapper().apply(updateItemRequest);
+
+        assertEquals(new UpdateItemRequest()
+                .withAttributeUpdates(ImmutableMap.of(
+                        "physicalgsihk", new AttributeValueUpdate(new AttributeValue("ctx.virtualgsi.gsivalue"),
+                                AttributeAction.PUT),
+                        "attr", new AttributeValueUpdate(new AttributeValue("new"), AttributeAction.PUT)))
+                .withExpected(ImmutableMap.of(
+                        "physicalgsihk", new ExpectedAttributeValue()
+                                .withComparisonOperator(ComparisonOperator.BEGINS_WITH)
+                                .withAttributeValueList(new AttributeValue("ctx.virtualgsi.gsi")),
+                        "attr", new ExpectedAttributeValue(false))), updateItemRequest);
+    }
+
+}
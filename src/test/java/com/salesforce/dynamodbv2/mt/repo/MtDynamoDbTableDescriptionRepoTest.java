@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.salesforce.dynamodbv2.AmazonDynamoDbLocal;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.repo.MtDynamoDbTableDescriptionRepo.Layout;
+import com.salesforce.dynamodbv2.mt.repo.MtDynamoDbTableDescriptionRepo.MtDynamoDbTableDescriptionRepoBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests MtDynamoDbTableDescriptionRepo.
+ */
+class MtDynamoDbTableDescriptionRepoTest {
+
+    private static final MtAmazonDynamoDbContextProvider MT_CONTEXT = new MtAmazonDynamoDbContextProviderImpl();
+
+    private AmazonDynamoDB amazonDynamoDb;
+
+    @BeforeEach
+    void setUp() {
+        amazonDynamoDb = AmazonDynamoDbLocal.getNewAmazonDynamoDbLocal();
+    }
+
+    @AfterEach
+    void tearDown() {
+        MT_CONTEXT.setContext(null);
+    }
+
+    private MtDynamoDbTableDescriptionRepo createRepo(String tableName, Layout layout) {
+        return createRepo(tableName, layout, builder -> builder);
+    }
+
+    /*
+     * Creates a repo with default settings, which the given function may override or add to.
+     */
+    private MtDynamoDbTableDescriptionRepo createRepo(
+        String tableName, Layout layout, UnaryOperator<MtDynamoDbTableDescriptionRepoBuilder> settings) {
+        return settings.apply(MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withContext(MT_CONTEXT)
+            .withTableDescriptionTableName(tableName)
+            .withLayout(layout)
+            .withProvisionedThroughput(5L, 5L)
+            .withPollIntervalSeconds(0))
+            .build();
+    }
+
+    private static CreateTableRequest createTableRequest(String tableName) {
+        return CreateTableRequestBuilder.builder()
+            .withTableName(tableName)
+            .withTableKeySchema("hk", S)
+            .withProvisionedThroughput(1L, 1L).build();
+    }
+
+    @Test
+    void loadTenant() {
+        MT_CONTEXT.setContext("ctx1");
+        TableDescription table1 = createRepo("v2", Layout.V2).createTable(createTableRequest("table1"));
+        TableDescription table2 = createRepo("v2", Layout.V2).createTable(createTableRequest("table2"));
+
+        MtDynamoDbTableDescriptionRepo repo = createRepo("v2", Layout.V2);
+        repo.loadTenant();
+        // both tables are served from the cache after their records are deleted
+        amazonDynamoDb.deleteItem("v2", new HashMap<>(ImmutableMap.of("tenant", new AttributeValue("ctx1"),
+            "table", new AttributeValue("table1"))));
+        amazonDynamoDb.deleteItem("v2", new HashMap<>(ImmutableMap.of("tenant", new AttributeValue("ctx1"),
+            "table", new AttributeValue("table2"))));
+        assertEquals(table1, repo.getTableDescription("table1"));
+        assertEquals(table2, repo.getTableDescription("table2"));
+    }
+
+    @Test
+    void refreshesLoadedTenant() {
+        AtomicLong nanoTime = new AtomicLong();
+        List<Runnable> refreshes = new ArrayList<>();
+        MtDynamoDbTableDescriptionRepo repo = createRepo("v2", Layout.V2, builder -> builder
+            .withCacheBuilder(CacheBuilder.newBuilder()
+                .ticker(new Ticker() {
+                    @Override
+                    public long read() {
+                        return nanoTime.get();
+                    }
+                })
+                .refreshAfterWrite(1, TimeUnit.SECONDS))
+            .withCacheRefreshExecutor(refreshes::add));
+        MT_CONTEXT.setContext("ctx1");
+        TableDescription table1 = createRepo("v2", Layout.V2).createTable(createTableRequest("table1"));
+        repo.loadTenant();
+        createRepo("v2", Layout.V2).deleteTable("table1");
+        TableDescription recreated = createRepo("v2", Layout.V2).createTable(CreateTableRequestBuilder.builder()
+            .withTableName("table1")
+            .withTableKeySchema("otherHk", S)
+            .withProvisionedThroughput(1L, 1L).build());
+
+        // entries loaded for the tenant are refreshed like entries loaded on demand, while the table description table
+        // is not tracked by the cache, so that it is not refreshed
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(table1, repo.getTableDescription("table1"));
+        assertEquals(1, refreshes.size());
+        refreshes.forEach(Runnable::run);
+        assertEquals(recreated, repo.getTableDescription("table1"));
+    }
+
+    @Test
+    void migrateFrom() {
+        MtDynamoDbTableDescriptionRepo v1Repo = createRepo("v1", Layout.V1);
+        MT_CONTEXT.setContext("ctx1");
+        TableDescription table1 = v1Repo.createTable(createTableRequest("table"));
+        MT_CONTEXT.setContext("ctx2");
+        TableDescription table2 = v1Repo.createTable(createTableRequest("table"));
+
+        MtDynamoDbTableDescriptionRepo v2Repo = createRepo("v2", Layout.V2);
+        assertEquals(2, v2Repo.migrateFrom("v1"));
+        assertEquals(0, v2Repo.migrateFrom("v1"));
+        assertEquals(table2, v2Repo.getTableDescription("table"));
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals(table1, v2Repo.getTableDescription("table"));
+    }
+
+    @Test
+    void opensExistingTableWithDifferentThroughput() {
+        MT_CONTEXT.setContext("ctx1");
+        TableDescription table = createRepo("v2", Layout.V2).createTable(createTableRequest("table"));
+
+        MtDynamoDbTableDescriptionRepo repo = createRepo("v2", Layout.V2, builder -> builder
+            .withProvisionedThroughput(1L, 1L));
+        assertEquals(table, repo.getTableDescription("table"));
+        assertEquals(5L, (long) amazonDynamoDb.describeTable("v2").getTable().getProvisionedThroughput()
+            .getReadCapacityUnits());
+    }
+
+    @Test
+    void binaryEncodingReadsJson() {
+        MT_CONTEXT.setContext("ctx1");
+        TableDescription jsonTable = createRepo("v1", Layout.V1).createTable(createTableRequest("jsonTable"));
+        TableDescription binaryTable = createRepo("v1", Layout.V1, builder -> builder.withBinaryEncoding(true))
+            .createTable(createTableRequest("binaryTable"));
+
+        assertNotNull(amazonDynamoDb.getItem("v1", new HashMap<>(ImmutableMap.of("table",
+            new AttributeValue("ctx1.binaryTable")))).getItem().get("data").getB());
+        MtDynamoDbTableDescriptionRepo repo = createRepo("v1", Layout.V1, builder -> builder.withBinaryEncoding(true));
+        assertEquals(jsonTable, repo.getTableDescription("jsonTable"));
+        assertEquals(binaryTable, repo.getTableDescription("binaryTable"));
+    }
+
+    @Test
+    void negativeCache() {
+        MtDynamoDbTableDescriptionRepo repo = createRepo("v1", Layout.V1, builder -> builder
+            .withNegativeCacheTtlMillis(60_000L));
+        MT_CONTEXT.setContext("ctx1");
+        assertThrows(ResourceNotFoundException.class, () -> repo.getTableDescription("table1"));
+
+        // tables created through other repos appear missing until invalidated
+        TableDescription table1 = createRepo("v1", Layout.V1).createTable(createTableRequest("table1"));
+        assertThrows(ResourceNotFoundException.class, () -> repo.getTableDescription("table1"));
+        repo.invalidate("ctx1", "table1");
+        assertEquals(table1, repo.getTableDescription("table1"));
+
+        // tables created through the repo itself are found right away
+        assertThrows(ResourceNotFoundException.class, () -> repo.getTableDescription("table2"));
+        TableDescription table2 = repo.createTable(createTableRequest("table2"));
+        assertEquals(table2, repo.getTableDescription("table2"));
+    }
+
+    @Test
+    void snapshot() throws IOException {
+        Path directory = Files.createTempDirectory("snapshot");
+        Path snapshotFile = directory.resolve("snapshot");
+        MtDynamoDbTableDescriptionRepo repo1 = createRepo("v1", Layout.V1, builder -> builder
+            .withSnapshotFile(snapshotFile));
+        MT_CONTEXT.setContext("ctx1");
+        TableDescription table1 = repo1.createTable(createTableRequest("table1"));
+        TableDescription table2 = repo1.createTable(createTableRequest("table2"));
+        repo1.writeSnapshot();
+
+        List<Runnable> validations = new ArrayList<>();
+        MtDynamoDbTableDescriptionRepo repo2 = createRepo("v1", Layout.V1, builder -> builder
+            .withSnapshotFile(snapshotFile)
+            .withSnapshotValidationExecutor(validations::add));
+        // descriptions are served from the snapshot until they are validated
+        amazonDynamoDb.deleteItem("v1", new HashMap<>(ImmutableMap.of("table", new AttributeValue("ctx1.table1"))));
+        assertEquals(table1, repo2.getTableDescription("table1"));
+        assertEquals(table2, repo2.getTableDescription("table2"));
+        assertEquals(2, validations.size());
+        validations.forEach(Runnable::run);
+        assertThrows(ResourceNotFoundException.class, () -> repo2.getTableDescription("table1"));
+        assertEquals(table2, repo2.getTableDescription("table2"));
+        assertEquals(2, validations.size());
+
+        Files.delete(snapshotFile);
+        Files.delete(directory);
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.N;
+import static com.amazonaws.services.dynamodbv2.model.ScalarAttributeType.S;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.salesforce.dynamodbv2.AmazonDynamoDbLocal;
+import com.salesforce.dynamodbv2.mt.context.MtAmazonDynamoDbContextProvider;
+import com.salesforce.dynamodbv2.mt.context.impl.MtAmazonDynamoDbContextProviderImpl;
+import com.salesforce.dynamodbv2.mt.mappers.CreateTableRequestBuilder;
+import com.salesforce.dynamodbv2.mt.repo.MtDynamoDbTableDescriptionRepo.Layout;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests MtTableMetadataStreamListener against DynamoDB Local streams, with two repos standing in for two nodes.
+ */
+class MtTableMetadataStreamListenerTest {
+
+    private static final MtAmazonDynamoDbContextProvider MT_CONTEXT = new MtAmazonDynamoDbContextProviderImpl();
+
+    private final AmazonDynamoDB amazonDynamoDb = AmazonDynamoDbLocal.getAmazonDynamoDbLocal();
+    private final AmazonDynamoDBStreams amazonDynamoDbStreams = AmazonDynamoDbLocal.getAmazonDynamoDbStreamsLocal();
+    private final List<String> tableNames = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        MT_CONTEXT.setContext(null);
+        tableNames.forEach(amazonDynamoDb::deleteTable);
+    }
+
+    private MtDynamoDbTableDescriptionRepo createRepo(String tableName, Layout layout) {
+        return createRepo(tableName, layout, true);
+    }
+
+    private MtDynamoDbTableDescriptionRepo createRepo(String tableName, Layout layout, boolean streamEnabled) {
+        return MtDynamoDbTableDescriptionRepo.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withContext(MT_CONTEXT)
+            .withTableDescriptionTableName(tableName)
+            .withLayout(layout)
+            .withStreamEnabled(streamEnabled)
+            .withPollIntervalSeconds(0)
+            .build();
+    }
+
+    private MtTableMetadataStreamListener createListener(MtDynamoDbTableDescriptionRepo repo,
+                                                         MtTableMetadataCache... caches) {
+        return MtTableMetadataStreamListener.builder()
+            .withAmazonDynamoDb(amazonDynamoDb)
+            .withAmazonDynamoDbStreams(amazonDynamoDbStreams)
+            .withTableDescriptionRepo(repo)
+            .withCaches(caches)
+            .build();
+    }
+
+    private static CreateTableRequest createTableRequest(String tableName, ScalarAttributeType hashKeyType) {
+        return CreateTableRequestBuilder.builder()
+            .withTableName(tableName)
+            .withTableKeySchema("hk", hashKeyType)
+            .withProvisionedThroughput(1L, 1L).build();
+    }
+
+    @Test
+    void invalidatesV1() {
+        invalidates(Layout.V1);
+    }
+
+    @Test
+    void invalidatesV2() {
+        invalidates(Layout.V2);
+    }
+
+    private void invalidates(Layout layout) {
+        String tableDescriptionTableName = "streamListener" + layout;
+        MtDynamoDbTableDescriptionRepo node1 = createRepo(tableDescriptionTableName, layout);
+        MtDynamoDbTableDescriptionRepo node2 = createRepo(tableDescriptionTableName, layout);
+        tableNames.add(tableDescriptionTableName);
+        MtTableMetadataCache mappingCache = new RecordingCache();
+        MtTableMetadataStreamListener listener = createListener(node2, mappingCache);
+        listener.poll();
+        MT_CONTEXT.setContext("ctx1");
+        node1.createTable(createTableRequest("table", S));
+        TableDescription original = node2.getTableDescription("table");
+
+        // node2 serves the cached description until it polls the stream
+        node1.deleteTable("table");
+        TableDescription recreated = node1.createTable(createTableRequest("table", N));
+        assertEquals(original, node2.getTableDescription("table"));
+        MT_CONTEXT.setContext(null);
+        listener.poll();
+        MT_CONTEXT.setContext("ctx1");
+        assertEquals(recreated, node2.getTableDescription("table"));
+        assertEquals("[ctx1.table, ctx1.table, ctx1.table]", mappingCache.toString());
+
+        node1.deleteTable("table");
+        listener.poll();
+        assertThrows(ResourceNotFoundException.class, () -> node2.getTableDescription("table"));
+        listener.close();
+    }
+
+    @Test
+    void enablesStreamOfExistingTable() {
+        String tableDescriptionTableName = "streamListenerExisting";
+        tableNames.add(tableDescriptionTableName);
+        MT_CONTEXT.setContext("ctx1");
+        MtDynamoDbTableDescriptionRepo legacyNode = createRepo(tableDescriptionTableName, Layout.V1, false);
+        legacyNode.createTable(createTableRequest("table", S));
+        assertNull(amazonDynamoDb.describeTable(tableDescriptionTableName).getTable().getLatestStreamArn());
+
+        // the first node configured for invalidation enables the stream
+        MtDynamoDbTableDescriptionRepo node = createRepo(tableDescriptionTableName, Layout.V1);
+        MtTableMetadataStreamListener listener = createListener(node);
+        listener.poll();
+        assertNotNull(amazonDynamoDb.describeTable(tableDescriptionTableName).getTable().getLatestStreamArn());
+
+        // nodes that are not configured for invalidation keep working, and their changes are seen
+        node.getTableDescription("table");
+        createRepo(tableDescriptionTableName, Layout.V1, false).deleteTable("table");
+        listener.poll();
+        assertThrows(ResourceNotFoundException.class, () -> node.getTableDescription("table"));
+        listener.close();
+    }
+
+    /*
+     * Records the tables it is asked to invalidate.
+     */
+    private static class RecordingCache implements MtTableMetadataCache {
+
+        private final List<String> invalidated = new ArrayList<>();
+
+        @Override
+        public void invalidate(String context, String tableName) {
+            invalidated.add(context + "." + tableName);
+        }
+
+        @Override
+        public void invalidateAll() {
+            invalidated.clear();
+        }
+
+        @Override
+        public String toString() {
+            return invalidated.toString();
+        }
+    }
+
+}
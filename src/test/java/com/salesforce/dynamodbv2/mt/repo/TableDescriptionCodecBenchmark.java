@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.google.gson.Gson;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Compares the item size and decode time of table descriptions encoded by TableDescriptionCodec with those of the
+ * legacy JSON encoding of MtDynamoDbTableDescriptionRepo, for tables without and with many secondary indexes.
+ *
+ * Disabled, since decode times are only logged and vary between machines.  Run it manually.
+ */
+@Disabled
+class TableDescriptionCodecBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(TableDescriptionCodecBenchmark.class);
+    private static final Gson GSON = new Gson();
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    void noIndexes() {
+        run("no indexes", TableDescriptionCodecTest.createTableDescription(0, 0));
+    }
+
+    @Test
+    void manyIndexes() {
+        run("5 LSIs, 20 GSIs", TableDescriptionCodecTest.createTableDescription(5, 20));
+    }
+
+    private void run(String name, TableDescription tableDescription) {
+        String json = GSON.toJson(tableDescription);
+        int jsonBytes = json.getBytes(StandardCharsets.UTF_8).length;
+        byte[] binary = TableDescriptionCodec.encode(tableDescription);
+        assertTrue(binary.length < jsonBytes);
+
+        decodeJson(json, WARMUP_ITERATIONS);
+        decodeBinary(binary, WARMUP_ITERATIONS);
+        long jsonNanos = decodeJson(json, ITERATIONS);
+        long binaryNanos = decodeBinary(binary, ITERATIONS);
+
+        log.info("{}: JSON {} bytes, {} ns/decode; binary {} bytes, {} ns/decode ({}x smaller, {}x faster)", name,
+            jsonBytes, jsonNanos / ITERATIONS, binary.length, binaryNanos / ITERATIONS,
+            String.format("%.1f", (double) jsonBytes / binary.length),
+            String.format("%.1f", (double) jsonNanos / binaryNanos));
+    }
+
+    private static long decodeJson(String json, int iterations) {
+        long start = System.nanoTime();
+        int hash = 0;
+        for (int i = 0; i < iterations; i++) {
+            hash += GSON.fromJson(json, TableDescription.class).getTableName().length();
+        }
+        return consume(System.nanoTime() - start, hash);
+    }
+
+    private static long decodeBinary(byte[] binary, int iterations) {
+        ByteBuffer buffer = ByteBuffer.wrap(binary);
+        long start = System.nanoTime();
+        int hash = 0;
+        for (int i = 0; i < iterations; i++) {
+            hash += TableDescriptionCodec.decode(buffer).getTableName().length();
+        }
+        return consume(System.nanoTime() - start, hash);
+    }
+
+    /*
+     * Uses the decoded values, so that decoding is not optimized away.
+     */
+    private static long consume(long nanos, int hash) {
+        return hash == 0 ? nanos + 1 : nanos;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.ScalarAttributeType;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.StreamViewType;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests TableDescriptionCodec.
+ */
+class TableDescriptionCodecTest {
+
+    /*
+     * Returns a description of a table with the given numbers of secondary indexes, as MtDynamoDbTableDescriptionRepo
+     * stores them.
+     */
+    static TableDescription createTableDescription(int lsiCount, int gsiCount) {
+        List<AttributeDefinition> attributeDefinitions = new ArrayList<>();
+        attributeDefinitions.add(new AttributeDefinition("hk", ScalarAttributeType.S));
+        attributeDefinitions.add(new AttributeDefinition("rk", ScalarAttributeType.N));
+        List<LocalSecondaryIndexDescription> lsis = new ArrayList<>();
+        for (int i = 0; i < lsiCount; i++) {
+            attributeDefinitions.add(new AttributeDefinition("lsi" + i, ScalarAttributeType.S));
+            lsis.add(new LocalSecondaryIndexDescription()
+                .withIndexName("lsi" + i)
+                .withKeySchema(new KeySchemaElement("hk", KeyType.HASH), new KeySchemaElement("lsi" + i, KeyType.RANGE))
+                .withProjection(new Projection().withProjectionType(ProjectionType.INCLUDE)
+                    .withNonKeyAttributes("attr1", "attr2")));
+        }
+        List<GlobalSecondaryIndexDescription> gsis = new ArrayList<>();
+        for (int i = 0; i < gsiCount; i++) {
+            attributeDefinitions.add(new AttributeDefinition("gsi" + i, ScalarAttributeType.B));
+            gsis.add(new GlobalSecondaryIndexDescription()
+                .withIndexName("gsi" + i)
+                .withKeySchema(new KeySchemaElement("gsi" + i, KeyType.HASH))
+                .withProjection(new Projection().withProjectionType(ProjectionType.ALL))
+                .withProvisionedThroughput(new ProvisionedThroughputDescription()
+                    .withReadCapacityUnits(5L).withWriteCapacityUnits(10L)));
+        }
+        return new TableDescription()
+            .withTableName("table")
+            .withKeySchema(new KeySchemaElement("hk", KeyType.HASH), new KeySchemaElement("rk", KeyType.RANGE))
+            .withAttributeDefinitions(attributeDefinitions)
+            .withProvisionedThroughput(new ProvisionedThroughputDescription()
+                .withReadCapacityUnits(1L).withWriteCapacityUnits(1L))
+            .withStreamSpecification(new StreamSpecification()
+                .withStreamEnabled(true).withStreamViewType(StreamViewType.NEW_AND_OLD_IMAGES))
+            .withLocalSecondaryIndexes(lsis.isEmpty() ? null : lsis)
+            .withGlobalSecondaryIndexes(gsis.isEmpty() ? null : gsis);
+    }
+
+    private static TableDescription roundTrip(TableDescription tableDescription) {
+        return TableDescriptionCodec.decode(ByteBuffer.wrap(TableDescriptionCodec.encode(tableDescription)));
+    }
+
+    @Test
+    void roundTripsIndexes() {
+        TableDescription tableDescription = createTableDescription(2, 3);
+        assertEquals(tableDescription, roundTrip(tableDescription));
+    }
+
+    @Test
+    void roundTripsNullsAndUnknownSymbols() {
+        TableDescription tableDescription = new TableDescription()
+            .withTableName("table")
+            .withKeySchema(new KeySchemaElement().withAttributeName("hk").withKeyType("FUTURE"))
+            .withProvisionedThroughput(new ProvisionedThroughputDescription().withReadCapacityUnits(1L))
+            .withStreamSpecification(new StreamSpecification());
+        assertEquals(tableDescription, roundTrip(tableDescription));
+        assertEquals(new TableDescription(), roundTrip(new TableDescription()));
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] bytes = TableDescriptionCodec.encode(new TableDescription());
+        bytes[0] = TableDescriptionCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> TableDescriptionCodec.decode(ByteBuffer.wrap(bytes)));
+    }
+
+}
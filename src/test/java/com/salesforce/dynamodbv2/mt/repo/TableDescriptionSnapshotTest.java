@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, salesforce.com, inc.
+ * All rights reserved.
+ * Licensed under the BSD 3-Clause license.
+ * For full license text, see LICENSE.txt file in the repo root  or https://opensource.org/licenses/BSD-3-Clause
+ */
+
+package com.salesforce.dynamodbv2.mt.repo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests TableDescriptionSnapshot.
+ */
+class TableDescriptionSnapshotTest {
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        file = directory.resolve("snapshot");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    void writesAndLoads() throws IOException {
+        TableDescription table1 = TableDescriptionCodecTest.createTableDescription(1, 2);
+        TableDescription table2 = TableDescriptionCodecTest.createTableDescription(0, 0).withTableName("table2");
+        Map<String, Map<String, byte[]>> descriptions = new HashMap<>();
+        descriptions.computeIfAbsent("ctx1", c -> new HashMap<>())
+            .put("table1", TableDescriptionCodec.encode(table1));
+        descriptions.computeIfAbsent("ctx2", c -> new HashMap<>())
+            .put("table2", TableDescriptionCodec.encode(table2));
+        TableDescriptionSnapshot.write(file, descriptions);
+
+        TableDescriptionSnapshot snapshot = TableDescriptionSnapshot.load(file);
+        assertEquals(table1, snapshot.get("ctx1", "table1"));
+        assertEquals(table2, snapshot.get("ctx2", "table2"));
+        assertNull(snapshot.get("ctx2", "table1"));
+        assertNull(snapshot.get(null, "table1"));
+        assertArrayEquals(descriptions.get("ctx1").get("table1"),
+            snapshot.getEncodedDescriptions().get("ctx1").get("table1"));
+
+        assertTrue(snapshot.remove("ctx1", "table1"));
+        assertFalse(snapshot.remove("ctx1", "table1"));
+        assertNull(snapshot.get("ctx1", "table1"));
+        assertFalse(snapshot.isEmpty());
+        assertTrue(snapshot.remove("ctx2", "table2"));
+        assertTrue(snapshot.isEmpty());
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(IllegalArgumentException.class, () -> TableDescriptionSnapshot.load(file));
+    }
+
+}